@@ -35,4 +35,15 @@ public interface ResponderResources extends ConsumerResources {
 	 * 
 	 */
 	public void keepActive();
+	
+	/**
+	 * Returns the latest time the responder can process events up to during this call to consume().
+	 * Events after it may still be preceded by events that a dependency waiting on another responder has yet to raise.
+	 * Returns Long.MAX_VALUE when the whole time window can be processed.
+	 * 
+	 * @return
+	 */
+	public default long getTimeLimit() {
+		return Long.MAX_VALUE;
+	}
 }
@@ -29,6 +29,30 @@ public interface BasicInfo {
 	 */
 	public Set<String> getDependencies();
 	
+	/**
+	 * Returns the priority a dependency was given when it was added to this ResourcePool with
+	 * {@link FunctionReference#addResourcePool(String, int)}.
+	 * Dependencies added without a priority, and the dependencies of objects that are not ResourcePools, have a priority of 0.
+	 * 
+	 * @param dependencyId
+	 * @return
+	 */
+	public default int getPriority(String dependencyId) {
+		return 0;
+	}
+	
+	/**
+	 * Returns the number of units a dependency requests at once from this ResourcePool, as reported by
+	 * {@link Function#getResourceUnits(String)}.
+	 * Dependencies that are not Functions, and the dependencies of objects that are not ResourcePools, request 1.
+	 * 
+	 * @param dependencyId
+	 * @return
+	 */
+	public default int getResourceUnits(String dependencyId) {
+		return 1;
+	}
+	
 	/**
 	 * Returns the TimeTranslator function for this {@link Simulation}
 	 * 
@@ -24,6 +24,21 @@ public interface Distribution extends Serializable {
 	
 	public double sample(double uniformRandom);
 	
+	/**
+	 * Samples the distribution once for each element of uniforms and writes the results to the same index of out.
+	 * Each result must be exactly the value sample(double) returns for that uniform, so bulk and single sampling
+	 * can be mixed without changing simulation results.
+	 * uniforms and out may be the same array.
+	 * 
+	 * @param uniforms
+	 * @param out
+	 */
+	public default void sample(double[] uniforms, double[] out) {
+		for (int i = 0; i < uniforms.length; i++) {
+			out[i] = sample(uniforms[i]);
+		}
+	}
+	
 	public String getSetup();
 	
 	public Distribution copy();
@@ -0,0 +1,44 @@
+/**
+ * 
+ */
+package com.perelens.simulation.api;
+
+/**
+ * Copyright 2020-2023 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" 
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
+   permissions and limitations under the License
+
+   
+   Service provider interface for turning a Distribution setup string back into a Distribution.
+   A DistributionProvider hands every setup that starts with getSetupName() to the parser.  Implementations may be
+   registered with the provider directly or listed in META-INF/services/com.perelens.simulation.api.DistributionParser.
+   
+ * @author Steve Branda
+ *
+ */
+public interface DistributionParser {
+
+	/**
+	 * Returns the prefix of the setup strings this parser handles, including the trailing ';', for example "Exponential;".
+	 * 
+	 * @return
+	 */
+	public String getSetupName();
+	
+	/**
+	 * Returns a Distribution whose getSetup() equals the passed setup.
+	 * Throws an IllegalArgumentException if the setup is malformed.
+	 * 
+	 * @param setup
+	 * @param provider - provider to use for any Distribution setups nested inside setup
+	 * @return
+	 */
+	public Distribution parse(String setup, DistributionProvider provider);
+	
+}
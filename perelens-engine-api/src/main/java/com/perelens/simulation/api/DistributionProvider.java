@@ -3,6 +3,8 @@
  */
 package com.perelens.simulation.api;
 
+import com.perelens.engine.utils.Utils;
+
 /**
  * Copyright 2020-2023 Steven Branda
    Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
@@ -83,6 +85,108 @@ public interface DistributionProvider {
 	 */
 	public Distribution lognormal90pctCI(double lowerBound, double upperBound);
 	
+	/**
+	 * Returns a Distribution that behaves like the Weibull distribution with the passed shape and scale.
+	 * A shape below 1 models a falling failure rate (infant mortality) and a shape above 1 a rising one (wear out).
+	 * The default throws UnsupportedOperationException for providers that do not support Weibull distributions.
+	 * 
+	 * @param shape
+	 * @param scale
+	 * @return
+	 */
+	public default Distribution weibull(double shape, double scale) {
+		throw notSupported("Weibull");
+	}
+	
+	/**
+	 * Returns a Distribution that behaves like the Gamma distribution with the passed shape and scale.
+	 * The default throws UnsupportedOperationException for providers that do not support gamma distributions.
+	 * 
+	 * @param shape
+	 * @param scale
+	 * @return
+	 */
+	public default Distribution gamma(double shape, double scale) {
+		throw notSupported("gamma");
+	}
+	
+	/**
+	 * Returns a Distribution that behaves like the triangular distribution between lower and upper with its peak at mode.
+	 * The default throws UnsupportedOperationException for providers that do not support triangular distributions.
+	 * 
+	 * @param lower
+	 * @param mode
+	 * @param upper
+	 * @return
+	 */
+	public default Distribution triangular(double lower, double mode, double upper) {
+		throw notSupported("triangular");
+	}
+	
+	/**
+	 * Returns a Distribution that behaves like the PERT distribution for a minimum, most likely and maximum estimate, which is
+	 * a Beta distribution scaled to [lower,upper] whose mean is (lower + 4 * mode + upper)/6.
+	 * The default throws UnsupportedOperationException for providers that do not support PERT distributions.
+	 * 
+	 * @param lower
+	 * @param mode
+	 * @param upper
+	 * @return
+	 */
+	public default Distribution pert(double lower, double mode, double upper) {
+		throw notSupported("PERT");
+	}
+	
+	/**
+	 * Returns an empirical Distribution that interpolates linearly between the sorted observations, which are placed at
+	 * equally spaced cumulative probabilities from 0 to 1.
+	 * The default throws UnsupportedOperationException for providers that do not support empirical distributions.
+	 * 
+	 * @param observations - at least 2 finite values in any order
+	 * @return
+	 */
+	public default Distribution empirical(double[] observations) {
+		throw notSupported("empirical");
+	}
+	
+	/**
+	 * Returns an empirical Distribution whose inverse CDF interpolates linearly between the passed points.
+	 * The default throws UnsupportedOperationException for providers that do not support empirical distributions.
+	 * 
+	 * @param values - non decreasing values
+	 * @param cumulativeProbabilities - strictly increasing probabilities starting at 0 and ending at 1
+	 * @return
+	 */
+	public default Distribution empirical(double[] values, double[] cumulativeProbabilities) {
+		throw notSupported("empirical");
+	}
+	
+	/**
+	 * Returns a Distribution that produces one of the passed values with probability proportional to its weight.
+	 * The default throws UnsupportedOperationException for providers that do not support discrete distributions.
+	 * 
+	 * @param values
+	 * @param weights - finite, not negative and not all zero
+	 * @return
+	 */
+	public default Distribution discrete(double[] values, double[] weights) {
+		throw notSupported("discrete");
+	}
+	
+	/**
+	 * Returns a Distribution that approximates the passed Distribution by interpolating in a table of its quantiles
+	 * at the given number of equally spaced cumulative probabilities.  Useful for distributions that are expensive to sample.
+	 * The default returns toTabulate itself, which samples exactly, for providers that do not support tables.
+	 * 
+	 * @param toTabulate - Distribution whose sample() is monotone in its argument
+	 * @param points
+	 * @return
+	 */
+	public default Distribution tabulated(Distribution toTabulate, int points) {
+		Utils.checkNull(toTabulate);
+		return toTabulate;
+	}
+	
 	
 	/**
 	 * Returns a Distribution equivalent to the that provided the setup argument.
@@ -92,4 +196,7 @@ public interface DistributionProvider {
 	 */
 	public Distribution getDistribution(String setup);
 	
+	private static UnsupportedOperationException notSupported(String distribution) {
+		return new UnsupportedOperationException("This DistributionProvider does not support " + distribution + " distributions");
+	}
 }
@@ -31,4 +31,15 @@ public interface Function extends EventEvaluator {
 	 */
 	public void initiate(FunctionInfo info);
 	
+	/**
+	 * Returns the number of units the function requests at once from the ResourcePool with the passed id.
+	 * ResourcePools read it through {@link BasicInfo#getResourceUnits(String)} before the simulation starts.  The default is 1.
+	 * 
+	 * @param poolId
+	 * @return
+	 */
+	public default int getResourceUnits(String poolId) {
+		return 1;
+	}
+	
 }
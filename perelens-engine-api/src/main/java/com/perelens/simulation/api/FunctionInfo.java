@@ -31,4 +31,16 @@ public interface FunctionInfo extends BasicInfo {
 	 */
 	public Set<String> getResourcePools();
 	
+	/**
+	 * Returns the id this function must use to reach the Resource Pool that was added to it as poolId.
+	 * A pool that is split over several responders in a Simulation answers with the id of the responder serving this
+	 * function, which is the id getResourcePools() returns in its place.  The default returns poolId.
+	 * 
+	 * @param poolId
+	 * @return
+	 */
+	public default String getResourcePoolId(String poolId) {
+		return poolId;
+	}
+	
 }
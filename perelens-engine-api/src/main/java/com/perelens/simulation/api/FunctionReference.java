@@ -65,6 +65,24 @@ public interface FunctionReference{
 	 */
 	public FunctionReference addResourcePool(String poolId);
 	
+	/**
+	 * Uses the ResourcePool with the passed id and registers this function with the given priority.
+	 * ResourcePools that order their requests by priority grant higher values first.  Adding a pool again replaces the
+	 * priority, and {@link #addResourcePool(String)} is the same as passing a priority of 0.
+	 * The default calls {@link #addResourcePool(String)} for a priority of 0 and throws UnsupportedOperationException
+	 * for any other priority, for references that do not record priorities.
+	 * 
+	 * @param poolId
+	 * @param priority
+	 * @return
+	 */
+	public default FunctionReference addResourcePool(String poolId, int priority) {
+		if (priority == 0) {
+			return addResourcePool(poolId);
+		}
+		throw new UnsupportedOperationException("This FunctionReference does not support resource pool priorities");
+	}
+	
 	/**
 	 * @param poolId
 	 * @return
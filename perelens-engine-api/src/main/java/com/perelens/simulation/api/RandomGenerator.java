@@ -53,6 +53,29 @@ public interface RandomGenerator extends Serializable {
 	 */
 	public double nextDouble();
 	
+	/**
+	 * Writes the next n doubles into the first n elements of out.
+	 * The values must be exactly those that n successive calls to nextDouble() would have returned,
+	 * so callers can switch between the two without changing simulation results.
+	 * 
+	 * @param out
+	 * @param n
+	 */
+	public default void nextDoubles(double[] out, int n) {
+		for (int i = 0; i < n; i++) {
+			out[i] = nextDouble();
+		}
+	}
+	
+	/**
+	 * Fills out with the next out.length doubles, see {@link #nextDoubles(double[], int)}.
+	 * 
+	 * @param out
+	 */
+	public default void fill(double[] out) {
+		nextDoubles(out, out.length);
+	}
+	
 	/**
 	 * Returns a String representation of the configuration and initialization of this random number generator
 	 * that is sufficient for the RandomProvider implementation to recreate it.
@@ -24,6 +24,50 @@ public interface RandomProvider extends Serializable{
 
 	public RandomGenerator createGenerator();
 	
+	/**
+	 * Returns the RandomGenerator for the streamIndex'th request made by the simulation object with the passed id.
+	 * SimulationBuilders call this instead of createGenerator() when initiating simulation objects.
+	 * The default ignores the arguments and returns createGenerator(), so the result depends on the order generators are requested in.
+	 * 
+	 * @param entryId
+	 * @param streamIndex
+	 * @return
+	 */
+	public default RandomGenerator createGenerator(String entryId, int streamIndex) {
+		return createGenerator();
+	}
+	
+	/**
+	 * Returns true if createGenerator(String, int) derives the generator from its arguments and the provider setup alone.
+	 * Generators from such providers do not depend on how many generators were created before them, so adding or removing
+	 * a simulation object leaves the streams of every other object unchanged and they can be created from any thread in any order.
+	 * 
+	 * @return
+	 */
+	public default boolean isOrderIndependent() {
+		return false;
+	}
+	
+	/**
+	 * Starts the next replication.  SimulationBuilders call this once for every Simulation they create, before any of its
+	 * generators are created.  Order independent providers include the replication in the streams createGenerator(String, int)
+	 * derives, so every Simulation created from the provider gets new streams while the streams within one Simulation still only
+	 * depend on the entry id and stream index.  The default does nothing, which suits providers whose generators continue the
+	 * provider's sequence.
+	 */
+	public default void startReplication() {
+	}
+	
+	/**
+	 * Returns the number of times startReplication() has been called on this provider and the providers it was copied from.
+	 * The default always returns 0.
+	 * 
+	 * @return
+	 */
+	public default long getReplication() {
+		return 0;
+	}
+	
 	public RandomGenerator createGenerator(String setup);
 	
 	public String getSetup();
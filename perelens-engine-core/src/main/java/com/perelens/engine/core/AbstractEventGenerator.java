@@ -39,6 +39,7 @@ public abstract class AbstractEventGenerator<R extends ResponderResources> exten
 	private String id;
 	private long timeProcessed = 0;
 	private long windowStart = 0;
+	private long windowEnd = 0;
 	private R resources;
 	private boolean waitForResponse = false;
 	private long ordinal = 1;
@@ -108,6 +109,7 @@ public abstract class AbstractEventGenerator<R extends ResponderResources> exten
 	
 	final public void consume(long timeWindow, R resources) {
 		this.resources = resources;
+		this.windowEnd = timeWindow;
 		long eventTimeCutoff = Long.MAX_VALUE;
 		
 		if (getTimeProcessed() == getWindowStart()) {
@@ -133,8 +135,9 @@ public abstract class AbstractEventGenerator<R extends ResponderResources> exten
 		}
 		
 		do {
-			if (waitForResponse) {
-				if (curEvent != null && curEvent.getTime() > eventTimeCutoff){
+			long cutoff = getCutoff(eventTimeCutoff, timeWindow);
+			if (cutoff != Long.MAX_VALUE) {
+				if (curEvent != null && curEvent.getTime() > cutoff){
 					//Event is beyond the time cutoff so enqueue
 					this.ev_enqueue(curEvent);
 					curEvent = null;
@@ -167,18 +170,19 @@ public abstract class AbstractEventGenerator<R extends ResponderResources> exten
 				//Queue any events beyond the current time so they can be processed during the next call to consume()
 				eventTimeCutoff = getTimeProcessed(); 
 			}
+			cutoff = getCutoff(eventTimeCutoff, timeWindow);
 			
 			if (curEvent == null) {
 				if (events.hasNext()) {
 					curEvent = events.next();
-				}else if (this.ev_hasMore() && this.ev_peek().getTime() <= eventTimeCutoff) {
+				}else if (this.ev_hasMore() && this.ev_peek().getTime() <= cutoff) {
 					curEvent = this.ev_dequeue();
 				}
 			}
 			
 			if (curEvent == null) {
-				if (waitForResponse && eventTimeCutoff < peekTime()) {
-					//No more events to process, but waiting for a response so stop advancing time and wait for more events to come
+				if (cutoff < peekTime()) {
+					//No more events to process, but waiting for a response or at the time limit so stop advancing time and wait for more events to come
 					break;
 				}else{
 					//No more events and we don't expect another call to consume due to a response
@@ -204,7 +208,7 @@ public abstract class AbstractEventGenerator<R extends ResponderResources> exten
 		if (!waitForResponse) {
 			if (getTimeProcessed() == timeWindow) {
 				setWindowStart();
-			}else {
+			}else if (getCutoff(eventTimeCutoff, timeWindow) == Long.MAX_VALUE) {
 				throw new IllegalStateException(Msgs.badState());
 			}
 		}else {
@@ -214,6 +218,26 @@ public abstract class AbstractEventGenerator<R extends ResponderResources> exten
 		this.resources = null;
 	}
 	
+	/**
+	 * Returns the time events can be processed up to, or Long.MAX_VALUE if the whole time window can be processed.
+	 * The time limit from the resources can drop while events are processed so it is checked every time.
+	 */
+	private long getCutoff(long eventTimeCutoff, long timeWindow) {
+		long limit = resources.getTimeLimit();
+		return limit < timeWindow ? Math.min(limit, eventTimeCutoff) : eventTimeCutoff;
+	}
+	
+	/**
+	 * Returns the time of the next callback or queued up event, or Long.MAX_VALUE if there are none
+	 */
+	long getNextTime() {
+		long next = peekTime();
+		if (this.ev_hasMore()) {
+			next = Math.min(next, this.ev_peek().getTime());
+		}
+		return next;
+	}
+	
 	private long peekTime() {
 		if (tc_hasMore()) {
 			return tc_peek();
@@ -237,6 +261,13 @@ public abstract class AbstractEventGenerator<R extends ResponderResources> exten
 	protected long getWindowStart() {
 		return windowStart;
 	}
+
+	/**
+	 * Returns the end of the time window passed to the current or most recent call of consume()
+	 */
+	protected long getWindowEnd() {
+		return windowEnd;
+	}
 	
 	protected void raiseResponse(Event toRaise, Event inResponseTo) {
 		resources.raiseResponse(toRaise, inResponseTo);
@@ -11,7 +11,6 @@ import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.perelens.engine.api.CircularDependencyException;
@@ -192,6 +191,36 @@ public class CoreEngine implements Engine {
 
 	}
 
+	/**
+	 * Pre-sizes the dependency and subscriber arrays of a registered object so that the subscriptions
+	 * that follow can be added without growing the arrays one doubling at a time.
+	 * Intended for builders that know the shape of the dependency graph before it is registered.
+	 *
+	 * @param id
+	 * @param dependencies expected number of producers the object will subscribe to
+	 * @param subscribers expected number of consumers that will subscribe to the object.  Ignored if the object is not an EventEvaluator.
+	 */
+	public void reserveSubscriptions(String id, int dependencies, int subscribers) {
+		Utils.checkId(id);
+		Utils.checkArgNotNegative(dependencies);
+		Utils.checkArgNotNegative(subscribers);
+
+		SubEntry entry = simObjects.get(id);
+		if (entry == null) {
+			throw new IllegalArgumentException(EngineMsgs.noSuchSimObject(id, EventConsumer.class));
+		}
+
+		entry.acquire();
+		try {
+			entry.ensureDependencyCapacity(dependencies);
+			if (entry instanceof EvalEntry) {
+				((EvalEntry)entry).ensureSubscriberCapacity(subscribers);
+			}
+		}finally {
+			entry.release();
+		}
+	}
+
 	@Override
 	public long getTimeCompleted() {
 		return timeCompleted;
@@ -245,20 +274,27 @@ public class CoreEngine implements Engine {
 		
 		while (entriesCompleted.get() < expectedComplete) {
 			
-			AtomicBoolean activeResponders = new AtomicBoolean(false);
+			updateTimeLimits();
+			
+			final var activeResponders = new ConcurrentLinkedQueue<RespEntry>();
 		
 			responders.forEachValue(parallelThreshold, (re) ->{
-				if (re.isActive()) {
-					activeResponders.setPlain(true);
+				//A responder held back by a time limit can go further once the dependencies it was waiting on have moved on
+				boolean limitAdvanced = !re.isComplete() && re.applyNextTimeLimit();
+				if (re.isActive() || limitAdvanced) {
 					//TODO consider adding a critical section around re but guessing it is not needed for now
 					re.deregisterAsActive();
-					enqueue(re,targetOffset);
+					activeResponders.add(re);
 				}
 			});
 			
+			for (RespEntry re : activeResponders) {
+				enqueue(re,targetOffset);
+			}
+			
 			waitForExecution();
 			
-			if (!activeResponders.getPlain()) {
+			if (activeResponders.isEmpty()) {
 				//A circular dependency has been detected and must be resolved
 				throw new CircularDependencyException(EngineMsgs.circularDependencyDetected());
 			}
@@ -335,6 +371,30 @@ public class CoreEngine implements Engine {
 		}
 	}
 	
+	/**
+	 * Works out how far each responder that shares dependencies with another responder can process.
+	 * A dependency waiting on one of them can raise an event to the other as soon as it gets its response,
+	 * so their time limits depend on each other.  Starting every limit at the lowest value and raising them until
+	 * nothing changes gives the latest times that are still safe.
+	 */
+	private void updateTimeLimits() {
+		ArrayList<RespEntry> shared = new ArrayList<>();
+		for (RespEntry re : responders.values()) {
+			if (!re.isComplete() && re.hasSharedDependencies()) {
+				re.resetNextTimeLimit();
+				shared.add(re);
+			}
+		}
+		
+		boolean raised = !shared.isEmpty();
+		while (raised) {
+			raised = false;
+			for (RespEntry re : shared) {
+				raised |= re.raiseNextTimeLimit();
+			}
+		}
+	}
+	
 	void enqueue(SubEntry e, long targetOffset) {
 		executionQueueDepth.incrementAndGet();
 		Runnable executor = e.getEvaluator(this, timeCompleted, targetOffset);
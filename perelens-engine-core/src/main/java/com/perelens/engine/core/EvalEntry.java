@@ -5,6 +5,7 @@ package com.perelens.engine.core;
 
 import java.util.Arrays;
 
+import com.perelens.engine.api.Event;
 import com.perelens.engine.api.EventEvaluator;
 import com.perelens.engine.utils.Utils;
 
@@ -38,6 +39,12 @@ public class EvalEntry extends RespEntry {
 		subIndex++;
 	}
 	
+	void ensureSubscriberCapacity(int capacity) {
+		if (subscribers.length < capacity) {
+			subscribers = Arrays.copyOf(subscribers, capacity);
+		}
+	}
+
 	SubEntry[] getSubscribers() {
 		if (subIndex < subscribers.length) {
 			//Truncate the array so that it is iterable and also immutable since any change will extend and replace it
@@ -50,6 +57,51 @@ public class EvalEntry extends RespEntry {
 		return subIndex;
 	}
 	
+	/**
+	 * Returns true if an EventResponder other than the passed one subscribes to this entry.
+	 * 
+	 * @param responder
+	 * @return
+	 */
+	boolean hasOtherResponder(RespEntry responder) {
+		for (int i = 0; i < subIndex; i++) {
+			SubEntry sub = subscribers[i];
+			if (sub != responder && sub instanceof RespEntry && !(sub instanceof EvalEntry)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Returns the earliest time an EventResponder other than the passed one could respond to an event this entry is waiting on,
+	 * or Long.MIN_VALUE if that cannot be worked out.
+	 * 
+	 * @param waitingOn
+	 * @param except
+	 * @return
+	 */
+	long getEarliestResponse(Event waitingOn, RespEntry except) {
+		long earliest = Long.MAX_VALUE;
+		for (int i = 0; i < subIndex; i++) {
+			SubEntry sub = subscribers[i];
+			if (sub != except && sub instanceof RespEntry && !(sub instanceof EvalEntry) && sub.getObject().getEventFilter().filter(waitingOn)) {
+				earliest = Math.min(earliest, ((RespEntry) sub).getEarliestResponse());
+			}
+		}
+		return earliest == Long.MAX_VALUE ? Long.MIN_VALUE : earliest;
+	}
+	
+	@Override
+	long getTimeLimit() {
+		//EventEvaluators always process the whole time window
+		return Long.MAX_VALUE;
+	}
+	
+	@Override
+	void respondedAt(long time) {
+	}
+	
 	@Override
 	boolean canStartEval() {
 		return getDependencyCount() == 0;
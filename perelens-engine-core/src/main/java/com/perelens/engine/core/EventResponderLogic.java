@@ -188,6 +188,7 @@ class EventResponderLogic implements Runnable{
 			if (!toRaise.getResponseTypes().isEmpty()) {
 				toEval.waitForResponse(toRaise);
 			}
+			toEval.respondedAt(toRaise.getTime());
 		}
 
 		Map<String,Event[]> getResponses(){
@@ -224,5 +225,10 @@ class EventResponderLogic implements Runnable{
 		public void keepActive() {
 			toEval.registerAsActive();
 		}
+		
+		@Override
+		public long getTimeLimit() {
+			return toEval.getTimeLimit();
+		}
 	}
 }
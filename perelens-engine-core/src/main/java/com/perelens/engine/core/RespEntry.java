@@ -5,6 +5,7 @@ package com.perelens.engine.core;
 
 import com.perelens.Msgs;
 import com.perelens.engine.api.Event;
+import com.perelens.engine.api.EventFilter;
 import com.perelens.engine.api.EventGenerator;
 
 /**
@@ -31,6 +32,12 @@ public class RespEntry extends SubEntry {
 	private Event[] needResponse = com.perelens.engine.utils.Utils.EMPTY_QUEUE;		
 	private int rIndex = 0;                         								//Current index in needResponse list
 	
+	//Latest time this EventResponder can process up to while dependencies wait on other EventResponders
+	private long timeLimit = Long.MAX_VALUE;
+	private long nextLimit = Long.MAX_VALUE;
+	//True if a dependency also raises events to another EventResponder, so it could wait on either of them.  Null until checked.
+	private Boolean sharedDependencies = null;
+	
 	RespEntry(EventGenerator object, CoreEngine engine) {
 		super(object, engine);
 	}
@@ -72,6 +79,111 @@ public class RespEntry extends SubEntry {
 	void prepareForNextInterval(long interval) {
 		super.prepareForNextInterval(interval);
 		complete = false;
+		timeLimit = Long.MAX_VALUE;
+		nextLimit = Long.MAX_VALUE;
+		sharedDependencies = null;
+	}
+	
+	long getTimeLimit() {
+		return dependenciesAreComplete() ? Long.MAX_VALUE : timeLimit;
+	}
+	
+	/**
+	 * Returns true if a dependency also raises events to another EventResponder, so it could wait on either of them.
+	 * 
+	 * @return
+	 */
+	boolean hasSharedDependencies() {
+		if (sharedDependencies == null) {
+			sharedDependencies = Boolean.FALSE;
+			for (SubEntry dep : getDependencies()) {
+				if (dep instanceof EvalEntry && ((EvalEntry) dep).hasOtherResponder(this)) {
+					sharedDependencies = Boolean.TRUE;
+					break;
+				}
+			}
+		}
+		return sharedDependencies;
+	}
+	
+	/**
+	 * Called when this entry responds to an event.  The dependency that raised it could go on to wait on another
+	 * EventResponder, so nothing after the response can be processed until the engine updates the time limit.
+	 * 
+	 * @param time
+	 */
+	void respondedAt(long time) {
+		if (time < timeLimit && hasSharedDependencies()) {
+			timeLimit = time;
+		}
+	}
+	
+	/**
+	 * Starts working out a new time limit from the lowest possible value.
+	 */
+	void resetNextTimeLimit() {
+		nextLimit = Long.MIN_VALUE;
+	}
+	
+	/**
+	 * Raises the time limit being worked out to the earliest event a dependency could still raise to this entry.
+	 * A dependency waiting on an event this entry's filter does not accept is waiting on another EventResponder,
+	 * and cannot raise anything before that EventResponder responds.
+	 * Must only be called while no entries are executing.
+	 * 
+	 * @return true if the time limit being worked out went up
+	 */
+	boolean raiseNextTimeLimit() {
+		EventFilter filter = getObject().getEventFilter();
+		long limit = Long.MAX_VALUE;
+		for (SubEntry dep : getDependencies()) {
+			if (dep instanceof EvalEntry) {
+				RespEntry waiting = (RespEntry) dep;
+				for (int i = 0; i < waiting.rIndex; i++) {
+					Event e = waiting.needResponse[i];
+					if (e.getTime() < limit && !filter.filter(e)) {
+						limit = Math.min(limit, Math.max(e.getTime(), ((EvalEntry) dep).getEarliestResponse(e, this)));
+					}
+				}
+			}
+		}
+		if (limit > nextLimit) {
+			nextLimit = limit;
+			return true;
+		}else {
+			return false;
+		}
+	}
+	
+	/**
+	 * Applies the time limit worked out by the engine.
+	 * 
+	 * @return true if the time limit advanced
+	 */
+	boolean applyNextTimeLimit() {
+		boolean advanced = nextLimit > timeLimit;
+		timeLimit = nextLimit;
+		return advanced;
+	}
+	
+	/**
+	 * Returns the earliest time this entry could raise another response, based on the time limit being worked out.
+	 * 
+	 * @return
+	 */
+	long getEarliestResponse() {
+		if (getObject() instanceof AbstractEventGenerator) {
+			var generator = (AbstractEventGenerator<?>) getObject();
+			if (needsResponse()) {
+				//Could respond as soon as the response it is waiting for arrives
+				return generator.getTimeProcessed();
+			}
+			long next = Math.min(nextLimit, Math.min(getEarliestEventTime(), generator.getNextTime()));
+			//Responses can never be raised before the time already processed
+			return Math.max(next, generator.getTimeProcessed());
+		}else {
+			return Long.MIN_VALUE;
+		}
 	}
 
 	//Time interval processing methods
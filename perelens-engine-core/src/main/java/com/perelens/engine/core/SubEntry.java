@@ -78,6 +78,12 @@ class SubEntry implements Iterable<Event>,ConsumerResources{
 		depIndex++;
 	}
 	
+	void ensureDependencyCapacity(int capacity) {
+		if (dependencies.length < capacity) {
+			dependencies = Arrays.copyOf(dependencies, capacity);
+		}
+	}
+
 	int getDependencyCount() {
 		return depIndex;
 	}
@@ -177,6 +183,14 @@ class SubEntry implements Iterable<Event>,ConsumerResources{
 		return qIndex;
 	}
 	
+	long getEarliestEventTime() {
+		long earliest = Long.MAX_VALUE;
+		for (int i = 0; i < qIndex; i++) {
+			earliest = Math.min(earliest, queue[i].getTime());
+		}
+		return earliest;
+	}
+	
 	@Override
 	public Iterator<Event> iterator() {
 		return getEventIterator();
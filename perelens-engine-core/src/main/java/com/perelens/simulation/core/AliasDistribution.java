@@ -0,0 +1,179 @@
+/**
+ * 
+ */
+package com.perelens.simulation.core;
+
+import com.perelens.simulation.api.Distribution;
+
+/**
+ * Copyright 2020-2023 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" 
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
+   permissions and limitations under the License
+
+   
+   Discrete distribution over a set of weighted outcomes sampled with Walker's alias method (Vose's construction).
+   Each uniform selects one column of the alias table and its fractional part decides between the column's own outcome
+   and its alias, so sampling is constant time regardless of the number of outcomes.
+   Instances are immutable and shared by copy().
+   
+ * @author Steve Branda
+ *
+ */
+final class AliasDistribution implements Distribution {
+
+	private static final long serialVersionUID = -2630517617357211925L;
+
+	protected static final String SETUP_NAME = "Discrete;";
+	
+	private final double[] values;
+	private final double[] weights;
+	
+	private transient double[] cutoff;
+	private transient int[] alias;
+	
+	/**
+	 * @param values - possible outcomes
+	 * @param weights - relative likelihood of each outcome, which need not sum to 1
+	 */
+	AliasDistribution(double[] values, double[] weights) {
+		if (values.length != weights.length) {
+			throw new IllegalArgumentException(SimMsgs.lengthsDiffer(values.length, weights.length));
+		}
+		if (values.length < 1) {
+			throw new IllegalArgumentException(SimMsgs.tooFewPoints(1, values.length));
+		}
+		double total = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (!Double.isFinite(values[i])) {
+				throw new IllegalArgumentException(SimMsgs.badSetupArgument(Double.toString(values[i])));
+			}
+			if (!(weights[i] >= 0.0) || weights[i] == Double.POSITIVE_INFINITY) {
+				throw new IllegalArgumentException(SimMsgs.badWeight(weights[i]));
+			}
+			total += weights[i];
+		}
+		if (!(total > 0.0) || !Double.isFinite(total)) {
+			throw new IllegalArgumentException(SimMsgs.badWeight(total));
+		}
+		
+		this.values = values.clone();
+		this.weights = weights.clone();
+		buildTable();
+	}
+	
+	private void buildTable() {
+		int n = values.length;
+		double total = 0;
+		for (double w : weights) {
+			total += w;
+		}
+		
+		double[] scaled = new double[n];
+		int[] small = new int[n];
+		int[] large = new int[n];
+		int ns = 0;
+		int nl = 0;
+		for (int i = 0; i < n; i++) {
+			scaled[i] = weights[i] * n / total;
+			if (scaled[i] < 1.0) {
+				small[ns++] = i;
+			}else {
+				large[nl++] = i;
+			}
+		}
+		
+		double[] c = new double[n];
+		int[] a = new int[n];
+		while (ns > 0 && nl > 0) {
+			int s = small[--ns];
+			int l = large[--nl];
+			c[s] = scaled[s];
+			a[s] = l;
+			scaled[l] = (scaled[l] + scaled[s]) - 1.0;
+			if (scaled[l] < 1.0) {
+				small[ns++] = l;
+			}else {
+				large[nl++] = l;
+			}
+		}
+		//Whatever is left over is 1 up to rounding error
+		while (nl > 0) {
+			int l = large[--nl];
+			c[l] = 1.0;
+			a[l] = l;
+		}
+		while (ns > 0) {
+			int s = small[--ns];
+			c[s] = 1.0;
+			a[s] = s;
+		}
+		
+		cutoff = c;
+		alias = a;
+	}
+	
+	protected Object readResolve() {
+		buildTable();
+		return this;
+	}
+	
+	@Override
+	public double sample(double uniformRandom) {
+		int n = cutoff.length;
+		double x = uniformRandom * n;
+		int col = (int)x;
+		if (col >= n) {
+			col = n - 1;
+		}else if (col < 0) {
+			col = 0;
+		}
+		
+		if (x - col < cutoff[col]) {
+			return values[col];
+		}
+		return values[alias[col]];
+	}
+
+	@Override
+	public String getSetup() {
+		StringBuilder toReturn = new StringBuilder(SETUP_NAME);
+		toReturn.append(values.length);
+		for (double v : values) {
+			toReturn.append(';').append(v);
+		}
+		for (double w : weights) {
+			toReturn.append(';').append(w);
+		}
+		return toReturn.toString();
+	}
+	
+	static AliasDistribution parse(String setup) {
+		String[] pieces = setup.split("\\;");
+		try {
+			int n = Integer.parseInt(pieces[1]);
+			if (n < 0 || pieces.length != 2 + 2 * n) {
+				throw new IllegalArgumentException(SimMsgs.badSetupArgument(setup));
+			}
+			double[] v = new double[n];
+			double[] w = new double[n];
+			for (int i = 0; i < n; i++) {
+				v[i] = Double.parseDouble(pieces[2 + i]);
+				w[i] = Double.parseDouble(pieces[2 + n + i]);
+			}
+			return new AliasDistribution(v, w);
+		}catch(NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			throw new IllegalArgumentException(SimMsgs.badSetupArgument(setup), e);
+		}
+	}
+
+	@Override
+	public Distribution copy() {
+		return this; //Tables are built once and never modified, so the same object is shared
+	}
+}
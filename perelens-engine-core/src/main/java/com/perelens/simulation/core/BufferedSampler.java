@@ -0,0 +1,99 @@
+/**
+ * 
+ */
+package com.perelens.simulation.core;
+
+import java.io.Serializable;
+
+import com.perelens.engine.utils.Utils;
+import com.perelens.simulation.api.Distribution;
+import com.perelens.simulation.api.RandomGenerator;
+
+/**
+ * Copyright 2020-2023 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" 
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
+   permissions and limitations under the License
+
+
+   Pairs a Distribution with the RandomGenerator dedicated to it and hands out samples from a small prefetched buffer.
+   The buffer is refilled with RandomGenerator.fill() followed by Distribution.sample(double[],double[]), so the
+   generator and distribution are called once per buffer instead of once per sample.
+   Samples come out in exactly the order dist.sample(gen.nextDouble()) would produce them.
+   
+   The buffer starts with a single value and doubles on each refill up to MAX_BUFFER, so functions that only sample
+   a handful of times per simulation don't pay for values they never use.
+   Nothing is drawn from the generator until the first call to next(), which keeps construction safe for
+   generators that are bound after initiate().  A placeholder generator is swapped for the generator it is bound
+   to on the first refill so later refills call the generator directly.
+   
+ * @author Steve Branda
+ *
+ */
+public final class BufferedSampler implements Serializable{
+
+	private static final long serialVersionUID = -6307541859925718352L;
+
+	static final int MAX_BUFFER = 16;
+	
+	private static final double[] EMPTY = new double[0];
+	
+	private final Distribution dist;
+	private RandomGenerator gen;
+	private double[] buffer = EMPTY;
+	private int position = 0;
+	
+	public BufferedSampler(Distribution dist, RandomGenerator gen) {
+		Utils.checkNull(dist);
+		Utils.checkNull(gen);
+		this.dist = dist;
+		this.gen = gen;
+	}
+	
+	private BufferedSampler(BufferedSampler toCopy) {
+		this.dist = toCopy.dist.copy();
+		this.gen = toCopy.gen.copy();
+		this.buffer = toCopy.buffer.length == 0 ? EMPTY : toCopy.buffer.clone();
+		this.position = toCopy.position;
+	}
+	
+	/**
+	 * Returns the next sample of the distribution.
+	 * 
+	 * @return
+	 */
+	public double next() {
+		if (position == buffer.length) {
+			refill();
+		}
+		return buffer[position++];
+	}
+	
+	private void refill() {
+		if (buffer.length < MAX_BUFFER) {
+			gen = DeferredRandomGenerator.resolve(gen);
+			buffer = new double[Math.max(1, buffer.length * 2)];
+		}
+		gen.fill(buffer);
+		dist.sample(buffer, buffer);
+		position = 0;
+	}
+	
+	public Distribution getDistribution() {
+		return dist;
+	}
+	
+	/**
+	 * Returns an independent sampler whose next() returns the same sequence of samples as this one.
+	 * 
+	 * @return
+	 */
+	public BufferedSampler copy() {
+		return new BufferedSampler(this);
+	}
+}
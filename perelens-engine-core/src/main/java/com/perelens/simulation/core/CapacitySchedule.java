@@ -0,0 +1,347 @@
+/**
+ *
+ */
+package com.perelens.simulation.core;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.TreeMap;
+
+import com.perelens.engine.utils.Utils;
+import com.perelens.simulation.api.TimeTranslator;
+import com.perelens.simulation.events.ResourcePoolEvent;
+
+/**
+ * Copyright 2020-2025 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS"
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing
+   permissions and limitations under the License
+
+   Calendar of the capacity of a {@link CoreResourcePool} over wall clock time, see {@link CoreResourcePool#CoreResourcePool(String, CapacitySchedule)}.
+   The capacity is the base capacity plus the capacity of every shift that is working, except on holidays which have a fixed capacity
+   for the whole day.
+
+   When the pool is initiated the schedule is translated to simulation time with the TimeTranslator of the Simulation.
+   A single week is stored as an array of capacity steps, with neighbouring steps of the same capacity merged, and the holidays as
+   a sorted array of days, so finding the capacity at any time is a binary search no matter how long the simulation runs.
+   Shift and day boundaries that fall between two time units take effect at the later one.
+
+ * @author Steve Branda
+ *
+ */
+public class CapacitySchedule {
+
+	private static final long WEEK_NANOS = Duration.ofDays(7).toNanos();
+	private static final long DAY_NANOS = Duration.ofDays(1).toNanos();
+
+	private final int base;
+	private final ZoneOffset offset;
+	private final ArrayList<long[]> shifts = new ArrayList<>();	//start and end nanos into the week and capacity
+	private final TreeMap<LocalDate,Integer> holidays = new TreeMap<>();
+
+	/**
+	 * Initializes a schedule in UTC
+	 *
+	 * @param base - capacity when no shift is working, can be zero
+	 */
+	public CapacitySchedule(int base) {
+		this(base,ZoneOffset.UTC);
+	}
+
+	/**
+	 * Initializes a schedule whose shifts and holidays are in local time at the passed offset
+	 *
+	 * @param base - capacity when no shift is working, can be zero
+	 * @param offset
+	 */
+	public CapacitySchedule(int base, ZoneOffset offset) {
+		Utils.checkNull(offset);
+		if (base < 0) {
+			throw new IllegalArgumentException(SimMsgs.valueMustBeBetween(0, Integer.MAX_VALUE, base));
+		}
+		this.base = base;
+		this.offset = offset;
+	}
+
+	/**
+	 * Adds a shift that works every week.  A shift that ends at or before its start time runs past midnight into the next day.
+	 *
+	 * @param day - day the shift starts on
+	 * @param start
+	 * @param end
+	 * @param capacity - units added to the pool while the shift is working
+	 * @return
+	 */
+	public CapacitySchedule addShift(DayOfWeek day, LocalTime start, LocalTime end, int capacity) {
+		Utils.checkNull(day);
+		Utils.checkNull(start);
+		Utils.checkNull(end);
+		if (capacity < 1) {
+			throw new IllegalArgumentException(SimMsgs.mustBeStrictlyPositive(capacity));
+		}
+		long s = (day.getValue() - 1) * DAY_NANOS + start.toNanoOfDay();
+		long e = s - start.toNanoOfDay() + end.toNanoOfDay();
+		if (e <= s) {
+			e += DAY_NANOS;
+		}
+		shifts.add(new long[] {s,e,capacity});
+		return this;
+	}
+
+	/**
+	 * Adds a shift that works on every day from Monday to Friday
+	 *
+	 * @param start
+	 * @param end
+	 * @param capacity
+	 * @return
+	 */
+	public CapacitySchedule addWeekdayShift(LocalTime start, LocalTime end, int capacity) {
+		for (DayOfWeek day = DayOfWeek.MONDAY; day != DayOfWeek.SATURDAY; day = day.plus(1)) {
+			addShift(day,start,end,capacity);
+		}
+		return this;
+	}
+
+	/**
+	 * Sets the capacity for the whole of the passed date, replacing the base capacity and the shifts
+	 *
+	 * @param date
+	 * @param capacity - can be zero
+	 * @return
+	 */
+	public CapacitySchedule addHoliday(LocalDate date, int capacity) {
+		Utils.checkNull(date);
+		if (capacity < 0) {
+			throw new IllegalArgumentException(SimMsgs.valueMustBeBetween(0, Integer.MAX_VALUE, capacity));
+		}
+		holidays.put(date, capacity);
+		return this;
+	}
+
+	/**
+	 * Returns the most units the schedule ever provides
+	 *
+	 * @return
+	 */
+	public int getMaxCapacity() {
+		int max = 0;
+		for (int c : weeklyCapacities()) {
+			max = Math.max(max, c);
+		}
+		for (int c : holidays.values()) {
+			max = Math.max(max, c);
+		}
+		return max;
+	}
+
+	public CapacitySchedule copy() {
+		CapacitySchedule toReturn = new CapacitySchedule(base,offset);
+		toReturn.shifts.addAll(shifts);
+		toReturn.holidays.putAll(holidays);
+		return toReturn;
+	}
+
+	/**
+	 * Returns a String that identifies the schedule in the configuration of the ResourcePool
+	 *
+	 * @return
+	 */
+	public String getSetup() {
+		StringBuilder toReturn = new StringBuilder();
+		toReturn.append(base).append(';').append(offset.getId());
+		for (long[] shift : shifts) {
+			toReturn.append(';').append(shift[0]).append('-').append(shift[1]).append('=').append(shift[2]);
+		}
+		for (var ent : holidays.entrySet()) {
+			toReturn.append(';').append(ent.getKey()).append('=').append(ent.getValue());
+		}
+		return toReturn.toString();
+	}
+
+	/**
+	 * Returns the capacity of each step of the week, the step boundaries are returned by weeklyBoundaries()
+	 */
+	private int[] weeklyCapacities() {
+		long[] bounds = weeklyBoundaries();
+		int[] toReturn = new int[bounds.length];
+		for (int i = 0; i < bounds.length; i++) {
+			toReturn[i] = capacityAt(bounds[i]);
+		}
+		return toReturn;
+	}
+
+	/**
+	 * Returns the sorted, distinct nanos into the week at which a shift starts or ends, always starting with zero
+	 */
+	private long[] weeklyBoundaries() {
+		long[] toReturn = new long[shifts.size() * 2 + 1];
+		int i = 1;
+		for (long[] shift : shifts) {
+			toReturn[i++] = shift[0];
+			toReturn[i++] = shift[1] % WEEK_NANOS;
+		}
+		Arrays.sort(toReturn);
+		int distinct = 0;
+		for (i = 0; i < toReturn.length; i++) {
+			if (i == 0 || toReturn[i] != toReturn[distinct - 1]) {
+				toReturn[distinct++] = toReturn[i];
+			}
+		}
+		return Arrays.copyOf(toReturn, distinct);
+	}
+
+	private int capacityAt(long weekNanos) {
+		int toReturn = base;
+		for (long[] shift : shifts) {
+			if ((weekNanos >= shift[0] && weekNanos < shift[1]) || weekNanos + WEEK_NANOS < shift[1]) {
+				toReturn += (int)shift[2];
+			}
+		}
+		return toReturn;
+	}
+
+	/**
+	 * Translates the schedule to simulation time.
+	 * The TimeTranslator must advance by the same amount every time unit and a week must be a whole number of time units.
+	 *
+	 * @param tt
+	 * @return
+	 */
+	Steps compile(TimeTranslator tt) {
+		Utils.checkNull(tt);
+		Instant zero = tt.getInstant(new ResPoolEvent("schedule",ResourcePoolEvent.RP_REQUEST,0,1));
+		long unit = Duration.between(zero, tt.getInstant(new ResPoolEvent("schedule",ResourcePoolEvent.RP_REQUEST,1,1))).toNanos();
+		if (unit <= 0 || WEEK_NANOS % unit != 0) {
+			throw new IllegalArgumentException(SimMsgs.scheduleNeedsFixedTimeUnit(tt.getSetup()));
+		}
+		long period = WEEK_NANOS / unit;
+		if (!Duration.between(zero, tt.getInstant(new ResPoolEvent("schedule",ResourcePoolEvent.RP_REQUEST,period,1))).equals(Duration.ofDays(7))) {
+			throw new IllegalArgumentException(SimMsgs.scheduleNeedsFixedTimeUnit(tt.getSetup()));
+		}
+
+		//Steps of the week that contains simulation time zero, the steps of every other week are the same shifted by whole periods
+		Instant monday = zero.atOffset(offset).toLocalDate().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).atStartOfDay().toInstant(offset);
+		long[] bounds = weeklyBoundaries();
+		int[] caps = weeklyCapacities();
+		long[] times = new long[bounds.length];
+		int[] capacities = new int[bounds.length];
+		int count = 0;
+		for (int i = 0; i < bounds.length; i++) {
+			if (count == 0 || caps[i] != capacities[count - 1]) {
+				times[count] = toSimTime(zero, monday.plusNanos(bounds[i]), unit);
+				capacities[count++] = caps[i];
+			}
+		}
+
+		long[] hStarts = new long[holidays.size()];
+		long[] hEnds = new long[holidays.size()];
+		int[] hCaps = new int[holidays.size()];
+		int h = 0;
+		for (var ent : holidays.entrySet()) {
+			Instant start = ent.getKey().atStartOfDay().toInstant(offset);
+			hStarts[h] = toSimTime(zero, start, unit);
+			hEnds[h] = toSimTime(zero, start.plus(1, ChronoUnit.DAYS), unit);
+			hCaps[h++] = ent.getValue();
+		}
+
+		return new Steps(Arrays.copyOf(times, count), Arrays.copyOf(capacities, count), period, hStarts, hEnds, hCaps);
+	}
+
+	private static long toSimTime(Instant zero, Instant wallClock, long unit) {
+		long nanos = Duration.between(zero, wallClock).toNanos();
+		return Math.floorDiv(nanos + unit - 1, unit);
+	}
+
+	/**
+	 * The schedule translated to simulation time.  Immutable so it is shared by every copy of a pool.
+	 */
+	static final class Steps {
+
+		private final long[] times;		//start of each step of the first week, times[0] is the start of the week
+		private final int[] capacities;
+		private final long period;
+		private final long[] hStarts;
+		private final long[] hEnds;
+		private final int[] hCaps;
+
+		private Steps(long[] times, int[] capacities, long period, long[] hStarts, long[] hEnds, int[] hCaps) {
+			this.times = times;
+			this.capacities = capacities;
+			this.period = period;
+			this.hStarts = hStarts;
+			this.hEnds = hEnds;
+			this.hCaps = hCaps;
+		}
+
+		/**
+		 * Returns the index of the last value in the array that is less than or equal to the passed time, or -1 if there is none
+		 */
+		private static int floor(long[] values, long time) {
+			int low = 0;
+			int high = values.length - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				if (values[mid] <= time) {
+					low = mid + 1;
+				}else {
+					high = mid - 1;
+				}
+			}
+			return high;
+		}
+
+		private int holiday(long time) {
+			int h = floor(hStarts, time);
+			return h >= 0 && time < hEnds[h] ? h : -1;
+		}
+
+		int capacityAt(long time) {
+			int h = holiday(time);
+			if (h >= 0) {
+				return hCaps[h];
+			}
+			long week = Math.floorDiv(time - times[0], period);
+			return capacities[floor(times, time - week * period)];
+		}
+
+		/**
+		 * Returns the first time after the passed time at which the capacity can change, or Long.MAX_VALUE if it never does
+		 */
+		long nextChange(long time) {
+			long toReturn = Long.MAX_VALUE;
+			int h = holiday(time);
+			if (h >= 0) {
+				return hEnds[h];
+			}
+			if (times.length > 1) {
+				long week = Math.floorDiv(time - times[0], period);
+				int i = floor(times, time - week * period) + 1;
+				if (i < times.length) {
+					toReturn = times[i] + week * period;
+				}else {
+					//The start of the week is only a change if the last step of the week has a different capacity
+					toReturn = (capacities[0] == capacities[times.length - 1] ? times[1] : times[0]) + (week + 1) * period;
+				}
+			}
+			int next = floor(hStarts, time) + 1;
+			if (next < hStarts.length && hStarts[next] < toReturn) {
+				toReturn = hStarts[next];
+			}
+			return toReturn;
+		}
+	}
+}
@@ -0,0 +1,400 @@
+/**
+ *
+ */
+package com.perelens.simulation.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.perelens.engine.api.CircularDependencyException;
+import com.perelens.engine.api.EventGenerator;
+import com.perelens.engine.core.CoreEngine;
+import com.perelens.simulation.api.Function;
+import com.perelens.simulation.api.FunctionInfo;
+import com.perelens.simulation.api.RandomGenerator;
+import com.perelens.simulation.api.RandomProvider;
+import com.perelens.simulation.api.ResourcePool;
+import com.perelens.simulation.api.Simulation;
+import com.perelens.simulation.api.TimeTranslator;
+
+/**
+ * Copyright 2020-2023 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS"
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing
+   permissions and limitations under the License
+
+   Immutable snapshot of a model created by {@link CoreSimulationBuilder#compile()}.
+   Simulation objects are identified by their index in id order and the dependency graph is held in compressed sparse row form.
+   Creating a Simulation only copies and initiates the prototypes and registers the precomputed graph with a new engine.
+
+   The RandomGenerators for an instance are created up front in id order following the seed plan recorded at compile time,
+   so a CompiledModel hands out the same generators as CoreSimulationBuilder.createSimulation would for the same RandomProvider state.
+   As with the builder the RandomProvider is not copied, so each Simulation created continues the provider's sequence.
+   Order independent RandomProviders skip the seed plan and create each generator from the object id when it is requested.
+   They are moved to their next replication (see RandomProvider.startReplication()) before every Simulation is created,
+   so repeated Simulations from the same provider are independent replications rather than copies of the first one.
+
+ * @author Steve Branda
+ *
+ */
+public final class CompiledModel {
+
+	static final int[] NO_INDEXES = new int[0];
+	private static final RandomGenerator[] NO_GENERATORS = new RandomGenerator[0];
+
+	private final String[] ids;
+	private final EventGenerator[] prototypes;
+
+	//Producers each object subscribes to
+	private final int[] depStart;
+	private final int[] deps;
+
+	//Consumers subscribed to each object
+	private final int[] subStart;
+	private final int[] subs;
+
+	private final int[] topologicalOrder;
+
+	//Number of RandomGenerators requested by objects before each index
+	private final int[] seedPlan;
+
+	private final List<Set<String>> dependencySets;
+	private final List<Set<String>> poolSets;
+
+	//Shard assigned to each function by every CoreShardedResourcePool, by pool id
+	private final Map<String,Map<String,String>> shardRoutes;
+	private final List<Map<String,Integer>> priorities;
+
+	private final RandomProvider rProvider;
+	private final TimeTranslator tTranslator;
+	private final String hashCode;
+
+	CompiledModel(String[] ids, EventGenerator[] prototypes, int[][] dependencies, int[][] pools, List<Map<String,Integer>> priorities, RandomProvider rp, TimeTranslator tt, String hashCode) {
+		this.ids = ids;
+		this.prototypes = prototypes;
+		this.rProvider = rp;
+		this.tTranslator = tt;
+		this.hashCode = hashCode;
+		this.priorities = priorities;
+
+		int n = ids.length;
+
+		//Build the dependency and subscriber adjacency
+		depStart = new int[n + 1];
+		int[] subCount = new int[n];
+		for (int i = 0; i < n; i++) {
+			depStart[i + 1] = depStart[i] + dependencies[i].length;
+			for (int dep : dependencies[i]) {
+				subCount[dep]++;
+			}
+		}
+
+		deps = new int[depStart[n]];
+		subStart = new int[n + 1];
+		for (int i = 0; i < n; i++) {
+			System.arraycopy(dependencies[i], 0, deps, depStart[i], dependencies[i].length);
+			subStart[i + 1] = subStart[i] + subCount[i];
+		}
+
+		subs = new int[subStart[n]];
+		int[] subIndex = Arrays.copyOf(subStart, n);
+		for (int i = 0; i < n; i++) {
+			for (int k = depStart[i]; k < depStart[i + 1]; k++) {
+				subs[subIndex[deps[k]]++] = i;
+			}
+		}
+
+		topologicalOrder = computeTopologicalOrder();
+
+		//Id sets handed to the objects during initiation are shared by every instance
+		ArrayList<Set<String>> dSets = new ArrayList<>(n);
+		ArrayList<Set<String>> pSets = new ArrayList<>(n);
+		HashMap<String,Map<String,String>> routes = new HashMap<>();
+		for (int i = 0; i < n; i++) {
+			dSets.add(toIdSet(deps, depStart[i], depStart[i + 1]));
+			if (prototypes[i] instanceof CoreShardedResourcePool) {
+				routes.put(ids[i], ((CoreShardedResourcePool)prototypes[i]).getShardAssignments(dSets.get(i)));
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			Set<String> p = toIdSet(pools[i], 0, pools[i].length);
+			if (!routes.isEmpty() && !p.isEmpty()) {
+				p = Collections.unmodifiableSet(CoreShardedResourcePool.routePools(new HashSet<>(p), ids[i], routes));
+			}
+			pSets.add(p);
+		}
+		shardRoutes = routes;
+		dependencySets = Collections.unmodifiableList(dSets);
+		poolSets = Collections.unmodifiableList(pSets);
+
+		seedPlan = computeSeedPlan();
+	}
+
+	private Set<String> toIdSet(int[] indexes, int start, int end) {
+		if (start == end) {
+			return Collections.emptySet();
+		}
+		HashSet<String> toReturn = new HashSet<>((end - start) * 2);
+		for (int i = start; i < end; i++) {
+			toReturn.add(ids[indexes[i]]);
+		}
+		return Collections.unmodifiableSet(toReturn);
+	}
+
+	private int[] computeTopologicalOrder() {
+		int n = ids.length;
+		int[] pending = new int[n];
+		int[] toReturn = new int[n];
+		int tail = 0;
+
+		for (int i = 0; i < n; i++) {
+			pending[i] = depStart[i + 1] - depStart[i];
+			if (pending[i] == 0) {
+				toReturn[tail++] = i;
+			}
+		}
+
+		for (int head = 0; head < tail; head++) {
+			int cur = toReturn[head];
+			for (int k = subStart[cur]; k < subStart[cur + 1]; k++) {
+				if (--pending[subs[k]] == 0) {
+					toReturn[tail++] = subs[k];
+				}
+			}
+		}
+
+		if (tail < n) {
+			for (int i = 0; i < n; i++) {
+				if (pending[i] > 0) {
+					throw new CircularDependencyException(SimMsgs.circularDependency(ids[i]));
+				}
+			}
+		}
+
+		return toReturn;
+	}
+
+	private int[] computeSeedPlan() {
+		int[] toReturn = new int[ids.length + 1];
+		for (int i = 0; i < ids.length; i++) {
+			InstanceInfo counter = new InstanceInfo(i, null, null);
+			initiate(prototypes[i].copy(), counter);
+			toReturn[i + 1] = toReturn[i] + counter.nextGenerator;
+		}
+		return toReturn;
+	}
+
+	private static void initiate(EventGenerator instance, InstanceInfo info) {
+		if (instance instanceof Function) {
+			((Function)instance).initiate(info);
+		}else if (instance instanceof ResourcePool) {
+			((ResourcePool)instance).initiate(info);
+		}
+	}
+
+	/**
+	 * BasicInfo handed to instances.  When no generators are passed it only counts the generators requested.
+	 */
+	private class InstanceInfo implements FunctionInfo{
+
+		final int index;
+		final RandomProvider rp;
+		final RandomGenerator[] generators;
+		int nextGenerator = 0;
+
+		InstanceInfo(int index, RandomProvider rp, RandomGenerator[] generators) {
+			this.index = index;
+			this.rp = rp;
+			this.generators = generators;
+		}
+
+		@Override
+		public Set<String> getDependencies() {
+			return dependencySets.get(index);
+		}
+
+		@Override
+		public int getPriority(String dependencyId) {
+			return priorities.get(index).getOrDefault(dependencyId, 0);
+		}
+
+		@Override
+		public int getResourceUnits(String dependencyId) {
+			for (int k = depStart[index]; k < depStart[index + 1]; k++) {
+				if (ids[deps[k]].equals(dependencyId) && prototypes[deps[k]] instanceof Function) {
+					return ((Function)prototypes[deps[k]]).getResourceUnits(ids[index]);
+				}
+			}
+			return 1;
+		}
+
+		@Override
+		public TimeTranslator getTimeTranslator() {
+			if (tTranslator == null) {
+				throw new IllegalStateException(SimMsgs.timeTranslationNotEnabled());
+			}
+			return tTranslator;
+		}
+
+		@Override
+		public RandomGenerator getRandomGenerator() {
+			if (generators == null) {
+				nextGenerator++;
+				return RandomGenerator.NULL_GENERATOR;
+			}
+
+			if (rp == null) {
+				throw new IllegalStateException(SimMsgs.randomGeneratorNotSet());
+			}
+
+			if (rp.isOrderIndependent()) {
+				return rp.createGenerator(ids[index], nextGenerator++);
+			}
+
+			int planned = seedPlan[index] + nextGenerator;
+			if (planned >= seedPlan[index + 1]) {
+				throw new IllegalStateException(SimMsgs.seedPlanMismatch(ids[index]));
+			}
+			nextGenerator++;
+			return generators[planned];
+		}
+
+		@Override
+		public Set<String> getResourcePools() {
+			return new HashSet<>(poolSets.get(index));
+		}
+
+		@Override
+		public String getResourcePoolId(String poolId) {
+			return CoreShardedResourcePool.routePool(poolId, ids[index], shardRoutes);
+		}
+
+		void checkSeedPlan() {
+			if (rp != null && rp.isOrderIndependent()) {
+				return;
+			}
+			if (seedPlan[index] + nextGenerator != seedPlan[index + 1]) {
+				throw new IllegalStateException(SimMsgs.seedPlanMismatch(ids[index]));
+			}
+		}
+	}
+
+	/**
+	 * Creates a new Simulation from this model using the RandomProvider that was set on the builder when it was compiled.
+	 *
+	 * @param parallelism
+	 * @return
+	 */
+	public Simulation createSimulation(int parallelism) {
+		return createSimulation(parallelism, rProvider);
+	}
+
+	/**
+	 * Creates a new Simulation from this model drawing RandomGenerators from the passed RandomProvider.
+	 * Useful for replications where each run needs its own seed.
+	 *
+	 * @param parallelism
+	 * @param rp
+	 * @return
+	 */
+	public Simulation createSimulation(int parallelism, RandomProvider rp) {
+		int n = ids.length;
+		if (rp != null) {
+			rp.startReplication();
+		}
+
+		//Draw every generator the instances will need in id order following the seed plan.
+		//Order independent providers create them on demand instead.
+		RandomGenerator[] generators;
+		if (rp != null && rp.isOrderIndependent()) {
+			generators = NO_GENERATORS;
+		}else {
+			generators = new RandomGenerator[seedPlan[n]];
+			if (rp != null) {
+				int i = 0;
+				for (int k = 0; k < n; k++) {
+					for (int s = 0; i < seedPlan[k + 1]; s++) {
+						generators[i++] = rp.createGenerator(ids[k], s);
+					}
+				}
+			}
+		}
+
+		EventGenerator[] instances = new EventGenerator[n];
+		CoreSimulationBuilder.forEachIndex(parallelism, n, (i) -> {
+			InstanceInfo info = new InstanceInfo(i, rp, generators);
+			EventGenerator instance = prototypes[i].copy();
+			initiate(instance, info);
+			info.checkSeedPlan();
+			instances[i] = instance;
+		});
+
+		CoreEngine engine = new CoreEngine(parallelism);
+		for (int i : topologicalOrder) {
+			EventGenerator cur = instances[i];
+			if (cur instanceof CoreShardedResourcePool) {
+				((CoreShardedResourcePool)cur).registerShards(engine, shardRoutes.get(ids[i]));
+				continue;
+			}else if (cur instanceof Function) {
+				engine.registerEvaluator((Function)cur);
+			}else if (cur instanceof ResourcePool) {
+				engine.registerResponder((ResourcePool)cur);
+			}else {
+				continue;
+			}
+			engine.reserveSubscriptions(ids[i], depStart[i + 1] - depStart[i], subStart[i + 1] - subStart[i]);
+		}
+
+		for (int i : topologicalOrder) {
+			Map<String,String> routes = shardRoutes.get(ids[i]);
+			for (int k = depStart[i]; k < depStart[i + 1]; k++) {
+				engine.registerSubscription(ids[deps[k]], routes == null ? ids[i] : routes.get(ids[deps[k]]));
+			}
+		}
+
+		return new CoreSimulation(engine);
+	}
+
+	/**
+	 * Returns the hash code of the builder at the time this model was compiled.
+	 *
+	 * @see com.perelens.simulation.api.SimulationBuilder#getHashCode()
+	 * @return
+	 */
+	public String getHashCode() {
+		return hashCode;
+	}
+
+	/**
+	 * Returns the ids of the simulation objects ordered so that every object appears after all of the objects it depends on.
+	 *
+	 * @return
+	 */
+	public List<String> getTopologicalOrder() {
+		ArrayList<String> toReturn = new ArrayList<>(topologicalOrder.length);
+		for (int i : topologicalOrder) {
+			toReturn.add(ids[i]);
+		}
+		return Collections.unmodifiableList(toReturn);
+	}
+
+	/**
+	 * Returns the number of simulation objects in this model.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return ids.length;
+	}
+}
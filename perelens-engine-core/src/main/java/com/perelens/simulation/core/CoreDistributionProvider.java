@@ -3,10 +3,25 @@
  */
 package com.perelens.simulation.core;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+import org.apache.commons.math3.distribution.BetaDistribution;
+import org.apache.commons.math3.distribution.GammaDistribution;
 import org.apache.commons.math3.special.Erf;
 
 import com.perelens.engine.utils.Utils;
 import com.perelens.simulation.api.Distribution;
+import com.perelens.simulation.api.DistributionParser;
 import com.perelens.simulation.api.DistributionProvider;
 
 /**
@@ -20,14 +35,175 @@ import com.perelens.simulation.api.DistributionProvider;
    BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
    permissions and limitations under the License
    
+   Lognormal distributions sample the normal quantile with Wichura's AS241 algorithm, which agrees with
+   the Commons Math erfInv based formula used in earlier versions to a relative difference below 1e-9
+   except in the far lower tail, where the old formula loses precision computing 2u - 1.
+   Construct the provider with legacyLognormal set to true to reproduce the earlier results exactly.
+   
+   Weibull and triangular distributions are sampled in closed form.  Gamma and PERT distributions have no closed form
+   inverse CDF, and a rejection sampler would need more than the one uniform sample() receives, so they interpolate in a
+   table of the Commons Math quantiles built once per distribution and refine the result with Newton steps near the ends.
+   Samples in the first and last slice of the table (1 in 2048) fall back to the iterative Commons Math inverse, which
+   allocates and costs far more than a table lookup.
+   
+   getDistribution() looks the setup name up in a registry of DistributionParsers that holds every built-in Distribution,
+   any parsers found by ServiceLoader and any passed to registerParser().  Distributions whose copy() returns the same
+   object are immutable, so each provider interns them by setup and hands the same instance to every caller.  The built-in
+   parametric distributions returned by exponential(), uniform(), lognormal(), constant(), weibull(), gamma(), triangular()
+   and pert() share the same cache, so a gamma or PERT table is built once per setup whichever way it is requested.  The
+   cache keeps the MAX_INTERNED most recently used setups; an evicted setup is simply built again the next time.
+   
  * @author Steve Branda
  *
  */
 public class CoreDistributionProvider implements DistributionProvider {
 
+	private static final Map<String,DistributionParser> BUILT_IN_PARSERS = builtInParsers();
+	
+	/**
+	 * Most setups a provider keeps interned at once
+	 */
+	public static final int MAX_INTERNED = 1024;
+	
+	private final boolean legacyLognormal;
+	private final Map<String,DistributionParser> parsers = new ConcurrentHashMap<>();
+	private final Map<String,Distribution> interned = Collections.synchronizedMap(new InternCache());
+	
+	public CoreDistributionProvider() {
+		this(false);
+	}
+	
+	/**
+	 * @param legacyLognormal - sample lognormal distributions with Erf.erfInv() exactly as earlier versions did
+	 */
+	public CoreDistributionProvider(boolean legacyLognormal) {
+		this.legacyLognormal = legacyLognormal;
+		parsers.putAll(BUILT_IN_PARSERS);
+		for (DistributionParser p : ServiceParsers.PARSERS) {
+			registerParser(p);
+		}
+	}
+	
+	/**
+	 * Adds a parser for the Distribution setups that start with parser.getSetupName().
+	 * Built in setup names and names that already have a parser may not be registered again.
+	 * 
+	 * @param parser
+	 */
+	public void registerParser(DistributionParser parser) {
+		Utils.checkNull(parser);
+		String name = parser.getSetupName();
+		Utils.checkNull(name);
+		if (name.indexOf(';') != name.length() - 1) {
+			throw new IllegalArgumentException(SimMsgs.badSetupName(name));
+		}
+		if (parsers.putIfAbsent(name, parser) != null) {
+			throw new IllegalArgumentException(SimMsgs.duplicateParser(name));
+		}
+	}
+	
+	private static Map<String,DistributionParser> builtInParsers(){
+		Map<String,DistributionParser> toReturn = new HashMap<>();
+		addParser(toReturn, UniformDistribution.SETUP_NAME, (s,p) -> UniformDistribution.parse(s));
+		addParser(toReturn, ExponentialDistribution.SETUP_NAME, (s,p) -> ExponentialDistribution.getExponentialDistribution(s));
+		addParser(toReturn, LognormalDistribution.SETUP_NAME, (s,p) -> LognormalDistribution.parse(s));
+		addParser(toReturn, ConstantDistribution.SETUP_NAME, (s,p) -> ConstantDistribution.parse(s));
+		addParser(toReturn, WeibullDistribution.SETUP_NAME, (s,p) -> WeibullDistribution.parse(s));
+		addParser(toReturn, GammaQuantileDistribution.SETUP_NAME, (s,p) -> GammaQuantileDistribution.parse(s));
+		addParser(toReturn, TriangularDistribution.SETUP_NAME, (s,p) -> TriangularDistribution.parse(s));
+		addParser(toReturn, PertDistribution.SETUP_NAME, (s,p) -> PertDistribution.parse(s));
+		addParser(toReturn, EmpiricalDistribution.SETUP_NAME, (s,p) -> EmpiricalDistribution.parse(s));
+		addParser(toReturn, AliasDistribution.SETUP_NAME, (s,p) -> AliasDistribution.parse(s));
+		addParser(toReturn, TabulatedDistribution.SETUP_NAME, TabulatedDistribution::parse);
+		return Collections.unmodifiableMap(toReturn);
+	}
+	
+	private static void addParser(Map<String,DistributionParser> map, String name, BiFunction<String,DistributionProvider,Distribution> parse) {
+		map.put(name, new BuiltInParser(name, parse));
+	}
+	
+	private static class BuiltInParser implements DistributionParser{
+		
+		private final String name;
+		private final BiFunction<String,DistributionProvider,Distribution> parse;
+		
+		private BuiltInParser(String name, BiFunction<String,DistributionProvider,Distribution> parse) {
+			this.name = name;
+			this.parse = parse;
+		}
+
+		@Override
+		public String getSetupName() {
+			return name;
+		}
+
+		@Override
+		public Distribution parse(String setup, DistributionProvider provider) {
+			return parse.apply(setup, provider);
+		}
+	}
+	
+	/**
+	 * Parsers listed in META-INF/services, loaded the first time a provider is created
+	 */
+	@SuppressWarnings("serial")
+	private static class InternCache extends LinkedHashMap<String,Distribution>{
+		
+		private InternCache() {
+			super(64, 0.75f, true);
+		}
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String,Distribution> eldest) {
+			return size() > MAX_INTERNED;
+		}
+	}
+	
+	/**
+	 * Returns the interned instance with the same setup as d, interning d if there is none
+	 */
+	private Distribution intern(Distribution d) {
+		Distribution existing = interned.putIfAbsent(d.getSetup(), d);
+		return existing == null ? d : existing;
+	}
+	
+	/**
+	 * Looks setup up before calling create, for distributions that are expensive to build
+	 */
+	private Distribution intern(String setup, Supplier<Distribution> create) {
+		Distribution toReturn = interned.get(setup);
+		return toReturn != null ? toReturn : intern(create.get());
+	}
+	
+	private static class ServiceParsers{
+		private static final List<DistributionParser> PARSERS;
+		
+		static {
+			List<DistributionParser> found = new ArrayList<>();
+			for (DistributionParser p : ServiceLoader.load(DistributionParser.class)) {
+				found.add(p);
+			}
+			PARSERS = Collections.unmodifiableList(found);
+		}
+	}
+
 	@Override
 	public Distribution exponential(double mean) {
-		return new ExponentialDistribution(mean);
+		return intern(new ExponentialDistribution(mean));
+	}
+	
+	/**
+	 * Returns the mean of the passed Distribution if it is an exponential distribution created by a CoreDistributionProvider,
+	 * otherwise returns Double.NaN.  Lets simulation objects recognize memoryless distributions they can treat analytically.
+	 * 
+	 * @param d
+	 * @return
+	 */
+	public static double getExponentialMean(Distribution d) {
+		if (d instanceof ExponentialDistribution) {
+			return -((ExponentialDistribution)d).negMean;
+		}
+		return Double.NaN;
 	}
 	
 	@Override
@@ -43,12 +219,12 @@ public class CoreDistributionProvider implements DistributionProvider {
 	
 	@Override
 	public Distribution uniform(double lower, double upper, Interval intervalType) {
-		return new UniformDistribution(lower,upper,intervalType);
+		return intern(new UniformDistribution(lower,upper,intervalType));
 	}
 	
 	@Override
 	public Distribution lognormal(double mean, double standardDeviation) {
-		return new LognormalDistribution(mean,standardDeviation);
+		return intern(new LognormalDistribution(mean,standardDeviation,legacyLognormal));
 	}
 	
 	@Override
@@ -68,17 +244,75 @@ public class CoreDistributionProvider implements DistributionProvider {
 		return lognormal(mean,stdDev);
 	}
 	
+	@Override
+	public Distribution weibull(double shape, double scale) {
+		return intern(new WeibullDistribution(shape, scale));
+	}
+	
+	@Override
+	public Distribution gamma(double shape, double scale) {
+		return intern(GammaQuantileDistribution.setup(shape, scale), () -> new GammaQuantileDistribution(shape, scale));
+	}
+	
+	@Override
+	public Distribution triangular(double lower, double mode, double upper) {
+		return intern(new TriangularDistribution(lower, mode, upper));
+	}
+	
+	@Override
+	public Distribution pert(double lower, double mode, double upper) {
+		return intern(PertDistribution.setup(lower, mode, upper), () -> new PertDistribution(lower, mode, upper));
+	}
+	
+	@Override
+	public Distribution empirical(double[] observations) {
+		Utils.checkNull(observations);
+		return EmpiricalDistribution.fromObservations(observations);
+	}
+	
+	@Override
+	public Distribution empirical(double[] values, double[] cumulativeProbabilities) {
+		Utils.checkNull(values);
+		Utils.checkNull(cumulativeProbabilities);
+		return new EmpiricalDistribution(values, cumulativeProbabilities);
+	}
+	
+	@Override
+	public Distribution discrete(double[] values, double[] weights) {
+		Utils.checkNull(values);
+		Utils.checkNull(weights);
+		return new AliasDistribution(values, weights);
+	}
+	
+	@Override
+	public Distribution tabulated(Distribution toTabulate, int points) {
+		return new TabulatedDistribution(toTabulate, points);
+	}
+	
 	@Override
 	public Distribution getDistribution(String setup) {
 		Utils.checkNull(setup);
 		
-		if (setup.startsWith(ExponentialDistribution.SETUP_NAME)) {
-			return ExponentialDistribution.getExponentialDistribution(setup);
+		Distribution toReturn = interned.get(setup);
+		if (toReturn != null) {
+			return toReturn;
 		}
 		
-		//TODO finish this up
+		int nameEnd = setup.indexOf(';');
+		DistributionParser parser = nameEnd < 0 ? null : parsers.get(setup.substring(0, nameEnd + 1));
+		if (parser == null) {
+			throw new IllegalArgumentException(SimMsgs.unknownDistributionSpec(setup));
+		}
 		
-		throw new IllegalArgumentException(SimMsgs.unknownDistributionSpec(setup));
+		toReturn = parser.parse(setup, this);
+		if (toReturn.copy() == toReturn) {
+			//Immutable, so one instance can be shared by everything built from the same setup
+			Distribution existing = interned.putIfAbsent(setup, toReturn);
+			if (existing != null) {
+				toReturn = existing;
+			}
+		}
+		return toReturn;
 	}
 	
 	private static class UniformDistribution implements Distribution{
@@ -94,6 +328,18 @@ public class CoreDistributionProvider implements DistributionProvider {
 		private double b;
 		private boolean rangeSpansZero = false;
 		
+		protected static UniformDistribution parse(String setup) {
+			String[] pieces = setup.split("\\;");
+			if (pieces.length != 4) {
+				throw new IllegalArgumentException(SimMsgs.badSetupArgument(setup));
+			}
+			try {
+				return new UniformDistribution(Double.parseDouble(pieces[1]), Double.parseDouble(pieces[2]), Interval.valueOf(pieces[3]));
+			}catch(IllegalArgumentException e) {
+				throw new IllegalArgumentException(SimMsgs.badSetupArgument(setup), e);
+			}
+		}
+		
 		protected UniformDistribution(double lower, double upper, Interval iType) {
 			if (lower >= upper) {
 				throw new IllegalArgumentException(SimMsgs.upperBoundMustBeGreater(upper, lower));
@@ -141,6 +387,22 @@ public class CoreDistributionProvider implements DistributionProvider {
 			
 			return tr;
 		}
+		
+		@Override
+		public void sample(double[] uniforms, double[] out) {
+			int n = uniforms.length;
+			if (rangeSpansZero) {
+				for (int i = 0; i < n; i++) {
+					double u = uniforms[i];
+					out[i] = ((u * b) + a) - u*a;
+				}
+			}else {
+				double range = b - a;
+				for (int i = 0; i < n; i++) {
+					out[i] = (uniforms[i] * range) + a;
+				}
+			}
+		}
 	}
 	
 	
@@ -155,12 +417,16 @@ public class CoreDistributionProvider implements DistributionProvider {
 		
 		protected static ExponentialDistribution getExponentialDistribution(String setup) {
 			String[] pieces = setup.split("\\;");
-			if (Integer.parseInt(pieces[0]) != 2 || !pieces[0].equals(SETUP_NAME)) {
+			if (pieces.length != 2 || !setup.startsWith(SETUP_NAME)) {
 				throw new IllegalArgumentException(SimMsgs.badSetupArgument(setup));
 			}
 			
-			double mean = Double.parseDouble(pieces[1]);
-			return new ExponentialDistribution(mean);
+			try {
+				double mean = Double.parseDouble(pieces[1]);
+				return new ExponentialDistribution(mean);
+			}catch(NumberFormatException e) {
+				throw new IllegalArgumentException(SimMsgs.badSetupArgument(setup), e);
+			}
 		}
 		
 		protected ExponentialDistribution(double mean) {
@@ -174,6 +440,14 @@ public class CoreDistributionProvider implements DistributionProvider {
 			return nextran;
 		}
 		
+		@Override
+		public void sample(double[] uniforms, double[] out) {
+			double nm = negMean;
+			for (int i = 0; i < uniforms.length; i++) {
+				out[i] = nm * Math.log(uniforms[i]);
+			}
+		}
+		
 		protected Object readResolve() {
 			return new ExponentialDistribution(-negMean);
 		}
@@ -193,25 +467,76 @@ public class CoreDistributionProvider implements DistributionProvider {
 	
 	private static class LognormalDistribution implements Distribution{
 
-		private static final long serialVersionUID = -9036555600493592565L;
+		private static final long serialVersionUID = 4712803388760412557L;
 
 		protected static final String SETUP_NAME = "Lognormal;";
+		protected static final String LEGACY_SUFFIX = ";ErfInv";
+		
+		private static final double INV_SQRT2 = 1.0d/Math.sqrt(2.0d);
 		
 		private double mean;
 		private double devTerm;
+		private boolean legacy;
 		
+		//Standard deviation of the underlying normal, derived from devTerm so that parsed setups sample identically
+		private transient double sigma;
 		
-		protected LognormalDistribution(double mean, double stdDev) {
+		protected LognormalDistribution(double mean, double stdDev, boolean legacy) {
 			if (mean <= 0.0) throw new IllegalArgumentException(SimMsgs.mustBeStrictlyPositive(mean));
 			if (stdDev <= 0.0) throw new IllegalArgumentException(SimMsgs.mustBeStrictlyPositive(stdDev));
 			
 			this.mean = mean;
+			this.legacy = legacy;
 			devTerm = Math.sqrt(2.0d * stdDev * stdDev);
+			sigma = devTerm * INV_SQRT2;
+		}
+		
+		protected static LognormalDistribution parse(String setup) {
+			String[] pieces = setup.split("\\;");
+			boolean legacy = pieces.length == 4 && setup.endsWith(LEGACY_SUFFIX);
+			if (pieces.length != 3 && !legacy) {
+				throw new IllegalArgumentException(SimMsgs.badSetupArgument(setup));
+			}
+			try {
+				double mean = Double.parseDouble(pieces[1]);
+				double devTerm = Double.parseDouble(pieces[2]);
+				//Rebuild from devTerm directly since recovering the standard deviation is not exact
+				LognormalDistribution toReturn = new LognormalDistribution(mean, devTerm, legacy);
+				toReturn.devTerm = devTerm;
+				toReturn.sigma = devTerm * INV_SQRT2;
+				return toReturn;
+			}catch(IllegalArgumentException e) {
+				throw new IllegalArgumentException(SimMsgs.badSetupArgument(setup), e);
+			}
+		}
+		
+		protected Object readResolve() {
+			sigma = devTerm * INV_SQRT2;
+			return this;
 		}
 
 		@Override
 		public double sample(double uniformRandom) {
-			return Math.exp(mean + devTerm * Erf.erfInv(2 * uniformRandom - 1));
+			if (legacy) {
+				return Math.exp(mean + devTerm * Erf.erfInv(2 * uniformRandom - 1));
+			}
+			return Math.exp(mean + sigma * NormalQuantile.inverse(uniformRandom));
+		}
+		
+		@Override
+		public void sample(double[] uniforms, double[] out) {
+			double m = mean;
+			if (legacy) {
+				double d = devTerm;
+				for (int i = 0; i < uniforms.length; i++) {
+					out[i] = Math.exp(m + d * Erf.erfInv(2 * uniforms[i] - 1));
+				}
+			}else {
+				double s = sigma;
+				for (int i = 0; i < uniforms.length; i++) {
+					out[i] = Math.exp(m + s * NormalQuantile.inverse(uniforms[i]));
+				}
+			}
 		}
 
 		@Override
@@ -219,6 +544,9 @@ public class CoreDistributionProvider implements DistributionProvider {
 			StringBuilder toReturn = new StringBuilder(SETUP_NAME);
 			toReturn.append(mean);
 			toReturn.append(';').append(devTerm);
+			if (legacy) {
+				toReturn.append(LEGACY_SUFFIX);
+			}
 			return toReturn.toString();
 		}
 
@@ -241,10 +569,27 @@ public class CoreDistributionProvider implements DistributionProvider {
 			v = value;
 		}
 		
+		protected static ConstantDistribution parse(String setup) {
+			String[] pieces = setup.split("\\;");
+			if (pieces.length != 2) {
+				throw new IllegalArgumentException(SimMsgs.badSetupArgument(setup));
+			}
+			try {
+				return new ConstantDistribution(Double.parseDouble(pieces[1]));
+			}catch(NumberFormatException e) {
+				throw new IllegalArgumentException(SimMsgs.badSetupArgument(setup), e);
+			}
+		}
+		
 		@Override
 		public double sample(double uniformRandom) {
 			return v;
 		}
+		
+		@Override
+		public void sample(double[] uniforms, double[] out) {
+			Arrays.fill(out, 0, uniforms.length, v);
+		}
 
 		@Override
 		public String getSetup() {
@@ -261,7 +606,357 @@ public class CoreDistributionProvider implements DistributionProvider {
 
 	@Override
 	public Distribution constant(double value) {
-		return new ConstantDistribution(value);
+		return intern(new ConstantDistribution(value));
+	}
+	
+	/**
+	 * Splits a setup into its numeric parameters after checking the name and parameter count
+	 */
+	private static double[] parseParameters(String setup, String setupName, int count) {
+		String[] pieces = setup.split("\\;");
+		if (pieces.length != count + 1 || !setup.startsWith(setupName)) {
+			throw new IllegalArgumentException(SimMsgs.badSetupArgument(setup));
+		}
+		try {
+			double[] toReturn = new double[count];
+			for (int i = 0; i < count; i++) {
+				toReturn[i] = Double.parseDouble(pieces[i + 1]);
+			}
+			return toReturn;
+		}catch(NumberFormatException e) {
+			throw new IllegalArgumentException(SimMsgs.badSetupArgument(setup), e);
+		}
+	}
+	
+	private static void checkTriangle(double lower, double mode, double upper) {
+		if (lower >= upper) {
+			throw new IllegalArgumentException(SimMsgs.upperBoundMustBeGreater(upper, lower));
+		}
+		if (mode < lower || mode > upper) {
+			throw new IllegalArgumentException(SimMsgs.valueMustBeBetween(lower, upper, mode));
+		}
+	}
+	
+	private static class WeibullDistribution implements Distribution{
+
+		private static final long serialVersionUID = 3605846917302524717L;
+
+		protected static final String SETUP_NAME = "Weibull;";
+		
+		private double shape;
+		private double scale;
+		private double invShape;
+		
+		protected WeibullDistribution(double shape, double scale) {
+			if (!(shape > 0.0)) throw new IllegalArgumentException(SimMsgs.mustBeStrictlyPositive(shape));
+			if (!(scale > 0.0)) throw new IllegalArgumentException(SimMsgs.mustBeStrictlyPositive(scale));
+			this.shape = shape;
+			this.scale = scale;
+			invShape = 1.0d / shape;
+		}
+		
+		protected static WeibullDistribution parse(String setup) {
+			double[] p = parseParameters(setup, SETUP_NAME, 2);
+			return new WeibullDistribution(p[0], p[1]);
+		}
+		
+		@Override
+		public double sample(double uniformRandom) {
+			return scale * Math.pow(-Math.log1p(-uniformRandom), invShape);
+		}
+		
+		@Override
+		public void sample(double[] uniforms, double[] out) {
+			double s = scale;
+			double is = invShape;
+			for (int i = 0; i < uniforms.length; i++) {
+				out[i] = s * Math.pow(-Math.log1p(-uniforms[i]), is);
+			}
+		}
+
+		@Override
+		public String getSetup() {
+			return SETUP_NAME + shape + ';' + scale;
+		}
+
+		@Override
+		public Distribution copy() {
+			return this;
+		}
+	}
+	
+	private static class TriangularDistribution implements Distribution{
+
+		private static final long serialVersionUID = -6541150187327604021L;
+
+		protected static final String SETUP_NAME = "Triangular;";
+		
+		private double lower;
+		private double mode;
+		private double upper;
+		private double modeCdf;
+		private double lowerTerm;
+		private double upperTerm;
+		
+		protected TriangularDistribution(double lower, double mode, double upper) {
+			checkTriangle(lower, mode, upper);
+			this.lower = lower;
+			this.mode = mode;
+			this.upper = upper;
+			modeCdf = (mode - lower) / (upper - lower);
+			lowerTerm = (upper - lower) * (mode - lower);
+			upperTerm = (upper - lower) * (upper - mode);
+		}
+		
+		protected static TriangularDistribution parse(String setup) {
+			double[] p = parseParameters(setup, SETUP_NAME, 3);
+			return new TriangularDistribution(p[0], p[1], p[2]);
+		}
+		
+		@Override
+		public double sample(double uniformRandom) {
+			if (uniformRandom < modeCdf) {
+				return lower + Math.sqrt(uniformRandom * lowerTerm);
+			}
+			return upper - Math.sqrt((1.0d - uniformRandom) * upperTerm);
+		}
+
+		@Override
+		public String getSetup() {
+			return SETUP_NAME + lower + ';' + mode + ';' + upper;
+		}
+
+		@Override
+		public Distribution copy() {
+			return this;
+		}
+	}
+	
+	/**
+	 * Base for distributions sampled from a table of Commons Math quantiles at equally spaced cumulative probabilities.
+	 * The central slices interpolate linearly.  Near each end, where the quantile function may curve too much for
+	 * interpolation, every slice whose midpoint is off by more than INTERPOLATION_TOLERANCE (checking at most
+	 * MAX_EXACT_SLICES slices) refines the interpolated value with safeguarded Newton steps on the CDF instead.
+	 * The first and last slice use the Commons Math inverse directly, since the quantile function may be unbounded there.
+	 */
+	private static abstract class QuantileTableDistribution implements Distribution{
+
+		private static final long serialVersionUID = -1917282290081269283L;
+		
+		protected static final int TABLE_POINTS = 4096;
+		protected static final int MAX_EXACT_SLICES = 256;
+		protected static final double INTERPOLATION_TOLERANCE = 1e-5;
+		private static final int MAX_NEWTON_STEPS = 8;
+
+		/**
+		 * The parts of the exact distribution the table is built from and refined with.
+		 */
+		protected interface Exact{
+			double inverseCumulativeProbability(double p);
+			double cumulativeProbability(double x);
+			double density(double x);
+		}
+		
+		private transient Exact exact;
+		//quantiles[i] is the quantile at i/TABLE_POINTS, only 1 to TABLE_POINTS - 1 are used
+		private transient double[] quantiles;
+		//Slices below lowExact and from highExact up are refined
+		private transient int lowExact;
+		private transient int highExact;
+		
+		protected abstract Exact exact();
+		
+		protected void buildTable() {
+			Exact d = exact();
+			double[] q = new double[TABLE_POINTS + 1];
+			for (int i = 1; i < TABLE_POINTS; i++) {
+				q[i] = d.inverseCumulativeProbability((double)i / TABLE_POINTS);
+			}
+			
+			int low = 1;
+			for (int i = MAX_EXACT_SLICES; i >= 1; i--) {
+				if (!interpolates(d, q, i)) {
+					low = i + 1;
+					break;
+				}
+			}
+			int high = TABLE_POINTS - 1;
+			for (int i = TABLE_POINTS - 1 - MAX_EXACT_SLICES; i < TABLE_POINTS - 1; i++) {
+				if (!interpolates(d, q, i)) {
+					high = i;
+					break;
+				}
+			}
+			
+			exact = d;
+			quantiles = q;
+			lowExact = low;
+			highExact = high;
+		}
+		
+		private static boolean interpolates(Exact d, double[] q, int slice) {
+			double mid = d.inverseCumulativeProbability((slice + 0.5) / TABLE_POINTS);
+			double interpolated = 0.5 * (q[slice] + q[slice + 1]);
+			return Math.abs(interpolated - mid) <= INTERPOLATION_TOLERANCE * Math.abs(mid);
+		}
+		
+		protected Object readResolve() {
+			buildTable();
+			return this;
+		}
+		
+		@Override
+		public double sample(double uniformRandom) {
+			double x = uniformRandom * TABLE_POINTS;
+			int i = (int)x;
+			if (i >= lowExact && i < highExact) {
+				double q0 = quantiles[i];
+				return q0 + (x - i) * (quantiles[i + 1] - q0);
+			}
+			return refine(uniformRandom, x, i);
+		}
+		
+		private double refine(double uniformRandom, double x, int i) {
+			if (i < 1 || i >= TABLE_POINTS - 1) {
+				return exact.inverseCumulativeProbability(uniformRandom);
+			}
+			double lo = quantiles[i];
+			double hi = quantiles[i + 1];
+			double q = lo + (x - i) * (hi - lo);
+			for (int step = 0; step < MAX_NEWTON_STEPS; step++) {
+				double err = exact.cumulativeProbability(q) - uniformRandom;
+				if (err > 0) {
+					hi = q;
+				}else {
+					lo = q;
+				}
+				double next = q - err / exact.density(q);
+				if (!(next > lo && next < hi)) {
+					//Newton left the bracket, so bisect instead
+					next = 0.5 * (lo + hi);
+				}
+				if (Math.abs(next - q) <= 1e-14 * Math.abs(q)) {
+					return next;
+				}
+				q = next;
+			}
+			return q;
+		}
+		
+		@Override
+		public Distribution copy() {
+			return this;
+		}
+	}
+	
+	private static class GammaQuantileDistribution extends QuantileTableDistribution{
+
+		private static final long serialVersionUID = 5286870719430853003L;
+
+		protected static final String SETUP_NAME = "Gamma;";
+		
+		private double shape;
+		private double scale;
+		
+		protected GammaQuantileDistribution(double shape, double scale) {
+			if (!(shape > 0.0)) throw new IllegalArgumentException(SimMsgs.mustBeStrictlyPositive(shape));
+			if (!(scale > 0.0)) throw new IllegalArgumentException(SimMsgs.mustBeStrictlyPositive(scale));
+			this.shape = shape;
+			this.scale = scale;
+			buildTable();
+		}
+		
+		protected static GammaQuantileDistribution parse(String setup) {
+			double[] p = parseParameters(setup, SETUP_NAME, 2);
+			return new GammaQuantileDistribution(p[0], p[1]);
+		}
+		
+		@Override
+		protected Exact exact() {
+			GammaDistribution g = new GammaDistribution(null, shape, scale);
+			return new Exact() {
+				@Override
+				public double inverseCumulativeProbability(double p) {
+					return g.inverseCumulativeProbability(p);
+				}
+				
+				@Override
+				public double cumulativeProbability(double x) {
+					return g.cumulativeProbability(x);
+				}
+				
+				@Override
+				public double density(double x) {
+					return g.density(x);
+				}
+			};
+		}
+
+		protected static String setup(double shape, double scale) {
+			return SETUP_NAME + shape + ';' + scale;
+		}
+
+		@Override
+		public String getSetup() {
+			return setup(shape, scale);
+		}
+	}
+	
+	private static class PertDistribution extends QuantileTableDistribution{
+
+		private static final long serialVersionUID = -2283018811384004735L;
+
+		protected static final String SETUP_NAME = "PERT;";
+		
+		private double lower;
+		private double mode;
+		private double upper;
+		
+		protected PertDistribution(double lower, double mode, double upper) {
+			checkTriangle(lower, mode, upper);
+			this.lower = lower;
+			this.mode = mode;
+			this.upper = upper;
+			buildTable();
+		}
+		
+		protected static PertDistribution parse(String setup) {
+			double[] p = parseParameters(setup, SETUP_NAME, 3);
+			return new PertDistribution(p[0], p[1], p[2]);
+		}
+		
+		@Override
+		protected Exact exact() {
+			double range = upper - lower;
+			double alpha = 1.0d + 4.0d * (mode - lower) / range;
+			double beta = 1.0d + 4.0d * (upper - mode) / range;
+			BetaDistribution b = new BetaDistribution(null, alpha, beta);
+			return new Exact() {
+				@Override
+				public double inverseCumulativeProbability(double p) {
+					return lower + range * b.inverseCumulativeProbability(p);
+				}
+				
+				@Override
+				public double cumulativeProbability(double x) {
+					return b.cumulativeProbability((x - lower) / range);
+				}
+				
+				@Override
+				public double density(double x) {
+					return b.density((x - lower) / range) / range;
+				}
+			};
+		}
+
+		protected static String setup(double lower, double mode, double upper) {
+			return SETUP_NAME + lower + ';' + mode + ';' + upper;
+		}
+
+		@Override
+		public String getSetup() {
+			return setup(lower, mode, upper);
+		}
 	}
 }
 
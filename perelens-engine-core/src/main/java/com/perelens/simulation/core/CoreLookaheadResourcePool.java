@@ -0,0 +1,207 @@
+/**
+ * 
+ */
+package com.perelens.simulation.core;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.perelens.engine.api.ConfigKey;
+import com.perelens.engine.api.Event;
+import com.perelens.engine.api.EventFilter;
+import com.perelens.engine.api.EventGenerator;
+import com.perelens.engine.api.ResponderResources;
+import com.perelens.engine.core.CoreUtils;
+import com.perelens.engine.core.TimePlusEventQueue;
+import com.perelens.engine.utils.Utils;
+import com.perelens.simulation.api.BasicInfo;
+import com.perelens.simulation.api.ResourcePool;
+import com.perelens.simulation.events.ResourcePoolEvent;
+
+/**
+ * Copyright 2020-2025 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" 
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
+   permissions and limitations under the License
+
+   Time optimized ResourcePool that grants contended requests in time order without the scale factor trade off of
+   {@link CoreTimeOptimizedResourcePool}.
+   When the pool is called every requester has either finished the time window or is waiting on a response, so the only requests
+   that can still arrive out of order come from requesters granted during the call.  Each request carries a lookahead
+   (see {@link ResPoolEvent#setLookahead(long)}) so the earliest next request of a granted requester is its release time plus its lookahead.
+   Requests before the earliest of those times are granted in the same call and later ones wait for the next call.
+   With the lookahead RandomFailureFunction publishes, most granted requesters cannot request again inside the window and the
+   pool grants every request in a single pass.
+   Requests from functions that are waiting on a different responder are not covered by the lookahead, and unlike CoreResourcePool
+   this pool does not stop at {@link ResponderResources#getTimeLimit()}, so multi-pool requesters must acquire this pool last.
+
+ * @author Steve Branda
+ */
+public class CoreLookaheadResourcePool extends TimePlusEventQueue implements ResourcePool{
+
+	private final EventFilter exclusiveFilter = new EventFilter() {
+		@Override
+		public boolean filter(Event event) {
+			return event.getType() instanceof ResourcePoolEvent && ResPoolEvent.isFor(event, getId());
+		}
+	};
+
+	private final String id;
+	private final int limit;
+	private long ordinal = 1;
+	private int dependencyCount = 0;
+	private int maxUnits = 1;
+
+	public static enum CONFIG_KEYS implements ConfigKey{
+		CRP_LIMIT;
+	}
+
+	/**
+	 *
+	 * @param id
+	 * @param limit - Number of total resources to grant before requests start to queue up
+	 */
+	public CoreLookaheadResourcePool(String id, int limit) {
+		Utils.checkId(id);
+		if (limit < 1) {
+			throw new IllegalArgumentException(SimMsgs.mustBeStrictlyPositive(limit));
+		}
+		this.id = id;
+		this.limit = limit;
+		setInitialCapacity(limit);
+		this.setComparator(CoreUtils.getEventComparator(this.getEventTypeComparator()));
+	}
+
+	@Override
+	public EventFilter getEventFilter() {
+		return exclusiveFilter;
+	}
+
+	@Override
+	public Comparator<ResourcePoolEvent> getEventTypeComparator() {
+		//RENEW events must be ordered before REQUEST events if they have the same time
+		//Uses ordering of the enum declaration in ResourcePoolEvent
+		return (a1,a2)->{
+			return a1.compareTo(a2);
+		};
+	}
+
+	@Override
+	public EventGenerator copy() {
+		return new CoreLookaheadResourcePool(id,limit);
+	}
+
+	//Earliest time a requester granted during this call could send its next request
+	private long nextRequestCutOff = Long.MAX_VALUE;
+	@Override
+	public void consume(long timeWindow, ResponderResources resources) {
+		nextRequestCutOff = Long.MAX_VALUE;
+
+		var eIter = resources.getEvents().iterator();
+
+		while(eIter.hasNext() || (this.ev_hasMore() && this.ev_peek().getTime() < nextRequestCutOff)) {
+			Event e = null;
+
+			if (eIter.hasNext()) {
+				e = eIter.next();
+			}
+
+			if (this.ev_hasMore()) {
+				if (e == null) {
+					e = this.ev_dequeue();
+				}else if (e.getTime() >= this.ev_peek().getTime()) {
+					this.ev_enqueue(e);
+					e = this.ev_dequeue();
+				}
+			}
+
+			if (e.getType() == ResourcePoolEvent.RP_REQUEST) {
+				long timeNeeded = e.getTimeOptimization();
+				if (timeNeeded == Event.NOT_TIME_OPTIMIZED){
+					throw new IllegalStateException(SimMsgs.eventNotTimeOptimized(e));
+				}
+				int units = ResPoolEvent.getUnits(e);
+				if (units > limit) {
+					throw new IllegalStateException(SimMsgs.tooManyUnits(units, limit));
+				}
+				maxUnits = Math.max(maxUnits, units);
+
+				if (e.getTime() < nextRequestCutOff || limit >= (long)dependencyCount * maxUnits) {
+					//No requester can send an earlier request, or the pool can never be contended
+					grantResourceRequest(e,timeNeeded,resources);
+				}else {
+					//A requester granted during this call could still send an earlier request
+					this.ev_enqueue(e);
+				}
+			}else if (!ResourcePoolEvent.GRANT_RESPONSE_TYPES.contains(e.getType())){
+				//RP_RETURN and RP_DEFER events are passed for thread scheduling and need no processing
+				throw new IllegalStateException(SimMsgs.unexpectedEvent(e));
+			}
+
+			//Sanity check
+			if (this.tc_size() > limit) {
+				throw new IllegalStateException(SimMsgs.badState());
+			}
+		}
+	}
+
+	private void grantResourceRequest(Event inResponseTo, long timeNeeded, ResponderResources resources) {
+		long curTime = inResponseTo.getTime();
+		int units = ResPoolEvent.getUnits(inResponseTo);
+
+		//Clear out any expired time records
+		for (long nextAvail = this.tc_peek(); nextAvail > -1 && nextAvail <= curTime; nextAvail = this.tc_peek()) {
+			this.tc_dequeue();
+		}
+
+		//Take the earliest releases until enough resources are free, the request is usable when the last of them is released
+		long timeWhenUsable = curTime;
+		for (int free = limit - this.tc_size(); free < units; free++) {
+			timeWhenUsable = tc_dequeue();
+		}
+
+		long timeToAdd = timeWhenUsable + timeNeeded;
+		ResPoolEvent eg = new ResPoolEvent(getId(),ResourcePoolEvent.RP_GRANT,curTime,getNextOrdinal(),ResourcePoolEvent.GRANT_RESPONSE_TYPES);
+		eg.setTimeOptimization(timeWhenUsable);
+		if (units != 1) {
+			eg.setUnits(units);
+		}
+		resources.raiseResponse(eg, inResponseTo);
+		for (int i = 0; i < units; i++) {
+			this.tc_enqueue(timeToAdd);
+		}
+
+		long lookahead = ResPoolEvent.getLookahead(inResponseTo);
+		long nextRequest = lookahead > Long.MAX_VALUE - timeToAdd ? Long.MAX_VALUE : timeToAdd + lookahead;
+		if (nextRequest < nextRequestCutOff) {
+			nextRequestCutOff = nextRequest;
+		}
+	}
+
+	@Override
+	public Map<ConfigKey, String> getConfiguration() {
+		Map<ConfigKey, String> toReturn = new HashMap<>();
+		toReturn.put(CONFIG_KEYS.CRP_LIMIT, Integer.toString(limit));
+		return toReturn;
+	}
+
+	@Override
+	public String getId() {
+		return id;
+	}
+
+	protected long getNextOrdinal() {
+		return ordinal++;
+	}
+
+	@Override
+	public void initiate(BasicInfo info) {
+		dependencyCount = info.getDependencies().size();
+	}
+}
@@ -3,6 +3,8 @@
  */
 package com.perelens.simulation.core;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -12,6 +14,7 @@ import com.perelens.engine.api.ConfigKey;
 import com.perelens.engine.api.Event;
 import com.perelens.engine.api.EventFilter;
 import com.perelens.engine.api.EventGenerator;
+import com.perelens.engine.utils.Utils;
 import com.perelens.simulation.api.BasicInfo;
 import com.perelens.simulation.api.ResourcePool;
 import com.perelens.simulation.events.ResourcePoolEvent;
@@ -28,40 +31,167 @@ import com.perelens.simulation.events.ResourcePoolEvent;
    permissions and limitations under the License
    
    This is the general purpose ResourcePool implementation that works for all use cases.
+   Waiting requests are granted in arrival order unless a different {@link GrantPolicy} is passed to the constructor, in which
+   case they wait in an IndexedRequestHeap so each grant costs O(log n) in the number of waiting requests.
+   Requests for more than one unit (see {@link ResPoolEvent#setUnits(int)}) are granted only when all of their units are free,
+   and requests behind them wait even if they need fewer units, so large requests are never starved.
+   The limit can follow a {@link CapacitySchedule} instead of being fixed, in which case it is looked up when time advances and the
+   pool only calls itself back at the next change of capacity while requests are waiting.
+   
+   Requests that cannot be granted by the end of a time window are deferred and stay queued, and the requester has to RENEW them
+   in a later window before they can be granted.  With {@link #setPersistentRequests(boolean)} the RP_DEFER tells the requester,
+   through its time optimization, the earliest time at which the pool could grant anything, so the requester only needs to RENEW in
+   the window that contains that time instead of in every window.
    
  * @author Steve Branda
  *
  */
 public class CoreResourcePool extends RequestQueueAndMap implements ResourcePool {
 
-	private static final EventFilter EXCLUSIVE_FILTER = new EventFilter() {
+	private static final ResPoolEvent NEEDS_RENEW = new ResPoolEvent("needs renew",ResourcePoolEvent.RP_RENEW,0,1);
+	
+	private final EventFilter exclusiveFilter = new EventFilter() {
 		@Override
 		public boolean filter(Event event) {
-			return event.getType() instanceof ResourcePoolEvent;
+			return event.getType() instanceof ResourcePoolEvent && ResPoolEvent.isFor(event, getId());
 		}
 	};
 	
-	private static final ResPoolEvent NEEDS_RENEW = new ResPoolEvent("needs renew",ResourcePoolEvent.RP_RENEW,0,1);
-	private static final ResPoolEvent GRANTED = new ResPoolEvent("granted",ResourcePoolEvent.RP_GRANT,0,1);
-	
 	public static enum CONFIG_KEYS implements ConfigKey{
-		CRP_LIMIT;
+		CRP_LIMIT,
+		CRP_POLICY,
+		CRP_SCHEDULE,
+		CRP_PERSISTENT;
 	}
 	
 	private int limit;
+	//Most units the limit can ever reach, only differs from the limit for shards of a CoreShardedResourcePool
+	private int capacity;
 	private int granted = 0;
+	private GrantPolicy policy;
+	private IndexedRequestHeap waiting;
+	private Map<String,Integer> priorities = Collections.emptyMap();
+	private PoolStatistics statistics;
+	private PoolStatistics.Recorder recorder;
+	private CapacitySchedule schedule;
+	private CapacitySchedule.Steps steps;
+	private long limitUntil = Long.MIN_VALUE;	//Time at which the limit taken from the schedule can next change
+	private long callbackAt = Long.MIN_VALUE;
+	private boolean persistent = false;
+	//Hold time of each waiting request and release time of each granted one indexed by handle, -1 if the request did not say
+	private long[] releases = Utils.EMPTY_LONG_ARRAY;
 	
 	public CoreResourcePool(String id, int limit) {
+		this(id,limit,GrantPolicy.fifo());
+	}
+	
+	/**
+	 * Initializes a ResourcePool that grants waiting requests in the order decided by the passed policy.
+	 * 
+	 * @param id
+	 * @param limit - Number of total resources to grant before requests start to queue up
+	 * @param policy
+	 */
+	public CoreResourcePool(String id, int limit, GrantPolicy policy) {
 		super(id);
+		Utils.checkNull(policy);
 		if (limit < 1) {
 			throw new IllegalArgumentException(SimMsgs.mustBeStrictlyPositive(limit));
 		}
 		this.limit = limit;
+		this.capacity = limit;
+		this.policy = policy;
+		if (!policy.isFifo()) {
+			waiting = new IndexedRequestHeap();
+		}
+	}
+
+	public CoreResourcePool(String id, CapacitySchedule schedule) {
+		this(id,schedule,GrantPolicy.fifo());
+	}
+	
+	/**
+	 * Initializes a ResourcePool whose limit follows the passed schedule.
+	 * The schedule is translated with the TimeTranslator of the Simulation, so time translation must be enabled.
+	 * Units granted when the capacity drops stay granted until they are returned.
+	 * 
+	 * @param id
+	 * @param schedule
+	 * @param policy
+	 */
+	public CoreResourcePool(String id, CapacitySchedule schedule, GrantPolicy policy) {
+		this(id,maxCapacity(schedule),policy);
+		this.schedule = schedule.copy();
+	}
+	
+	private static int maxCapacity(CapacitySchedule schedule) {
+		Utils.checkNull(schedule);
+		return schedule.getMaxCapacity();
+	}
+
+	/**
+	 * Initializes a ResourcePool whose limit can later be raised as high as the passed capacity with setLimit().
+	 *
+	 * @param id
+	 * @param limit
+	 * @param capacity
+	 * @param policy
+	 */
+	CoreResourcePool(String id, int limit, int capacity, GrantPolicy policy) {
+		this(id,limit,policy);
+		if (capacity < limit) {
+			throw new IllegalArgumentException(SimMsgs.upperBoundMustBeGreater(capacity, limit));
+		}
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Changes the number of units that can be granted at once.
+	 * Units granted beyond a lowered limit stay granted until they are returned.
+	 *
+	 * @param limit
+	 */
+	void setLimit(int limit) {
+		if (limit < 1 || limit > capacity) {
+			throw new IllegalArgumentException(SimMsgs.valueMustBeBetween(1, capacity, limit));
+		}
+		this.limit = limit;
+	}
+
+	/**
+	 * Turns on collection of utilisation and queueing statistics into the passed collector, which is shared by every copy of this pool.
+	 *
+	 * @param statistics
+	 */
+	public void setStatistics(PoolStatistics statistics) {
+		Utils.checkNull(statistics);
+		this.statistics = statistics;
+		this.recorder = new PoolStatistics.Recorder();
+	}
+
+	/**
+	 * Makes RP_DEFER events carry the earliest time at which the pool could grant a waiting request.
+	 * The time is worked out from the time optimization of the granted requests, so it is only given when every granted request
+	 * carried the exact number of time units it holds the resource for, as RandomFailureFunction does, and every unit is in use.
+	 * Requesters that ignore it still RENEW in the next window, so the option does not change any results.
+	 *
+	 * @param persistent
+	 */
+	public void setPersistentRequests(boolean persistent) {
+		this.persistent = persistent;
+	}
+
+	int getLimit() {
+		return limit;
+	}
+
+	int getCapacity() {
+		return capacity;
 	}
 
 	@Override
 	public EventGenerator copy() {
-		CoreResourcePool toReturn = new CoreResourcePool(getId(),limit);
+		CoreResourcePool toReturn = new CoreResourcePool(getId(),capacity,policy);
 		syncInternalState(toReturn);
 		return toReturn;
 	}
@@ -70,18 +200,67 @@ public class CoreResourcePool extends RequestQueueAndMap implements ResourcePool
 		super.syncInternalState(toSync);
 		toSync.granted = this.granted;
 		toSync.limit = this.limit;
+		toSync.capacity = this.capacity;
+		toSync.policy = this.policy.copy();
+		toSync.waiting = this.waiting == null ? null : this.waiting.copy();
+		toSync.priorities = this.priorities;
+		toSync.statistics = this.statistics;
+		toSync.recorder = this.recorder == null ? null : this.recorder.copy();
+		toSync.schedule = this.schedule;
+		toSync.steps = this.steps;
+		toSync.limitUntil = this.limitUntil;
+		toSync.callbackAt = this.callbackAt;
+		toSync.persistent = this.persistent;
+		toSync.releases = this.releases == Utils.EMPTY_LONG_ARRAY ? Utils.EMPTY_LONG_ARRAY : Arrays.copyOf(this.releases, this.releases.length);
 	}
 
 	@Override
 	public Map<ConfigKey, String> getConfiguration() {
 		Map<ConfigKey, String> toReturn = new HashMap<>(super.getConfiguration());
 		toReturn.put(CONFIG_KEYS.CRP_LIMIT, Integer.toString(limit));
+		if (!policy.isFifo()) {
+			toReturn.put(CONFIG_KEYS.CRP_POLICY, policy.getSetup());
+		}
+		if (schedule != null) {
+			toReturn.put(CONFIG_KEYS.CRP_SCHEDULE, schedule.getSetup());
+		}
+		if (persistent) {
+			toReturn.put(CONFIG_KEYS.CRP_PERSISTENT, Boolean.TRUE.toString());
+		}
 		return toReturn;
 	}
 	
+	private int waitingCount() {
+		return waiting == null ? this.r_size() : waiting.size();
+	}
+	
+	private void addWaiting(Event request) {
+		String key = request.getProducerId();
+		if (waiting == null) {
+			this.r_enqueue(key);
+		}else {
+			waiting.offer(this.m_handle(key), policy.rank(request, priorities.getOrDefault(key, 0)));
+		}
+	}
+	
+	private String peekWaiting() {
+		return waiting == null ? this.r_peek() : this.m_key(waiting.peek());
+	}
+	
+	private String nextWaiting() {
+		if (waiting == null) {
+			return this.r_dequeue();
+		}else {
+			int handle = waiting.peek();
+			policy.granted(waiting.getRank(handle));
+			waiting.poll();
+			return this.m_key(handle);
+		}
+	}
+	
 	@Override
 	public EventFilter getEventFilter() {
-		return EXCLUSIVE_FILTER;
+		return exclusiveFilter;
 	}
 
 	@Override
@@ -93,20 +272,55 @@ public class CoreResourcePool extends RequestQueueAndMap implements ResourcePool
 		};
 	}
 
+	/**
+	 * Brings the limit taken from the schedule up to the passed time, accounting for every change on the way when statistics are collected
+	 */
+	private void updateLimit(long time) {
+		while (time >= limitUntil) {
+			long from = recorder == null || limitUntil == Long.MIN_VALUE ? time : limitUntil;
+			if (from != time) {
+				recorder.advance(from, limit, granted, waitingCount());
+			}
+			limit = steps.capacityAt(from);
+			limitUntil = steps.nextChange(from);
+		}
+	}
+	
 	@Override
 	protected void process(Event curEvent) {
+		if (steps != null) {
+			updateLimit(getTimeProcessed());
+		}
+		if (recorder != null) {
+			recorder.advance(getTimeProcessed(), limit, granted, waitingCount());
+		}
 		if (curEvent != null) {
 			if (curEvent.getType() == ResourcePoolEvent.RP_REQUEST) {
+				int units = ResPoolEvent.getUnits(curEvent);
+				if (units > capacity) {
+					throw new IllegalStateException(SimMsgs.tooManyUnits(units, capacity));
+				}
 				if (this.m_put(curEvent.getProducerId(), curEvent) == null) {
-					this.r_enqueue(curEvent.getProducerId());
+					addWaiting(curEvent);
+					if (recorder != null) {
+						recorder.arrived(this.m_handle(curEvent.getProducerId()), getTimeProcessed());
+					}
+					if (persistent) {
+						int handle = this.m_handle(curEvent.getProducerId());
+						if (handle >= releases.length) {
+							releases = Arrays.copyOf(releases, Math.max(releases.length + releases.length, Math.max(handle + 1, 8)));
+						}
+						releases[handle] = curEvent.getTimeOptimization();
+					}
 				}else {
 					throw new IllegalStateException(SimMsgs.requestedBeforeReturned(curEvent.getProducerId()));
 				}
 			}else if (curEvent.getType() == ResourcePoolEvent.RP_RETURN) {
-				if (this.m_remove(curEvent.getProducerId()) == null) {
+				Event grant = this.m_remove(curEvent.getProducerId());
+				if (grant == null || grant.getType() != ResourcePoolEvent.RP_GRANT) {
 					throw new IllegalStateException(SimMsgs.falseReturn(curEvent.getProducerId()));
 				}
-				granted--;
+				granted -= ResPoolEvent.getUnits(grant);
 			}else if (curEvent.getType() == ResourcePoolEvent.RP_RENEW) {
 				if (this.m_put(curEvent.getProducerId(), curEvent) != NEEDS_RENEW) {
 					throw new IllegalStateException(SimMsgs.badState());
@@ -114,44 +328,119 @@ public class CoreResourcePool extends RequestQueueAndMap implements ResourcePool
 			}
 		}
 		
-		//Grant as many requests as possible
-		while (granted < limit && this.r_size() > 0) {
-			String requestKey = this.r_dequeue();
-			Event request = this.m_put(requestKey,GRANTED);
+		//Grant as many requests as possible, stopping at the first one whose units are not all free
+		while (granted < limit && waitingCount() > 0) {
+			String requestKey = peekWaiting();
+			Event request = this.m_get(requestKey);
 			if (request == NEEDS_RENEW) {
 				//Right now the expectation is that any DEFERRED requests will be RENEWED by the requester at the start of the next window
 				//Other behavior, like skipping requesters, could be adopted in the future if desired.
 				throw new IllegalStateException(SimMsgs.resourceRenewRequired(requestKey));
 			}
-			Event eg = new ResPoolEvent(getId(),ResourcePoolEvent.RP_GRANT,getTimeProcessed(),getNextOrdinal(),ResourcePoolEvent.GRANT_RESPONSE_TYPES);
+			int units = ResPoolEvent.getUnits(request);
+			if (granted + units > limit) {
+				break;
+			}
+			nextWaiting();
+			if (recorder != null) {
+				recorder.granted(this.m_handle(requestKey), getTimeProcessed());
+			}
+			if (persistent) {
+				int handle = this.m_handle(requestKey);
+				if (releases[handle] != Event.NOT_TIME_OPTIMIZED) {
+					releases[handle] += getTimeProcessed();
+				}
+			}
+			ResPoolEvent eg = new ResPoolEvent(getId(),ResourcePoolEvent.RP_GRANT,getTimeProcessed(),getNextOrdinal(),ResourcePoolEvent.GRANT_RESPONSE_TYPES);
+			if (units != 1) {
+				eg.setUnits(units);
+			}
+			this.m_put(requestKey,eg);
 			raiseResponse(eg, request);
 			super.waitForResponse();
-			granted++;
-		}	
+			granted += units;
+		}
+		
+		if (steps != null && waitingCount() > 0 && limitUntil != Long.MAX_VALUE && callbackAt != limitUntil) {
+			//Wake up when the capacity changes in case the waiting requests can be granted then
+			registerCallbackTime(limitUntil);
+			callbackAt = limitUntil;
+		}
 	}
 	
 	@Override
 	protected void postProcess() {
 		//If any requests that arrived during this time window were not granted, then send a deferred event so the function
 		//knows it needs to wait at least until the next time window to start repair activities.
-		if (this.r_size() > 0) {
+		if (waitingCount() > 0) {
 			if (this.m_size() ==0) {
 				throw new IllegalStateException(SimMsgs.badState());
 			}
+			long earliestGrant = persistent ? earliestGrant() : Event.NOT_TIME_OPTIMIZED;
 			for(Iterator<Map.Entry<String,Event>> iter = this.m_iterator(); iter.hasNext();) {
 				Map.Entry<String,Event> ent = iter.next();
 				Event e = ent.getValue();
-				if (e != NEEDS_RENEW && e != GRANTED) {
-					Event defer = new ResPoolEvent(getId(),ResourcePoolEvent.RP_DEFER,getTimeProcessed(),getNextOrdinal());
+				if (e != NEEDS_RENEW && e.getType() != ResourcePoolEvent.RP_GRANT) {
+					ResPoolEvent defer = new ResPoolEvent(getId(),ResourcePoolEvent.RP_DEFER,getTimeProcessed(),getNextOrdinal());
+					if (earliestGrant != Event.NOT_TIME_OPTIMIZED) {
+						defer.setTimeOptimization(earliestGrant);
+					}
 					raiseResponse(defer, e);
 					ent.setValue(NEEDS_RENEW);//Clear out the old event
+					if (recorder != null) {
+						recorder.deferred();
+					}
 				}
 			}
 		}
+		
+		if (recorder != null) {
+			if (steps != null) {
+				updateLimit(getWindowEnd());
+			}
+			recorder.advance(getWindowEnd(), limit, granted, waitingCount());
+			statistics.add(recorder);
+		}
 	}
 
+	/**
+	 * Returns the earliest time after this window at which a unit can be released or the capacity can change,
+	 * or NOT_TIME_OPTIMIZED if that is not known.
+	 */
+	private long earliestGrant() {
+		if (granted < limit) {
+			//Free units could go to a later request that is better ranked or needs fewer units at any time
+			return Event.NOT_TIME_OPTIMIZED;
+		}
+		long toReturn = steps == null ? Long.MAX_VALUE : limitUntil;
+		for(Iterator<Map.Entry<String,Event>> iter = this.m_iterator(); iter.hasNext();) {
+			Map.Entry<String,Event> ent = iter.next();
+			if (ent.getValue().getType() == ResourcePoolEvent.RP_GRANT) {
+				long release = releases[this.m_handle(ent.getKey())];
+				if (release == Event.NOT_TIME_OPTIMIZED) {
+					return Event.NOT_TIME_OPTIMIZED;
+				}
+				toReturn = Math.min(toReturn, release);
+			}
+		}
+		return toReturn > getWindowEnd() && toReturn != Long.MAX_VALUE ? toReturn : Event.NOT_TIME_OPTIMIZED;
+	}
+	
 	@Override
 	public void initiate(BasicInfo info) {
+		if (schedule != null) {
+			steps = schedule.compile(info.getTimeTranslator());
+		}
+		if (!policy.isFifo()) {
+			HashMap<String,Integer> p = new HashMap<>();
+			for (String dep : info.getDependencies()) {
+				int priority = info.getPriority(dep);
+				if (priority != 0) {
+					p.put(dep, priority);
+				}
+			}
+			priorities = p.isEmpty() ? Collections.emptyMap() : p;
+		}
 	}
 	
 }
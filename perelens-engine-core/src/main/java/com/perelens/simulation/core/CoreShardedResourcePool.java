@@ -0,0 +1,493 @@
+/**
+ *
+ */
+package com.perelens.simulation.core;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.perelens.engine.api.ConfigKey;
+import com.perelens.engine.api.Event;
+import com.perelens.engine.api.EventFilter;
+import com.perelens.engine.api.EventGenerator;
+import com.perelens.engine.api.ResponderResources;
+import com.perelens.engine.core.CoreEngine;
+import com.perelens.engine.utils.Utils;
+import com.perelens.simulation.api.BasicInfo;
+import com.perelens.simulation.api.RandomGenerator;
+import com.perelens.simulation.api.ResourcePool;
+import com.perelens.simulation.api.TimeTranslator;
+import com.perelens.simulation.events.ResourcePoolEvent;
+
+/**
+ * Copyright 2020-2025 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS"
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing
+   permissions and limitations under the License
+
+   ResourcePool that splits its capacity over several shards so the requests of a large number of functions are handled by
+   several responders in parallel instead of funnelling through one.
+   The pool is added to a CoreSimulationBuilder under one id like any other ResourcePool.  When a Simulation is created the
+   builder replaces it with one CoreResourcePool per shard, with ids of the form id#shard, and functions using the pool are
+   given the id of their shard in place of the pool id by FunctionInfo.getResourcePools().  Settings a function keeps by
+   pool id, like the units RandomFailureFunction requests, are translated to the shard id with FunctionInfo.getResourcePoolId().
+   Functions are assigned to shards in contiguous blocks of id order sized in proportion to the base limit of each shard,
+   so functions sharing an id prefix, like the servers of one region, share a shard.
+
+   Floating units model shared crews that are sent to the regions that need them.  Time is split into rebalance periods and
+   at the start of each period the floating units are divided between the shards in proportion to the units requested from
+   each shard during the previous period.  A period starts with the first time window whose last time unit falls inside it,
+   and its division is computed once from counts that were final when the previous window ended, so the result does not
+   depend on the order the shards run in.  Units granted by a shard that loses floating units stay granted until returned.
+
+ * @author Steve Branda
+ */
+public class CoreShardedResourcePool implements ResourcePool {
+
+	public static enum CONFIG_KEYS implements ConfigKey{
+		CRP_SHARD_LIMITS,
+		CRP_FLOATING,
+		CRP_REBALANCE_PERIOD,
+		CRP_POLICY;
+	}
+
+	private final String id;
+	private final int[] shardLimits;
+	private final int floating;
+	private final long rebalancePeriod;
+	private final GrantPolicy policy;
+
+	private CoreResourcePool[] shards;
+
+	/**
+	 * Initializes a pool with a fixed limit for each shard.
+	 *
+	 * @param id
+	 * @param shardLimits - Number of resources each shard can grant
+	 */
+	public CoreShardedResourcePool(String id, int[] shardLimits) {
+		this(id,shardLimits,0,1);
+	}
+
+	/**
+	 * Initializes a pool that moves floating units between its shards every rebalance period.
+	 *
+	 * @param id
+	 * @param shardLimits - Number of resources each shard can always grant
+	 * @param floating - Number of resources divided between the shards at the start of each rebalance period
+	 * @param rebalancePeriod - Number of time units between rebalances
+	 */
+	public CoreShardedResourcePool(String id, int[] shardLimits, int floating, long rebalancePeriod) {
+		this(id,shardLimits,floating,rebalancePeriod,GrantPolicy.fifo());
+	}
+
+	/**
+	 * Initializes a pool with rebalancing whose shards grant waiting requests in the order decided by the passed policy.
+	 *
+	 * @param id
+	 * @param shardLimits - Number of resources each shard can always grant
+	 * @param floating - Number of resources divided between the shards at the start of each rebalance period
+	 * @param rebalancePeriod - Number of time units between rebalances
+	 * @param policy
+	 */
+	public CoreShardedResourcePool(String id, int[] shardLimits, int floating, long rebalancePeriod, GrantPolicy policy) {
+		Utils.checkId(id);
+		Utils.checkNull(shardLimits);
+		Utils.checkNull(policy);
+		Utils.checkArgNotNegative(floating);
+		Utils.checkArgStrictlyPositive(rebalancePeriod);
+		if (shardLimits.length == 0) {
+			throw new IllegalArgumentException(SimMsgs.mustBeStrictlyPositive(shardLimits.length));
+		}
+		for (int limit : shardLimits) {
+			if (limit < 1) {
+				throw new IllegalArgumentException(SimMsgs.mustBeStrictlyPositive(limit));
+			}
+		}
+		this.id = id;
+		this.shardLimits = shardLimits.clone();
+		this.floating = floating;
+		this.rebalancePeriod = rebalancePeriod;
+		this.policy = policy;
+	}
+
+	@Override
+	public String getId() {
+		return id;
+	}
+
+	public int getShardCount() {
+		return shardLimits.length;
+	}
+
+	/**
+	 * Returns the id of the responder that serves the passed shard in a Simulation
+	 *
+	 * @param shard
+	 * @return
+	 */
+	public String getShardId(int shard) {
+		if (shard < 0 || shard >= shardLimits.length) {
+			throw new IllegalArgumentException(SimMsgs.valueMustBeBetween(0, shardLimits.length - 1, shard));
+		}
+		return id + '#' + shard;
+	}
+
+	/**
+	 * Returns the id of the shard each of the passed functions is assigned to.
+	 * Functions are split into contiguous blocks of id order sized in proportion to the base limit of each shard.
+	 *
+	 * @param functionIds
+	 * @return
+	 */
+	Map<String,String> getShardAssignments(Set<String> functionIds){
+		String[] sorted = new TreeSet<>(functionIds).toArray(new String[functionIds.size()]);
+		long total = 0;
+		for (int limit : shardLimits) {
+			total += limit;
+		}
+
+		HashMap<String,String> toReturn = new HashMap<>(sorted.length * 2);
+		long cumulative = 0;
+		int start = 0;
+		for (int s = 0; s < shardLimits.length; s++) {
+			cumulative += shardLimits[s];
+			int end = (int)(sorted.length * cumulative / total);
+			String shardId = getShardId(s);
+			for (int i = start; i < end; i++) {
+				toReturn.put(sorted[i], shardId);
+			}
+			start = end;
+		}
+		return toReturn;
+	}
+
+	/**
+	 * Replaces the ids of sharded pools in the passed set with the ids of the shards the function is assigned to
+	 *
+	 * @param pools - ids of the pools used by the function, modified in place
+	 * @param functionId
+	 * @param shardRoutes - shard assignments of each sharded pool by pool id
+	 * @return
+	 */
+	static Set<String> routePools(Set<String> pools, String functionId, Map<String,Map<String,String>> shardRoutes){
+		if (!shardRoutes.isEmpty()) {
+			for (String pool : pools.toArray(new String[pools.size()])) {
+				Map<String,String> routes = shardRoutes.get(pool);
+				if (routes != null) {
+					pools.remove(pool);
+					pools.add(routes.get(functionId));
+				}
+			}
+		}
+		return pools;
+	}
+
+	/**
+	 * Returns the id of the shard the function is assigned to if pool is a sharded pool, otherwise returns pool
+	 *
+	 * @param pool
+	 * @param functionId
+	 * @param shardRoutes - shard assignments of each sharded pool by pool id
+	 * @return
+	 */
+	static String routePool(String pool, String functionId, Map<String,Map<String,String>> shardRoutes) {
+		Map<String,String> routes = shardRoutes.get(pool);
+		if (routes != null) {
+			String shardId = routes.get(functionId);
+			if (shardId != null) {
+				return shardId;
+			}
+		}
+		return pool;
+	}
+
+	/**
+	 * Returns the shards created by initiate() which take the place of this pool in a Simulation
+	 *
+	 * @return
+	 */
+	ResourcePool[] getShards() {
+		if (shards == null) {
+			throw new IllegalStateException(SimMsgs.badState());
+		}
+		return shards;
+	}
+
+	/**
+	 * Registers the shards created by initiate() with the engine in place of this pool
+	 *
+	 * @param engine
+	 * @param routes - shard assignments returned by getShardAssignments()
+	 */
+	void registerShards(CoreEngine engine, Map<String,String> routes) {
+		HashMap<String,Integer> counts = new HashMap<>();
+		for (String shardId : routes.values()) {
+			counts.merge(shardId, 1, Integer::sum);
+		}
+		for (ResourcePool shard : getShards()) {
+			engine.registerResponder(shard);
+			engine.reserveSubscriptions(shard.getId(), counts.getOrDefault(shard.getId(), 0), 0);
+		}
+	}
+
+	@Override
+	public void initiate(BasicInfo info) {
+		Map<String,String> assignments = getShardAssignments(info.getDependencies());
+		HashMap<String,Set<String>> shardDeps = new HashMap<>();
+		for (Map.Entry<String,String> e : assignments.entrySet()) {
+			shardDeps.computeIfAbsent(e.getValue(), (k) -> new TreeSet<>()).add(e.getKey());
+		}
+
+		Balancer balancer = floating == 0 ? null : new Balancer(shardLimits,floating,rebalancePeriod);
+		shards = new CoreResourcePool[shardLimits.length];
+		for (int s = 0; s < shards.length; s++) {
+			String shardId = getShardId(s);
+			if (balancer == null) {
+				shards[s] = new CoreResourcePool(shardId,shardLimits[s],policy.copy());
+			}else {
+				shards[s] = new Shard(shardId,balancer.getLimit(s),shardLimits[s] + floating,policy.copy(),balancer,s);
+			}
+			Set<String> deps = shardDeps.getOrDefault(shardId, Collections.emptySet());
+			shards[s].initiate(new ShardInfo(info, Collections.unmodifiableSet(deps)));
+		}
+	}
+
+	@Override
+	public EventFilter getEventFilter() {
+		return (e) -> false;
+	}
+
+	@Override
+	public void consume(long timeWindow, ResponderResources resources) {
+		throw new IllegalStateException(SimMsgs.shardedPoolNotExpanded(id));
+	}
+
+	@Override
+	public EventGenerator copy() {
+		return new CoreShardedResourcePool(id,shardLimits,floating,rebalancePeriod,policy.copy());
+	}
+
+	@Override
+	public Map<ConfigKey, String> getConfiguration() {
+		Map<ConfigKey, String> toReturn = new HashMap<>();
+		toReturn.put(EventGenerator.CONFIG_KEYS.EG_ID, id);
+		StringBuilder limits = new StringBuilder();
+		for (int limit : shardLimits) {
+			if (limits.length() > 0) {
+				limits.append(',');
+			}
+			limits.append(limit);
+		}
+		toReturn.put(CONFIG_KEYS.CRP_SHARD_LIMITS, limits.toString());
+		if (floating > 0) {
+			toReturn.put(CONFIG_KEYS.CRP_FLOATING, Integer.toString(floating));
+			toReturn.put(CONFIG_KEYS.CRP_REBALANCE_PERIOD, Long.toString(rebalancePeriod));
+		}
+		if (!policy.isFifo()) {
+			toReturn.put(CONFIG_KEYS.CRP_POLICY, policy.getSetup());
+		}
+		return toReturn;
+	}
+
+	/**
+	 * Divides the floating units between the shards of one Simulation.
+	 * Each shard only writes the request counts in its own slots, and counts are only read by the rebalance of the following
+	 * period, which runs in a later time window than any write to them.
+	 */
+	static final class Balancer{
+
+		private final int[] base;
+		private final int floating;
+		private final long period;
+		private final int[] limits;
+		private long limitsPeriod = Long.MIN_VALUE;
+
+		//Units requested from each shard, two slots per shard so one period can be counted while the one before it is read
+		private final long[] requested;
+		private final long[] requestedPeriod;
+
+		Balancer(int[] base, int floating, long period){
+			this.base = base;
+			this.floating = floating;
+			this.period = period;
+			this.limits = new int[base.length];
+			this.requested = new long[base.length * 2];
+			this.requestedPeriod = new long[base.length * 2];
+			Arrays.fill(requestedPeriod, Long.MIN_VALUE);
+			rebalance(0);
+		}
+
+		private Balancer(Balancer toCopy){
+			this.base = toCopy.base;
+			this.floating = toCopy.floating;
+			this.period = toCopy.period;
+			this.limits = toCopy.limits.clone();
+			this.limitsPeriod = toCopy.limitsPeriod;
+			this.requested = toCopy.requested.clone();
+			this.requestedPeriod = toCopy.requestedPeriod.clone();
+		}
+
+		/**
+		 * Returns a Balancer with the same limits and request counts that shares no state with this one
+		 */
+		synchronized Balancer copy() {
+			return new Balancer(this);
+		}
+
+		long getPeriod(long windowEnd) {
+			//A window belongs to the period its last time unit falls in
+			return Math.max(windowEnd - 1, 0) / period;
+		}
+
+		synchronized int getLimit(int shard) {
+			return limits[shard];
+		}
+
+		/**
+		 * Brings the limits up to date for the passed period and starts counting the shard's requests for it
+		 */
+		synchronized int sync(int shard, long p) {
+			if (limitsPeriod < p) {
+				rebalance(p);
+			}
+			int slot = shard * 2 + (int)(p & 1);
+			requested[slot] = 0;
+			requestedPeriod[slot] = p;
+			return limits[shard];
+		}
+
+		void record(int shard, long p, int units) {
+			requested[shard * 2 + (int)(p & 1)] += units;
+		}
+
+		private void rebalance(long p) {
+			int n = base.length;
+			long[] demand = new long[n];
+			long total = 0;
+			for (int s = 0; s < n; s++) {
+				int slot = s * 2 + (int)((p - 1) & 1);
+				if (requestedPeriod[slot] == p - 1) {
+					demand[s] = requested[slot];
+					total += demand[s];
+				}
+			}
+
+			System.arraycopy(base, 0, limits, 0, n);
+			if (total == 0) {
+				for (int u = 0; u < floating; u++) {
+					limits[u % n]++;
+				}
+			}else {
+				//Largest remainder, ties go to the lowest shard
+				long[] remainder = new long[n];
+				int given = 0;
+				for (int s = 0; s < n; s++) {
+					long share = floating * demand[s];
+					limits[s] += (int)(share / total);
+					given += (int)(share / total);
+					remainder[s] = share % total;
+				}
+				for (; given < floating; given++) {
+					int best = 0;
+					for (int s = 1; s < n; s++) {
+						if (remainder[s] > remainder[best]) {
+							best = s;
+						}
+					}
+					limits[best]++;
+					remainder[best] = -1;
+				}
+			}
+			limitsPeriod = p;
+		}
+	}
+
+	/**
+	 * CoreResourcePool that takes its limit from a Balancer at the start of each rebalance period.
+	 * The shards created by one initiate() share a Balancer, while a copy of a Shard gets a copy of the Balancer so it cannot
+	 * change the limits of the Simulation it was copied from.
+	 */
+	static final class Shard extends CoreResourcePool{
+
+		private final Balancer balancer;
+		private final int index;
+		private long period = -1;
+
+		Shard(String id, int limit, int capacity, GrantPolicy policy, Balancer balancer, int index) {
+			super(id, limit, capacity, policy);
+			this.balancer = balancer;
+			this.index = index;
+		}
+
+		@Override
+		protected void preProcess() {
+			long p = balancer.getPeriod(getWindowEnd());
+			if (p != period) {
+				period = p;
+				setLimit(balancer.sync(index, p));
+			}
+		}
+
+		@Override
+		protected void process(Event curEvent) {
+			if (curEvent != null && curEvent.getType() == ResourcePoolEvent.RP_REQUEST) {
+				balancer.record(index, period, ResPoolEvent.getUnits(curEvent));
+			}
+			super.process(curEvent);
+		}
+
+		@Override
+		public EventGenerator copy() {
+			Shard toReturn = new Shard(getId(),getLimit(),getCapacity(),GrantPolicy.fifo(),balancer.copy(),index);
+			syncInternalState(toReturn);
+			toReturn.period = this.period;
+			return toReturn;
+		}
+	}
+
+	private static class ShardInfo implements BasicInfo{
+
+		private final BasicInfo poolInfo;
+		private final Set<String> dependencies;
+
+		ShardInfo(BasicInfo poolInfo, Set<String> dependencies){
+			this.poolInfo = poolInfo;
+			this.dependencies = dependencies;
+		}
+
+		@Override
+		public Set<String> getDependencies() {
+			return dependencies;
+		}
+
+		@Override
+		public int getPriority(String dependencyId) {
+			return poolInfo.getPriority(dependencyId);
+		}
+
+		@Override
+		public int getResourceUnits(String dependencyId) {
+			return poolInfo.getResourceUnits(dependencyId);
+		}
+
+		@Override
+		public TimeTranslator getTimeTranslator() {
+			return poolInfo.getTimeTranslator();
+		}
+
+		@Override
+		public RandomGenerator getRandomGenerator() {
+			return poolInfo.getRandomGenerator();
+		}
+	}
+}
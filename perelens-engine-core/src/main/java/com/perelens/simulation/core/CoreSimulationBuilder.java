@@ -3,16 +3,24 @@
  */
 package com.perelens.simulation.core;
 
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Formatter;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 import com.perelens.engine.api.ConfigKey;
 import com.perelens.engine.api.EventGenerator;
@@ -44,10 +52,21 @@ import com.perelens.simulation.api.TimeTranslator;
  */
 public class CoreSimulationBuilder implements SimulationBuilder {
 
+	//Models smaller than this are constructed on the calling thread since handing the work
+	//to a thread pool costs more than it saves
+	static final int PARALLEL_BUILD_THRESHOLD = 1024;
+	
+	//Simulation objects are spread over a fixed number of buckets by id so that diff() can skip
+	//the buckets whose contents match without comparing the objects in them
+	static final int HASH_BUCKETS = 256;
+	
 	private TreeMap<String,SimRecord> simObjects = new TreeMap<>();
+	private HashBucket[] hashBuckets = new HashBucket[HASH_BUCKETS];
+	private ArrayList<SimRecord> dirtyRecords = new ArrayList<>();
 	private RandomProvider rProvider;
 	private boolean destroyed = false;
 	private TimeTranslator tTranslator;
+	private boolean inlineGroups = false;
 	
 	private static class SimRecord{
 		
@@ -55,6 +74,15 @@ public class CoreSimulationBuilder implements SimulationBuilder {
 		TreeSet<String> outgoingDeps;
 		TreeSet<String> incomingDeps;
 		
+		//Priorities of the functions using a ResourcePool, only non zero priorities are kept
+		TreeMap<String,Integer> priorities;
+		
+		//Hash state
+		HashBucket bucket;
+		byte[] digest;
+		boolean dirty;
+		Map<ConfigKey,String> hashedConfig = Collections.emptyMap();
+		
 		SimRecord(EventGenerator o){
 			if (o==null) throw new IllegalStateException(SimMsgs.badState());
 			simObject = o;
@@ -78,6 +106,68 @@ public class CoreSimulationBuilder implements SimulationBuilder {
 			}
 			return outgoingDeps;
 		}
+		
+		void setPriority(String id, int priority) {
+			if (priority != 0) {
+				if (priorities == null) {
+					priorities = new TreeMap<String,Integer>();
+				}
+				priorities.put(id, priority);
+			}else if (priorities != null) {
+				priorities.remove(id);
+			}
+		}
+		
+		int getPriority(String id) {
+			if (priorities == null) {
+				return 0;
+			}
+			return priorities.getOrDefault(id, 0);
+		}
+		
+		Map<String,Integer> getPriorities(){
+			if (priorities == null || priorities.isEmpty()) {
+				return Collections.emptyMap();
+			}
+			return Collections.unmodifiableMap(priorities);
+		}
+	}
+	
+	/**
+	 * The digest of a bucket is the sum of the digests of its records, as two 64 bit halves.
+	 * The sum does not depend on the order of the records and is updated in place when one of them is re-hashed.
+	 */
+	private static class HashBucket{
+		
+		ArrayList<SimRecord> records = new ArrayList<>();
+		long high;
+		long low;
+		
+		void add(SimRecord rec) {
+			records.add(rec);
+			rec.bucket = this;
+		}
+		
+		void replace(byte[] oldDigest, byte[] newDigest) {
+			if (oldDigest != null) {
+				high -= getLong(oldDigest, 0);
+				low -= getLong(oldDigest, 8);
+			}
+			high += getLong(newDigest, 0);
+			low += getLong(newDigest, 8);
+		}
+		
+		boolean matches(HashBucket other) {
+			return high == other.high && low == other.low;
+		}
+		
+		private static long getLong(byte[] b, int offset) {
+			long toReturn = 0;
+			for (int i = offset; i < offset + 8; i++) {
+				toReturn = (toReturn << 8) | (b[i] & 0xff);
+			}
+			return toReturn;
+		}
 	}
 	
 	private class FunctionReferenceImpl implements FunctionReference{
@@ -106,6 +196,8 @@ public class CoreSimulationBuilder implements SimulationBuilder {
 			
 			target.getIncomingDeps().add(sourceId);
 			source.getOutgoingDeps().add(targetId);
+			markChanged(target);
+			markChanged(source);
 			
 			return this;
 		}
@@ -124,6 +216,8 @@ public class CoreSimulationBuilder implements SimulationBuilder {
 			
 			target.getIncomingDeps().remove(sourceId);
 			source.getOutgoingDeps().remove(targetId);
+			markChanged(target);
+			markChanged(source);
 			
 			return this;
 		}
@@ -182,6 +276,11 @@ public class CoreSimulationBuilder implements SimulationBuilder {
 
 		@Override
 		public FunctionReference addResourcePool(String poolId) {
+			return addResourcePool(poolId, 0);
+		}
+		
+		@Override
+		public FunctionReference addResourcePool(String poolId, int priority) {
 			SimRecord poolRec = getSimRecord(poolId, ResourcePool.class);
 			
 			String sourceId = getRec().getSimObject().getId();
@@ -189,6 +288,9 @@ public class CoreSimulationBuilder implements SimulationBuilder {
 			
 			getRec().getIncomingDeps().add(targetId);
 			poolRec.getOutgoingDeps().add(sourceId);
+			poolRec.setPriority(sourceId, priority);
+			markChanged(getRec());
+			markChanged(poolRec);
 			
 			return this;
 		}
@@ -202,6 +304,9 @@ public class CoreSimulationBuilder implements SimulationBuilder {
 			
 			getRec().getIncomingDeps().remove(targetId);
 			poolRec.getOutgoingDeps().remove(sourceId);
+			poolRec.setPriority(sourceId, 0);
+			markChanged(getRec());
+			markChanged(poolRec);
 			
 			return this;
 		}
@@ -249,6 +354,18 @@ public class CoreSimulationBuilder implements SimulationBuilder {
 		
 		SimRecord toInsert = new SimRecord(simulationObject);
 		simObjects.put(simulationObject.getId(), toInsert);
+		getHashBucket(simulationObject.getId()).add(toInsert);
+		markChanged(toInsert);
+	}
+	
+	/**
+	 * Queues a record to be re-hashed the next time the model hash is needed.
+	 */
+	private void markChanged(SimRecord rec) {
+		if (!rec.dirty) {
+			rec.dirty = true;
+			dirtyRecords.add(rec);
+		}
 	}
 
 	@Override
@@ -271,6 +388,8 @@ public class CoreSimulationBuilder implements SimulationBuilder {
 		Simulation toReturn = createSimulation(parallelism,false);
 		destroyed = true;
 		simObjects = null;
+		hashBuckets = null;
+		dirtyRecords = null;
 		rProvider = null;
 		return toReturn;
 	}
@@ -286,6 +405,8 @@ public class CoreSimulationBuilder implements SimulationBuilder {
 		SimRecord rec;
 		RandomProvider rp;
 		TimeTranslator tt;
+		ArrayList<DeferredRandomGenerator> deferred;
+		int nextStream = 0;
 		
 		BasicInfoImpl(SimRecord rec, RandomProvider rp, TimeTranslator tt) {
 			super();
@@ -293,10 +414,50 @@ public class CoreSimulationBuilder implements SimulationBuilder {
 			this.rp = rp;
 			this.tt = tt;
 		}
+		
+		/**
+		 * Hand out placeholder generators instead of creating them from the RandomProvider.
+		 * Used when objects are initiated out of id order.
+		 */
+		void deferGenerators() {
+			deferred = new ArrayList<>(2);
+		}
+		
+		/**
+		 * Bind the placeholder generators handed out since deferGenerators() was called.
+		 * Must be called for each object in id order.
+		 */
+		void bindGenerators() {
+			if (deferred != null) {
+				String id = rec.getSimObject().getId();
+				int stream = nextStream - deferred.size();
+				for (DeferredRandomGenerator cur : deferred) {
+					cur.bind(rp.createGenerator(id, stream++));
+				}
+				deferred = null;
+			}
+		}
 
 		@Override
 		public Set<String> getDependencies() {
-			return Collections.unmodifiableSet(rec.getOutgoingDeps());
+			if (rec.outgoingDeps == null) {
+				return Collections.emptySet();
+			}
+			return Collections.unmodifiableSet(rec.outgoingDeps);
+		}
+		
+		@Override
+		public int getPriority(String dependencyId) {
+			return rec.getPriority(dependencyId);
+		}
+
+		@Override
+		public int getResourceUnits(String dependencyId) {
+			SimRecord dep = simObjects.get(dependencyId);
+			if (dep != null && dep.getSimObject() instanceof Function) {
+				return ((Function)dep.getSimObject()).getResourceUnits(rec.getSimObject().getId());
+			}
+			return 1;
 		}
 
 		@Override
@@ -311,24 +472,48 @@ public class CoreSimulationBuilder implements SimulationBuilder {
 		public RandomGenerator getRandomGenerator() {
 			if (rp == null) {
 				throw new IllegalStateException(SimMsgs.randomGeneratorNotSet());
+			}else if (deferred != null) {
+				DeferredRandomGenerator toReturn = new DeferredRandomGenerator();
+				deferred.add(toReturn);
+				nextStream++;
+				return toReturn;
 			}else {
-				return rp.createGenerator();
+				return rp.createGenerator(rec.getSimObject().getId(), nextStream++);
 			}
 		}
 	}
 	
 	private class FunctionInfoImpl extends BasicInfoImpl implements FunctionInfo{
 
-		FunctionInfoImpl(SimRecord rec, RandomProvider rp, TimeTranslator tt) {
+		Map<String,Map<String,String>> shardRoutes;
+
+		FunctionInfoImpl(SimRecord rec, RandomProvider rp, TimeTranslator tt, Map<String,Map<String,String>> shardRoutes) {
 			super(rec, rp, tt);
+			this.shardRoutes = shardRoutes;
 		}
-		
+
 		@Override
 		public Set<String> getResourcePools() {
+			if (rec.incomingDeps == null) {
+				return new HashSet<String>();
+			}
 			FunctionReferenceImpl ref = new FunctionReferenceImpl(rec);
-			return new HashSet<String>(ref.getResourcePools());
+			return CoreShardedResourcePool.routePools(new HashSet<String>(ref.getResourcePools()), rec.getSimObject().getId(), shardRoutes);
+		}
+
+		@Override
+		public String getResourcePoolId(String poolId) {
+			return CoreShardedResourcePool.routePool(poolId, rec.getSimObject().getId(), shardRoutes);
+		}
+
+	}
+	
+	private static EventGenerator getInstance(SimRecord rec, boolean copy) {
+		if (copy) {
+			return rec.getSimObject().copy();
+		}else {
+			return rec.getSimObject();
 		}
-		
 	}
 	
 	private Simulation createSimulation(int parallelism, boolean copy) {
@@ -336,94 +521,493 @@ public class CoreSimulationBuilder implements SimulationBuilder {
 		
 		final RandomProvider rp = rProvider;
 		final TimeTranslator tt = tTranslator;
+		final SimRecord[] records = getRecords();
+		if (rp != null) {
+			rp.startReplication();
+		}
+		final EventGenerator[] instances = new EventGenerator[records.length];
+		final BasicInfoImpl[] infos = new BasicInfoImpl[records.length];
+
+		//Functions using a sharded pool are handed the id of their shard, so the assignments are needed before anything is initiated
+		HashMap<String,Map<String,String>> shardRoutes = new HashMap<>();
+		for (SimRecord rec : records) {
+			if (rec.getSimObject() instanceof CoreShardedResourcePool) {
+				Set<String> functions = rec.outgoingDeps == null ? Collections.emptySet() : rec.outgoingDeps;
+				shardRoutes.put(rec.getSimObject().getId(), ((CoreShardedResourcePool)rec.getSimObject()).getShardAssignments(functions));
+			}
+		}
+
+		for (int i = 0; i < records.length; i++) {
+			EventGenerator cur = records[i].getSimObject();
+			if (cur instanceof Function) {
+				infos[i] = new FunctionInfoImpl(records[i],rp,tt,shardRoutes);
+			}else if (cur instanceof ResourcePool) {
+				infos[i] = new BasicInfoImpl(records[i],rp,tt);
+			}
+		}
 		
-		//First register a COPY of all the objects into the simulation and run their initialization code
-		for (SimRecord rec : simObjects.values()) {
-			if (rec.getSimObject() instanceof Function) {
-				Function f;
-				if (copy) {
-					f = (Function)rec.getSimObject().copy();
-				}else {
-					f = (Function)rec.getSimObject();
+		//First create a COPY of all the objects and run their initialization code
+		if (parallelism > 1 && records.length >= PARALLEL_BUILD_THRESHOLD && rp != null && rp.isOrderIndependent()) {
+			//Generators only depend on the object id so they can be created directly on any thread
+			forEachIndex(parallelism, records.length, (i) -> {
+				instances[i] = initiate(records[i], infos[i], copy);
+			});
+		}else if (parallelism > 1 && records.length >= PARALLEL_BUILD_THRESHOLD) {
+			//RandomGenerators are handed out as placeholders while the objects are initiated out of order
+			//and bound afterwards in id order so every object receives the same seeds as on a single thread
+			for (BasicInfoImpl info : infos) {
+				if (info != null) {
+					info.deferGenerators();
 				}
-				
-				f.initiate(new FunctionInfoImpl(rec,rp,tt));
-				
-				engine.registerEvaluator(f);
-			}else if (rec.getSimObject() instanceof ResourcePool) {
-				ResourcePool pool;
-				if (copy) {
-					pool = (ResourcePool)rec.getSimObject().copy();
-				}else {
-					pool = (ResourcePool)rec.getSimObject();
+			}
+			
+			forEachIndex(parallelism, records.length, (i) -> {
+				instances[i] = initiate(records[i], infos[i], copy);
+			});
+			
+			for (BasicInfoImpl info : infos) {
+				if (info != null) {
+					info.bindGenerators();
 				}
-				pool.initiate(new BasicInfoImpl(rec,rp,tt));
-				
-				engine.registerResponder(pool);
+			}
+		}else {
+			for (int i = 0; i < records.length; i++) {
+				instances[i] = initiate(records[i], infos[i], copy);
 			}
 		}
 		
+		//Register the objects and size their subscription arrays from the known edge sets
+		for (int i = 0; i < records.length; i++) {
+			EventGenerator cur = instances[i];
+			if (cur instanceof CoreShardedResourcePool) {
+				((CoreShardedResourcePool)cur).registerShards(engine, shardRoutes.get(cur.getId()));
+				continue;
+			}else if (cur instanceof Function) {
+				engine.registerEvaluator((Function)cur);
+			}else if (cur instanceof ResourcePool) {
+				engine.registerResponder((ResourcePool)cur);
+			}else {
+				continue;
+			}
+			
+			SimRecord rec = records[i];
+			int dependencies = rec.outgoingDeps == null ? 0 : rec.outgoingDeps.size();
+			int subscribers = rec.incomingDeps == null ? 0 : rec.incomingDeps.size();
+			engine.reserveSubscriptions(cur.getId(), dependencies, subscribers);
+		}
+		
 		//Now create all the subscriptions.
-		for (SimRecord rec : simObjects.values()) {
-			for (String dep : rec.getOutgoingDeps()) {
-				engine.registerSubscription(dep, rec.getSimObject().getId());
+		for (SimRecord rec : records) {
+			if (rec.outgoingDeps != null) {
+				Map<String,String> routes = shardRoutes.get(rec.getSimObject().getId());
+				for (String dep : rec.outgoingDeps) {
+					engine.registerSubscription(dep, routes == null ? rec.getSimObject().getId() : routes.get(dep));
+				}
 			}
 		}
 		
 		return new CoreSimulation(engine);
 	}
 	
-	@Override
-	public String getHashCode() {
+	/**
+	 * Returns the records of the objects to instantiate in id order.
+	 * When groups are inlined the dependencies of each inlined group are left out and the group is replaced by a record
+	 * of its inlined Function, which keeps the subscribers and resource pools of the group but has no dependencies.
+	 */
+	private SimRecord[] getRecords() {
+		SimRecord[] toReturn = simObjects.values().toArray(new SimRecord[simObjects.size()]);
+		if (!inlineGroups) {
+			return toReturn;
+		}
+		
+		HashSet<String> inlined = new HashSet<>();
+		for (int i = 0; i < toReturn.length; i++) {
+			SimRecord rec = toReturn[i];
+			if (rec.getSimObject() instanceof InlinableFunction && rec.outgoingDeps != null && !rec.outgoingDeps.isEmpty()) {
+				Function[] deps = getInlinableDependencies(rec);
+				Function f = deps == null ? null : ((InlinableFunction)rec.getSimObject()).inline(deps);
+				if (f != null) {
+					String id = rec.getSimObject().getId();
+					if (!id.equals(f.getId())) {
+						throw new IllegalStateException(SimMsgs.inlinedIdChanged(id, f.getId()));
+					}
+					SimRecord replacement = new SimRecord(f);
+					replacement.incomingDeps = rec.incomingDeps;
+					replacement.priorities = rec.priorities;
+					toReturn[i] = replacement;
+					inlined.addAll(rec.outgoingDeps);
+				}
+			}
+		}
+		
+		if (inlined.isEmpty()) {
+			return toReturn;
+		}
+		SimRecord[] remaining = new SimRecord[toReturn.length - inlined.size()];
+		int count = 0;
+		for (SimRecord rec : toReturn) {
+			if (!inlined.contains(rec.getSimObject().getId())) {
+				remaining[count++] = rec;
+			}
+		}
+		return remaining;
+	}
+	
+	/**
+	 * Returns the dependencies of the group sorted by id if every one of them is a Function that only the group subscribes to
+	 * and that has no dependencies or resource pools, otherwise returns null
+	 */
+	private Function[] getInlinableDependencies(SimRecord group) {
+		String id = group.getSimObject().getId();
+		Function[] toReturn = new Function[group.outgoingDeps.size()];
+		int count = 0;
+		for (String dep : group.outgoingDeps) {
+			SimRecord rec = simObjects.get(dep);
+			if (!(rec.getSimObject() instanceof Function) || (rec.outgoingDeps != null && !rec.outgoingDeps.isEmpty())) {
+				return null;
+			}
+			if (rec.incomingDeps == null || rec.incomingDeps.size() != 1 || !rec.incomingDeps.contains(id)) {
+				return null;
+			}
+			toReturn[count++] = (Function)rec.getSimObject();
+		}
+		return toReturn;
+	}
+	
+	/**
+	 * Runs the task for every index in [0,count) using a temporary ForkJoinPool of the given parallelism
+	 * when the count is large enough to benefit, otherwise runs them in order on the calling thread.
+	 */
+	static void forEachIndex(int parallelism, int count, IntConsumer task) {
+		if (parallelism > 1 && count >= PARALLEL_BUILD_THRESHOLD) {
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+			try {
+				pool.submit(() -> IntStream.range(0, count).parallel().forEach(task)).join();
+			}finally {
+				pool.shutdown();
+			}
+		}else {
+			for (int i = 0; i < count; i++) {
+				task.accept(i);
+			}
+		}
+	}
+	
+	/**
+	 * Creates an immutable snapshot of the model defined by this builder.
+	 * The snapshot holds a copy of every simulation object as a prototype along with the dependency graph in index form
+	 * so that repeated Simulations can be instantiated from it without re-walking the builder state.
+	 * Later changes to this builder do not affect the returned model.
+	 * 
+	 * Every prototype is initiated once on a throw away copy in order to record how many RandomGenerators it requests.
+	 * Groups are inlined in the snapshot when {@link #setInlineGroups(boolean)} is enabled.
+	 * 
+	 * @return
+	 */
+	public CompiledModel compile() {
 		checkIfDestroyed();
+		
+		SimRecord[] records = getRecords();
+		String[] ids = new String[records.length];
+		for (int i = 0; i < records.length; i++) {
+			ids[i] = records[i].getSimObject().getId();
+		}
+		EventGenerator[] prototypes = new EventGenerator[ids.length];
+		int[][] dependencies = new int[ids.length][];
+		int[][] pools = new int[ids.length][];
+		ArrayList<Map<String,Integer>> priorities = new ArrayList<>(ids.length);
+		
+		int i = 0;
+		for (SimRecord rec : records) {
+			prototypes[i] = rec.getSimObject().copy();
+			dependencies[i] = toIndexes(ids, rec.outgoingDeps, null);
+			pools[i] = toIndexes(ids, rec.incomingDeps, ResourcePool.class);
+			Map<String,Integer> p = rec.getPriorities();
+			priorities.add(p.isEmpty() ? p : Collections.unmodifiableMap(new HashMap<>(p)));
+			i++;
+		}
+		
+		return new CompiledModel(ids, prototypes, dependencies, pools, priorities, rProvider, tTranslator, getHashCode());
+	}
+	
+	private int[] toIndexes(String[] ids, TreeSet<String> toConvert, Class<?> required) {
+		if (toConvert == null) {
+			return CompiledModel.NO_INDEXES;
+		}
+		
+		int[] toReturn = new int[toConvert.size()];
+		int count = 0;
+		for (String cur : toConvert) {
+			if (required == null || required.isInstance(simObjects.get(cur).getSimObject())) {
+				toReturn[count++] = Arrays.binarySearch(ids, cur);
+			}
+		}
+		return count == toReturn.length ? toReturn : Arrays.copyOf(toReturn, count);
+	}
+	
+	private static EventGenerator initiate(SimRecord rec, BasicInfoImpl info, boolean copy) {
+		if (info instanceof FunctionInfoImpl) {
+			Function f = (Function)getInstance(rec, copy);
+			f.initiate((FunctionInfoImpl)info);
+			return f;
+		}else if (info != null) {
+			ResourcePool pool = (ResourcePool)getInstance(rec, copy);
+			pool.initiate(info);
+			return pool;
+		}else {
+			return null;
+		}
+	}
+	
+	private HashBucket getHashBucket(String id) {
+		int index = Math.floorMod(id.hashCode(), HASH_BUCKETS);
+		HashBucket toReturn = hashBuckets[index];
+		if (toReturn == null) {
+			toReturn = new HashBucket();
+			hashBuckets[index] = toReturn;
+		}
+		return toReturn;
+	}
+	
+	private static MessageDigest getMessageDigest() {
 		try {
-			MessageDigest md = MessageDigest.getInstance("MD5");
-			Charset utf8 = Charset.forName("UTF-8");
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(SimMsgs.badState(),e);
+		}
+	}
+	
+	private static void update(MessageDigest md, long toAdd) {
+		for (int shift = 56; shift >= 0; shift -= 8) {
+			md.update((byte)(toAdd >>> shift));
+		}
+	}
+	
+	private static void update(MessageDigest md, String toAdd) {
+		md.update(toAdd.getBytes(StandardCharsets.UTF_8));
+		//Separate the strings so that different splits of the same characters hash differently
+		md.update((byte)0);
+	}
+	
+	/**
+	 * Brings the digest of every changed SimRecord and the HashBuckets containing them up to date.
+	 * Structural changes made through the builder mark records as changed directly.  Objects can also be
+	 * reconfigured through their own setters after they were added, so the configuration of every other
+	 * record is compared to the configuration it was last hashed with.  Only the records that changed are digested.
+	 */
+	private void refreshHashes() {
+		for (SimRecord cur : simObjects.values()) {
+			if (!cur.dirty && !cur.getSimObject().getConfiguration().equals(cur.hashedConfig)) {
+				markChanged(cur);
+			}
+		}
+		
+		if (dirtyRecords.isEmpty()) {
+			return;
+		}
+		
+		MessageDigest md = getMessageDigest();
+		for (SimRecord cur : dirtyRecords) {
+			cur.dirty = false;
 			
-			for (SimRecord cur : simObjects.values()) {
-				EventGenerator ee = cur.getSimObject();
-				//Add all relevant configuration data to the MD5 hash
-				md.update(ee.getId().getBytes(utf8));				
-				TreeMap<String,String> sortedConfig = new TreeMap<>();
-				Map<ConfigKey, String> config = ee.getConfiguration();
-				for (Map.Entry<ConfigKey,String> e : config.entrySet()) {
-					sortedConfig.put(e.getKey().toString(), e.getValue());
-				}
-				
-				for (Map.Entry<String,String> e : sortedConfig.entrySet()) {
-					md.update(e.getKey().getBytes(utf8));
-					md.update(e.getValue().getBytes(utf8));
+			Map<ConfigKey, String> config = cur.getSimObject().getConfiguration();
+			cur.hashedConfig = new HashMap<>(config);
+			
+			//Add all relevant configuration data to the MD5 hash
+			update(md, cur.getSimObject().getId());
+			TreeMap<String,String> sortedConfig = new TreeMap<>();
+			for (Map.Entry<ConfigKey,String> e : config.entrySet()) {
+				sortedConfig.put(e.getKey().toString(), e.getValue());
+			}
+			
+			for (Map.Entry<String,String> e : sortedConfig.entrySet()) {
+				update(md, e.getKey());
+				update(md, e.getValue());
+			}
+			
+			md.update((byte)1);
+			if (cur.outgoingDeps != null) {
+				for (String out1:cur.outgoingDeps) {
+					update(md, out1);
 				}
-				
-				for (String out1:cur.getOutgoingDeps()) {
-					md.update(out1.getBytes(utf8));
+			}
+			
+			md.update((byte)2);
+			if (cur.incomingDeps != null) {
+				for (String in1:cur.incomingDeps) {
+					update(md, in1);
 				}
-				
-				for (String in1:cur.getIncomingDeps()) {
-					md.update(in1.getBytes(utf8));
+			}
+			
+			//Only hashed when present so models without priorities keep the hashes they always had
+			if (cur.priorities != null && !cur.priorities.isEmpty()) {
+				md.update((byte)3);
+				for (Map.Entry<String,Integer> e : cur.priorities.entrySet()) {
+					update(md, e.getKey());
+					update(md, e.getValue().toString());
 				}
-				
 			}
 			
-			if (rProvider != null) {
-				md.update(rProvider.getSetup().getBytes(utf8));
+			byte[] digest = md.digest();
+			cur.bucket.replace(cur.digest, digest);
+			cur.digest = digest;
+		}
+		dirtyRecords.clear();
+	}
+	
+	/**
+	 * Returns the hash of the model.  Every object's configuration is checked for changes, but only
+	 * the objects whose configuration or dependencies changed since the last call are re-hashed.
+	 */
+	@Override
+	public String getHashCode() {
+		checkIfDestroyed();
+		refreshHashes();
+		
+		MessageDigest md = getMessageDigest();
+		for (HashBucket cur : hashBuckets) {
+			if (cur != null) {
+				update(md, cur.high);
+				update(md, cur.low);
+			}else {
+				md.update((byte)0);
 			}
+		}
+		
+		if (rProvider != null) {
+			update(md, rProvider.getSetup());
+		}
+		
+		if (tTranslator != null) {
+			update(md, tTranslator.getSetup());
+		}
+		
+		//Only hashed when enabled so models that do not inline groups keep the hashes they always had
+		if (inlineGroups) {
+			update(md, "inlineGroups");
+		}
+		
+		byte[] d = md.digest();
+		
+		Formatter format = new Formatter();
+		format.format("%02x%02x%02x%02x%02x%02x%02x%02x%02x%02x%02x%02x%02x%02x%02x%02x",
+				d[0],d[1],d[2],d[3],d[4],d[5],d[6],d[7],d[8],d[9],d[10],d[11],d[12],d[13],d[14],d[15]);
+		String toReturn = format.toString();
+		format.close();
+		return toReturn;
+	}
+	
+	/**
+	 * Compares this builder to another and reports the simulation objects that were added, removed or changed,
+	 * along with every object whose output may be affected because it depends on a changed object directly or indirectly.
+	 * Buckets of objects whose hashes match are skipped without comparing the objects they contain.
+	 * 
+	 * @param other the builder to compare this builder to
+	 * @return
+	 */
+	public ModelDiff diff(CoreSimulationBuilder other) {
+		checkIfDestroyed();
+		if (other == null) throw new IllegalArgumentException(SimMsgs.argNotNull());
+		other.checkIfDestroyed();
+		
+		refreshHashes();
+		other.refreshHashes();
+		
+		TreeSet<String> added = new TreeSet<>();
+		TreeSet<String> removed = new TreeSet<>();
+		TreeSet<String> changed = new TreeSet<>();
+		ArrayDeque<String> toVisit = new ArrayDeque<>();
+		
+		for (int i = 0; i < HASH_BUCKETS; i++) {
+			HashBucket mine = hashBuckets[i];
+			HashBucket theirs = other.hashBuckets[i];
 			
-			if (tTranslator != null) {
-				md.update(tTranslator.getSetup().getBytes(utf8));
+			if (mine != null && theirs != null && mine.matches(theirs)) {
+				continue;
 			}
 			
-			byte[] d = md.digest();
+			if (mine != null) {
+				for (SimRecord cur : mine.records) {
+					String id = cur.getSimObject().getId();
+					SimRecord otherRec = other.simObjects.get(id);
+					if (otherRec == null) {
+						added.add(id);
+						toVisit.add(id);
+					}else if (!Arrays.equals(cur.digest, otherRec.digest)) {
+						changed.add(id);
+						if (!sameInputs(cur, other, otherRec)) {
+							toVisit.add(id);
+						}
+					}
+				}
+			}
 			
-			Formatter format = new Formatter();
-			format.format("%02x%02x%02x%02x%02x%02x%02x%02x%02x%02x%02x%02x%02x%02x%02x%02x",
-					d[0],d[1],d[2],d[3],d[4],d[5],d[6],d[7],d[8],d[9],d[10],d[11],d[12],d[13],d[14],d[15]);
-			String toReturn = format.toString();
-			format.close();
-			return toReturn;
-		} catch (NoSuchAlgorithmException e) {
-			throw new IllegalStateException(SimMsgs.badState(),e);
+			if (theirs != null) {
+				for (SimRecord cur : theirs.records) {
+					String id = cur.getSimObject().getId();
+					if (!simObjects.containsKey(id)) {
+						removed.add(id);
+					}
+				}
+			}
+		}
+		
+		//Changes flow from an object to the objects that subscribe to it
+		//Functions are subscribed to by their dependents and the pools they use, pools are subscribed to by the functions using them
+		TreeSet<String> affected = new TreeSet<>();
+		while (!toVisit.isEmpty()) {
+			String cur = toVisit.poll();
+			if (affected.add(cur)) {
+				SimRecord rec = simObjects.get(cur);
+				if (rec.incomingDeps != null) {
+					toVisit.addAll(rec.incomingDeps);
+				}
+				if (rec.getSimObject() instanceof ResourcePool && rec.outgoingDeps != null) {
+					toVisit.addAll(rec.outgoingDeps);
+				}
+			}
+		}
+		
+		boolean environmentChanged = !Objects.equals(rProvider == null ? null : rProvider.getSetup(), other.rProvider == null ? null : other.rProvider.getSetup()) ||
+				!Objects.equals(tTranslator == null ? null : tTranslator.getSetup(), other.tTranslator == null ? null : other.tTranslator.getSetup()) ||
+				inlineGroups != other.inlineGroups;
+		
+		return new ModelDiff(added, removed, changed, affected, environmentChanged);
+	}
+	
+	/**
+	 * Returns true if the two records have the same configuration, dependencies, priorities and resource pools.
+	 * Records can differ only in the objects subscribed to them, which does not change the events they produce.
+	 */
+	private boolean sameInputs(SimRecord mine, CoreSimulationBuilder other, SimRecord theirs) {
+		if (!mine.hashedConfig.equals(theirs.hashedConfig)) {
+			return false;
+		}
+		
+		Set<String> myDeps = mine.outgoingDeps == null ? Collections.emptySet() : mine.outgoingDeps;
+		Set<String> theirDeps = theirs.outgoingDeps == null ? Collections.emptySet() : theirs.outgoingDeps;
+		if (!myDeps.equals(theirDeps)) {
+			return false;
+		}
+		
+		if (!mine.getPriorities().equals(theirs.getPriorities())) {
+			return false;
+		}
+		
+		return getPools(mine).equals(other.getPools(theirs));
+	}
+	
+	private Set<String> getPools(SimRecord rec){
+		if (rec.incomingDeps == null) {
+			return Collections.emptySet();
 		}
+		TreeSet<String> toReturn = new TreeSet<>();
+		for (String cur : rec.incomingDeps) {
+			if (simObjects.get(cur).getSimObject() instanceof ResourcePool) {
+				toReturn.add(cur);
+			}
+		}
+		return toReturn;
 	}
 
 	@Override
@@ -529,4 +1113,20 @@ public class CoreSimulationBuilder implements SimulationBuilder {
 		this.tTranslator = t;
 		return this;
 	}
+	
+	/**
+	 * When enabled every {@link InlinableFunction} whose dependencies are all Functions that nothing else depends on and that
+	 * have no dependencies or resource pools of their own is simulated by the single Function returned by its inline() method.
+	 * The dependencies are not instantiated, so they cannot be subscribed to, but the builder keeps the original structure for
+	 * getFunction(), getConfig() and toString().  Inlining does not reduce the number of failures and repairs sampled, it
+	 * removes the engine overhead of one entry per dependency.  Disabled by default.
+	 * 
+	 * @param inline
+	 * @return
+	 */
+	public CoreSimulationBuilder setInlineGroups(boolean inline) {
+		checkIfDestroyed();
+		this.inlineGroups = inline;
+		return this;
+	}
 }
@@ -3,6 +3,8 @@
  */
 package com.perelens.simulation.core;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
@@ -35,15 +37,25 @@ import com.perelens.simulation.events.ResourcePoolEvent;
    Given this information the ResourcePool can return a time optimized GRANT event that tells the requester the time cycle at which the resource can be used.
    This eliminates a lot of processing overhead of the ResourcePool and improves performance by around 20% in some scenarios.
    
+   With a {@link GrantPolicy} other than FIFO a request that finds every resource in use is held instead of being handed the
+   earliest release time straight away.  Each released resource goes to the held request the policy ranks first, once every
+   request that arrived before the release has been seen.  Requests still held at the end of a call are granted before it
+   returns, so the policy orders the requests that compete within a call.
+   
+   A request for several units (see {@link ResPoolEvent#setUnits(int)}) is usable once its last unit is released and holds every unit
+   until then.  Under a non-FIFO policy held requests are granted strictly in rank order, so a large request at the head of the heap is
+   never overtaken by smaller ones.  The pool grants every request as soon as it arrives only while its limit covers the units all of
+   its dependencies report through {@link BasicInfo#getResourceUnits(String)} at once, which is worked out in initiate().
+   
  * @author Steve Branda 
  */
 public class CoreTimeOptimizedResourcePool extends TimePlusEventQueue implements ResourcePool{
 
 
-	private static final EventFilter EXCLUSIVE_FILTER = new EventFilter() {
+	private final EventFilter exclusiveFilter = new EventFilter() {
 		@Override
 		public boolean filter(Event event) {
-			return event.getType() instanceof ResourcePoolEvent;
+			return event.getType() instanceof ResourcePoolEvent && ResPoolEvent.isFor(event, getId());
 		}
 	};
 	
@@ -51,10 +63,25 @@ public class CoreTimeOptimizedResourcePool extends TimePlusEventQueue implements
 	private int limit;
 	private long ordinal = 1;
 	private int dependencyCount = 0;
+	private int maxUnits = 1;
+	//Units requested at once by all the dependencies together, the pool is never contended if the limit covers it
+	private long demand = 0;
 	private final double scaleFactor;
+	private final GrantPolicy policy;
+	private Map<String,Integer> priorities = Collections.emptyMap();
+	private PoolStatistics statistics;
+	private PoolStatistics.Recorder recorder;
+	
+	//Requests waiting for a resource when the policy is not FIFO, indexed by their slot in held
+	private IndexedRequestHeap waiting;
+	private Event[] held;
+	private int[] freeSlots;
+	private int freeCount = 0;
+	private int slotCount = 0;
 	
 	public static enum CONFIG_KEYS implements ConfigKey{
-		CRP_LIMIT;
+		CRP_LIMIT,
+		CRP_POLICY;
 	}
 	
 	/**
@@ -78,9 +105,28 @@ public class CoreTimeOptimizedResourcePool extends TimePlusEventQueue implements
 	 * @param scaleFactor - double value between 0.0 and 1.0
 	 */
 	public CoreTimeOptimizedResourcePool(String id, int limit, double scaleFactor) {
+		this(id,limit,scaleFactor,GrantPolicy.fifo());
+	}
+	
+	/**
+	 * Initializes a ResourcePool with a customized scaleFactor that grants contended resources in the order decided by the passed policy.
+	 * 
+	 * @param id
+	 * @param limit	- Number of total resources to grant before requests start to queue up
+	 * @param scaleFactor - double value between 0.0 and 1.0
+	 * @param policy
+	 */
+	public CoreTimeOptimizedResourcePool(String id, int limit, double scaleFactor, GrantPolicy policy) {
 		Utils.checkId(id);
 		Utils.checkPercentage(scaleFactor);
+		Utils.checkNull(policy);
 		this.id = id;
+		this.policy = policy;
+		if (!policy.isFifo()) {
+			waiting = new IndexedRequestHeap();
+			held = new Event[4];
+			freeSlots = new int[4];
+		}
 		
 		if (limit < 1) {
 			throw new IllegalArgumentException(SimMsgs.mustBeStrictlyPositive(limit));
@@ -93,7 +139,7 @@ public class CoreTimeOptimizedResourcePool extends TimePlusEventQueue implements
 	
 	@Override
 	public EventFilter getEventFilter() {
-		return EXCLUSIVE_FILTER;
+		return exclusiveFilter;
 	}
 	
 	@Override
@@ -107,10 +153,26 @@ public class CoreTimeOptimizedResourcePool extends TimePlusEventQueue implements
 
 	@Override
 	public EventGenerator copy() {
-		var tr = new CoreTimeOptimizedResourcePool(id,limit);
+		var tr = new CoreTimeOptimizedResourcePool(id,limit,scaleFactor,policy.copy());
+		if (statistics != null) {
+			tr.setStatistics(statistics);
+		}
 		return tr;
 	}
 	
+	/**
+	 * Turns on collection of utilisation and queueing statistics into the passed collector, which is shared by every copy of this pool.
+	 * The busy time of a grant and the time it waits are known when the grant is made, since the request says up front how long it needs,
+	 * and are counted as the windows they fall in are simulated.
+	 * 
+	 * @param statistics
+	 */
+	public void setStatistics(PoolStatistics statistics) {
+		Utils.checkNull(statistics);
+		this.statistics = statistics;
+		this.recorder = new PoolStatistics.Recorder();
+	}
+	
 	//EventCutOffTime is the earliest time an out of order request could come in a future method call
 	//It will be safe to process any requests with a time before EventCutOffTime
 	private long eventCutOffTime = Long.MAX_VALUE;
@@ -141,6 +203,9 @@ public class CoreTimeOptimizedResourcePool extends TimePlusEventQueue implements
 			if (e.getType() == ResourcePoolEvent.RP_REQUEST) {
 				long curTime = e.getTime();
 				
+				//Resources released by now go to the held requests first
+				grantHeld(curTime, resources);
+				
 				//Clear out any expired time records
 				for (long nextAvail = this.tc_peek(); nextAvail > -1 && nextAvail <= curTime; nextAvail = this.tc_peek()) {
 					this.tc_dequeue(); 
@@ -150,8 +215,17 @@ public class CoreTimeOptimizedResourcePool extends TimePlusEventQueue implements
 				if (timeNeeded == Event.NOT_TIME_OPTIMIZED){
 					throw new IllegalStateException(SimMsgs.eventNotTimeOptimized(e));
 				}
+				int units = ResPoolEvent.getUnits(e);
+				if (units > limit) {
+					throw new IllegalStateException(SimMsgs.tooManyUnits(units, limit));
+				}
+				if (units > maxUnits) {
+					//The requester did not report its units through BasicInfo.getResourceUnits(), so assume any dependency could ask for as many
+					maxUnits = units;
+					demand = Math.max(demand, (long)dependencyCount * units);
+				}
 
-				if (limit >= dependencyCount) {
+				if (limit >= demand) {
 					//Don't need to worry about queuing due to capacity being large enough that the pool isn't contended
 					grantResourceRequest(e,curTime,timeNeeded,resources);
 				}else{
@@ -186,7 +260,7 @@ public class CoreTimeOptimizedResourcePool extends TimePlusEventQueue implements
 					}else if (curTime < eventCutOffTime) {
 						//Can safely process any event that occurs before the cut off time
 						grantResourceRequest(e,curTime,timeNeeded,resources);
-					}else if (this.tc_size() < limit * scaleFactor) {
+					}else if (this.tc_size() + units <= limit * scaleFactor) {
 						//Unsafely process events up to the limit specified by the scale factor
 						grantResourceRequest(e,curTime,timeNeeded,resources);
 					}else {
@@ -204,31 +278,106 @@ public class CoreTimeOptimizedResourcePool extends TimePlusEventQueue implements
 			if (this.tc_size() > limit) {
 				throw new IllegalStateException(SimMsgs.badState());
 			}
-		}	
+		}
+		
+		grantHeld(Long.MAX_VALUE, resources);
+		
+		if (recorder != null) {
+			recorder.observed(timeWindow, limit);
+			statistics.add(recorder);
+		}
 	}
 	
 	private void grantResourceRequest(Event inResponseTo, long curTime, long timeNeeded, ResponderResources resources) {
+		int units = ResPoolEvent.getUnits(inResponseTo);
+		if (waiting != null && (waiting.size() > 0 || this.tc_size() + units > limit)) {
+			//Hold the request until enough resources are released, a better ranked request may still arrive before then
+			int slot = hold(inResponseTo);
+			grantHeld(curTime, resources);
+			if (held[slot] == inResponseTo) {
+				long earliest = this.tc_peek() + timeNeeded;
+				if (earliest < eventCutOffTime) {
+					eventCutOffTime = earliest;
+				}
+			}
+			return;
+		}
+		
+		//Take the earliest releases until enough resources are free, the request is usable when the last of them is released
 		long timeWhenUsable = curTime;
-		if (this.tc_size() == limit) {
-			//There are no unused resources so get the earliest resource availability
+		for (int free = limit - this.tc_size(); free < units; free++) {
 			timeWhenUsable = tc_dequeue();
 		}
-		
+		grant(inResponseTo, curTime, timeWhenUsable, timeNeeded, resources);
+	}
+	
+	private int hold(Event request) {
+		int slot;
+		if (freeCount > 0) {
+			slot = freeSlots[--freeCount];
+		}else {
+			if (slotCount == held.length) {
+				held = Arrays.copyOf(held, held.length + held.length);
+				freeSlots = new int[held.length];
+			}
+			slot = slotCount++;
+		}
+		held[slot] = request;
+		waiting.offer(slot, policy.rank(request, priorities.getOrDefault(request.getProducerId(), 0)));
+		return slot;
+	}
+	
+	/**
+	 * Hands every resource released at or before the passed time to the best ranked held request
+	 */
+	private void grantHeld(long time, ResponderResources resources) {
+		while (waiting != null && waiting.size() > 0) {
+			int slot = waiting.peek();
+			Event request = held[slot];
+			long timeWhenUsable = request.getTime();
+			for (int free = limit - this.tc_size(); free < ResPoolEvent.getUnits(request); free++) {
+				if (this.tc_peek() > time) {
+					//Resources released so far stay free for the head of the heap
+					return;
+				}
+				timeWhenUsable = Math.max(timeWhenUsable, tc_dequeue());
+			}
+			policy.granted(waiting.getRank(slot));
+			waiting.poll();
+			held[slot] = null;
+			freeSlots[freeCount++] = slot;
+			grant(request, request.getTime(), timeWhenUsable, request.getTimeOptimization(), resources);
+		}
+	}
+	
+	private void grant(Event inResponseTo, long curTime, long timeWhenUsable, long timeNeeded, ResponderResources resources) {
 		long timeToAdd = timeWhenUsable + timeNeeded;
+		int units = ResPoolEvent.getUnits(inResponseTo);
 		ResPoolEvent eg = new ResPoolEvent(getId(),ResourcePoolEvent.RP_GRANT,curTime,getNextOrdinal(),ResourcePoolEvent.GRANT_RESPONSE_TYPES);
 		eg.setTimeOptimization(timeWhenUsable);
+		if (units != 1) {
+			eg.setUnits(units);
+		}
 		resources.raiseResponse(eg, inResponseTo);
+		if (recorder != null) {
+			recorder.booked(inResponseTo.getTime(), timeWhenUsable, units, timeNeeded);
+		}
 		if (timeToAdd < eventCutOffTime) {
 			eventCutOffTime = timeToAdd;
 		}
 
-		this.tc_enqueue(timeToAdd);
+		for (int i = 0; i < units; i++) {
+			this.tc_enqueue(timeToAdd);
+		}
 	}
 
 	@Override
 	public Map<ConfigKey, String> getConfiguration() {
 		Map<ConfigKey, String> toReturn = new HashMap<>();
 		toReturn.put(CONFIG_KEYS.CRP_LIMIT, Integer.toString(limit));
+		if (!policy.isFifo()) {
+			toReturn.put(CONFIG_KEYS.CRP_POLICY, policy.getSetup());
+		}
 		return toReturn;
 	}
 
@@ -244,5 +393,25 @@ public class CoreTimeOptimizedResourcePool extends TimePlusEventQueue implements
 	@Override
 	public void initiate(BasicInfo info) {
 		dependencyCount = info.getDependencies().size();
+		maxUnits = 1;
+		demand = 0;
+		for (String dep : info.getDependencies()) {
+			int units = info.getResourceUnits(dep);
+			if (units > limit) {
+				throw new IllegalStateException(SimMsgs.tooManyUnits(units, limit));
+			}
+			maxUnits = Math.max(maxUnits, units);
+			demand += units;
+		}
+		if (waiting != null) {
+			HashMap<String,Integer> p = new HashMap<>();
+			for (String dep : info.getDependencies()) {
+				int priority = info.getPriority(dep);
+				if (priority != 0) {
+					p.put(dep, priority);
+				}
+			}
+			priorities = p.isEmpty() ? Collections.emptyMap() : p;
+		}
 	}
 }
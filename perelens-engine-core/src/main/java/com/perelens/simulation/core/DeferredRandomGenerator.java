@@ -0,0 +1,104 @@
+/**
+ *
+ */
+package com.perelens.simulation.core;
+
+import com.perelens.simulation.api.RandomGenerator;
+
+/**
+ * Copyright 2020-2023 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS"
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing
+   permissions and limitations under the License
+
+ * Placeholder RandomGenerator handed out while simulation objects are initiated in parallel.
+ * The placeholder is bound to a generator from the RandomProvider after initiation completes
+ * so that generators are created in the same order as they would be on a single thread.
+ * Until then it delegates to a generator that rejects every call, so once bound each call
+ * is a single forward to the real generator.  Holders that can replace their reference,
+ * like BufferedSampler, use resolve() to drop the placeholder altogether.
+ *
+ * @author Steve Branda
+ *
+ */
+final class DeferredRandomGenerator implements RandomGenerator {
+
+	private static final long serialVersionUID = 4188513622245063591L;
+
+	private static final RandomGenerator UNBOUND = new RandomGenerator() {
+
+		private static final long serialVersionUID = -2381190236335742071L;
+
+		@Override
+		public double nextDouble() {
+			throw new IllegalStateException(SimMsgs.randomGeneratorNotBound());
+		}
+
+		@Override
+		public void nextDoubles(double[] out, int n) {
+			throw new IllegalStateException(SimMsgs.randomGeneratorNotBound());
+		}
+
+		@Override
+		public String getRandomSetup() {
+			throw new IllegalStateException(SimMsgs.randomGeneratorNotBound());
+		}
+
+		@Override
+		public RandomGenerator copy() {
+			throw new IllegalStateException(SimMsgs.randomGeneratorNotBound());
+		}
+	};
+
+	private RandomGenerator target = UNBOUND;
+
+	void bind(RandomGenerator toBind) {
+		if (target != UNBOUND) {
+			throw new IllegalStateException(SimMsgs.alreadyInitialized());
+		}
+		target = toBind;
+	}
+
+	/**
+	 * Returns the generator the placeholder is bound to, or the generator passed in if it is not a placeholder.
+	 * 
+	 * @param gen
+	 * @return
+	 */
+	static RandomGenerator resolve(RandomGenerator gen) {
+		if (gen instanceof DeferredRandomGenerator) {
+			RandomGenerator target = ((DeferredRandomGenerator)gen).target;
+			if (target == UNBOUND) {
+				throw new IllegalStateException(SimMsgs.randomGeneratorNotBound());
+			}
+			return target;
+		}
+		return gen;
+	}
+
+	@Override
+	public double nextDouble() {
+		return target.nextDouble();
+	}
+
+	@Override
+	public void nextDoubles(double[] out, int n) {
+		target.nextDoubles(out, n);
+	}
+
+	@Override
+	public String getRandomSetup() {
+		return target.getRandomSetup();
+	}
+
+	@Override
+	public RandomGenerator copy() {
+		//Once bound the placeholder is no longer needed so copies go straight to the target
+		return target.copy();
+	}
+}
@@ -0,0 +1,166 @@
+/**
+ * 
+ */
+package com.perelens.simulation.core;
+
+import java.util.Arrays;
+
+import com.perelens.simulation.api.Distribution;
+
+/**
+ * Copyright 2020-2023 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" 
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
+   permissions and limitations under the License
+
+   
+   Piecewise linear inverse CDF through a table of (value, cumulative probability) points.
+   A bucket index over equal slices of [0,1] points each uniform at the first segment its slice overlaps, so sampling
+   costs one lookup plus a short walk that averages about one step, no matter how many points there are.
+   Instances are immutable and shared by copy().
+   
+ * @author Steve Branda
+ *
+ */
+final class EmpiricalDistribution implements Distribution {
+
+	private static final long serialVersionUID = 4170870145521787414L;
+
+	protected static final String SETUP_NAME = "Empirical;";
+	
+	private final double[] values;
+	private final double[] probabilities;
+	
+	private transient int[] buckets;
+	
+	/**
+	 * Builds the distribution from raw observations by placing the sorted observations at equally spaced cumulative probabilities.
+	 * 
+	 * @param observations
+	 * @return
+	 */
+	static EmpiricalDistribution fromObservations(double[] observations) {
+		if (observations.length < 2) {
+			throw new IllegalArgumentException(SimMsgs.tooFewPoints(2, observations.length));
+		}
+		double[] sorted = observations.clone();
+		Arrays.sort(sorted);
+		double[] probs = new double[sorted.length];
+		int last = sorted.length - 1;
+		for (int i = 1; i < last; i++) {
+			probs[i] = (double)i / last;
+		}
+		probs[last] = 1.0;
+		return new EmpiricalDistribution(sorted, probs);
+	}
+	
+	/**
+	 * @param values - non decreasing values of the inverse CDF
+	 * @param probabilities - strictly increasing cumulative probabilities of the values, starting at 0 and ending at 1
+	 */
+	EmpiricalDistribution(double[] values, double[] probabilities) {
+		if (values.length != probabilities.length) {
+			throw new IllegalArgumentException(SimMsgs.lengthsDiffer(values.length, probabilities.length));
+		}
+		if (values.length < 2) {
+			throw new IllegalArgumentException(SimMsgs.tooFewPoints(2, values.length));
+		}
+		if (probabilities[0] != 0.0 || probabilities[probabilities.length - 1] != 1.0) {
+			throw new IllegalArgumentException(SimMsgs.badCumulativeProbabilities());
+		}
+		for (int i = 0; i < values.length; i++) {
+			if (!Double.isFinite(values[i])) {
+				throw new IllegalArgumentException(SimMsgs.badSetupArgument(Double.toString(values[i])));
+			}
+			if (i > 0 && (values[i] < values[i - 1] || !(probabilities[i] > probabilities[i - 1]))) {
+				throw new IllegalArgumentException(SimMsgs.badCumulativeProbabilities());
+			}
+		}
+		
+		this.values = values.clone();
+		this.probabilities = probabilities.clone();
+		buildBuckets();
+	}
+	
+	private void buildBuckets() {
+		int segments = values.length - 1;
+		int[] b = new int[segments];
+		int seg = 0;
+		for (int k = 0; k < segments; k++) {
+			double lower = (double)k / segments;
+			while (seg < segments - 1 && probabilities[seg + 1] <= lower) {
+				seg++;
+			}
+			b[k] = seg;
+		}
+		buckets = b;
+	}
+	
+	protected Object readResolve() {
+		buildBuckets();
+		return this;
+	}
+	
+	@Override
+	public double sample(double uniformRandom) {
+		int segments = buckets.length;
+		int k = (int)(uniformRandom * segments);
+		if (k >= segments) {
+			k = segments - 1;
+		}else if (k < 0) {
+			k = 0;
+		}
+		
+		int seg = buckets[k];
+		while (seg < segments - 1 && probabilities[seg + 1] <= uniformRandom) {
+			seg++;
+		}
+		
+		double p0 = probabilities[seg];
+		double v0 = values[seg];
+		double t = (uniformRandom - p0) / (probabilities[seg + 1] - p0);
+		return v0 + t * (values[seg + 1] - v0);
+	}
+
+	@Override
+	public String getSetup() {
+		StringBuilder toReturn = new StringBuilder(SETUP_NAME);
+		toReturn.append(values.length);
+		for (double v : values) {
+			toReturn.append(';').append(v);
+		}
+		for (double p : probabilities) {
+			toReturn.append(';').append(p);
+		}
+		return toReturn.toString();
+	}
+	
+	static EmpiricalDistribution parse(String setup) {
+		String[] pieces = setup.split("\\;");
+		try {
+			int n = Integer.parseInt(pieces[1]);
+			if (n < 0 || pieces.length != 2 + 2 * n) {
+				throw new IllegalArgumentException(SimMsgs.badSetupArgument(setup));
+			}
+			double[] v = new double[n];
+			double[] p = new double[n];
+			for (int i = 0; i < n; i++) {
+				v[i] = Double.parseDouble(pieces[2 + i]);
+				p[i] = Double.parseDouble(pieces[2 + n + i]);
+			}
+			return new EmpiricalDistribution(v, p);
+		}catch(NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			throw new IllegalArgumentException(SimMsgs.badSetupArgument(setup), e);
+		}
+	}
+
+	@Override
+	public Distribution copy() {
+		return this; //Tables are built once and never modified, so the same object is shared
+	}
+}
@@ -0,0 +1,242 @@
+/**
+ * 
+ */
+package com.perelens.simulation.core;
+
+import java.util.HashMap;
+
+import com.perelens.engine.api.Event;
+
+/**
+ * Copyright 2020-2025 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" 
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
+   permissions and limitations under the License
+
+   Decides the order in which a ResourcePool grants the requests that are waiting for a resource.
+   Each waiting request is given a rank when it arrives and the request with the lowest rank is granted first.
+   Requests with equal ranks are granted in the order they arrived, so a policy that ranks everything the same is FIFO.
+   
+   Policies can keep state, such as the virtual time of weighted fair queuing, so every ResourcePool needs its own
+   instance and copies it along with the rest of its state.
+   
+ * @author Steve Branda
+ *
+ */
+public interface GrantPolicy {
+
+	/**
+	 * Returns the rank of a request that has to wait for a resource.
+	 * 
+	 * @param request - the RP_REQUEST event
+	 * @param priority - priority of the requester, see {@link com.perelens.simulation.api.BasicInfo#getPriority(String)}
+	 * @return
+	 */
+	public double rank(Event request, int priority);
+	
+	/**
+	 * Called when the request with the passed rank is granted a resource.
+	 * 
+	 * @param rank
+	 */
+	public default void granted(double rank) {
+	}
+	
+	/**
+	 * Returns a String that identifies the policy in the configuration of the ResourcePool.
+	 * 
+	 * @return
+	 */
+	public String getSetup();
+	
+	/**
+	 * Returns a copy of this policy including its state.
+	 * 
+	 * @return
+	 */
+	public GrantPolicy copy();
+	
+	/**
+	 * Returns true if the policy grants requests in the order they arrived.
+	 * 
+	 * @return
+	 */
+	public default boolean isFifo() {
+		return false;
+	}
+	
+	/**
+	 * Grants requests in the order they arrived, which is what the ResourcePools have always done.
+	 * 
+	 * @return
+	 */
+	public static GrantPolicy fifo() {
+		return Fifo.INSTANCE;
+	}
+	
+	/**
+	 * Grants requests from the requesters with the highest priority first.
+	 * 
+	 * @return
+	 */
+	public static GrantPolicy priority() {
+		return Priority.INSTANCE;
+	}
+	
+	/**
+	 * Grants the requests with the shortest repair first, using the time optimization of the request as the repair duration.
+	 * Requests that are not time optimized are granted after all the ones that are.
+	 * 
+	 * @return
+	 */
+	public static GrantPolicy shortestRepairFirst() {
+		return ShortestRepairFirst.INSTANCE;
+	}
+	
+	/**
+	 * Self clocked weighted fair queuing.  Every requester is weighted by its priority, with priorities below 1 counting as 1,
+	 * and the cost of a request is its time optimization or 1 if it is not time optimized.
+	 * Over time each requester receives a share of the resources in proportion to its weight without any requester starving.
+	 * 
+	 * @return
+	 */
+	public static GrantPolicy weightedFair() {
+		return new WeightedFair();
+	}
+	
+	static final class Fifo implements GrantPolicy{
+		
+		static final Fifo INSTANCE = new Fifo();
+
+		@Override
+		public double rank(Event request, int priority) {
+			return 0;
+		}
+
+		@Override
+		public String getSetup() {
+			return "FIFO";
+		}
+
+		@Override
+		public GrantPolicy copy() {
+			return this;
+		}
+		
+		@Override
+		public boolean isFifo() {
+			return true;
+		}
+	}
+	
+	static final class Priority implements GrantPolicy{
+		
+		static final Priority INSTANCE = new Priority();
+
+		@Override
+		public double rank(Event request, int priority) {
+			return -(double)priority;
+		}
+
+		@Override
+		public String getSetup() {
+			return "Priority";
+		}
+
+		@Override
+		public GrantPolicy copy() {
+			return this;
+		}
+	}
+	
+	static final class ShortestRepairFirst implements GrantPolicy{
+		
+		static final ShortestRepairFirst INSTANCE = new ShortestRepairFirst();
+
+		@Override
+		public double rank(Event request, int priority) {
+			long duration = request.getTimeOptimization();
+			return duration == Event.NOT_TIME_OPTIMIZED ? Double.POSITIVE_INFINITY : duration;
+		}
+
+		@Override
+		public String getSetup() {
+			return "ShortestRepairFirst";
+		}
+
+		@Override
+		public GrantPolicy copy() {
+			return this;
+		}
+	}
+	
+	static final class WeightedFair implements GrantPolicy{
+		
+		private double virtualTime = 0;
+		private HashMap<String,Requester> requesters = new HashMap<>();
+
+		@Override
+		public double rank(Event request, int priority) {
+			long duration = request.getTimeOptimization();
+			double cost = duration > 0 ? duration : 1;
+			Requester r = requesters.get(request.getProducerId());
+			if (r == null) {
+				r = new Requester(virtualTime);
+				requesters.put(request.getProducerId(), r);
+			}
+			if (r.priority != priority) {
+				r.priority = priority;
+				r.weight = Math.max(priority, 1);
+			}
+			r.lastFinish = Math.max(virtualTime, r.lastFinish) + cost / r.weight;
+			return r.lastFinish;
+		}
+		
+		@Override
+		public void granted(double rank) {
+			if (rank > virtualTime) {
+				virtualTime = rank;
+			}
+		}
+
+		@Override
+		public String getSetup() {
+			return "WeightedFair";
+		}
+
+		@Override
+		public GrantPolicy copy() {
+			WeightedFair toReturn = new WeightedFair();
+			toReturn.virtualTime = virtualTime;
+			for (var e : requesters.entrySet()) {
+				toReturn.requesters.put(e.getKey(), e.getValue().copy());
+			}
+			return toReturn;
+		}
+		
+		/**
+		 * Finish time and cached weight of one requester, kept in one object so rank() does a single lookup and no boxing
+		 */
+		private static final class Requester{
+			private double lastFinish;
+			private int priority = 1;
+			private double weight = 1.0;
+			
+			private Requester(double lastFinish) {
+				this.lastFinish = lastFinish;
+			}
+			
+			private Requester copy() {
+				Requester toReturn = new Requester(lastFinish);
+				toReturn.priority = priority;
+				toReturn.weight = weight;
+				return toReturn;
+			}
+		}
+	}
+}
@@ -0,0 +1,174 @@
+/**
+ * 
+ */
+package com.perelens.simulation.core;
+
+import java.util.Arrays;
+
+/**
+ * Copyright 2020-2025 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" 
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
+   permissions and limitations under the License
+
+   Min heap of request handles ordered by rank, with ties going to the handle that was offered first.
+   Handles are small non negative ints, such as the handles of a RequestQueueAndMap, and the position of every handle
+   is tracked so a waiting request can be found or removed without searching the heap.
+   
+ * @author Steve Branda
+ *
+ */
+final class IndexedRequestHeap {
+
+	private final static int[] EMPTY_INTS = new int[0];
+	private final static long[] EMPTY_LONGS = new long[0];
+	private final static double[] EMPTY_DOUBLES = new double[0];
+	
+	private int[] heap = EMPTY_INTS;
+	private int[] positions = EMPTY_INTS;	//position + 1 of each handle in the heap, 0 if it is not in the heap
+	private double[] ranks = EMPTY_DOUBLES;
+	private long[] sequence = EMPTY_LONGS;
+	private int size = 0;
+	private long nextSequence = 0;
+	
+	void offer(int handle, double rank) {
+		if (handle < 0 || Double.isNaN(rank)) {
+			throw new IllegalArgumentException(SimMsgs.badState());
+		}
+		if (handle >= positions.length) {
+			int length = Math.max(8, positions.length + positions.length);
+			while (length <= handle) {
+				length += length;
+			}
+			positions = Arrays.copyOf(positions, length);
+			ranks = Arrays.copyOf(ranks, length);
+			sequence = Arrays.copyOf(sequence, length);
+		}
+		if (positions[handle] != 0) {
+			throw new IllegalStateException(SimMsgs.badState());
+		}
+		if (size == heap.length) {
+			heap = Arrays.copyOf(heap, Math.max(8, heap.length + heap.length));
+		}
+		
+		ranks[handle] = rank;
+		sequence[handle] = nextSequence++;
+		heap[size] = handle;
+		positions[handle] = ++size;
+		siftUp(size - 1);
+	}
+	
+	int peek() {
+		if (size == 0) {
+			throw new IllegalStateException(SimMsgs.badState());
+		}
+		return heap[0];
+	}
+	
+	double getRank(int handle) {
+		if (!contains(handle)) {
+			throw new IllegalStateException(SimMsgs.badState());
+		}
+		return ranks[handle];
+	}
+	
+	int poll() {
+		int toReturn = peek();
+		removeAt(0);
+		return toReturn;
+	}
+	
+	boolean remove(int handle) {
+		if (!contains(handle)) {
+			return false;
+		}
+		removeAt(positions[handle] - 1);
+		return true;
+	}
+	
+	boolean contains(int handle) {
+		return handle >= 0 && handle < positions.length && positions[handle] != 0;
+	}
+	
+	int size() {
+		return size;
+	}
+	
+	IndexedRequestHeap copy() {
+		IndexedRequestHeap toReturn = new IndexedRequestHeap();
+		if (heap != EMPTY_INTS) {
+			toReturn.heap = Arrays.copyOf(heap, heap.length);
+		}
+		if (positions != EMPTY_INTS) {
+			toReturn.positions = Arrays.copyOf(positions, positions.length);
+			toReturn.ranks = Arrays.copyOf(ranks, ranks.length);
+			toReturn.sequence = Arrays.copyOf(sequence, sequence.length);
+		}
+		toReturn.size = size;
+		toReturn.nextSequence = nextSequence;
+		return toReturn;
+	}
+	
+	private void removeAt(int index) {
+		int removed = heap[index];
+		positions[removed] = 0;
+		size--;
+		if (index < size) {
+			int last = heap[size];
+			heap[index] = last;
+			positions[last] = index + 1;
+			siftDown(index);
+			if (heap[index] == last) {
+				siftUp(index);
+			}
+		}
+	}
+	
+	private boolean less(int h1, int h2) {
+		int c = Double.compare(ranks[h1], ranks[h2]);
+		return c < 0 || (c == 0 && sequence[h1] < sequence[h2]);
+	}
+	
+	private void siftUp(int index) {
+		int handle = heap[index];
+		while (index > 0) {
+			int parent = (index - 1) >>> 1;
+			int p = heap[parent];
+			if (!less(handle, p)) {
+				break;
+			}
+			heap[index] = p;
+			positions[p] = index + 1;
+			index = parent;
+		}
+		heap[index] = handle;
+		positions[handle] = index + 1;
+	}
+	
+	private void siftDown(int index) {
+		int handle = heap[index];
+		int half = size >>> 1;
+		while (index < half) {
+			int child = 2 * index + 1;
+			int c = heap[child];
+			int right = child + 1;
+			if (right < size && less(heap[right], c)) {
+				child = right;
+				c = heap[child];
+			}
+			if (!less(c, handle)) {
+				break;
+			}
+			heap[index] = c;
+			positions[c] = index + 1;
+			index = child;
+		}
+		heap[index] = handle;
+		positions[handle] = index + 1;
+	}
+}
@@ -0,0 +1,40 @@
+/**
+ * 
+ */
+package com.perelens.simulation.core;
+
+import com.perelens.simulation.api.Function;
+
+/**
+ * Copyright 2020-2025 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" 
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
+   permissions and limitations under the License
+
+   A Function that can stand in for itself and all of its dependencies, see {@link CoreSimulationBuilder#setInlineGroups(boolean)}.
+   
+   The builder only offers a group for inlining when every dependency is a Function that has no dependencies or resource pools
+   of its own and no other Function depends on it, so the events of the dependencies are only ever seen by this Function.
+   The replacement generates statistically equivalent events for the dependencies itself instead of receiving them through the
+   Simulation Engine.  It is expected to simulate each dependency in turn inside one generator rather than aggregate them.
+   
+ * @author Steve Branda
+ *
+ */
+public interface InlinableFunction extends Function {
+
+	/**
+	 * Returns a Function with the same id that produces the same events as this Function would with the passed dependencies,
+	 * without subscribing to them, or null if the dependencies cannot be inlined.
+	 * Neither this Function nor the dependencies may be changed.
+	 * 
+	 * @param dependencies - the Functions this Function depends on, sorted by id
+	 * @return
+	 */
+	public Function inline(Function[] dependencies);
+}
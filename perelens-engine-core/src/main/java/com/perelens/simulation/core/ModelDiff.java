@@ -0,0 +1,104 @@
+/**
+ *
+ */
+package com.perelens.simulation.core;
+
+import java.util.Collections;
+import java.util.SortedSet;
+
+/**
+ * Copyright 2020-2023 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS"
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing
+   permissions and limitations under the License
+
+   Result of {@link CoreSimulationBuilder#diff(CoreSimulationBuilder)}.
+   Simulation objects that are not in the affected set produce the same events in both models provided they receive the same RandomGenerators.
+   Note that a RandomProvider that hands out seeds in creation order, such as RanluxProvider, gives different seeds to every object
+   that comes after an added or removed object in id order.  Order independent providers (see {@link com.perelens.simulation.api.RandomProvider#isOrderIndependent()})
+   keep the generators of unaffected objects the same.
+
+ * @author Steve Branda
+ *
+ */
+public final class ModelDiff {
+
+	private final SortedSet<String> added;
+	private final SortedSet<String> removed;
+	private final SortedSet<String> changed;
+	private final SortedSet<String> affected;
+	private final boolean environmentChanged;
+
+	ModelDiff(SortedSet<String> added, SortedSet<String> removed, SortedSet<String> changed, SortedSet<String> affected, boolean environmentChanged) {
+		this.added = Collections.unmodifiableSortedSet(added);
+		this.removed = Collections.unmodifiableSortedSet(removed);
+		this.changed = Collections.unmodifiableSortedSet(changed);
+		this.affected = Collections.unmodifiableSortedSet(affected);
+		this.environmentChanged = environmentChanged;
+	}
+
+	/**
+	 * Ids of the simulation objects that exist only in the builder diff() was called on.
+	 *
+	 * @return
+	 */
+	public SortedSet<String> getAdded() {
+		return added;
+	}
+
+	/**
+	 * Ids of the simulation objects that exist only in the builder passed to diff().
+	 *
+	 * @return
+	 */
+	public SortedSet<String> getRemoved() {
+		return removed;
+	}
+
+	/**
+	 * Ids of the simulation objects that exist in both builders but differ in configuration or dependencies.
+	 *
+	 * @return
+	 */
+	public SortedSet<String> getChanged() {
+		return changed;
+	}
+
+	/**
+	 * Ids of the added and changed simulation objects plus every object that subscribes to them directly or indirectly.
+	 *
+	 * @return
+	 */
+	public SortedSet<String> getAffected() {
+		return affected;
+	}
+
+	/**
+	 * Returns true if the RandomProvider or TimeTranslator setup differs between the builders, in which case every object may be affected.
+	 *
+	 * @return
+	 */
+	public boolean isEnvironmentChanged() {
+		return environmentChanged;
+	}
+
+	/**
+	 * Returns true if the two builders describe the same model.
+	 *
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return added.isEmpty() && removed.isEmpty() && changed.isEmpty() && !environmentChanged;
+	}
+
+	@Override
+	public String toString() {
+		return "ModelDiff [added=" + added + ", removed=" + removed + ", changed=" + changed + ", affected=" + affected
+				+ ", environmentChanged=" + environmentChanged + "]";
+	}
+}
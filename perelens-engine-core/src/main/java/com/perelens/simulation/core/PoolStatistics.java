@@ -0,0 +1,458 @@
+/**
+ *
+ */
+package com.perelens.simulation.core;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+
+import com.perelens.engine.utils.Utils;
+
+/**
+ * Copyright 2020-2025 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS"
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing
+   permissions and limitations under the License
+
+   Collects utilisation and queueing statistics from a ResourcePool, see {@link CoreResourcePool#setStatistics(PoolStatistics)}
+   and {@link CoreTimeOptimizedResourcePool#setStatistics(PoolStatistics)}.
+
+   Every copy of the pool made by a SimulationBuilder shares the collector, so it adds up the statistics of every Simulation
+   created from the pool.  Each pool keeps its own primitive accumulators while it simulates a time window and adds them to the
+   collector once at the end of the window.
+   
+   Wait times are counted in a fixed size histogram whose buckets are exact below 8 and span an eighth of a power of two above it,
+   so the collector uses the same memory however long it runs.  Callers that need every wait time can pass a sink to the constructor.
+
+   The implementation is thread safe but is not intended to be called under contention.
+   Calls to the data retrieving methods should not be called while the Simulation Engine is simulating a time window.
+   They should be called after the simulation is complete or between windows invocations.
+
+ * @author Steve Branda
+ *
+ */
+public class PoolStatistics {
+
+	private final Object mutex = new Object();
+
+	private long observedTime = 0;
+	private long limitTime = 0;
+	private long busyUnitTime = 0;
+	private long queueTime = 0;
+	private int maxQueueLength = 0;
+	private long grants = 0;
+	private long deferrals = 0;
+	private long[] waitCounts = new long[BUCKETS];
+	private long waitSum = 0;
+	private long maxWait = 0;
+	private final LongConsumer waitSink;
+	
+	//Values below SUB_BUCKETS have their own bucket, larger values share a bucket with the values that have the same 4 leading bits
+	private static final int SUB_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	private static final int BUCKETS = SUB_BUCKETS + (Long.SIZE - 1 - SUB_BITS) * SUB_BUCKETS;
+	
+	public PoolStatistics() {
+		this(null);
+	}
+	
+	/**
+	 * Creates a collector that also passes every wait time to the sink, for example DistributionSamples::addData.
+	 * The sink is called under the collector's lock at the end of each time window with the wait times of the grants
+	 * made in that window, in the order they were made.
+	 * 
+	 * @param waitSink
+	 */
+	public PoolStatistics(LongConsumer waitSink) {
+		this.waitSink = waitSink;
+	}
+
+	private <T> T execute(Supplier<T> code) {
+		synchronized(mutex){
+			return code.get();
+		}
+	}
+
+	/**
+	 * Returns the simulated time covered by the statistics, summed over every Simulation that fed the collector
+	 *
+	 * @return
+	 */
+	public long getObservedTime() {
+		return execute(()->{
+			return observedTime;
+		});
+	}
+
+	/**
+	 * Returns the time weighted fraction of the pool's units that were granted
+	 *
+	 * @return
+	 */
+	public double getUtilisation() {
+		return execute(()->{
+			return limitTime == 0 ? 0 : busyUnitTime/(double)limitTime;
+		});
+	}
+
+	/**
+	 * Returns the time weighted average number of requests waiting for a grant
+	 *
+	 * @return
+	 */
+	public double getMeanQueueLength() {
+		return execute(()->{
+			return observedTime == 0 ? 0 : queueTime/(double)observedTime;
+		});
+	}
+
+	public int getMaxQueueLength() {
+		return execute(()->{
+			return maxQueueLength;
+		});
+	}
+
+	public long getGrants() {
+		return execute(()->{
+			return grants;
+		});
+	}
+
+	public long getDeferrals() {
+		return execute(()->{
+			return deferrals;
+		});
+	}
+
+	/**
+	 * Returns the mean time granted requests waited between arriving at the pool and their grant becoming usable
+	 *
+	 * @return
+	 */
+	public double getMeanWaitTime() {
+		return execute(()->{
+			return grants == 0 ? 0 : waitSum/(double)grants;
+		});
+	}
+	
+	public long getMaxWaitTime() {
+		return execute(()->{
+			return maxWait;
+		});
+	}
+	
+	/**
+	 * Returns the smallest wait time such that at least the passed fraction of grants waited no longer than it,
+	 * to within the width of a histogram bucket.  The upper end of the bucket is returned, capped at the longest wait seen.
+	 * 
+	 * @param percentile in the range [0,1]
+	 * @return
+	 */
+	public long getWaitTimePercentile(double percentile) {
+		Utils.checkPercentage(percentile);
+		return execute(()->{
+			long target = (long)Math.ceil(percentile * grants);
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += waitCounts[i];
+				if (seen >= target && seen > 0) {
+					return Math.min(maxWait, getBucketStart(i + 1) - 1);
+				}
+			}
+			return 0L;
+		});
+	}
+	
+	/**
+	 * Returns the number of grants in each bucket of the wait time histogram.
+	 * Bucket i counts the wait times from getBucketStart(i) up to but not including getBucketStart(i + 1).
+	 * 
+	 * @return
+	 */
+	public long[] getWaitTimeCounts() {
+		return execute(()->{
+			return Arrays.copyOf(waitCounts, BUCKETS);
+		});
+	}
+	
+	public static int getWaitTimeBuckets() {
+		return BUCKETS;
+	}
+	
+	/**
+	 * Returns the smallest wait time counted in the passed bucket of the histogram
+	 * 
+	 * @param bucket
+	 * @return
+	 */
+	public static long getBucketStart(int bucket) {
+		if (bucket < 0 || bucket > BUCKETS) {
+			throw new IllegalArgumentException(SimMsgs.noSuchBucket(bucket, BUCKETS));
+		}
+		if (bucket == BUCKETS) {
+			return Long.MAX_VALUE;
+		}
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+		long sub = SUB_BUCKETS + (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+		return sub << shift;
+	}
+	
+	static int getBucket(long wait) {
+		if (wait < SUB_BUCKETS) {
+			return (int)wait;
+		}
+		int shift = Long.SIZE - 1 - SUB_BITS - Long.numberOfLeadingZeros(wait);
+		return SUB_BUCKETS + shift * SUB_BUCKETS + (int)(wait >>> shift) - SUB_BUCKETS;
+	}
+
+	void add(Recorder r) {
+		synchronized(mutex) {
+			observedTime += r.observedTime;
+			limitTime += r.limitTime;
+			busyUnitTime += r.busyUnitTime;
+			queueTime += r.queueTime;
+			maxQueueLength = Math.max(maxQueueLength, r.maxQueueLength);
+			deferrals += r.deferrals;
+			grants += r.waitCount;
+			for (int i = 0; i < r.waitCount; i++) {
+				long wait = r.waitTimes[i];
+				waitCounts[getBucket(wait)]++;
+				waitSum += wait;
+				maxWait = Math.max(maxWait, wait);
+				if (waitSink != null) {
+					waitSink.accept(wait);
+				}
+			}
+		}
+		r.clear();
+	}
+
+	/**
+	 * Accumulates the statistics of a single pool between calls to {@link PoolStatistics#add(Recorder)}.
+	 * Not thread safe, it is only called by the pool that owns it.
+	 */
+	static final class Recorder {
+
+		private long lastTime = 0;
+		private long observedTime = 0;
+		private long limitTime = 0;
+		private long busyUnitTime = 0;
+		private long queueTime = 0;
+		private int maxQueueLength = 0;
+		private long deferrals = 0;
+		private long[] waitTimes = new long[16];
+		private int waitCount = 0;
+
+		//Arrival time of each waiting request indexed by its handle in the pool
+		private long[] arrivals = new long[16];
+
+		//Min heap of the times when the granted requests of a time optimized pool stop waiting
+		private long[] usable = new long[16];
+		private int usableCount = 0;
+		
+		//Parts of the busy and queued periods booked by a time optimized pool that lie after the time observed so far
+		private Intervals busy = new Intervals();
+		private Intervals queued = new Intervals();
+
+		/**
+		 * Accounts for the time since the last call during which the pool had the passed state
+		 */
+		void advance(long time, int limit, int granted, int queued) {
+			long span = time - lastTime;
+			if (span > 0) {
+				observedTime += span;
+				limitTime += span * limit;
+				busyUnitTime += span * granted;
+				queueTime += span * queued;
+				lastTime = time;
+			}
+			maxQueueLength = Math.max(maxQueueLength, queued);
+		}
+
+		void arrived(int handle, long time) {
+			if (handle >= arrivals.length) {
+				arrivals = Arrays.copyOf(arrivals, Math.max(arrivals.length + arrivals.length, handle + 1));
+			}
+			arrivals[handle] = time;
+		}
+
+		void granted(int handle, long time) {
+			waited(time - arrivals[handle]);
+		}
+
+		void deferred() {
+			deferrals++;
+		}
+
+		/**
+		 * Records a grant of a time optimized pool, which knows up front how long the request waits and holds its units.
+		 * Busy and queue time are only counted up to the time observed so far, the rest is counted as later windows are observed.
+		 */
+		void booked(long arrival, long timeWhenUsable, int units, long timeNeeded) {
+			busyUnitTime += busy.add(timeWhenUsable, timeWhenUsable + timeNeeded, units, lastTime);
+			long wait = timeWhenUsable - arrival;
+			queueTime += queued.add(arrival, timeWhenUsable, 1, lastTime);
+			waited(wait);
+			if (wait > 0) {
+				//The request is in the queue until its grant is usable, drop the requests that stopped waiting before it arrived
+				while (usableCount > 0 && usable[0] <= arrival) {
+					pollUsable();
+				}
+				offerUsable(timeWhenUsable);
+				maxQueueLength = Math.max(maxQueueLength, usableCount);
+			}
+		}
+
+		/**
+		 * Accounts for the time since the last call of a time optimized pool, whose busy and queue time are booked per grant
+		 */
+		void observed(long time, int limit) {
+			long span = time - lastTime;
+			if (span > 0) {
+				observedTime += span;
+				limitTime += span * limit;
+				busyUnitTime += busy.advance(time);
+				queueTime += queued.advance(time);
+				lastTime = time;
+			}
+		}
+
+		private void waited(long wait) {
+			if (waitCount == waitTimes.length) {
+				waitTimes = Arrays.copyOf(waitTimes, waitTimes.length + waitTimes.length);
+			}
+			waitTimes[waitCount++] = wait;
+		}
+
+		private void offerUsable(long time) {
+			if (usableCount == usable.length) {
+				usable = Arrays.copyOf(usable, usable.length + usable.length);
+			}
+			int i = usableCount++;
+			while (i > 0) {
+				int parent = (i - 1) >>> 1;
+				if (usable[parent] <= time) {
+					break;
+				}
+				usable[i] = usable[parent];
+				i = parent;
+			}
+			usable[i] = time;
+		}
+
+		private void pollUsable() {
+			long last = usable[--usableCount];
+			int i = 0;
+			for (int child = 1; child < usableCount; child = i + i + 1) {
+				if (child + 1 < usableCount && usable[child + 1] < usable[child]) {
+					child++;
+				}
+				if (last <= usable[child]) {
+					break;
+				}
+				usable[i] = usable[child];
+				i = child;
+			}
+			usable[i] = last;
+		}
+
+		/**
+		 * Returns a copy of the state the pool needs to carry on recording, statistics that have not been added to a collector yet are not copied
+		 */
+		Recorder copy() {
+			Recorder toReturn = new Recorder();
+			toReturn.lastTime = this.lastTime;
+			toReturn.arrivals = Arrays.copyOf(this.arrivals, this.arrivals.length);
+			toReturn.usable = Arrays.copyOf(this.usable, this.usable.length);
+			toReturn.usableCount = this.usableCount;
+			toReturn.busy = this.busy.copy();
+			toReturn.queued = this.queued.copy();
+			return toReturn;
+		}
+
+		private void clear() {
+			observedTime = 0;
+			limitTime = 0;
+			busyUnitTime = 0;
+			queueTime = 0;
+			maxQueueLength = 0;
+			deferrals = 0;
+			waitCount = 0;
+		}
+	}
+	
+	/**
+	 * Weighted time intervals that are counted as the time they cover is observed.
+	 * Only intervals that extend past the time observed so far are kept, so the size is bounded by the outstanding grants.
+	 */
+	static final class Intervals {
+		
+		private long[] starts = new long[8];
+		private long[] ends = new long[8];
+		private int[] weights = new int[8];
+		private int count = 0;
+		
+		/**
+		 * Adds the interval [start,end) and returns its weighted length before the passed time, which is counted immediately
+		 */
+		long add(long start, long end, int weight, long observedTo) {
+			long toReturn = 0;
+			if (start < observedTo) {
+				toReturn = (Math.min(end, observedTo) - start) * weight;
+				start = observedTo;
+			}
+			if (start < end) {
+				if (count == starts.length) {
+					starts = Arrays.copyOf(starts, count + count);
+					ends = Arrays.copyOf(ends, count + count);
+					weights = Arrays.copyOf(weights, count + count);
+				}
+				starts[count] = start;
+				ends[count] = end;
+				weights[count] = weight;
+				count++;
+			}
+			return toReturn;
+		}
+		
+		/**
+		 * Returns the weighted time covered before the passed time and keeps what is left of each interval after it
+		 */
+		long advance(long time) {
+			long toReturn = 0;
+			int kept = 0;
+			for (int i = 0; i < count; i++) {
+				if (starts[i] < time) {
+					toReturn += (Math.min(ends[i], time) - starts[i]) * weights[i];
+					starts[i] = time;
+				}
+				if (starts[i] < ends[i]) {
+					starts[kept] = starts[i];
+					ends[kept] = ends[i];
+					weights[kept] = weights[i];
+					kept++;
+				}
+			}
+			count = kept;
+			return toReturn;
+		}
+		
+		Intervals copy() {
+			Intervals toReturn = new Intervals();
+			toReturn.starts = Arrays.copyOf(starts, starts.length);
+			toReturn.ends = Arrays.copyOf(ends, ends.length);
+			toReturn.weights = Arrays.copyOf(weights, weights.length);
+			toReturn.count = count;
+			return toReturn;
+		}
+	}
+}
@@ -85,88 +85,165 @@ abstract class RequestQueueAndMap extends AbstractEventResponder{
 		return qCount;
 	}
 	
-	//TODO Upgrade to hashing if necessary
 	//Map implementation
-	private final static Object[] EMPTY_MAP = new Object[0];
-	private Object[] map = EMPTY_MAP;
+	//Requester ids are interned to int handles that index the keys, hashes and values arrays.  An open addressing table
+	//with linear probing maps an id to its handle.  Removing an entry shifts the rest of its probe run back instead of
+	//leaving a tombstone, so lookups stay short no matter how many requests and returns a pool has seen.
+	//Handles freed by a remove are reused by the next put, and iteration walks the handles in order, which keeps the
+	//iteration semantics of the old linear map that the postProcess defer loop relies on.
+	private final static int[] EMPTY_INTS = new int[0];
+	private final static String[] EMPTY_KEYS = new String[0];
+	private final static Event[] EMPTY_VALUES = new Event[0];
+	private final static int MIN_TABLE = 16;
+	
+	private int[] table = EMPTY_INTS;	//handle + 1 of the entry in each slot, 0 if the slot is empty
+	private String[] keys = EMPTY_KEYS;
+	private int[] hashes = EMPTY_INTS;
+	private Event[] values = EMPTY_VALUES;
+	private int[] freeHandles = EMPTY_INTS;
+	private int freeCount = 0;
 	private int mIndex = 0;
 	private int mCount = 0;
 	
-	protected Event m_put(String key, Event value) {
-		Utils.checkNull(key);
-		Utils.checkNull(value);
-		//First try to replace
-		int emptyIndex = -1;
-		for (int i = 0; i < mIndex; i += 2) {
-			Object k = map[i];
-			if (k == null) {
-				emptyIndex = i;
-			}else if (key.equals(k)) {
-				int index = i + 1;
-				Object toReturn = map[index];
-				map[index] = value;
-				return (Event) toReturn;
+	private static int spread(int hash) {
+		int h = hash * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+	
+	private int m_find(String key, int hash) {
+		if (mCount == 0) {
+			return -1;
+		}
+		int mask = table.length - 1;
+		for (int i = hash & mask;; i = (i + 1) & mask) {
+			int handle = table[i] - 1;
+			if (handle < 0) {
+				return -1;
 			}
+			if (hashes[handle] == hash && key.equals(keys[handle])) {
+				return handle;
+			}
+		}
+	}
+	
+	private void m_index(int handle) {
+		int mask = table.length - 1;
+		int i = hashes[handle] & mask;
+		while (table[i] != 0) {
+			i = (i + 1) & mask;
+		}
+		table[i] = handle + 1;
+	}
+	
+	private void m_resize() {
+		int size = MIN_TABLE;
+		while (size < mCount * 2) {
+			size += size;
+		}
+		table = new int[size];
+		for (int h = 0; h < mIndex; h++) {
+			if (values[h] != null) {
+				m_index(h);
+			}
+		}
+	}
+	
+	private int m_allocate() {
+		if (freeCount > 0) {
+			return freeHandles[--freeCount];
+		}
+		if (mIndex == keys.length) {
+			int size = keys.length == 0 ? 8 : keys.length + keys.length;
+			keys = Arrays.copyOf(keys, size);
+			hashes = Arrays.copyOf(hashes, size);
+			values = Arrays.copyOf(values, size);
+			freeHandles = new int[size];
+		}
+		return mIndex++;
+	}
+	
+	private Event m_delete(int handle) {
+		int mask = table.length - 1;
+		int i = hashes[handle] & mask;
+		while (table[i] != handle + 1) {
+			i = (i + 1) & mask;
 		}
 		
-		//Not in the map so insert at the end
-		if (emptyIndex == -1) {
-			//map is full so increase the size
-			if (mIndex == map.length) {
-				if (map.length == 0) {
-					map = new Object[8];
-				}else {
-					Object[] temp = new Object[map.length + map.length];
-					System.arraycopy(map, 0, temp, 0, mIndex);
-					map = temp;
-				}
+		//Backward shift: move later entries of the probe run into the hole unless that would put them before their home slot
+		for (int j = (i + 1) & mask; table[j] != 0; j = (j + 1) & mask) {
+			int home = hashes[table[j] - 1] & mask;
+			if (((j - home) & mask) >= ((j - i) & mask)) {
+				table[i] = table[j];
+				i = j;
 			}
-			
-			map[mIndex] = key;
-			map[mIndex + 1] = value;
-			mIndex += 2;
-		}else {
-			//Insert at the empty Index
-			map[emptyIndex] = key;
-			map[emptyIndex + 1] = value;
 		}
+		table[i] = 0;
 		
+		Event toReturn = values[handle];
+		keys[handle] = null;
+		values[handle] = null;
+		freeHandles[freeCount++] = handle;
+		mCount--;
+		return toReturn;
+	}
+	
+	protected Event m_put(String key, Event value) {
+		Utils.checkNull(key);
+		Utils.checkNull(value);
+		int hash = spread(key.hashCode());
+		int handle = m_find(key, hash);
+		if (handle >= 0) {
+			Event toReturn = values[handle];
+			values[handle] = value;
+			return toReturn;
+		}
+		
+		handle = m_allocate();
+		keys[handle] = key;
+		hashes[handle] = hash;
+		values[handle] = value;
 		mCount++;
 		
+		if (mCount * 2 > table.length) {
+			m_resize();
+		}else {
+			m_index(handle);
+		}
 		return null;
 	}
 	
 	protected Event m_get(String key) {
 		Utils.checkNull(key);
-		for (int i = 0; i < mIndex; i += 2) {
-			Object k = map[i];
-			if (k != null && key.equals(k)) {
-				return (Event) map[i + 1];
-			}
-		}
-		return null;
+		int handle = m_find(key, spread(key.hashCode()));
+		return handle < 0 ? null : values[handle];
 	}
 	
 	protected Event m_remove(String key) {
 		Utils.checkNull(key);
-		for (int i = 0; i < mIndex; i += 2) {
-			Object k = map[i];
-			if (k != null && key.equals(k)) {
-				int index = i + 1;
-				Event toReturn = (Event) map[index];
-				map[i] = null;
-				map[index] = null;
-				mCount--;
-				return toReturn;
-			}
-		}
-		return null;
+		int handle = m_find(key, spread(key.hashCode()));
+		return handle < 0 ? null : m_delete(handle);
 	}
 	
 	protected int m_size() {
 		return mCount;
 	}
 	
+	/**
+	 * Returns the handle of the entry with the passed key, or -1 if there is no such entry.
+	 * A handle stays the same until its entry is removed, after which it can be reused by a later put.
+	 */
+	protected int m_handle(String key) {
+		Utils.checkNull(key);
+		return m_find(key, spread(key.hashCode()));
+	}
+	
+	protected String m_key(int handle) {
+		if (handle < 0 || handle >= mIndex || values[handle] == null) {
+			throw new IllegalStateException(SimMsgs.badState());
+		}
+		return keys[handle];
+	}
+	
 	protected Iterator<Map.Entry<String,Event>> m_iterator(){
 		return new MapIterator();
 	}
@@ -174,27 +251,27 @@ abstract class RequestQueueAndMap extends AbstractEventResponder{
 	private class MapIterator implements Iterator<Map.Entry<String,Event>>,Map.Entry<String,Event>{
 
 		private int visited = 0;
-		private int current = -2;
+		private int current = -1;
 		private int count = mCount;
+		private String key;
 		
 		@Override
 		public String getKey() {
-			return (String) map[current];
+			return key;
 		}
 
 		@Override
 		public Event getValue() {
-			return (Event) map[current + 1];
+			return values[current];
 		}
 
 		@Override
 		public Event setValue(Event value) {
-			Event toReturn = (Event) map[current+1];
-			map[current+1] = value;
 			if (value == null) {
-				map[current] = null;
-				mCount--;
+				return values[current] == null ? null : m_delete(current);
 			}
+			Event toReturn = values[current];
+			values[current] = value;
 			return toReturn;
 		}
 
@@ -205,9 +282,9 @@ abstract class RequestQueueAndMap extends AbstractEventResponder{
 
 		@Override
 		public Entry<String, Event> next() {
-			while(current < mIndex) {
-				current+=2;
-				if (map[current] != null) {
+			while(++current < mIndex) {
+				if (values[current] != null) {
+					key = keys[current];
 					visited++;
 					return this;
 				}
@@ -231,10 +308,20 @@ abstract class RequestQueueAndMap extends AbstractEventResponder{
 		}
 		
 		toSync.mIndex = this.mIndex;
-		if (this.map == EMPTY_MAP) {
-			toSync.map = EMPTY_MAP;
+		toSync.mCount = this.mCount;
+		toSync.freeCount = this.freeCount;
+		if (this.keys == EMPTY_KEYS) {
+			toSync.table = EMPTY_INTS;
+			toSync.keys = EMPTY_KEYS;
+			toSync.hashes = EMPTY_INTS;
+			toSync.values = EMPTY_VALUES;
+			toSync.freeHandles = EMPTY_INTS;
 		}else {
-			toSync.map = Arrays.copyOf(this.map, this.map.length);
+			toSync.table = Arrays.copyOf(this.table, this.table.length);
+			toSync.keys = Arrays.copyOf(this.keys, this.keys.length);
+			toSync.hashes = Arrays.copyOf(this.hashes, this.hashes.length);
+			toSync.values = Arrays.copyOf(this.values, this.values.length);
+			toSync.freeHandles = Arrays.copyOf(this.freeHandles, this.freeHandles.length);
 		}
 	}	
 }
@@ -6,6 +6,7 @@ package com.perelens.simulation.core;
 import java.util.Collection;
 
 import com.perelens.engine.api.AbstractEvent;
+import com.perelens.engine.api.Event;
 import com.perelens.engine.api.EventMagnitude;
 import com.perelens.engine.api.EventType;
 import com.perelens.engine.utils.Utils;
@@ -22,12 +23,18 @@ import com.perelens.simulation.events.ResourcePoolEvent;
    BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
    permissions and limitations under the License
    
+   Requests can ask for more than one unit of a resource and can name the ResourcePool they are meant for.
+   Events that do not name a pool are seen by every pool the producer uses, which is all that is needed when it uses only one.
+   
  * @author Steve Branda
  *
  */
 public final class ResPoolEvent extends AbstractEvent {
 
 	private long timeOpt = -1;
+	private int units = 1;
+	private String pool = null;
+	private long lookahead = 0;
 	
 	public ResPoolEvent(String producerId, ResourcePoolEvent type, long time, long ordinal) {
 		super(producerId, type, time, ordinal);
@@ -55,5 +62,83 @@ public final class ResPoolEvent extends AbstractEvent {
 		}
 		this.timeOpt = timeOptimization;
 	}
+	
+	/**
+	 * Returns the number of resource units requested, granted or returned.
+	 * 
+	 * @return
+	 */
+	public int getUnits() {
+		return units;
+	}
+	
+	public void setUnits(int units) {
+		Utils.checkArgStrictlyPositive(units);
+		this.units = units;
+	}
+	
+	/**
+	 * Returns the id of the ResourcePool this event is meant for, or null if it is meant for every pool that sees it.
+	 * 
+	 * @return
+	 */
+	public String getPool() {
+		return pool;
+	}
+	
+	public void setPool(String poolId) {
+		Utils.checkId(poolId);
+		this.pool = poolId;
+	}
+	
+	/**
+	 * Returns the minimum number of time units between the return of the requested resource and the next request the requester can make.
+	 * Pools such as CoreLookaheadResourcePool use it to know how far ahead they can grant requests without waiting for other requesters.
+	 * 
+	 * @return
+	 */
+	public long getLookahead() {
+		return lookahead;
+	}
+	
+	public void setLookahead(long lookahead) {
+		Utils.checkArgNotNegative(lookahead);
+		this.lookahead = lookahead;
+	}
+	
+	/**
+	 * Returns the lookahead carried by the passed event, which is 0 for events that are not ResPoolEvents.
+	 * 
+	 * @param e
+	 * @return
+	 */
+	public static long getLookahead(Event e) {
+		return e instanceof ResPoolEvent ? ((ResPoolEvent)e).lookahead : 0;
+	}
+	
+	/**
+	 * Returns the number of units carried by the passed event, which is 1 for events that are not ResPoolEvents.
+	 * 
+	 * @param e
+	 * @return
+	 */
+	public static int getUnits(Event e) {
+		return e instanceof ResPoolEvent ? ((ResPoolEvent)e).units : 1;
+	}
+	
+	/**
+	 * Returns true if the passed ResourcePoolEvent is meant for the pool with the passed id.
+	 * 
+	 * @param e
+	 * @param poolId
+	 * @return
+	 */
+	static boolean isFor(Event e, String poolId) {
+		if (e instanceof ResPoolEvent) {
+			String target = ((ResPoolEvent)e).pool;
+			return target == null || target.equals(poolId);
+		}
+		return true;
+	}
 
 }
@@ -0,0 +1,512 @@
+/**
+ *
+ */
+package com.perelens.simulation.core;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Formatter;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import com.perelens.engine.utils.Utils;
+import com.perelens.simulation.api.RandomProvider;
+
+/**
+ * Copyright 2020-2023 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS"
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing
+   permissions and limitations under the License
+
+   Persistent store for the outputs of simulation runs kept in a local directory.
+   A Simulation created from a model with the same hash code and a RandomProvider with the same setup, evaluated to the same time horizon,
+   generates exactly the same events, so the outputs of its consumers can be stored once and read back instead of simulating again.
+   Providers advance their internal state with every Simulation they create, so keys include the replication the provider
+   is at (see RandomProvider.getReplication()) and, for providers that are not order independent such as RanluxProvider,
+   the setup of the next generator the provider would create.
+
+   Each entry is a file of named long and double arrays that is memory mapped when read.  The arrays of a stored entry are
+   read-only views of the mapping and are only copied onto the heap when requested as Java arrays.
+   When the files in the store exceed the disk budget the least recently used entries are deleted.
+
+ * @author Steve Branda
+ *
+ */
+public class ResultStore {
+
+	private static final int MAGIC = 0x50524553;
+	private static final int VERSION = 1;
+	private static final byte LONGS = 0;
+	private static final byte DOUBLES = 1;
+	private static final String SUFFIX = ".res";
+
+	private final Path directory;
+	private final long maxBytes;
+
+	//Size of every entry in least recently used order
+	private final LinkedHashMap<String,Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long totalBytes = 0;
+
+	/**
+	 * Opens the store in the passed directory, creating the directory if needed and picking up the entries already stored there.
+	 *
+	 * @param directory
+	 * @param maxBytes disk budget for all of the entries in the store
+	 */
+	public ResultStore(Path directory, long maxBytes) {
+		Utils.checkNull(directory);
+		Utils.checkArgStrictlyPositive(maxBytes);
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+
+		try {
+			Files.createDirectories(directory);
+
+			//Rebuild the LRU order from the last access time recorded on each file
+			ArrayList<Object[]> existing = new ArrayList<>();
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+				for (Path cur : files) {
+					existing.add(new Object[] {cur, Files.getLastModifiedTime(cur), Files.size(cur)});
+				}
+			}
+			existing.sort((x,y) -> ((FileTime)x[1]).compareTo((FileTime)y[1]));
+
+			for (Object[] cur : existing) {
+				String name = ((Path)cur[0]).getFileName().toString();
+				long size = (Long)cur[2];
+				entries.put(name.substring(0, name.length() - SUFFIX.length()), size);
+				totalBytes += size;
+			}
+
+			evict(null);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Creates the key identifying a run of a model to a time horizon.
+	 * The key reflects the current state of the provider, so a provider that has already created Simulations
+	 * produces a different key than a freshly created one.
+	 *
+	 * @param modelHash value returned by SimulationBuilder.getHashCode() or CompiledModel.getHashCode()
+	 * @param rp RandomProvider the Simulation is created with, may be null if the model does not use random numbers
+	 * @param horizon time the Simulation is evaluated to
+	 * @return
+	 */
+	public static String key(String modelHash, RandomProvider rp, long horizon) {
+		Utils.checkId(modelHash);
+		Utils.checkArgStrictlyPositive(horizon);
+
+		try {
+			MessageDigest md = MessageDigest.getInstance("MD5");
+			md.update(modelHash.getBytes(StandardCharsets.UTF_8));
+			md.update((byte)0);
+			if (rp != null) {
+				md.update(rp.getSetup().getBytes(StandardCharsets.UTF_8));
+				md.update((byte)0);
+				md.update(Long.toString(rp.getReplication()).getBytes(StandardCharsets.UTF_8));
+				if (!rp.isOrderIndependent()) {
+					//The next generator identifies the state the run starts from, copied so the provider is not advanced
+					md.update((byte)0);
+					md.update(rp.copy().createGenerator().getRandomSetup().getBytes(StandardCharsets.UTF_8));
+				}
+			}
+			md.update((byte)0);
+			md.update(Long.toString(horizon).getBytes(StandardCharsets.UTF_8));
+
+			byte[] d = md.digest();
+			Formatter format = new Formatter();
+			for (byte b : d) {
+				format.format("%02x", b);
+			}
+			String toReturn = format.toString();
+			format.close();
+			return toReturn;
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(SimMsgs.badState(),e);
+		}
+	}
+
+	/**
+	 * Returns the results stored under the key or null if there are none.
+	 *
+	 * @param key
+	 * @return
+	 */
+	public synchronized Results get(String key) {
+		Utils.checkId(key);
+		if (entries.get(key) == null) {
+			return null;
+		}
+
+		Path file = getPath(key);
+		Results toReturn;
+		try {
+			toReturn = read(file);
+		} catch (IOException | RuntimeException e) {
+			//Treat an unreadable entry as missing so the run is simulated again
+			remove(key);
+			return null;
+		}
+		
+		try {
+			//Record the access on the file so the LRU order survives reopening the store
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return toReturn;
+	}
+
+	/**
+	 * Stores the results under the key, replacing any results already stored there.
+	 * Results larger than the disk budget are not stored.
+	 *
+	 * @param key
+	 * @param results
+	 */
+	public synchronized void put(String key, Results results) {
+		Utils.checkId(key);
+		Utils.checkNull(results);
+
+		long size = results.getFileSize();
+		if (size > maxBytes) {
+			return;
+		}
+
+		remove(key);
+		Path file = getPath(key);
+		try {
+			//Write to a temporary file first so a reader never sees a partial entry
+			Path temp = Files.createTempFile(directory, key, ".tmp");
+			try {
+				write(temp, results, size);
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}finally {
+				Files.deleteIfExists(temp);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		entries.put(key, size);
+		totalBytes += size;
+		evict(key);
+	}
+
+	/**
+	 * Returns the results stored under the key, running the supplier and storing what it returns if there are none.
+	 *
+	 * @param key
+	 * @param simulate
+	 * @return
+	 */
+	public Results computeIfAbsent(String key, Supplier<Results> simulate) {
+		Results toReturn = get(key);
+		if (toReturn == null) {
+			toReturn = simulate.get();
+			put(key, toReturn);
+		}
+		return toReturn;
+	}
+
+	/**
+	 * Deletes the results stored under the key, if any.
+	 *
+	 * @param key
+	 */
+	public synchronized void remove(String key) {
+		Long size = entries.remove(key);
+		if (size != null) {
+			totalBytes -= size;
+			try {
+				Files.deleteIfExists(getPath(key));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * Returns true if results are stored under the key.
+	 *
+	 * @param key
+	 * @return
+	 */
+	public synchronized boolean contains(String key) {
+		return entries.containsKey(key);
+	}
+
+	/**
+	 * Returns the total size in bytes of the entries in the store.
+	 *
+	 * @return
+	 */
+	public synchronized long getSizeOnDisk() {
+		return totalBytes;
+	}
+
+	private Path getPath(String key) {
+		return directory.resolve(key + SUFFIX);
+	}
+
+	private void evict(String keep) {
+		Iterator<Map.Entry<String, Long>> iter = entries.entrySet().iterator();
+		while (totalBytes > maxBytes && iter.hasNext()) {
+			Map.Entry<String, Long> eldest = iter.next();
+			if (eldest.getKey().equals(keep)) {
+				continue;
+			}
+			totalBytes -= eldest.getValue();
+			iter.remove();
+			try {
+				Files.deleteIfExists(getPath(eldest.getKey()));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/*
+	 * File layout, big endian:
+	 * int magic, int version, int entry count
+	 * per entry: int name length, name UTF-8 bytes, byte type, int length, padding to 8 bytes, array data
+	 */
+	private static void write(Path file, Results results, long size) throws IOException {
+		if (size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(SimMsgs.resultsTooLarge(size));
+		}
+		
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			buffer.order(ByteOrder.BIG_ENDIAN);
+			write(buffer, results);
+			buffer.force();
+		}
+	}
+	
+	private static void write(ByteBuffer buffer, Results results) {
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(results.values.size());
+		for (Map.Entry<String, Object> cur : results.values.entrySet()) {
+			byte[] name = cur.getKey().getBytes(StandardCharsets.UTF_8);
+			buffer.putInt(name.length).put(name);
+			if (cur.getValue() instanceof LongBuffer) {
+				LongBuffer data = ((LongBuffer)cur.getValue()).duplicate();
+				int length = data.rewind().remaining();
+				buffer.put(LONGS).putInt(length);
+				align(buffer);
+				buffer.asLongBuffer().put(data);
+				buffer.position(buffer.position() + length * Long.BYTES);
+			}else {
+				DoubleBuffer data = ((DoubleBuffer)cur.getValue()).duplicate();
+				int length = data.rewind().remaining();
+				buffer.put(DOUBLES).putInt(length);
+				align(buffer);
+				buffer.asDoubleBuffer().put(data);
+				buffer.position(buffer.position() + length * Double.BYTES);
+			}
+		}
+	}
+
+	private static Results read(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			buffer.order(ByteOrder.BIG_ENDIAN);
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				throw new IllegalStateException(SimMsgs.badState());
+			}
+
+			Results toReturn = new Results();
+			int count = buffer.getInt();
+			for (int i = 0; i < count; i++) {
+				byte[] name = new byte[buffer.getInt()];
+				buffer.get(name);
+				byte type = buffer.get();
+				int length = buffer.getInt();
+				align(buffer);
+				
+				//The arrays are views of the mapping, which stays valid after the channel is closed
+				long bytes = length * 8L;
+				if (length < 0 || bytes > buffer.remaining()) {
+					throw new IllegalStateException(SimMsgs.badState());
+				}
+				ByteBuffer data = buffer.slice(buffer.position(), (int)bytes).order(ByteOrder.BIG_ENDIAN);
+				buffer.position(buffer.position() + (int)bytes);
+				if (type == LONGS) {
+					toReturn.put(new String(name, StandardCharsets.UTF_8), data.asLongBuffer().asReadOnlyBuffer());
+				}else {
+					toReturn.put(new String(name, StandardCharsets.UTF_8), data.asDoubleBuffer().asReadOnlyBuffer());
+				}
+			}
+			return toReturn;
+		}
+	}
+
+	private static void align(ByteBuffer buffer) {
+		buffer.position((buffer.position() + 7) & ~7);
+	}
+
+	/**
+	 * Named long and double arrays produced by a simulation run, for example the values returned by
+	 * AvailabilityConsumer.getUpTime(), OutageConsumer.getDowntimeDurations() or AvailabilitySampler.getSamples().
+	 * Arrays are stored as passed, without copying.  Results read from the store hold read-only buffers backed by the
+	 * mapped file, which getLongBuffer() and getDoubleBuffer() return directly and getLongs() and getDoubles() copy the first time they are called.
+	 */
+	public static final class Results {
+
+		//Every value is a LongBuffer or a DoubleBuffer
+		private final LinkedHashMap<String,Object> values = new LinkedHashMap<>();
+
+		public Results putLongs(String name, long[] data) {
+			Utils.checkNull(data);
+			return put(name, LongBuffer.wrap(data));
+		}
+
+		public Results putDoubles(String name, double[] data) {
+			Utils.checkNull(data);
+			return put(name, DoubleBuffer.wrap(data));
+		}
+		
+		private Results put(String name, Object data) {
+			Utils.checkId(name);
+			values.put(name, data);
+			return this;
+		}
+
+		public Results putLong(String name, long value) {
+			return putLongs(name, new long[] {value});
+		}
+
+		public Results putDouble(String name, double value) {
+			return putDoubles(name, new double[] {value});
+		}
+
+		/**
+		 * Returns the long array stored under the name or null if there is none.
+		 *
+		 * @param name
+		 * @return
+		 */
+		public long[] getLongs(String name) {
+			Object data = values.get(name);
+			if (!(data instanceof LongBuffer)) {
+				return null;
+			}
+			
+			LongBuffer buffer = (LongBuffer)data;
+			if (!buffer.hasArray()) {
+				long[] copy = new long[buffer.limit()];
+				buffer.duplicate().rewind().get(copy);
+				buffer = LongBuffer.wrap(copy);
+				values.put(name, buffer);
+			}
+			return buffer.array();
+		}
+		
+		/**
+		 * Returns a read-only view of the long array stored under the name or null if there is none.
+		 * Results read from the store return the mapped file without copying it.
+		 * 
+		 * @param name
+		 * @return
+		 */
+		public LongBuffer getLongBuffer(String name) {
+			Object data = values.get(name);
+			return data instanceof LongBuffer ? ((LongBuffer)data).asReadOnlyBuffer().rewind() : null;
+		}
+
+		/**
+		 * Returns the double array stored under the name or null if there is none.
+		 *
+		 * @param name
+		 * @return
+		 */
+		public double[] getDoubles(String name) {
+			Object data = values.get(name);
+			if (!(data instanceof DoubleBuffer)) {
+				return null;
+			}
+			
+			DoubleBuffer buffer = (DoubleBuffer)data;
+			if (!buffer.hasArray()) {
+				double[] copy = new double[buffer.limit()];
+				buffer.duplicate().rewind().get(copy);
+				buffer = DoubleBuffer.wrap(copy);
+				values.put(name, buffer);
+			}
+			return buffer.array();
+		}
+		
+		/**
+		 * Returns a read-only view of the double array stored under the name or null if there is none.
+		 * Results read from the store return the mapped file without copying it.
+		 * 
+		 * @param name
+		 * @return
+		 */
+		public DoubleBuffer getDoubleBuffer(String name) {
+			Object data = values.get(name);
+			return data instanceof DoubleBuffer ? ((DoubleBuffer)data).asReadOnlyBuffer().rewind() : null;
+		}
+
+		public long getLong(String name) {
+			LongBuffer toReturn = getLongBuffer(name);
+			if (toReturn == null || toReturn.limit() != 1) {
+				throw new IllegalArgumentException(SimMsgs.noSuchResult(name));
+			}
+			return toReturn.get(0);
+		}
+
+		public double getDouble(String name) {
+			DoubleBuffer toReturn = getDoubleBuffer(name);
+			if (toReturn == null || toReturn.limit() != 1) {
+				throw new IllegalArgumentException(SimMsgs.noSuchResult(name));
+			}
+			return toReturn.get(0);
+		}
+
+		public Set<String> getNames(){
+			return Collections.unmodifiableSet(values.keySet());
+		}
+
+		long getFileSize() {
+			long size = 12;
+			for (Map.Entry<String, Object> cur : values.entrySet()) {
+				size += 4 + cur.getKey().getBytes(StandardCharsets.UTF_8).length + 1 + 4;
+				size = (size + 7) & ~7;
+				if (cur.getValue() instanceof LongBuffer) {
+					size += ((LongBuffer)cur.getValue()).limit() * (long)Long.BYTES;
+				}else {
+					size += ((DoubleBuffer)cur.getValue()).limit() * (long)Double.BYTES;
+				}
+			}
+			return size;
+		}
+	}
+}
@@ -26,6 +26,30 @@ class SimMsgs extends Msgs{
 		return "Unknown distribution specification. Passed =" + setup;
 	}
 	
+	static String badSetupName(String name) {
+		return "Distribution setup names must end with their only ';'. Passed = " + name;
+	}
+	
+	static String duplicateParser(String name) {
+		return "A DistributionParser is already registered for setup name = " + name;
+	}
+	
+	static String tooFewPoints(int minimum, int passed) {
+		return "At least " + minimum + " points are required. Passed = " + passed;
+	}
+	
+	static String lengthsDiffer(int first, int second) {
+		return "Arrays must have the same length. Lengths = " + first + " and " + second;
+	}
+	
+	static String badCumulativeProbabilities() {
+		return "Cumulative probabilities must increase strictly from 0 to 1 and values must not decrease";
+	}
+	
+	static String badWeight(double weight) {
+		return "Weights must be finite and not negative, and must not all be zero. Passed = " + weight;
+	}
+	
 	static String argumentIsFinal(String name) {
 		return name + " argument is final and may not be set more than once.";
 	}
@@ -70,6 +94,30 @@ class SimMsgs extends Msgs{
 		return "RandomGenerator not set";
 	}
 	
+	public static String randomGeneratorNotBound() {
+		return "RandomGenerator may not be used until initiation of the Simulation is complete";
+	}
+
+	public static String seedPlanMismatch(String id) {
+		return "Simulation object requested a different number of RandomGenerators than it did when the model was compiled. id = " + id;
+	}
+	
+	public static String circularDependency(String id) {
+		return "Circular dependency detected involving simulation object with id = " + id;
+	}
+	
+	public static String noSuchResult(String name) {
+		return "No single value result stored with name = " + name;
+	}
+	
+	public static String resultsTooLarge(long size) {
+		return "Results are too large to store in a single entry. Size = " + size;
+	}
+	
+	static String noSuchBucket(int bucket, int buckets) {
+		return "Histogram bucket must be in the range [0," + buckets + "]. Passed = " + bucket;
+	}
+	
 	public static String timeTranslationNotEnabled() {
 		return "Time translation is not enabled for this Simulation.";
 	}
@@ -85,5 +133,21 @@ class SimMsgs extends Msgs{
 	public static String unexpectedEvent(Event e) {
 		return "Unexpected event encountered: " + e;
 	}
+
+	public static String tooManyUnits(int units, int limit) {
+		return "Request for " + units + " units can never be granted by a pool with a limit of " + limit;
+	}
+
+	public static String shardedPoolNotExpanded(String id) {
+		return "Sharded ResourcePool must be added to a CoreSimulationBuilder which replaces it with its shards. id = " + id;
+	}
+
+	public static String scheduleNeedsFixedTimeUnit(String setup) {
+		return "Capacity schedules need a TimeTranslator that advances by a fixed fraction of a week every time unit. TimeTranslator = " + setup;
+	}
+
+	public static String inlinedIdChanged(String id, String inlinedId) {
+		return "A inlined Function must keep the id of the Function it replaces. id = " + id + ", inlined id = " + inlinedId;
+	}
 	
 }
@@ -0,0 +1,108 @@
+/**
+ * 
+ */
+package com.perelens.simulation.core;
+
+import com.perelens.engine.utils.Utils;
+import com.perelens.simulation.api.Distribution;
+import com.perelens.simulation.api.DistributionProvider;
+
+/**
+ * Copyright 2020-2023 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" 
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
+   permissions and limitations under the License
+
+   
+   Wraps a Distribution whose sample() is expensive and replaces it with linear interpolation in a table of its quantiles
+   at equally spaced cumulative probabilities.  Uniforms that fall in the first or last slice of the table are passed to the
+   wrapped distribution so the tails keep their exact shape.  The table is built once and shared by copy().
+   
+ * @author Steve Branda
+ *
+ */
+final class TabulatedDistribution implements Distribution {
+
+	private static final long serialVersionUID = 6254018906129472317L;
+
+	protected static final String SETUP_NAME = "Tabulated;";
+	
+	private final Distribution inner;
+	private final int points;
+	
+	private transient double[] quantiles;
+	
+	/**
+	 * @param inner - Distribution to tabulate.  Its sample() must be monotone in the uniform argument.
+	 * @param points - number of slices [0,1] is divided into
+	 */
+	TabulatedDistribution(Distribution inner, int points) {
+		Utils.checkNull(inner);
+		if (points < 2) {
+			throw new IllegalArgumentException(SimMsgs.tooFewPoints(2, points));
+		}
+		this.inner = inner.copy();
+		this.points = points;
+		buildTable();
+	}
+	
+	private void buildTable() {
+		//quantiles[i] is the quantile at (i + 1)/points
+		double[] q = new double[points - 1];
+		for (int i = 0; i < q.length; i++) {
+			q[i] = inner.sample((double)(i + 1) / points);
+		}
+		quantiles = q;
+	}
+	
+	protected Object readResolve() {
+		buildTable();
+		return this;
+	}
+	
+	Distribution getInner() {
+		return inner;
+	}
+	
+	@Override
+	public double sample(double uniformRandom) {
+		double x = uniformRandom * points - 1.0;
+		if (x < 0.0 || x >= quantiles.length - 1) {
+			//Tails and the last table point go to the wrapped distribution
+			return inner.sample(uniformRandom);
+		}
+		int i = (int)x;
+		double t = x - i;
+		double q0 = quantiles[i];
+		return q0 + t * (quantiles[i + 1] - q0);
+	}
+
+	@Override
+	public String getSetup() {
+		StringBuilder toReturn = new StringBuilder(SETUP_NAME);
+		toReturn.append(points).append(';').append(inner.getSetup());
+		return toReturn.toString();
+	}
+
+	static TabulatedDistribution parse(String setup, DistributionProvider provider) {
+		String[] pieces = setup.split("\\;", 3);
+		if (pieces.length != 3) {
+			throw new IllegalArgumentException(SimMsgs.badSetupArgument(setup));
+		}
+		try {
+			return new TabulatedDistribution(provider.getDistribution(pieces[2]), Integer.parseInt(pieces[1]));
+		}catch(NumberFormatException e) {
+			throw new IllegalArgumentException(SimMsgs.badSetupArgument(setup), e);
+		}
+	}
+
+	@Override
+	public Distribution copy() {
+		return this; //The table is built once and never modified, so the same object is shared
+	}
+}
@@ -17,6 +17,7 @@ import com.perelens.simulation.api.Distribution;
 import com.perelens.simulation.api.Function;
 import com.perelens.simulation.api.FunctionInfo;
 import com.perelens.simulation.api.RandomGenerator;
+import com.perelens.simulation.core.BufferedSampler;
 
 /**
  * Copyright 2020-2023 Steven Branda
@@ -41,7 +42,7 @@ public abstract class AbstractEventWindow extends AbstractEventEvaluator impleme
 		EW_EVENT_DURATION_DIST;
 	}
 	
-	private RandomGenerator durationGen = RandomGenerator.NULL_GENERATOR;
+	private BufferedSampler durationSampler = null;
 	private Distribution eventDuration = CoreUtils.ZERO_DISTRIBUTION;
 	private EventType winStart;
 	private EventType winEnd;
@@ -67,20 +68,19 @@ public abstract class AbstractEventWindow extends AbstractEventEvaluator impleme
 	@Override
 	public void initiate(FunctionInfo info) {
 		if (eventDuration != CoreUtils.ZERO_DISTRIBUTION) {
-			durationGen = info.getRandomGenerator();
+			durationSampler = new BufferedSampler(eventDuration, info.getRandomGenerator());
 		}
 	}
 
 	protected void syncInternalState(AbstractEventWindow toSync) {
 		super.syncInternalState(toSync);
 		toSync.setEventDuration(eventDuration.copy());
-		toSync.durationGen = durationGen == null?null:durationGen.copy();
+		toSync.durationSampler = durationSampler == null?null:durationSampler.copy();
 	}
 	
 	
 	protected void setEventEnd() {
-		double ur = durationGen.nextDouble();
-		double er = eventDuration.sample(ur);
+		double er = durationSampler == null ? eventDuration.sample(RandomGenerator.NULL_GENERATOR.nextDouble()) : durationSampler.next();
 		
 		long nextEndOffset = (long)Math.round(er);
 		
@@ -5,6 +5,10 @@ package com.perelens.simulation.api;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import org.apache.commons.math3.distribution.BetaDistribution;
+import org.apache.commons.math3.distribution.GammaDistribution;
+import org.apache.commons.math3.distribution.TriangularDistribution;
+import org.apache.commons.math3.distribution.WeibullDistribution;
 import org.junit.jupiter.api.Test;
 
 import com.perelens.simulation.api.DistributionProvider.Interval;
@@ -247,5 +251,234 @@ public abstract class DistributionProviderTests {
 		assertEquals(mean,calcMean,2);
 		
 	}
+	
+	@Test
+	void testEmpiricalDistribution() {
+		DistributionProvider dp = getProvider();
+		
+		//Observations in any order are sorted and placed at 0, 1/4, 1/2, 3/4 and 1
+		Distribution emp = dp.empirical(new double[] {40, 0, 10, 30, 20});
+		assertEquals(0, emp.sample(0));
+		assertEquals(5, emp.sample(0.125), 1e-12);
+		assertEquals(20, emp.sample(0.5), 1e-12);
+		assertEquals(35, emp.sample(0.875), 1e-12);
+		assertEquals(40, emp.sample(1.0));
+		
+		//Unevenly spaced probabilities with a flat segment
+		double[] values = {1, 2, 2, 10};
+		double[] probs = {0, 0.01, 0.9, 1};
+		emp = dp.empirical(values, probs);
+		assertEquals(1.5, emp.sample(0.005), 1e-12);
+		assertEquals(2, emp.sample(0.5), 1e-12);
+		assertEquals(6, emp.sample(0.95), 1e-12);
+		
+		//Large tables match a straightforward search over the points
+		int n = 5000;
+		values = new double[n];
+		probs = new double[n];
+		for (int i = 0; i < n; i++) {
+			double p = (double)i / (n - 1);
+			probs[i] = p * p * p;
+			values[i] = Math.exp(p * 5);
+		}
+		probs[n - 1] = 1.0;
+		emp = dp.empirical(values, probs);
+		for (double u = 0; u < 1; u += 0.000731) {
+			int seg = 0;
+			while (probs[seg + 1] <= u) {
+				seg++;
+			}
+			double expected = values[seg] + (u - probs[seg]) / (probs[seg + 1] - probs[seg]) * (values[seg + 1] - values[seg]);
+			assertEquals(expected, emp.sample(u), 1e-9);
+		}
+		
+		assertSame(emp, emp.copy());
+		assertEquals(emp.getSetup(), dp.getDistribution(emp.getSetup()).getSetup());
+		Distribution parsed = dp.getDistribution(emp.getSetup());
+		for (double u = 0; u < 1; u += 0.0173) {
+			assertEquals(emp.sample(u), parsed.sample(u));
+		}
+		
+		assertThrows(IllegalArgumentException.class, () -> dp.empirical(new double[] {1}));
+		assertThrows(IllegalArgumentException.class, () -> dp.empirical(new double[] {1, 2}, new double[] {0.1, 1}));
+		assertThrows(IllegalArgumentException.class, () -> dp.empirical(new double[] {2, 1}, new double[] {0, 1}));
+		assertThrows(IllegalArgumentException.class, () -> dp.empirical(new double[] {1, 2, 3}, new double[] {0, 0, 1}));
+	}
+	
+	@Test
+	void testDiscreteDistribution() {
+		DistributionProvider dp = getProvider();
+		double[] values = {5, 10, 15, 20};
+		double[] weights = {1, 0, 2, 7};
+		Distribution disc = dp.discrete(values, weights);
+		
+		int n = 1_000_000;
+		int[] counts = new int[values.length];
+		for (int i = 0; i < n; i++) {
+			double v = disc.sample((i + 0.5) / n);
+			int idx = (int)(v / 5) - 1;
+			counts[idx]++;
+		}
+		
+		//Evenly spaced uniforms hit each outcome in exact proportion to its weight
+		assertEquals(100_000, counts[0], 1);
+		assertEquals(0, counts[1]);
+		assertEquals(200_000, counts[2], 1);
+		assertEquals(700_000, counts[3], 1);
+		
+		assertSame(disc, disc.copy());
+		Distribution parsed = dp.getDistribution(disc.getSetup());
+		assertEquals(disc.getSetup(), parsed.getSetup());
+		for (double u = 0; u < 1; u += 0.0173) {
+			assertEquals(disc.sample(u), parsed.sample(u));
+		}
+		
+		assertEquals(3, dp.discrete(new double[] {3}, new double[] {0.5}).sample(0.99));
+		assertThrows(IllegalArgumentException.class, () -> dp.discrete(new double[] {1, 2}, new double[] {0, 0}));
+		assertThrows(IllegalArgumentException.class, () -> dp.discrete(new double[] {1, 2}, new double[] {1, -1}));
+		assertThrows(IllegalArgumentException.class, () -> dp.discrete(new double[] {1, 2}, new double[] {1}));
+	}
+	
+	@Test
+	void testTabulatedDistribution() {
+		DistributionProvider dp = getProvider();
+		Distribution exp = dp.exponential(1000);
+		Distribution tab = dp.tabulated(exp, 4096);
+		
+		//Interpolation error grows near the singularity at 0, so check accuracy away from it
+		for (double u = 0.01; u < 1; u += 0.000117) {
+			double expected = exp.sample(u);
+			assertEquals(expected, tab.sample(u), Math.max(expected * 1e-4, 1e-6));
+		}
+		//The tails come from the wrapped distribution
+		assertEquals(exp.sample(1e-9), tab.sample(1e-9));
+		assertEquals(exp.sample(0.99999), tab.sample(0.99999));
+		
+		assertSame(tab, tab.copy());
+		Distribution parsed = dp.getDistribution(tab.getSetup());
+		assertEquals(tab.getSetup(), parsed.getSetup());
+		for (double u = 0; u < 1; u += 0.0173) {
+			assertEquals(tab.sample(u), parsed.sample(u));
+		}
+		
+		assertThrows(IllegalArgumentException.class, () -> dp.tabulated(exp, 1));
+	}
+	
+	@Test
+	void testWeibullDistribution() {
+		DistributionProvider dp = getProvider();
+		for (double shape : new double[] {0.5, 1.0, 3.2}) {
+			Distribution wb = dp.weibull(shape, 250);
+			WeibullDistribution expected = new WeibullDistribution(null, shape, 250);
+			for (double u = 0.000001; u < 1; u += 0.00731) {
+				double e = expected.inverseCumulativeProbability(u);
+				assertEquals(e, wb.sample(u), e * 1e-12);
+			}
+		}
+		assertEquals(dp.exponential(250).sample(0.3), dp.weibull(1.0, 250).sample(0.7), 1e-9);
+		assertThrows(IllegalArgumentException.class, () -> dp.weibull(0, 1));
+		assertThrows(IllegalArgumentException.class, () -> dp.weibull(1, -1));
+	}
+	
+	@Test
+	void testGammaDistribution() {
+		DistributionProvider dp = getProvider();
+		for (double shape : new double[] {0.4, 1.0, 2.5, 30}) {
+			Distribution g = dp.gamma(shape, 7);
+			GammaDistribution expected = new GammaDistribution(null, shape, 7);
+			for (double u = 0.000001; u < 1; u += 0.000731) {
+				double e = expected.inverseCumulativeProbability(u);
+				assertEquals(e, g.sample(u), Math.max(e * 1e-4, 1e-9), "shape=" + shape + " u=" + u);
+			}
+		}
+		assertThrows(IllegalArgumentException.class, () -> dp.gamma(-1, 1));
+		assertThrows(IllegalArgumentException.class, () -> dp.gamma(1, 0));
+	}
+	
+	@Test
+	void testTriangularDistribution() {
+		DistributionProvider dp = getProvider();
+		double[][] params = {{1, 2, 10}, {0, 0, 1}, {-5, 5, 5}};
+		for (double[] p : params) {
+			Distribution tri = dp.triangular(p[0], p[1], p[2]);
+			TriangularDistribution expected = new TriangularDistribution(null, p[0], p[1], p[2]);
+			for (double u = 0; u < 1; u += 0.00731) {
+				assertEquals(expected.inverseCumulativeProbability(u), tri.sample(u), 1e-9);
+			}
+			assertEquals(p[0], tri.sample(0));
+			assertEquals(p[2], tri.sample(1.0));
+		}
+		assertThrows(IllegalArgumentException.class, () -> dp.triangular(1, 0, 2));
+		assertThrows(IllegalArgumentException.class, () -> dp.triangular(1, 1, 1));
+	}
+	
+	@Test
+	void testPertDistribution() {
+		DistributionProvider dp = getProvider();
+		double lower = 2;
+		double mode = 5;
+		double upper = 30;
+		Distribution pert = dp.pert(lower, mode, upper);
+		BetaDistribution beta = new BetaDistribution(null, 1 + 4 * (mode - lower) / (upper - lower), 1 + 4 * (upper - mode) / (upper - lower));
+		
+		double total = 0;
+		int n = 0;
+		for (double u = 0.0000005; u < 1; u += 0.000001) {
+			total += pert.sample(u);
+			n++;
+		}
+		assertEquals((lower + 4 * mode + upper) / 6, total / n, 0.001);
+		
+		for (double u = 0.000001; u < 1; u += 0.000731) {
+			double e = lower + (upper - lower) * beta.inverseCumulativeProbability(u);
+			assertEquals(e, pert.sample(u), e * 1e-4);
+		}
+		assertEquals(lower, pert.sample(0), 1e-9);
+		assertEquals(upper, pert.sample(1.0), 1e-9);
+		assertThrows(IllegalArgumentException.class, () -> dp.pert(1, 3, 2));
+	}
+	
+	@Test
+	void testGetDistribution() {
+		DistributionProvider dp = getProvider();
+		Distribution[] all = {
+				dp.constant(-3.25),
+				dp.uniform(-1, 7.5, Interval.OPEN),
+				dp.uniform(0.1, 0.3, Interval.CLOSED),
+				dp.exponential(123.456),
+				dp.exponential(0.3, 1000),
+				dp.lognormal(2.2, 0.7),
+				dp.lognormal90pctCI(10, 90_000),
+				dp.empirical(new double[] {3, 1, 4, 1, 5, 9, 2, 6}),
+				dp.discrete(new double[] {1, 2, 3}, new double[] {0.2, 0.3, 0.5}),
+				dp.tabulated(dp.lognormal(2.2, 0.7), 100),
+				dp.weibull(0.6, 1000),
+				dp.gamma(2.5, 40),
+				dp.triangular(1, 2, 10),
+				dp.pert(1, 2, 10)
+		};
+		
+		for (Distribution d : all) {
+			String setup = d.getSetup();
+			Distribution parsed = dp.getDistribution(setup);
+			assertEquals(setup, parsed.getSetup());
+			for (double u = 0.0001; u < 1; u += 0.0173) {
+				assertEquals(d.sample(u), parsed.sample(u), setup);
+			}
+			
+			//Immutable distributions parsed from the same setup are shared
+			assertSame(parsed, dp.getDistribution(new String(setup)));
+		}
+		
+		assertThrows(IllegalArgumentException.class, () -> dp.getDistribution("NoSuchDistribution;1.0"));
+		assertThrows(IllegalArgumentException.class, () -> dp.getDistribution("Exponential"));
+		assertThrows(IllegalArgumentException.class, () -> dp.getDistribution("Exponential;abc"));
+		assertThrows(IllegalArgumentException.class, () -> dp.getDistribution("Exponential;1.0;2.0"));
+		assertThrows(IllegalArgumentException.class, () -> dp.getDistribution("Uniform;1.0;2.0;HALF_OPEN"));
+		assertThrows(IllegalArgumentException.class, () -> dp.getDistribution("Lognormal;1.0"));
+		assertThrows(IllegalArgumentException.class, () -> dp.getDistribution("Constant;"));
+		assertThrows(IllegalArgumentException.class, () -> dp.getDistribution("Empirical;3;1;2"));
+		assertThrows(IllegalArgumentException.class, () -> dp.getDistribution("Tabulated;10"));
+	}
 
 }
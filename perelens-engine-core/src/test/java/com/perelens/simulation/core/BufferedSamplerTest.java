@@ -0,0 +1,104 @@
+/**
+ * 
+ */
+package com.perelens.simulation.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import com.perelens.simulation.api.Distribution;
+import com.perelens.simulation.api.DistributionProvider.Interval;
+import com.perelens.simulation.api.RandomGenerator;
+import com.perelens.simulation.api.RandomProvider;
+import com.perelens.simulation.random.RanluxProvider;
+
+/**
+ * Copyright 2020-2023 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" 
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
+   permissions and limitations under the License
+
+
+
+ * @author Steve Branda
+ *
+ */
+class BufferedSamplerTest {
+
+	private static Distribution[] distributions() {
+		CoreDistributionProvider dp = new CoreDistributionProvider();
+		return new Distribution[] {
+				dp.constant(3.5),
+				dp.uniform(2, 10, Interval.CLOSED),
+				dp.uniform(-5, 10, Interval.OPEN),
+				dp.exponential(1000),
+				dp.lognormal90pctCI(10, 5000)
+		};
+	}
+	
+	@Test
+	void testBulkSampleMatchesSingle() {
+		RandomGenerator gen = new RanluxProvider(3).createGenerator();
+		for (Distribution d : distributions()) {
+			double[] uniforms = new double[37];
+			gen.fill(uniforms);
+			double[] out = new double[uniforms.length];
+			d.sample(uniforms, out);
+			for (int i = 0; i < uniforms.length; i++) {
+				assertEquals(d.sample(uniforms[i]), out[i]);
+			}
+			
+			//In place
+			d.sample(uniforms, uniforms);
+			for (int i = 0; i < uniforms.length; i++) {
+				assertEquals(out[i], uniforms[i]);
+			}
+		}
+	}
+	
+	@Test
+	void testSequenceMatchesSingle() {
+		for (Distribution d : distributions()) {
+			RandomProvider rp = new RanluxProvider(17);
+			RandomGenerator single = rp.createGenerator();
+			BufferedSampler sampler = new BufferedSampler(d, single.copy());
+			
+			BufferedSampler copy = null;
+			double[] expected = new double[200];
+			for (int i = 0; i < expected.length; i++) {
+				expected[i] = d.sample(single.nextDouble());
+				assertEquals(expected[i], sampler.next());
+				if (i == 40) {
+					copy = sampler.copy();
+				}
+			}
+			
+			//A copy taken part way through a buffer continues the same sequence
+			for (int i = 41; i < expected.length; i++) {
+				assertEquals(expected[i], copy.next());
+			}
+		}
+	}
+	
+	@Test
+	void testDeferredGenerator() {
+		Distribution d = new CoreDistributionProvider().exponential(1000);
+		RandomGenerator single = new RanluxProvider(17).createGenerator();
+		DeferredRandomGenerator deferred = new DeferredRandomGenerator();
+		BufferedSampler sampler = new BufferedSampler(d, deferred);
+		assertThrows(IllegalStateException.class, () -> sampler.next());
+		
+		deferred.bind(single.copy());
+		assertThrows(IllegalStateException.class, () -> deferred.bind(single.copy()));
+		for (int i = 0; i < 100; i++) {
+			assertEquals(d.sample(single.nextDouble()), sampler.next());
+		}
+	}
+}
@@ -0,0 +1,178 @@
+/**
+ *
+ */
+package com.perelens.simulation.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.perelens.engine.TestResources;
+import com.perelens.engine.api.Event;
+import com.perelens.simulation.api.BasicInfo;
+import com.perelens.simulation.api.RandomGenerator;
+import com.perelens.simulation.api.TimeTranslator;
+import com.perelens.simulation.events.ResourcePoolEvent;
+
+/**
+ * Copyright 2020-2025 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS"
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing
+   permissions and limitations under the License
+
+ * @author Steve Branda
+ */
+class CapacityScheduleTest {
+
+	//Monday 30 December 2024
+	static final Instant MONDAY = Instant.parse("2024-12-30T00:00:00Z");
+	static final int DAY = 1440;
+	static final int WEEK = 7 * DAY;
+
+	long ordinal = 1;
+
+	CapacitySchedule schedule() {
+		return new CapacitySchedule(0)
+				.addWeekdayShift(LocalTime.of(8, 0), LocalTime.of(16, 0), 2)
+				.addShift(DayOfWeek.SATURDAY, LocalTime.of(22, 0), LocalTime.of(6, 0), 1)
+				.addHoliday(LocalDate.of(2025, 1, 1), 0);
+	}
+
+	@Test
+	void testSteps() {
+		CapacitySchedule.Steps steps = schedule().compile(new CoreTimeTranslator(MONDAY, ChronoUnit.MINUTES));
+		assertEquals(2, schedule().getMaxCapacity());
+
+		assertEquals(0, steps.capacityAt(0));
+		assertEquals(480, steps.nextChange(0));
+		assertEquals(2, steps.capacityAt(480));
+		assertEquals(2, steps.capacityAt(959));
+		assertEquals(960, steps.nextChange(480));
+		assertEquals(0, steps.capacityAt(960));
+		assertEquals(DAY + 480, steps.nextChange(960));
+
+		//New Year's Day is a Wednesday holiday
+		assertEquals(0, steps.capacityAt(2 * DAY + 600));
+		assertEquals(3 * DAY, steps.nextChange(2 * DAY + 600));
+		assertEquals(2 * DAY, steps.nextChange(DAY + 960));
+		assertEquals(2, steps.capacityAt(3 * DAY + 600));
+
+		//The Saturday night shift runs into Sunday
+		assertEquals(1, steps.capacityAt(5 * DAY + 1320));
+		assertEquals(1, steps.capacityAt(6 * DAY + 359));
+		assertEquals(0, steps.capacityAt(6 * DAY + 360));
+
+		//Every later week repeats the first one
+		assertEquals(2, steps.capacityAt(WEEK + 2 * DAY + 600));
+		assertEquals(2, steps.capacityAt(30L * 52 * WEEK + 480));
+		assertEquals(30L * 52 * WEEK + 960, steps.nextChange(30L * 52 * WEEK + 480));
+		assertEquals(WEEK + 480, steps.nextChange(6 * DAY + 360));
+
+		//Simulation time zero does not have to be the start of a week
+		steps = schedule().compile(new CoreTimeTranslator(Instant.parse("2025-01-02T07:00:00Z"), ChronoUnit.MINUTES));
+		assertEquals(0, steps.capacityAt(0));
+		assertEquals(60, steps.nextChange(0));
+		assertEquals(2, steps.capacityAt(60));
+
+		TimeTranslator elevenMinutes = new TimeTranslator() {
+			@Override
+			public Instant getInstant(Event e) {
+				return MONDAY.plus(e.getTime() * 11, ChronoUnit.MINUTES);
+			}
+
+			@Override
+			public TimeTranslator copy() {
+				return this;
+			}
+
+			@Override
+			public String getSetup() {
+				return "eleven minutes";
+			}
+		};
+		assertThrows(IllegalArgumentException.class, () -> schedule().compile(elevenMinutes));
+		assertThrows(IllegalArgumentException.class, () -> new CoreResourcePool("crew",new CapacitySchedule(0)));
+	}
+
+	@Test
+	void testScheduledPool() {
+		CoreResourcePool pool = (CoreResourcePool)new CoreResourcePool("crew",new CapacitySchedule(0).addWeekdayShift(LocalTime.of(8, 0), LocalTime.of(16, 0), 1)).copy();
+		pool.initiate(info(new CoreTimeTranslator(MONDAY, ChronoUnit.MINUTES)));
+
+		//Nobody works before 8:00 so pro0 is granted when the shift starts and pro1 waits behind it
+		assertEquals(List.of("pro0:RP_GRANT@480","pro1:RP_DEFER"), window(pool, 1000, request("pro0",10), request("pro1",500)));
+
+		//pro0 returns after the shift ended so pro1 waits for the next morning
+		assertEquals(List.of("pro1:RP_GRANT@1920"), window(pool, 2000, new ResPoolEvent("pro1",ResourcePoolEvent.RP_RENEW,1001,ordinal++),
+				new ResPoolEvent("pro0",ResourcePoolEvent.RP_RETURN,1100,ordinal++)));
+	}
+
+	private ResPoolEvent request(String producer, long time) {
+		return new ResPoolEvent(producer,ResourcePoolEvent.RP_REQUEST,time,ordinal++);
+	}
+
+	/**
+	 * Sends the events to the pool and keeps calling it while it waits for a response to a grant, as the engine would
+	 */
+	private List<String> window(CoreResourcePool pool, long timeWindow, Event... events){
+		ArrayList<String> toReturn = new ArrayList<>();
+		TestResources tr = new TestResources(List.of(events));
+		boolean granted;
+		do {
+			pool.consume(timeWindow, tr);
+			granted = false;
+			for (var re : tr.getRaisedResponses()) {
+				if (re.getResponse().getType() == ResourcePoolEvent.RP_GRANT) {
+					toReturn.add(re.getInResponseTo().getProducerId() + ":RP_GRANT@" + re.getResponse().getTime());
+					granted = true;
+				}else {
+					toReturn.add(re.getInResponseTo().getProducerId() + ":" + re.getResponse().getType());
+				}
+			}
+			tr = new TestResources(Collections.emptyList());
+		}while (granted);
+		return toReturn;
+	}
+
+	private static BasicInfo info(TimeTranslator tt) {
+		BasicInfo deps = CoreResourcePoolTest.poolInfo(2, Map.of());
+		return new BasicInfo() {
+			@Override
+			public Set<String> getDependencies() {
+				return deps.getDependencies();
+			}
+
+			@Override
+			public int getPriority(String dependencyId) {
+				return deps.getPriority(dependencyId);
+			}
+
+			@Override
+			public TimeTranslator getTimeTranslator() {
+				return tt;
+			}
+
+			@Override
+			public RandomGenerator getRandomGenerator() {
+				throw new IllegalStateException();
+			}
+		};
+	}
+}
@@ -0,0 +1,168 @@
+/**
+ *
+ */
+package com.perelens.simulation.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.Test;
+
+import com.perelens.engine.TestFunction;
+import com.perelens.engine.TestResourcePool;
+import com.perelens.engine.api.CircularDependencyException;
+import com.perelens.engine.api.EventGenerator;
+import com.perelens.simulation.api.FunctionInfo;
+import com.perelens.simulation.api.RandomGenerator;
+import com.perelens.simulation.api.Simulation;
+import com.perelens.simulation.api.SimulationBuilder;
+import com.perelens.simulation.random.RanluxProvider;
+
+/**
+ * Copyright 2020-2023 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS"
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing
+   permissions and limitations under the License
+
+
+ * @author Steve Branda
+ *
+ */
+class CompiledModelTest {
+
+	@Test
+	void testInstancesMatchBuilder() {
+		int count = 50;
+		ConcurrentHashMap<String,RandomGenerator[]> fromBuilder = new ConcurrentHashMap<>();
+		ConcurrentHashMap<String,RandomGenerator[]> fromModel = new ConcurrentHashMap<>();
+
+		SimulationBuilder sb = CoreSimulationBuilderTest.buildGeneratorModel(count, fromBuilder);
+		CompiledModel model = ((CoreSimulationBuilder)CoreSimulationBuilderTest.buildGeneratorModel(count, fromModel)).compile();
+
+		assertEquals(count, model.size());
+		assertEquals(sb.getHashCode(), model.getHashCode());
+
+		//Compilation initiates throw away copies with null generators which must not be mixed up with the instances
+		fromModel.clear();
+
+		//Successive instances must continue the RandomProvider sequence exactly as the builder does
+		for (int rep = 0; rep < 2; rep++) {
+			Simulation sim1 = sb.createSimulation(1);
+			Simulation sim2 = model.createSimulation(1);
+
+			assertEquals(count, fromModel.size());
+			for (Map.Entry<String, RandomGenerator[]> e : fromBuilder.entrySet()) {
+				RandomGenerator[] expected = e.getValue();
+				RandomGenerator[] actual = fromModel.get(e.getKey());
+				assertEquals(expected.length, actual.length);
+				for (int i = 0; i < expected.length; i++) {
+					assertEquals(expected[i].getRandomSetup(), actual[i].getRandomSetup());
+					assertEquals(expected[i].nextDouble(), actual[i].nextDouble());
+				}
+			}
+
+			sim1.destroy();
+			sim2.destroy();
+		}
+
+		//An explicit provider replaces the one set on the builder
+		fromBuilder.clear();
+		fromModel.clear();
+		SimulationBuilder sb2 = CoreSimulationBuilderTest.buildGeneratorModel(count, fromBuilder);
+		sb2.setRandomProvider(new RanluxProvider(99));
+		sb2.createSimulation(1).destroy();
+		model.createSimulation(1, new RanluxProvider(99)).destroy();
+		for (Map.Entry<String, RandomGenerator[]> e : fromBuilder.entrySet()) {
+			assertEquals(e.getValue()[0].getRandomSetup(), fromModel.get(e.getKey())[0].getRandomSetup());
+		}
+	}
+
+	@Test
+	void testModelIsFrozen() {
+		CoreSimulationBuilder sb = new CoreSimulationBuilder();
+		sb.addFunction(new TestFunction("f2", Collections.emptyMap()));
+		sb.addFunction(new TestFunction("f1", Collections.emptyMap()));
+		sb.addResourcePool(new TestResourcePool("p1"));
+		sb.getFunction("f1").addDependency("f2");
+		sb.getFunction("f1").addResourcePool("p1");
+
+		CompiledModel model = sb.compile();
+		String hash = model.getHashCode();
+		assertEquals(sb.getHashCode(), hash);
+
+		sb.addFunction(new TestFunction("f3", Collections.emptyMap()));
+		sb.getFunction("f3").addDependency("f1");
+		assertFalse(hash.equals(sb.getHashCode()));
+		assertEquals(hash, model.getHashCode());
+		assertEquals(3, model.size());
+
+		List<String> order = model.getTopologicalOrder();
+		assertEquals(3, order.size());
+		assertTrue(order.indexOf("f2") < order.indexOf("f1"));
+		assertTrue(order.indexOf("f1") < order.indexOf("p1"));
+
+		Simulation sim = model.createSimulation(2);
+		sim.destroy();
+	}
+
+	@Test
+	void testCircularDependency() {
+		CoreSimulationBuilder sb = new CoreSimulationBuilder();
+		sb.addFunction(new TestFunction("f1", Collections.emptyMap()));
+		sb.addFunction(new TestFunction("f2", Collections.emptyMap()));
+		sb.addFunction(new TestFunction("f3", Collections.emptyMap()));
+		sb.getFunction("f1").addDependency("f2");
+		sb.getFunction("f2").addDependency("f3");
+		sb.getFunction("f3").addDependency("f1");
+
+		assertThrows(CircularDependencyException.class, () -> sb.compile());
+	}
+
+	@Test
+	void testSeedPlanMismatch() {
+		CoreSimulationBuilder sb = new CoreSimulationBuilder();
+		sb.setRandomProvider(new RanluxProvider(1));
+		sb.addFunction(new GrowingFunction("f1", new int[1]));
+
+		CompiledModel model = sb.compile();
+		assertThrows(IllegalStateException.class, () -> model.createSimulation(1));
+	}
+
+	/**
+	 * Function that asks for one more RandomGenerator each time it is initiated
+	 */
+	private static class GrowingFunction extends TestFunction{
+
+		private int[] initiated;
+
+		GrowingFunction(String id, int[] initiated) {
+			super(id, Collections.emptyMap());
+			this.initiated = initiated;
+		}
+
+		@Override
+		public EventGenerator copy() {
+			return new GrowingFunction(getId(),initiated);
+		}
+
+		@Override
+		public void initiate(FunctionInfo info) {
+			initiated[0]++;
+			for (int i = 0; i < initiated[0]; i++) {
+				info.getRandomGenerator();
+			}
+		}
+	}
+}
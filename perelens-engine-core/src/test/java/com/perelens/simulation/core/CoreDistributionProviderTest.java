@@ -3,6 +3,18 @@
  */
 package com.perelens.simulation.core;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.apache.commons.math3.distribution.NormalDistribution;
+import org.apache.commons.math3.special.Erf;
+import org.junit.jupiter.api.Test;
+
+import com.perelens.simulation.api.Distribution;
+import com.perelens.simulation.api.DistributionParser;
 import com.perelens.simulation.api.DistributionProvider;
 import com.perelens.simulation.api.DistributionProviderTests;
 
@@ -26,5 +38,207 @@ class CoreDistributionProviderTest extends DistributionProviderTests {
 	protected DistributionProvider getProvider() {
 		return new CoreDistributionProvider();
 	}
+	
+	@Test
+	void testNormalQuantile() {
+		NormalDistribution normal = new NormalDistribution(0, 1);
+		double[] ps = {1e-5, 0.001, 0.02425, 0.025, 0.1, 0.3, 0.425, 0.5, 0.575, 0.7, 0.9, 0.975, 0.999, 1 - 1e-5};
+		for (double p : ps) {
+			double expected = normal.inverseCumulativeProbability(p);
+			double actual = NormalQuantile.inverse(p);
+			assertEquals(expected, actual, Math.max(1e-14, Math.abs(expected) * 1e-10), "p=" + p);
+		}
+		
+		//Deep in the lower tail erfInv(2p - 1) loses precision so check the round trip through the cumulative probability instead
+		double[] tails = {1e-300, 1e-100, 1e-20, 1e-10, 1e-7};
+		for (double p : tails) {
+			double roundTrip = normal.cumulativeProbability(NormalQuantile.inverse(p));
+			assertEquals(p, roundTrip, p * 1e-12, "p=" + p);
+		}
+		assertEquals(0.0, NormalQuantile.inverse(0.5));
+		assertEquals(Double.NEGATIVE_INFINITY, NormalQuantile.inverse(0.0));
+		assertEquals(Double.POSITIVE_INFINITY, NormalQuantile.inverse(1.0));
+	}
+	
+	@Test
+	void testLognormalMatchesLegacy() {
+		double mean = 2.5;
+		double stdDev = 0.75;
+		Distribution fast = new CoreDistributionProvider().lognormal(mean, stdDev);
+		Distribution legacy = new CoreDistributionProvider(true).lognormal(mean, stdDev);
+		double devTerm = Math.sqrt(2.0d * stdDev * stdDev);
+		
+		assertEquals(fast.getSetup() + ";ErfInv", legacy.getSetup());
+		
+		int n = 10_000;
+		double[] uniforms = new double[n];
+		for (int i = 0; i < n; i++) {
+			uniforms[i] = (i + 0.5) / n;
+		}
+		double[] fastBulk = new double[n];
+		double[] legacyBulk = new double[n];
+		fast.sample(uniforms, fastBulk);
+		legacy.sample(uniforms, legacyBulk);
+		
+		for (int i = 0; i < n; i++) {
+			double u = uniforms[i];
+			double expected = Math.exp(mean + devTerm * Erf.erfInv(2 * u - 1));
+			assertEquals(expected, legacy.sample(u));
+			assertEquals(expected, legacyBulk[i]);
+			
+			double f = fast.sample(u);
+			assertEquals(f, fastBulk[i]);
+			assertTrue(Math.abs(f - expected) <= expected * 1e-9, "u=" + u);
+		}
+		
+		Distribution parsed = new CoreDistributionProvider().getDistribution(legacy.getSetup());
+		assertEquals(legacy.getSetup(), parsed.getSetup());
+		assertEquals(legacy.sample(0.123), parsed.sample(0.123));
+	}
+	
+	@Test
+	void testDefaultMethods() {
+		//A provider written against the original interface still compiles and gets the default behaviour
+		CoreDistributionProvider core = new CoreDistributionProvider();
+		DistributionProvider basic = new DistributionProvider() {
+			@Override
+			public Distribution constant(double value) {
+				return core.constant(value);
+			}
+
+			@Override
+			public Distribution uniform(double lower, double upper, Interval intervalType) {
+				return core.uniform(lower, upper, intervalType);
+			}
+
+			@Override
+			public Distribution exponential(double mean) {
+				return core.exponential(mean);
+			}
+
+			@Override
+			public Distribution exponential(double percentile, double atValue) {
+				return core.exponential(percentile, atValue);
+			}
+
+			@Override
+			public Distribution lognormal(double mean, double standardDeviation) {
+				return core.lognormal(mean, standardDeviation);
+			}
+
+			@Override
+			public Distribution lognormal90pctCI(double lowerBound, double upperBound) {
+				return core.lognormal90pctCI(lowerBound, upperBound);
+			}
+
+			@Override
+			public Distribution getDistribution(String setup) {
+				return core.getDistribution(setup);
+			}
+		};
+		
+		assertThrows(UnsupportedOperationException.class, () -> basic.weibull(2, 10));
+		assertThrows(UnsupportedOperationException.class, () -> basic.gamma(2, 10));
+		assertThrows(UnsupportedOperationException.class, () -> basic.triangular(1, 2, 3));
+		assertThrows(UnsupportedOperationException.class, () -> basic.pert(1, 2, 3));
+		assertThrows(UnsupportedOperationException.class, () -> basic.empirical(new double[] {1, 2}));
+		assertThrows(UnsupportedOperationException.class, () -> basic.empirical(new double[] {1, 2}, new double[] {0, 1}));
+		assertThrows(UnsupportedOperationException.class, () -> basic.discrete(new double[] {1, 2}, new double[] {1, 1}));
+		
+		Distribution exp = basic.exponential(10);
+		assertSame(exp, basic.tabulated(exp, 100));
+	}
+	
+	@Test
+	void testRegisterParser() {
+		CoreDistributionProvider dp = new CoreDistributionProvider();
+		DistributionParser twice = new DistributionParser() {
+			@Override
+			public String getSetupName() {
+				return "Twice;";
+			}
+
+			@Override
+			public Distribution parse(String setup, DistributionProvider provider) {
+				Distribution inner = provider.getDistribution(setup.substring(getSetupName().length()));
+				return new Distribution() {
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					public double sample(double uniformRandom) {
+						return 2 * inner.sample(uniformRandom);
+					}
+
+					@Override
+					public String getSetup() {
+						return setup;
+					}
+
+					@Override
+					public Distribution copy() {
+						return parse(setup, provider);
+					}
+				};
+			}
+		};
+		
+		assertThrows(IllegalArgumentException.class, () -> dp.getDistribution("Twice;Constant;2.0"));
+		dp.registerParser(twice);
+		Distribution d = dp.getDistribution("Twice;Constant;2.0");
+		assertEquals(4.0, d.sample(0.5));
+		
+		//Distributions that copy themselves are not interned
+		assertNotSame(d, dp.getDistribution("Twice;Constant;2.0"));
+		assertSame(dp.getDistribution("Constant;2.0"), dp.getDistribution("Constant;2.0"));
+		
+		assertThrows(IllegalArgumentException.class, () -> dp.registerParser(twice));
+		assertThrows(IllegalArgumentException.class, () -> dp.registerParser(new DistributionParser() {
+			@Override
+			public String getSetupName() {
+				return "Exponential;";
+			}
+
+			@Override
+			public Distribution parse(String setup, DistributionProvider provider) {
+				return null;
+			}
+		}));
+		
+		//Registration is per provider
+		assertThrows(IllegalArgumentException.class, () -> new CoreDistributionProvider().getDistribution("Twice;Constant;2.0"));
+	}
+	
+	@Test
+	void testInterning() {
+		CoreDistributionProvider dp = new CoreDistributionProvider();
+		
+		Distribution exp = dp.exponential(10.0);
+		assertSame(exp, dp.exponential(10.0));
+		assertSame(exp, dp.getDistribution(exp.getSetup()));
+		assertSame(dp.uniform(0.0, 1.0, DistributionProvider.Interval.CLOSED), dp.uniform(0.0, 1.0, DistributionProvider.Interval.CLOSED));
+		assertSame(dp.lognormal(1.0, 0.5), dp.lognormal(1.0, 0.5));
+		assertSame(dp.weibull(2.0, 3.0), dp.weibull(2.0, 3.0));
+		assertSame(dp.triangular(1.0, 2.0, 4.0), dp.triangular(1.0, 2.0, 4.0));
+		assertSame(dp.constant(2.0), dp.getDistribution("Constant;2.0"));
+		
+		//Tables are built once whichever way the distribution is requested
+		Distribution gamma = dp.getDistribution("Gamma;2.0;3.0");
+		assertSame(gamma, dp.gamma(2.0, 3.0));
+		Distribution pert = dp.pert(1.0, 2.0, 4.0);
+		assertSame(pert, dp.getDistribution(pert.getSetup()));
+		
+		//Different parameters and providers get different instances
+		assertNotSame(exp, dp.exponential(11.0));
+		assertNotSame(exp, new CoreDistributionProvider().exponential(10.0));
+		
+		//The cache is bounded, so old setups are evicted and built again
+		for (int i = 1; i <= CoreDistributionProvider.MAX_INTERNED; i++) {
+			dp.exponential(10.0 + i);
+		}
+		Distribution rebuilt = dp.exponential(10.0);
+		assertNotSame(exp, rebuilt);
+		assertEquals(exp.getSetup(), rebuilt.getSetup());
+		assertEquals(exp.sample(0.3), rebuilt.sample(0.3));
+	}
 
 }
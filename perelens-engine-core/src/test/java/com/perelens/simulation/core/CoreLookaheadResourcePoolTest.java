@@ -0,0 +1,121 @@
+/**
+ * 
+ */
+package com.perelens.simulation.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.perelens.engine.TestResources;
+import com.perelens.engine.api.Event;
+import com.perelens.simulation.api.ResourcePool;
+import com.perelens.simulation.events.ResourcePoolEvent;
+
+/**
+ * Copyright 2020-2025 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" 
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
+   permissions and limitations under the License
+   
+ * @author Steve Branda 
+ */
+class CoreLookaheadResourcePoolTest {
+
+	long ordinal = 1;
+	
+	@Test
+	void testSinglePass() {
+		//pro1 cannot request again until 620, so pro2 at 200 is granted in the same call
+		long[][] requests = {{10, 100, 1000}, {50, 10, 500}, {200, 10, 0}};
+		
+		var pool = new CoreLookaheadResourcePool("pool1",1);
+		pool.initiate(CoreResourcePoolTest.poolInfo(3, Map.of()));
+		assertEquals(List.of("pro0@10","pro1@110","pro2@200"), grants(pool, requests));
+		
+		//The time optimized pool has to assume pro1 can request again as soon as it returns at 120
+		var toPool = new CoreTimeOptimizedResourcePool("pool1",1);
+		toPool.initiate(CoreResourcePoolTest.poolInfo(3, Map.of()));
+		assertEquals(List.of("pro0@10","pro1@110"), grants(toPool, requests));
+		assertEquals(List.of("pro2@200"), grants(toPool, new long[0][]));
+	}
+	
+	@Test
+	void testShortLookahead() {
+		//pro1 can request again at 120, so pro2 at 200 waits for the next call
+		long[][] requests = {{10, 100, 1000}, {50, 10, 0}, {200, 10, 0}};
+		var pool = new CoreLookaheadResourcePool("pool1",1);
+		pool.initiate(CoreResourcePoolTest.poolInfo(3, Map.of()));
+		assertEquals(List.of("pro0@10","pro1@110"), grants(pool, requests));
+		
+		//pro1 fails again at 120 so pro2 has to wait for its second repair
+		ResPoolEvent again = request("pro1", 120, 100, 1000);
+		assertEquals(List.of("pro1@120","pro2@220"), grants(pool, List.of(again)));
+		
+		//A pool that can never be contended grants regardless of lookahead
+		var wide = new CoreLookaheadResourcePool("pool1",3);
+		wide.initiate(CoreResourcePoolTest.poolInfo(3, Map.of()));
+		assertEquals(List.of("pro0@10","pro1@50","pro2@200"), grants(wide, requests));
+	}
+	
+	@Test
+	void testMultiUnitRequests() {
+		var pool = new CoreLookaheadResourcePool("pool1",3);
+		pool.initiate(CoreResourcePoolTest.poolInfo(3, Map.of()));
+		
+		ArrayList<Event> toRaise = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			ResPoolEvent req = request("pro" + i, 10 + i, 100 - i * 10, 1000);
+			if (i < 2) {
+				req.setUnits(2);
+			}
+			toRaise.add(req);
+		}
+		assertEquals(List.of("pro0@10","pro1@110","pro2@110"), grants(pool, toRaise));
+		
+		ResPoolEvent tooBig = request("pro0", 500, 10, 0);
+		tooBig.setUnits(4);
+		assertThrows(IllegalStateException.class, () -> pool.consume(1000, new TestResources(Collections.singletonList(tooBig))));
+		assertEquals("3", pool.copy().getConfiguration().get(CoreLookaheadResourcePool.CONFIG_KEYS.CRP_LIMIT));
+	}
+	
+	private ResPoolEvent request(String producer, long time, long duration, long lookahead) {
+		ResPoolEvent toReturn = new ResPoolEvent(producer,ResourcePoolEvent.RP_REQUEST,time,ordinal++);
+		toReturn.setTimeOptimization(duration);
+		toReturn.setLookahead(lookahead);
+		return toReturn;
+	}
+	
+	/**
+	 * Sends requests for pro0, pro1... where each row holds the time, duration and lookahead of the request
+	 */
+	private List<String> grants(ResourcePool pool, long[][] requests) {
+		ArrayList<Event> toRaise = new ArrayList<>();
+		for (int i = 0; i < requests.length; i++) {
+			toRaise.add(request("pro" + i, requests[i][0], requests[i][1], requests[i][2]));
+		}
+		return grants(pool, toRaise);
+	}
+	
+	private List<String> grants(ResourcePool pool, List<Event> requests) {
+		TestResources tr = new TestResources(requests);
+		pool.consume(1000, tr);
+		ArrayList<String> toReturn = new ArrayList<>();
+		for (var re : tr.getRaisedResponses()) {
+			assertEquals(ResourcePoolEvent.RP_GRANT, re.getResponse().getType());
+			toReturn.add(re.getInResponseTo().getProducerId() + "@" + re.getResponse().getTimeOptimization());
+		}
+		return toReturn;
+	}
+}
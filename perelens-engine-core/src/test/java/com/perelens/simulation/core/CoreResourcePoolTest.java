@@ -6,17 +6,25 @@ package com.perelens.simulation.core;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.junit.jupiter.api.Test;
 
 import com.perelens.engine.TestResources;
 import com.perelens.engine.api.Event;
+import com.perelens.simulation.api.BasicInfo;
+import com.perelens.simulation.api.RandomGenerator;
+import com.perelens.simulation.api.TimeTranslator;
 import com.perelens.simulation.events.ResourcePoolEvent;
 
 /**
@@ -350,4 +358,187 @@ class CoreResourcePoolTest extends RequestQueueAndMapTest{
 		assertEquals(0, tr.getRaisedResponses().size());
 		
 	}
+	
+	//Priorities and repair durations of the requesters used by the grant policy tests
+	static final Map<String,Integer> PRIORITIES = Map.of("pro1", 1, "pro3", 7, "pro4", -2);
+	static final Map<String,Long> DURATIONS = Map.of("pro0", 100L, "pro1", 50L, "pro2", 10L, "pro4", 20L);
+	
+	@Test
+	void testGrantPolicies() {
+		//pro0 holds the only resource while the others wait, then each return hands it to the next request in policy order
+		assertEquals(List.of("pro0","pro1","pro2","pro3","pro4"), grantOrder(GrantPolicy.fifo()));
+		assertEquals(List.of("pro0","pro3","pro1","pro2","pro4"), grantOrder(GrantPolicy.priority()));
+		assertEquals(List.of("pro0","pro2","pro4","pro1","pro3"), grantOrder(GrantPolicy.shortestRepairFirst()));
+		
+		CoreResourcePool pool = new CoreResourcePool("pool1",1,GrantPolicy.priority());
+		assertEquals("Priority", pool.getConfiguration().get(CoreResourcePool.CONFIG_KEYS.CRP_POLICY));
+		assertEquals(null, new CoreResourcePool("pool1",1).getConfiguration().get(CoreResourcePool.CONFIG_KEYS.CRP_POLICY));
+	}
+	
+	@Test
+	void testWeightedFair() {
+		GrantPolicy policy = GrantPolicy.weightedFair();
+		
+		//Finish tags advance by cost / weight for each requester
+		double a1 = policy.rank(request("a", 6), 3);
+		double a2 = policy.rank(request("a", 6), 3);
+		double b1 = policy.rank(request("b", 6), 1);
+		assertEquals(2, a1);
+		assertEquals(4, a2);
+		assertEquals(6, b1);
+		
+		//A requester that was idle starts from the virtual time instead of catching up
+		policy.granted(a1);
+		policy.granted(a2);
+		GrantPolicy copy = policy.copy();
+		assertEquals(5, policy.rank(request("c", Event.NOT_TIME_OPTIMIZED), 0));
+		assertEquals(5, copy.rank(request("c", Event.NOT_TIME_OPTIMIZED), -4));
+		assertEquals(12, copy.rank(request("b", 6), 1));
+	}
+	
+	@Test
+	void testMultiUnitRequests() {
+		CoreResourcePool pool = new CoreResourcePool("pool1",3);
+		pool.initiate(poolInfo(3, Map.of()));
+		
+		//pro0 takes two units, pro1 needs two more and pro2 waits behind it even though one unit is free
+		ArrayList<Event> requests = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			ResPoolEvent req = new ResPoolEvent("pro" + i,ResourcePoolEvent.RP_REQUEST,10 + i,ordinal++);
+			if (i < 2) {
+				req.setUnits(2);
+			}
+			requests.add(req);
+		}
+		TestResources tr = new TestResources(requests);
+		pool.consume(100, tr);
+		assertEquals(1, tr.getRaisedResponses().size());
+		TestResources.ResponseEntry re = tr.getRaisedResponses().iterator().next();
+		assertEquals("pro0", re.getInResponseTo().getProducerId());
+		assertEquals(2, ResPoolEvent.getUnits(re.getResponse()));
+		
+		//Returning pro0 frees enough units for both waiting requests
+		tr = new TestResources(Arrays.asList(new Event[] {new ResPoolEvent("pro0",ResourcePoolEvent.RP_RETURN,20,ordinal++)}));
+		pool.consume(100, tr);
+		ArrayList<String> granted = new ArrayList<>();
+		for (TestResources.ResponseEntry ent : tr.getRaisedResponses()) {
+			assertEquals(ResourcePoolEvent.RP_GRANT, ent.getResponse().getType());
+			granted.add(ent.getInResponseTo().getProducerId() + ":" + ResPoolEvent.getUnits(ent.getResponse()));
+		}
+		assertEquals(List.of("pro1:2","pro2:1"), granted);
+		
+		//Requests for more units than the pool has can never be granted
+		ResPoolEvent tooBig = new ResPoolEvent("pro3",ResourcePoolEvent.RP_REQUEST,30,ordinal++);
+		tooBig.setUnits(4);
+		assertThrows(IllegalStateException.class, () -> pool.consume(100, new TestResources(Arrays.asList(new Event[] {tooBig}))));
+		assertThrows(IllegalArgumentException.class, () -> tooBig.setUnits(0));
+	}
+	
+	@Test
+	void testTargetedEvents() {
+		CoreResourcePool pool = new CoreResourcePool("pool1",1);
+		ResPoolEvent request = new ResPoolEvent("pro0",ResourcePoolEvent.RP_REQUEST,10,ordinal++);
+		assertTrue(pool.getEventFilter().filter(request));
+		request.setPool("pool1");
+		assertTrue(pool.getEventFilter().filter(request));
+		request.setPool("pool2");
+		assertFalse(pool.getEventFilter().filter(request));
+		assertFalse(new CoreTimeOptimizedResourcePool("pool1",1).getEventFilter().filter(request));
+	}
+	
+	private Event request(String producer, long duration) {
+		ResPoolEvent toReturn = new ResPoolEvent(producer,ResourcePoolEvent.RP_REQUEST,10,ordinal++);
+		if (duration != Event.NOT_TIME_OPTIMIZED) {
+			toReturn.setTimeOptimization(duration);
+		}
+		return toReturn;
+	}
+	
+	private List<String> grantOrder(GrantPolicy policy) {
+		CoreResourcePool pool = new CoreResourcePool("pool1",1,policy);
+		pool.initiate(poolInfo(5, PRIORITIES));
+		
+		ArrayList<Event> requests = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			requests.add(request("pro" + i, DURATIONS.getOrDefault("pro" + i, Event.NOT_TIME_OPTIMIZED)));
+		}
+		
+		ArrayList<String> toReturn = new ArrayList<>();
+		TestResources tr = new TestResources(requests);
+		for (int time = 20; toReturn.size() < 5; time++) {
+			pool.consume(100, tr);
+			assertEquals(1, tr.getRaisedResponses().size());
+			TestResources.ResponseEntry re = tr.getRaisedResponses().iterator().next();
+			assertEquals(ResourcePoolEvent.RP_GRANT, re.getResponse().getType());
+			String granted = re.getInResponseTo().getProducerId();
+			toReturn.add(granted);
+			tr = new TestResources(Arrays.asList(new Event[] {new ResPoolEvent(granted,ResourcePoolEvent.RP_RETURN,time,ordinal++)}));
+		}
+		return toReturn;
+	}
+	
+	@Test
+	void testPersistentRequests() {
+		//pro0 holds the only unit from 10 to 510 so pro1 can not be granted before then
+		assertEquals(510, deferredUntil(true, 500));
+		assertEquals(Event.NOT_TIME_OPTIMIZED, deferredUntil(false, 500));
+		//Without the hold time of pro0 the pool can not say when pro1 could be granted
+		assertEquals(Event.NOT_TIME_OPTIMIZED, deferredUntil(true, Event.NOT_TIME_OPTIMIZED));
+	}
+	
+	private long deferredUntil(boolean persistent, long holdTime) {
+		CoreResourcePool pool = new CoreResourcePool("pool1",1);
+		pool.setPersistentRequests(persistent);
+		pool = (CoreResourcePool)pool.copy();
+		pool.initiate(poolInfo(2, Map.of()));
+		
+		ResPoolEvent r0 = new ResPoolEvent("pro0",ResourcePoolEvent.RP_REQUEST,10,ordinal++);
+		if (holdTime != Event.NOT_TIME_OPTIMIZED) {
+			r0.setTimeOptimization(holdTime);
+		}
+		ResPoolEvent r1 = new ResPoolEvent("pro1",ResourcePoolEvent.RP_REQUEST,20,ordinal++);
+		r1.setTimeOptimization(100);
+		TestResources tr = new TestResources(Arrays.asList(new Event[] {r0,r1}));
+		pool.consume(100, tr);
+		assertEquals(ResourcePoolEvent.RP_GRANT, tr.getRaisedResponses().iterator().next().getResponse().getType());
+		
+		tr = new TestResources(Collections.emptyList());
+		pool.consume(100, tr);
+		assertEquals(1, tr.getRaisedResponses().size());
+		TestResources.ResponseEntry re = tr.getRaisedResponses().iterator().next();
+		assertEquals(r1, re.getInResponseTo());
+		assertEquals(ResourcePoolEvent.RP_DEFER, re.getResponse().getType());
+		return re.getResponse().getTimeOptimization();
+	}
+	
+	/**
+	 * BasicInfo for a pool used by requesters pro0 to pro(count - 1)
+	 */
+	static BasicInfo poolInfo(int count, Map<String,Integer> priorities) {
+		HashMap<String,Integer> deps = new HashMap<>();
+		for (int i = 0; i < count; i++) {
+			deps.put("pro" + i, priorities.getOrDefault("pro" + i, 0));
+		}
+		return new BasicInfo() {
+			@Override
+			public Set<String> getDependencies() {
+				return deps.keySet();
+			}
+			
+			@Override
+			public int getPriority(String dependencyId) {
+				return deps.getOrDefault(dependencyId, 0);
+			}
+
+			@Override
+			public TimeTranslator getTimeTranslator() {
+				throw new IllegalStateException();
+			}
+
+			@Override
+			public RandomGenerator getRandomGenerator() {
+				throw new IllegalStateException();
+			}
+		};
+	}
 }
@@ -0,0 +1,155 @@
+/**
+ *
+ */
+package com.perelens.simulation.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.Test;
+
+import com.perelens.engine.TestFunction;
+import com.perelens.engine.TestResources;
+import com.perelens.engine.api.Event;
+import com.perelens.engine.api.EventGenerator;
+import com.perelens.simulation.api.FunctionInfo;
+import com.perelens.simulation.api.ResourcePool;
+import com.perelens.simulation.events.ResourcePoolEvent;
+
+/**
+ * Copyright 2020-2025 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS"
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing
+   permissions and limitations under the License
+
+ * @author Steve Branda
+ */
+class CoreShardedResourcePoolTest {
+
+	long ordinal = 1;
+
+	@Test
+	void testShardAssignments() {
+		//Blocks are sized by the shard limits
+		var pool = new CoreShardedResourcePool("crews",new int[] {1,3});
+		Map<String,String> routes = pool.getShardAssignments(CoreResourcePoolTest.poolInfo(8, Map.of()).getDependencies());
+		assertEquals(8, routes.size());
+		for (int i = 0; i < 8; i++) {
+			assertEquals(i < 2 ? "crews#0" : "crews#1", routes.get("pro" + i));
+		}
+
+		assertThrows(IllegalArgumentException.class, () -> new CoreShardedResourcePool("crews",new int[0]));
+		assertThrows(IllegalArgumentException.class, () -> new CoreShardedResourcePool("crews",new int[] {1,0}));
+		assertThrows(IllegalArgumentException.class, () -> pool.getShardId(2));
+		assertThrows(IllegalStateException.class, () -> pool.consume(100, new TestResources(Collections.emptyList())));
+		assertEquals("1,3", pool.copy().getConfiguration().get(CoreShardedResourcePool.CONFIG_KEYS.CRP_SHARD_LIMITS));
+	}
+
+	@Test
+	void testRebalance() {
+		//pro0 to pro2 use shard 0 and pro3 to pro5 use shard 1, the 2 floating units start split evenly
+		var pool = new CoreShardedResourcePool("crews",new int[] {1,1},2,100);
+		pool.initiate(CoreResourcePoolTest.poolInfo(6, Map.of()));
+		ResourcePool shard0 = pool.getShards()[0];
+		ResourcePool shard1 = pool.getShards()[1];
+		assertEquals("crews#0", shard0.getId());
+
+		assertEquals(List.of("pro0:RP_GRANT","pro1:RP_GRANT","pro2:RP_DEFER"), window(shard0, 100, request("pro0",10), request("pro1",11), request("pro2",12)));
+
+		//Only shard 0 had requests in the first period so it gets both floating units in the second
+		Event renew = new ResPoolEvent("pro2",ResourcePoolEvent.RP_RENEW,100,ordinal++);
+		assertEquals(List.of("pro2:RP_GRANT"), window(shard0, 200, renew));
+		assertEquals(List.of("pro3:RP_GRANT","pro4:RP_DEFER"), window(shard1, 200, request("pro3",150), request("pro4",151)));
+	}
+
+	@Test
+	void testCopiedShardHasOwnBalancer() {
+		var pool = new CoreShardedResourcePool("crews",new int[] {1,1},2,100);
+		pool.initiate(CoreResourcePoolTest.poolInfo(6, Map.of()));
+		ResourcePool shard0 = pool.getShards()[0];
+		ResourcePool shard1 = pool.getShards()[1];
+		ResourcePool copy = (ResourcePool)shard1.copy();
+
+		//Requests to the copy are not counted when the shards it was copied from rebalance
+		assertEquals(List.of("pro3:RP_GRANT","pro4:RP_GRANT","pro5:RP_DEFER"), window(copy, 100, request("pro3",10), request("pro4",11), request("pro5",12)));
+		assertEquals(List.of("pro0:RP_GRANT","pro1:RP_GRANT","pro2:RP_DEFER"), window(shard0, 100, request("pro0",10), request("pro1",11), request("pro2",12)));
+		assertEquals(List.of("pro3:RP_GRANT","pro4:RP_DEFER"), window(shard1, 200, request("pro3",150), request("pro4",151)));
+	}
+
+	@Test
+	void testBuilderRoutesFunctionsToShards() {
+		Map<String,Set<String>> seen = new ConcurrentHashMap<>();
+		CoreSimulationBuilder sb = new CoreSimulationBuilder();
+		sb.addResourcePool(new CoreShardedResourcePool("crews",new int[] {1,1}));
+		sb.addResourcePool(new CoreResourcePool("spares",1));
+		for (String id : new String[] {"a","b","c","d"}) {
+			sb.addFunction(new PoolsFunction(id, seen));
+			sb.getFunction(id).addResourcePool("crews");
+		}
+		sb.getFunction("d").addResourcePool("spares");
+		assertEquals(Set.of("crews","spares"), sb.getFunction("d").getResourcePools());
+
+		Map<String,Set<String>> expected = Map.of("a",Set.of("crews#0"),"b",Set.of("crews#0"),"c",Set.of("crews#1"),"d",Set.of("crews#1","spares"));
+		sb.createSimulation(1).destroy();
+		assertEquals(expected, seen);
+		seen.clear();
+		sb.compile().createSimulation(1).destroy();
+		assertEquals(expected, seen);
+	}
+
+	private ResPoolEvent request(String producer, long time) {
+		return new ResPoolEvent(producer,ResourcePoolEvent.RP_REQUEST,time,ordinal++);
+	}
+
+	/**
+	 * Sends the events to the shard and keeps calling it while it waits for a response to a grant, as the engine would
+	 */
+	private List<String> window(ResourcePool shard, long timeWindow, Event... events){
+		ArrayList<String> toReturn = new ArrayList<>();
+		TestResources tr = new TestResources(List.of(events));
+		boolean granted;
+		do {
+			shard.consume(timeWindow, tr);
+			granted = false;
+			for (var re : tr.getRaisedResponses()) {
+				toReturn.add(re.getInResponseTo().getProducerId() + ":" + re.getResponse().getType());
+				granted |= re.getResponse().getType() == ResourcePoolEvent.RP_GRANT;
+			}
+			tr = new TestResources(Collections.emptyList());
+		}while (granted);
+		return toReturn;
+	}
+
+	private static class PoolsFunction extends TestFunction{
+
+		private Map<String,Set<String>> seen;
+
+		PoolsFunction(String id, Map<String,Set<String>> seen) {
+			super(id, Collections.emptyMap());
+			this.seen = seen;
+		}
+
+		@Override
+		public EventGenerator copy() {
+			return new PoolsFunction(getId(), seen);
+		}
+
+		@Override
+		public void initiate(FunctionInfo info) {
+			seen.put(getId(), new TreeSet<>(info.getResourcePools()));
+		}
+	}
+}
@@ -3,12 +3,35 @@
  */
 package com.perelens.simulation.core;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.Test;
 
+import com.perelens.engine.TestFunction;
+import com.perelens.engine.TestResourcePool;
+import com.perelens.engine.api.EventGenerator;
+import com.perelens.simulation.api.BasicInfo;
+import com.perelens.simulation.api.FunctionInfo;
+import com.perelens.simulation.api.RandomGenerator;
+import com.perelens.simulation.api.RandomProvider;
+import com.perelens.simulation.api.Simulation;
 import com.perelens.simulation.api.SimulationBuilder;
 import com.perelens.simulation.api.SimulationBuilderTests;
 import com.perelens.simulation.api.TimeTranslator;
+import com.perelens.simulation.random.RanluxProvider;
+import com.perelens.simulation.random.fast.PhiloxProvider;
 
 /**
  * Copyright 2020-2023 Steven Branda
@@ -36,4 +59,308 @@ class CoreSimulationBuilderTest extends SimulationBuilderTests {
 	protected TimeTranslator getTimeTranslator() {
 		return new CoreTimeTranslator(Instant.now(),ChronoUnit.HOURS);
 	}
+
+	@Test
+	void testParallelBuildAssignsGeneratorsInIdOrder() {
+		int count = CoreSimulationBuilder.PARALLEL_BUILD_THRESHOLD + 100;
+		ConcurrentHashMap<String,RandomGenerator[]> sequential = new ConcurrentHashMap<>();
+		ConcurrentHashMap<String,RandomGenerator[]> parallel = new ConcurrentHashMap<>();
+		
+		Simulation sim1 = buildGeneratorModel(count, sequential).createSimulation(1);
+		Simulation sim2 = buildGeneratorModel(count, parallel).createSimulation(4);
+		
+		assertEquals(count, sequential.size());
+		assertEquals(count, parallel.size());
+		for (Map.Entry<String, RandomGenerator[]> e : sequential.entrySet()) {
+			RandomGenerator[] seq = e.getValue();
+			RandomGenerator[] par = parallel.get(e.getKey());
+			for (int i = 0; i < seq.length; i++) {
+				assertEquals(seq[i].getRandomSetup(), par[i].getRandomSetup());
+				assertEquals(seq[i].nextDouble(), par[i].nextDouble());
+				assertEquals(seq[i].copy().nextDouble(), par[i].copy().nextDouble());
+			}
+		}
+		
+		sim1.destroy();
+		sim2.destroy();
+	}
+	
+	@Test
+	void testOrderIndependentProvider() {
+		int count = CoreSimulationBuilder.PARALLEL_BUILD_THRESHOLD + 100;
+		ConcurrentHashMap<String,RandomGenerator[]> sequential = new ConcurrentHashMap<>();
+		ConcurrentHashMap<String,RandomGenerator[]> parallel = new ConcurrentHashMap<>();
+		ConcurrentHashMap<String,RandomGenerator[]> compiled = new ConcurrentHashMap<>();
+		ConcurrentHashMap<String,RandomGenerator[]> extended = new ConcurrentHashMap<>();
+		
+		SimulationBuilder sb1 = buildGeneratorModel(count, sequential);
+		sb1.setRandomProvider(new PhiloxProvider(17));
+		Simulation sim1 = sb1.createSimulation(1);
+		
+		SimulationBuilder sb2 = buildGeneratorModel(count, parallel);
+		sb2.setRandomProvider(new PhiloxProvider(17));
+		Simulation sim2 = sb2.createSimulation(4);
+		
+		SimulationBuilder sb3 = buildGeneratorModel(count, compiled);
+		sb3.setRandomProvider(new PhiloxProvider(17));
+		CompiledModel model = ((CoreSimulationBuilder)sb3).compile();
+		compiled.clear();
+		Simulation sim3 = model.createSimulation(1);
+		
+		//Adding an object that sorts before all the others must not change anyone else's streams
+		SimulationBuilder sb4 = buildGeneratorModel(count, extended);
+		sb4.setRandomProvider(new PhiloxProvider(17));
+		sb4.addFunction(new GeneratorFunction("a", extended));
+		Simulation sim4 = sb4.createSimulation(1);
+		
+		assertEquals(count + 1, extended.size());
+		for (Map.Entry<String, RandomGenerator[]> e : sequential.entrySet()) {
+			RandomGenerator[] seq = e.getValue();
+			assertFalse(seq[0].getRandomSetup().equals(seq[1].getRandomSetup()));
+			for (Map<String,RandomGenerator[]> other : List.of(parallel, compiled, extended)) {
+				RandomGenerator[] cur = other.get(e.getKey());
+				for (int i = 0; i < seq.length; i++) {
+					assertEquals(seq[i].getRandomSetup(), cur[i].getRandomSetup());
+					assertEquals(seq[i].copy().nextDouble(), cur[i].copy().nextDouble());
+				}
+			}
+		}
+		
+		sim1.destroy();
+		sim2.destroy();
+		sim3.destroy();
+		sim4.destroy();
+	}
+	
+	@Test
+	void testOrderIndependentReplications() {
+		HashMap<String,RandomGenerator[]> second = new HashMap<>();
+		HashMap<String,RandomGenerator[]> replayed = new HashMap<>();
+		HashMap<String,RandomGenerator[]> compiled = new HashMap<>();
+		
+		//Repeated Simulations from one builder and provider are new replications
+		RandomProvider rp = new PhiloxProvider(17);
+		RandomProvider start = rp.copy();
+		SimulationBuilder sb = buildGeneratorModel(10, second);
+		sb.setRandomProvider(rp);
+		sb.createSimulation(1).destroy();
+		assertEquals(1, rp.getReplication());
+		HashMap<String,RandomGenerator[]> first = new HashMap<>(second);
+		RandomProvider afterFirst = rp.copy();
+		sb.createSimulation(1).destroy();
+		assertEquals(2, rp.getReplication());
+		
+		//A copy of the provider taken before a Simulation replays it
+		SimulationBuilder sb2 = buildGeneratorModel(10, replayed);
+		sb2.setRandomProvider(start);
+		sb2.createSimulation(1).destroy();
+		
+		//CompiledModels move the provider to its next replication the same way
+		CompiledModel model = ((CoreSimulationBuilder)buildGeneratorModel(10, compiled)).compile();
+		compiled.clear();
+		model.createSimulation(1, afterFirst).destroy();
+		
+		for (Map.Entry<String, RandomGenerator[]> e : first.entrySet()) {
+			RandomGenerator[] cur = e.getValue();
+			for (int i = 0; i < cur.length; i++) {
+				assertNotEquals(cur[i].getRandomSetup(), second.get(e.getKey())[i].getRandomSetup());
+				assertEquals(cur[i].getRandomSetup(), replayed.get(e.getKey())[i].getRandomSetup());
+				assertEquals(second.get(e.getKey())[i].getRandomSetup(), compiled.get(e.getKey())[i].getRandomSetup());
+			}
+		}
+	}
+	
+	@Test
+	void testHashTracksLateConfigurationChanges() {
+		CoreSimulationBuilder sb = new CoreSimulationBuilder();
+		TestFunction f1 = new TestFunction("f1", Collections.emptyMap());
+		sb.addFunction(f1);
+		sb.addFunction(new TestFunction("f2", Collections.emptyMap()));
+		
+		String hash1 = sb.getHashCode();
+		assertEquals(hash1, sb.getHashCode());
+		
+		//Changing an object after it was added is reflected in the hash without telling the builder
+		f1.getConfiguration().put(EventGenerator.CONFIG_KEYS.EG_ID, "changed");
+		String hash2 = sb.getHashCode();
+		assertNotEquals(hash1, hash2);
+		assertEquals(hash2, sb.compile().getHashCode());
+		
+		f1.getConfiguration().remove(EventGenerator.CONFIG_KEYS.EG_ID);
+		assertEquals(hash1, sb.getHashCode());
+		
+		//Including changes made to the configuration obtained through the builder
+		sb.getConfig("f1").put(EventGenerator.CONFIG_KEYS.EG_ID, "changed");
+		assertEquals(hash2, sb.getHashCode());
+		sb.getConfig("f1").remove(EventGenerator.CONFIG_KEYS.EG_ID);
+		assertEquals(hash1, sb.getHashCode());
+		
+		//and structural changes
+		sb.getFunction("f2").addDependency("f1");
+		String hash3 = sb.getHashCode();
+		assertNotEquals(hash1, hash3);
+		f1.getConfiguration().put(EventGenerator.CONFIG_KEYS.EG_ID, "changed");
+		assertNotEquals(hash2, sb.getHashCode());
+		assertNotEquals(hash3, sb.getHashCode());
+		f1.getConfiguration().remove(EventGenerator.CONFIG_KEYS.EG_ID);
+		assertEquals(hash3, sb.getHashCode());
+		sb.getFunction("f2").removeDependency(sb.getFunction("f1"));
+		assertEquals(hash1, sb.getHashCode());
+		
+		//Builders with the same content hash the same regardless of the order objects were added in
+		CoreSimulationBuilder sb2 = new CoreSimulationBuilder();
+		sb2.addFunction(new TestFunction("f2", Collections.emptyMap()));
+		sb2.addFunction(new TestFunction("f1", Collections.emptyMap()));
+		assertEquals(hash1, sb2.getHashCode());
+	}
+	
+	@Test
+	void testDiff() {
+		CoreSimulationBuilder sb1 = buildDiffModel();
+		CoreSimulationBuilder sb2 = buildDiffModel();
+		
+		ModelDiff diff = sb1.diff(sb2);
+		assertTrue(diff.isEmpty(), diff.toString());
+		assertTrue(diff.getAffected().isEmpty());
+		
+		//A configuration change affects the changed function and everything downstream of it including the pool it uses
+		sb1.getConfig("a").put(EventGenerator.CONFIG_KEYS.EG_ID, "changed");
+		diff = sb1.diff(sb2);
+		assertFalse(diff.isEmpty());
+		assertEquals(Set.of("a"), diff.getChanged());
+		assertEquals(Set.of("a","b","c","pool","d"), diff.getAffected());
+		assertTrue(diff.getAdded().isEmpty());
+		assertTrue(diff.getRemoved().isEmpty());
+		assertFalse(diff.isEnvironmentChanged());
+		
+		//New objects are reported. The new subscriber changes the dependency but not the events it produces.
+		sb2.addFunction(new TestFunction("e", Collections.emptyMap()));
+		sb2.getFunction("e").addDependency("d");
+		diff = sb2.diff(buildDiffModel());
+		assertEquals(Set.of("e"), diff.getAdded());
+		assertEquals(Set.of("d"), diff.getChanged());
+		assertEquals(Set.of("e"), diff.getAffected());
+		
+		diff = buildDiffModel().diff(sb2);
+		assertEquals(Set.of("e"), diff.getRemoved());
+		assertEquals(Set.of("d"), diff.getChanged());
+		assertTrue(diff.getAffected().isEmpty());
+		
+		//Using a pool changes the inputs of the function
+		CoreSimulationBuilder sb4 = buildDiffModel();
+		sb4.getFunction("f").addResourcePool("pool");
+		diff = sb4.diff(buildDiffModel());
+		assertEquals(Set.of("f","pool"), diff.getChanged());
+		assertEquals(Set.of("c","d","f","pool"), diff.getAffected());
+		
+		CoreSimulationBuilder sb3 = buildDiffModel();
+		sb3.setRandomProvider(new RanluxProvider(5));
+		diff = sb3.diff(buildDiffModel());
+		assertTrue(diff.isEnvironmentChanged());
+		assertTrue(diff.getAffected().isEmpty());
+	}
+	
+	@Test
+	void testPoolPriorities() {
+		Map<String,Integer> seen = new ConcurrentHashMap<>();
+		CoreSimulationBuilder sb1 = buildDiffModel();
+		CoreSimulationBuilder sb2 = buildDiffModel();
+		sb1.addResourcePool(new PriorityPool("pool2", seen));
+		sb2.addResourcePool(new PriorityPool("pool2", seen));
+		sb1.getFunction("c").addResourcePool("pool2");
+		sb2.getFunction("c").addResourcePool("pool2");
+		sb1.getFunction("d").addResourcePool("pool2");
+		sb2.getFunction("d").addResourcePool("pool2");
+		String hash = sb1.getHashCode();
+		assertEquals(hash, sb2.getHashCode());
+		
+		//A priority changes the pool, which affects the functions using it and the other pool they use
+		sb1.getFunction("c").addResourcePool("pool2", 5);
+		assertFalse(hash.equals(sb1.getHashCode()));
+		ModelDiff diff = sb1.diff(sb2);
+		assertEquals(Set.of("pool2"), diff.getChanged());
+		assertEquals(Set.of("pool","pool2","c","d"), diff.getAffected());
+		
+		sb1.createSimulation(1).destroy();
+		assertEquals(Map.of("c",5,"d",0), seen);
+		seen.clear();
+		sb1.compile().createSimulation(1).destroy();
+		assertEquals(Map.of("c",5,"d",0), seen);
+		
+		//Adding the pool without a priority resets it
+		sb1.getFunction("c").addResourcePool("pool2");
+		assertEquals(hash, sb1.getHashCode());
+		sb1.getFunction("c").addResourcePool("pool2", -3);
+		sb1.getFunction("c").removeResourcePool("pool2");
+		sb1.getFunction("c").addResourcePool("pool2");
+		assertEquals(hash, sb1.getHashCode());
+	}
+	
+	private static class PriorityPool extends TestResourcePool{
+		
+		private Map<String,Integer> seen;
+		
+		PriorityPool(String id, Map<String,Integer> seen) {
+			super(id);
+			this.seen = seen;
+		}
+		
+		@Override
+		public EventGenerator copy() {
+			return new PriorityPool(getId(), seen);
+		}
+		
+		@Override
+		public void initiate(BasicInfo info) {
+			for (String dep : info.getDependencies()) {
+				seen.put(dep, info.getPriority(dep));
+			}
+		}
+	}
+	
+	private CoreSimulationBuilder buildDiffModel() {
+		//a <- b <- c, c and d share a pool, f is independent
+		CoreSimulationBuilder sb = new CoreSimulationBuilder();
+		for (String id : new String[] {"a","b","c","d","f"}) {
+			sb.addFunction(new TestFunction(id, Collections.emptyMap()));
+		}
+		sb.addResourcePool(new TestResourcePool("pool"));
+		sb.getFunction("b").addDependency("a");
+		sb.getFunction("c").addDependency("b");
+		sb.getFunction("c").addResourcePool("pool");
+		sb.getFunction("d").addResourcePool("pool");
+		return sb;
+	}
+	
+	static SimulationBuilder buildGeneratorModel(int count, Map<String,RandomGenerator[]> record) {
+		SimulationBuilder sb = new CoreSimulationBuilder();
+		sb.setRandomProvider(new RanluxProvider(17));
+		for (int i = 0; i < count; i++) {
+			sb.addFunction(new GeneratorFunction("f" + i, record));
+			if (i > 0) {
+				sb.getFunction("f" + i).addDependency("f" + (i - 1));
+			}
+		}
+		return sb;
+	}
+	
+	static class GeneratorFunction extends TestFunction{
+
+		private Map<String,RandomGenerator[]> record;
+		
+		GeneratorFunction(String id, Map<String,RandomGenerator[]> record) {
+			super(id, Collections.emptyMap());
+			this.record = record;
+		}
+		
+		@Override
+		public EventGenerator copy() {
+			return new GeneratorFunction(getId(),record);
+		}
+		
+		@Override
+		public void initiate(FunctionInfo info) {
+			record.put(getId(), new RandomGenerator[] {info.getRandomGenerator(), info.getRandomGenerator()});
+		}
+	}
 }
@@ -9,6 +9,8 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 import org.junit.jupiter.api.Test;
 
@@ -238,4 +240,72 @@ class CoreTimeOptimizedResourcePoolTest extends TimePlusEventQueueTest{
 		}
 		assertEquals(j,resLimit * 3);
 	}
+	
+	@Test
+	void testGrantPolicies() {
+		//pro0 is granted at 10 and releases at 110, the other requests are held and granted back to back in policy order
+		assertEquals(List.of("pro0@10","pro1@110","pro2@160","pro3@170","pro4@270"), grantOrder(GrantPolicy.fifo()));
+		assertEquals(List.of("pro0@10","pro3@110","pro1@210","pro2@260","pro4@270"), grantOrder(GrantPolicy.priority()));
+		assertEquals(List.of("pro0@10","pro2@110","pro4@120","pro1@140","pro3@190"), grantOrder(GrantPolicy.shortestRepairFirst()));
+		
+		var pool = new CoreTimeOptimizedResourcePool("pool1",1,0.0,GrantPolicy.shortestRepairFirst());
+		assertEquals("ShortestRepairFirst", pool.copy().getConfiguration().get(CoreTimeOptimizedResourcePool.CONFIG_KEYS.CRP_POLICY));
+	}
+	
+	@Test
+	void testMultiUnitRequests() {
+		//FIFO keeps pro2 behind pro1, which has to wait for both of pro0's units
+		assertEquals(List.of("pro0@10:2","pro1@110:2","pro2@110:1"), multiUnitGrants(GrantPolicy.fifo()));
+		//pro2 outranks the held pro1 and takes the free unit straight away
+		assertEquals(List.of("pro0@10:2","pro2@12:1","pro1@110:2"), multiUnitGrants(GrantPolicy.priority()));
+	}
+	
+	private List<String> multiUnitGrants(GrantPolicy policy) {
+		var pool = new CoreTimeOptimizedResourcePool("pool1",3,0.0,policy);
+		pool.initiate(CoreResourcePoolTest.poolInfo(3, Map.of("pro2", 7)));
+		
+		var toRaise = new ArrayList<Event>();
+		long[] durations = {100, 50, 10};
+		for (int i = 0; i < 3; i++) {
+			var reqEvent = new ResPoolEvent("pro" + i,ResourcePoolEvent.RP_REQUEST,10 + i,ordinal++);
+			reqEvent.setTimeOptimization(durations[i]);
+			if (i < 2) {
+				reqEvent.setUnits(2);
+			}
+			toRaise.add(reqEvent);
+		}
+		TestResources tr = new TestResources(toRaise);
+		pool.consume(100, tr);
+		
+		var toReturn = new ArrayList<String>();
+		for (var re : tr.getRaisedResponses()) {
+			toReturn.add(re.getInResponseTo().getProducerId() + "@" + re.getResponse().getTimeOptimization() + ":" + ResPoolEvent.getUnits(re.getResponse()));
+		}
+		toReturn.sort((a,b) -> Long.compare(Long.parseLong(a.substring(a.indexOf('@') + 1, a.indexOf(':'))), Long.parseLong(b.substring(b.indexOf('@') + 1, b.indexOf(':')))));
+		return toReturn;
+	}
+	
+	private List<String> grantOrder(GrantPolicy policy) {
+		var pool = new CoreTimeOptimizedResourcePool("pool1",1,0.0,policy);
+		pool.initiate(CoreResourcePoolTest.poolInfo(5, CoreResourcePoolTest.PRIORITIES));
+		
+		//The shortest repair first policy needs every request time optimized so pro3 gets the longest repair
+		var toRaise = new ArrayList<Event>();
+		for (int i = 0; i < 5; i++) {
+			var reqEvent = new ResPoolEvent("pro" + i,ResourcePoolEvent.RP_REQUEST,10 + i,ordinal++);
+			reqEvent.setTimeOptimization(CoreResourcePoolTest.DURATIONS.getOrDefault("pro" + i, 100L));
+			toRaise.add(reqEvent);
+		}
+		TestResources tr = new TestResources(toRaise);
+		pool.consume(100, tr);
+		
+		var toReturn = new ArrayList<String>();
+		for (var re : tr.getRaisedResponses()) {
+			assertEquals(ResourcePoolEvent.RP_GRANT, re.getResponse().getType());
+			assertEquals(re.getInResponseTo().getTime(), re.getResponse().getTime());
+			toReturn.add(re.getInResponseTo().getProducerId() + "@" + re.getResponse().getTimeOptimization());
+		}
+		toReturn.sort((a,b) -> Long.compare(Long.parseLong(a.substring(a.indexOf('@') + 1)), Long.parseLong(b.substring(b.indexOf('@') + 1))));
+		return toReturn;
+	}
 }
@@ -0,0 +1,62 @@
+/**
+ * 
+ */
+package com.perelens.simulation.core;
+
+import com.perelens.simulation.api.Distribution;
+import com.perelens.simulation.api.DistributionProvider;
+
+/**
+ * Copyright 2020-2023 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" 
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
+   permissions and limitations under the License
+
+   Measures the cost of Distribution.sample(double) for the built-in distributions.
+   Run with a warmed up JVM; each distribution is timed over the same array of uniforms three times and the sum of the
+   samples is printed so the JIT cannot discard the work.
+   
+ * @author Steve Branda
+ *
+ */
+public class DistributionThroughput {
+
+	public static void main(String[] args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+		DistributionProvider dp = new CoreDistributionProvider();
+		DistributionProvider legacy = new CoreDistributionProvider(true);
+		Distribution[] dists = {
+				dp.exponential(100),
+				dp.lognormal(3, 0.8),
+				legacy.lognormal(3, 0.8),
+				dp.weibull(1.7, 100),
+				dp.gamma(2.5, 40),
+				dp.triangular(1, 2, 10),
+				dp.pert(1, 2, 10)
+		};
+		
+		double[] uniforms = new double[count];
+		long state = 1;
+		for (int i = 0; i < count; i++) {
+			state = state * 6364136223846793005L + 1442695040888963407L;
+			uniforms[i] = ((state >>> 11) + 0.5) * 0x1.0p-53;
+		}
+		
+		for (int round = 0; round < 3; round++) {
+			for (Distribution d : dists) {
+				long start = System.nanoTime();
+				double sum = 0;
+				for (int i = 0; i < count; i++) {
+					sum += d.sample(uniforms[i]);
+				}
+				long elapsed = System.nanoTime() - start;
+				System.out.println(d.getSetup() + ": " + String.format("%.2f", (double)elapsed / count) + " ns/sample (" + sum / count + ")");
+			}
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/**
+ * 
+ */
+package com.perelens.simulation.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Copyright 2020-2025 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" 
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
+   permissions and limitations under the License
+
+   
+ * @author Steve Branda
+ *
+ */
+class IndexedRequestHeapTest {
+
+	@Test
+	void testAgainstSortedSet() {
+		//Entries are {rank, sequence, handle} so the set orders them the way the heap should
+		TreeSet<long[]> expected = new TreeSet<>((a,b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+		long[][] byHandle = new long[300][];
+		IndexedRequestHeap heap = new IndexedRequestHeap();
+		Random r = new Random(3);
+		long sequence = 0;
+		
+		for (int i = 0; i < 100_000; i++) {
+			int handle = r.nextInt(byHandle.length);
+			int op = r.nextInt(4);
+			if (byHandle[handle] == null && op < 2) {
+				long rank = r.nextInt(20);
+				byHandle[handle] = new long[] {rank, sequence++, handle};
+				expected.add(byHandle[handle]);
+				heap.offer(handle, rank);
+			}else if (op == 2 && !expected.isEmpty()) {
+				long[] first = expected.pollFirst();
+				assertEquals(first[0], heap.getRank((int)first[2]));
+				assertEquals(first[2], heap.poll());
+				byHandle[(int)first[2]] = null;
+			}else {
+				assertEquals(byHandle[handle] != null, heap.remove(handle));
+				if (byHandle[handle] != null) {
+					expected.remove(byHandle[handle]);
+					byHandle[handle] = null;
+				}
+			}
+			assertEquals(expected.size(), heap.size());
+			assertEquals(byHandle[handle] != null, heap.contains(handle));
+		}
+		
+		//A copy drains in the same order and leaves the original untouched
+		IndexedRequestHeap copy = heap.copy();
+		int size = heap.size();
+		for (long[] e : expected) {
+			assertEquals(e[2], copy.poll());
+		}
+		assertEquals(0, copy.size());
+		assertEquals(size, heap.size());
+	}
+	
+	@Test
+	void testBadUse() {
+		IndexedRequestHeap heap = new IndexedRequestHeap();
+		assertThrows(IllegalStateException.class, () -> heap.poll());
+		assertThrows(IllegalArgumentException.class, () -> heap.offer(-1, 0));
+		assertThrows(IllegalArgumentException.class, () -> heap.offer(1, Double.NaN));
+		heap.offer(1000, 0);
+		assertThrows(IllegalStateException.class, () -> heap.offer(1000, 1));
+		assertFalse(heap.contains(999));
+		assertTrue(heap.remove(1000));
+		assertFalse(heap.remove(1000));
+	}
+}
@@ -0,0 +1,153 @@
+/**
+ *
+ */
+package com.perelens.simulation.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.perelens.engine.TestResources;
+import com.perelens.engine.api.Event;
+import com.perelens.simulation.events.ResourcePoolEvent;
+
+/**
+ * Copyright 2020-2025 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS"
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing
+   permissions and limitations under the License
+
+ * @author Steve Branda
+ */
+class PoolStatisticsTest {
+
+	long ordinal = 1;
+
+	@Test
+	void testResourcePoolStatistics() {
+		ArrayList<Long> waits = new ArrayList<>();
+		PoolStatistics stats = new PoolStatistics(waits::add);
+		CoreResourcePool proto = new CoreResourcePool("pool1",1);
+		proto.setStatistics(stats);
+		//Copies made by the builder feed the same collector
+		CoreResourcePool pool = (CoreResourcePool)proto.copy();
+		pool.initiate(CoreResourcePoolTest.poolInfo(2, Map.of()));
+
+		//pro0 is granted at 10, pro1 waits from 20 and is deferred at the end of the window
+		window(pool, 100, new ResPoolEvent("pro0",ResourcePoolEvent.RP_REQUEST,10,ordinal++), new ResPoolEvent("pro1",ResourcePoolEvent.RP_REQUEST,20,ordinal++));
+		assertEquals(100, stats.getObservedTime());
+		assertEquals(0.9, stats.getUtilisation(), 0.0000001);
+		assertEquals(0.8, stats.getMeanQueueLength(), 0.0000001);
+		assertEquals(1, stats.getMaxQueueLength());
+		assertEquals(1, stats.getGrants());
+		assertEquals(1, stats.getDeferrals());
+		assertEquals(List.of(0L), waits);
+
+		//pro1 renews and is granted when pro0 returns at 150
+		window(pool, 200, new ResPoolEvent("pro1",ResourcePoolEvent.RP_RENEW,100,ordinal++), new ResPoolEvent("pro0",ResourcePoolEvent.RP_RETURN,150,ordinal++));
+		assertEquals(200, stats.getObservedTime());
+		assertEquals(0.95, stats.getUtilisation(), 0.0000001);
+		assertEquals(0.65, stats.getMeanQueueLength(), 0.0000001);
+		assertEquals(1, stats.getMaxQueueLength());
+		assertEquals(2, stats.getGrants());
+		assertEquals(1, stats.getDeferrals());
+		assertEquals(List.of(0L,130L), waits);
+		assertEquals(65, stats.getMeanWaitTime(), 0.0000001);
+		assertEquals(130, stats.getMaxWaitTime());
+		assertEquals(0, stats.getWaitTimePercentile(0.5));
+		assertEquals(130, stats.getWaitTimePercentile(1));
+		assertEquals(1, stats.getWaitTimeCounts()[0]);
+		assertEquals(1, stats.getWaitTimeCounts()[PoolStatistics.getBucket(130)]);
+	}
+
+	@Test
+	void testTimeOptimizedPoolStatistics() {
+		ArrayList<Long> waits = new ArrayList<>();
+		PoolStatistics stats = new PoolStatistics(waits::add);
+		CoreTimeOptimizedResourcePool proto = new CoreTimeOptimizedResourcePool("pool1",1);
+		proto.setStatistics(stats);
+		CoreTimeOptimizedResourcePool pool = (CoreTimeOptimizedResourcePool)proto.copy();
+
+		//pro0 holds the unit from 50 to 150 and pro1 waits for it from 60 to 150, then holds it until 250
+		ResPoolEvent r0 = new ResPoolEvent("pro0",ResourcePoolEvent.RP_REQUEST,50,ordinal++);
+		r0.setTimeOptimization(100);
+		ResPoolEvent r1 = new ResPoolEvent("pro1",ResourcePoolEvent.RP_REQUEST,60,ordinal++);
+		r1.setTimeOptimization(100);
+		pool.consume(250, new TestResources(List.of(r0,r1)));
+
+		assertEquals(250, stats.getObservedTime());
+		assertEquals(0.8, stats.getUtilisation(), 0.0000001);
+		assertEquals(90/250.0, stats.getMeanQueueLength(), 0.0000001);
+		assertEquals(1, stats.getMaxQueueLength());
+		assertEquals(2, stats.getGrants());
+		assertEquals(0, stats.getDeferrals());
+		assertEquals(List.of(0L,90L), waits);
+	}
+	
+	@Test
+	void testTimeOptimizedPoolCarriesBusyTime() {
+		PoolStatistics stats = new PoolStatistics();
+		CoreTimeOptimizedResourcePool pool = new CoreTimeOptimizedResourcePool("pool1",1);
+		pool.setStatistics(stats);
+		
+		//Both grants are made in the first window but only the parts of their repair and wait inside it are counted
+		ResPoolEvent r0 = new ResPoolEvent("pro0",ResourcePoolEvent.RP_REQUEST,50,ordinal++);
+		r0.setTimeOptimization(100);
+		ResPoolEvent r1 = new ResPoolEvent("pro1",ResourcePoolEvent.RP_REQUEST,60,ordinal++);
+		r1.setTimeOptimization(100);
+		pool.consume(100, new TestResources(List.of(r0,r1)));
+		
+		assertEquals(100, stats.getObservedTime());
+		assertEquals(0.5, stats.getUtilisation(), 0.0000001);
+		assertEquals(0.4, stats.getMeanQueueLength(), 0.0000001);
+		assertEquals(2, stats.getGrants());
+		
+		//The remainder is counted as later windows are observed
+		pool.consume(200, new TestResources(Collections.emptyList()));
+		assertEquals(150/200.0, stats.getUtilisation(), 0.0000001);
+		assertEquals(90/200.0, stats.getMeanQueueLength(), 0.0000001);
+		
+		pool.consume(400, new TestResources(Collections.emptyList()));
+		assertEquals(200/400.0, stats.getUtilisation(), 0.0000001);
+		assertEquals(90/400.0, stats.getMeanQueueLength(), 0.0000001);
+	}
+	
+	@Test
+	void testWaitTimeHistogram() {
+		for (long wait : new long[] {0, 1, 7, 8, 9, 15, 16, 17, 100, 1000, 123456789, Long.MAX_VALUE}) {
+			int bucket = PoolStatistics.getBucket(wait);
+			assertTrue(PoolStatistics.getBucketStart(bucket) <= wait);
+			assertTrue(wait < PoolStatistics.getBucketStart(bucket + 1) || bucket + 1 == PoolStatistics.getWaitTimeBuckets());
+			//Buckets are never wider than an eighth of their start
+			assertTrue(PoolStatistics.getBucketStart(bucket + 1) - PoolStatistics.getBucketStart(bucket) <= Math.max(1, PoolStatistics.getBucketStart(bucket) / 8));
+		}
+		assertEquals(PoolStatistics.getWaitTimeBuckets() - 1, PoolStatistics.getBucket(Long.MAX_VALUE));
+	}
+
+	/**
+	 * Sends the events to the pool and keeps calling it while it waits for a response to a grant, as the engine would
+	 */
+	private void window(CoreResourcePool pool, long timeWindow, Event... events){
+		TestResources tr = new TestResources(List.of(events));
+		boolean granted;
+		do {
+			pool.consume(timeWindow, tr);
+			granted = false;
+			for (var re : tr.getRaisedResponses()) {
+				granted |= re.getResponse().getType() == ResourcePoolEvent.RP_GRANT;
+			}
+			tr = new TestResources(Collections.emptyList());
+		}while (granted);
+	}
+}
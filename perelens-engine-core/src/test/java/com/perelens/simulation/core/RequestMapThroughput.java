@@ -0,0 +1,85 @@
+/**
+ * 
+ */
+package com.perelens.simulation.core;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import com.perelens.engine.TestEvent;
+import com.perelens.engine.TestEventType;
+import com.perelens.engine.api.Event;
+import com.perelens.engine.api.EventGenerator;
+
+/**
+ * Copyright 2020-2023 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" 
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
+   permissions and limitations under the License
+
+   Measures the RequestQueueAndMap map operations for pools with 10, 1,000 and 100,000 requesters.
+   Each cycle mirrors what a contended CoreResourcePool does in a time window: every requester puts a request, the
+   defer loop iterates the map and replaces every value, the requests are granted and then every requester returns.
+   The cycle count is scaled so each size does roughly the same number of operations.
+   
+ * @author Steve Branda
+ *
+ */
+public class RequestMapThroughput {
+
+	public static void main(String[] args) {
+		long operations = args.length > 0 ? Long.parseLong(args[0]) : 20_000_000L;
+		int[] sizes = {10, 1_000, 100_000};
+		Event request = new TestEvent("p1",TestEventType.TE_EVENT1,1,1);
+		Event deferred = new TestEvent("p1",TestEventType.TE_EVENT2,1,2);
+		Event granted = new TestEvent("p1",TestEventType.TE_EVENT1,1,3);
+		
+		for (int round = 0; round < 3; round++) {
+			for (int size : sizes) {
+				String[] requesters = new String[size];
+				for (int i = 0; i < size; i++) {
+					requesters[i] = "server-" + i;
+				}
+				RequestQueueAndMap map = newMap();
+				long cycles = Math.max(1, operations / (4L * size));
+				long checksum = 0;
+				long start = System.nanoTime();
+				for (long c = 0; c < cycles; c++) {
+					for (String r : requesters) {
+						map.m_put(r, request);
+					}
+					for (Iterator<Map.Entry<String,Event>> iter = map.m_iterator(); iter.hasNext();) {
+						iter.next().setValue(deferred);
+					}
+					for (String r : requesters) {
+						checksum += map.m_put(r, granted).getOrdinal();
+					}
+					for (String r : requesters) {
+						checksum += map.m_remove(r).getOrdinal();
+					}
+				}
+				long elapsed = System.nanoTime() - start;
+				System.out.println(size + " requesters: " + String.format("%.2f", (double)elapsed / (cycles * 4 * size)) + " ns/op (" + checksum + ")");
+			}
+		}
+	}
+	
+	private static RequestQueueAndMap newMap() {
+		return new RequestQueueAndMap("pool") {
+			@Override
+			public EventGenerator copy() {
+				throw new IllegalStateException();
+			}
+
+			@Override
+			protected void process(Event curEvent) {
+				throw new IllegalStateException();
+			}
+		};
+	}
+}
@@ -5,8 +5,10 @@ package com.perelens.simulation.core;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Random;
 
 import org.junit.jupiter.api.Test;
 
@@ -199,6 +201,56 @@ class RequestQueueAndMapTest {
 		assertEquals(0,rq.m_size());
 	}
 	
+	@Test
+	void testMapChurn() {
+		//Keys built from "Aa" and "BB" all share a hashCode, so long probe runs and backward shifts get exercised
+		String[] keys = new String[512];
+		for (int i = 0; i < keys.length; i++) {
+			StringBuilder sb = new StringBuilder();
+			for (int b = 0; b < 9; b++) {
+				sb.append((i & (1 << b)) == 0 ? "Aa" : "BB");
+			}
+			keys[i] = i % 2 == 0 ? sb.toString() : "k" + i;
+		}
+		
+		RequestQueueAndMap rq = newRequestQueueAndMap();
+		HashMap<String,Event> expected = new HashMap<>();
+		Random r = new Random(7);
+		for (int i = 0; i < 50_000; i++) {
+			String key = keys[r.nextInt(keys.length)];
+			if (r.nextInt(3) == 0) {
+				assertEquals(expected.remove(key), rq.m_remove(key));
+			}else {
+				Event ev = new TestEvent("p1",TestEventType.TE_EVENT1,i,i + 1);
+				assertEquals(expected.put(key, ev), rq.m_put(key, ev));
+			}
+			assertEquals(expected.size(), rq.m_size());
+			
+			if (i % 5000 == 0) {
+				for (String k : keys) {
+					assertEquals(expected.get(k), rq.m_get(k));
+				}
+			}
+		}
+		
+		//Removing entries part way through an iteration must not skip or repeat any of the others
+		HashMap<String,Event> seen = new HashMap<>();
+		boolean remove = true;
+		for(Iterator<Map.Entry<String,Event>> iter = rq.m_iterator(); iter.hasNext();) {
+			Map.Entry<String, Event> e = iter.next();
+			assertNull(seen.put(e.getKey(), e.getValue()));
+			if (remove) {
+				assertEquals(expected.remove(e.getKey()), e.setValue(null));
+			}
+			remove = !remove;
+		}
+		assertEquals(expected.size(), rq.m_size());
+		assertEquals(seen.size(), expected.size() * 2 + seen.size() % 2);
+		for (String k : keys) {
+			assertEquals(expected.get(k), rq.m_get(k));
+		}
+	}
+	
 	@Test
 	void testSyncInternalStateRequestQueueAndMap() {
 		RequestQueueAndMap rq = newRequestQueueAndMap();
@@ -222,6 +274,7 @@ class RequestQueueAndMapTest {
 		rq.syncInternalState(rq2);
 		
 		assertEquals(100,rq2.r_size());
+		assertEquals(99,rq2.m_size());
 		assertNotNull(rq2.m_get("k1"));
 		
 		for (int i = 1; i < 100; i++) {
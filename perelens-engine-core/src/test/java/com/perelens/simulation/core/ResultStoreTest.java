@@ -0,0 +1,207 @@
+/**
+ *
+ */
+package com.perelens.simulation.core;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.LongBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.perelens.simulation.api.RandomGenerator;
+import com.perelens.simulation.api.RandomProvider;
+import com.perelens.simulation.api.SimulationBuilder;
+import com.perelens.simulation.core.ResultStore.Results;
+import com.perelens.simulation.random.RanluxProvider;
+import com.perelens.simulation.random.fast.PhiloxProvider;
+import com.perelens.simulation.random.fast.SobolProvider;
+
+/**
+ * Copyright 2020-2023 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS"
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing
+   permissions and limitations under the License
+
+
+ * @author Steve Branda
+ *
+ */
+class ResultStoreTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void testKey() {
+		String k1 = ResultStore.key("abc", new RanluxProvider(1), 1000);
+		assertEquals(k1, ResultStore.key("abc", new RanluxProvider(1), 1000));
+		assertFalse(k1.equals(ResultStore.key("abd", new RanluxProvider(1), 1000)));
+		assertFalse(k1.equals(ResultStore.key("abc", new RanluxProvider(2), 1000)));
+		assertFalse(k1.equals(ResultStore.key("abc", new RanluxProvider(1), 1001)));
+		assertFalse(k1.equals(ResultStore.key("abc", null, 1000)));
+		
+		//A provider that has handed out generators starts the next run from a different state
+		RanluxProvider used = new RanluxProvider(1);
+		used.createGenerator();
+		assertFalse(k1.equals(ResultStore.key("abc", used, 1000)));
+		assertEquals(ResultStore.key("abc", used, 1000), ResultStore.key("abc", used.copy(), 1000));
+		
+		//Creating the key does not advance the provider
+		RanluxProvider fresh = new RanluxProvider(1);
+		ResultStore.key("abc", fresh, 1000);
+		assertEquals(new RanluxProvider(1).createGenerator().getRandomSetup(), fresh.createGenerator().getRandomSetup());
+		
+		//Order independent providers produce the same streams however many generators they handed out
+		PhiloxProvider philox = new PhiloxProvider(1);
+		String k2 = ResultStore.key("abc", philox, 1000);
+		philox.createGenerator();
+		assertEquals(k2, ResultStore.key("abc", philox, 1000));
+		
+		//but move to new streams with every replication
+		philox.startReplication();
+		assertFalse(k2.equals(ResultStore.key("abc", philox, 1000)));
+	}
+	
+	@Test
+	void testSobolReplications() {
+		ResultStore store = new ResultStore(dir, 1_000_000);
+		HashMap<String,RandomGenerator[]> record = new HashMap<>();
+		SimulationBuilder sb = CoreSimulationBuilderTest.buildGeneratorModel(3, record);
+		RandomProvider sobol = new SobolProvider(5);
+		sb.setRandomProvider(sobol);
+		
+		//Each replication is a different point of the sequence, so its results must be stored under its own key
+		String[] keys = new String[2];
+		double[] values = new double[2];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = ResultStore.key(sb.getHashCode(), sobol, 1000);
+			sb.createSimulation(1).destroy();
+			values[i] = record.get("f1")[0].nextDouble();
+			store.put(keys[i], new Results().putDouble("value", values[i]));
+		}
+		
+		assertFalse(keys[0].equals(keys[1]));
+		assertFalse(values[0] == values[1]);
+		assertEquals(values[0], store.get(keys[0]).getDouble("value"));
+		assertEquals(values[1], store.get(keys[1]).getDouble("value"));
+	}
+
+	@Test
+	void testPutGet() {
+		ResultStore store = new ResultStore(dir, 1_000_000);
+		String key = ResultStore.key("model", new RanluxProvider(7), 50_000);
+		assertNull(store.get(key));
+
+		long[] downtime = {5, 10, 2, Long.MAX_VALUE, -1};
+		double[] samples = {0.5, 0.999, Double.MIN_VALUE, Double.NaN};
+		store.put(key, new Results()
+				.putLongs("downtime", downtime)
+				.putDoubles("samples", samples)
+				.putLongs("empty", new long[0])
+				.putLong("upTime", 123)
+				.putDouble("availability", 0.25));
+
+		assertTrue(store.contains(key));
+		assertTrue(store.getSizeOnDisk() > 0);
+
+		//Reopen the store to make sure everything comes from disk
+		store = new ResultStore(dir, 1_000_000);
+		Results r = store.get(key);
+		assertNotNull(r);
+		assertArrayEquals(downtime, r.getLongs("downtime"));
+		assertArrayEquals(samples, r.getDoubles("samples"));
+		assertEquals(0, r.getLongs("empty").length);
+		assertEquals(123, r.getLong("upTime"));
+		assertEquals(0.25, r.getDouble("availability"));
+		assertNull(r.getDoubles("downtime"));
+		assertEquals(5, r.getNames().size());
+		
+		//Stored arrays are read-only views of the mapped file until copied
+		r = store.get(key);
+		LongBuffer view = r.getLongBuffer("downtime");
+		assertTrue(view.isReadOnly());
+		assertTrue(view.isDirect());
+		assertEquals(downtime.length, view.remaining());
+		assertEquals(Long.MAX_VALUE, view.get(3));
+		assertEquals(samples[1], r.getDoubleBuffer("samples").get(1));
+		assertNull(r.getLongBuffer("samples"));
+		assertSame(r.getLongs("downtime"), r.getLongs("downtime"));
+		assertFalse(r.getLongBuffer("downtime").isDirect());
+		
+		//Results read from the store can be stored again
+		store.put("copy", r);
+		Results copy = store.get("copy");
+		assertArrayEquals(downtime, copy.getLongs("downtime"));
+		assertArrayEquals(samples, copy.getDoubles("samples"));
+		store.remove("copy");
+
+		int[] runs = new int[1];
+		Results r2 = store.computeIfAbsent(key, () -> {
+			runs[0]++;
+			return new Results();
+		});
+		assertEquals(0, runs[0]);
+		assertEquals(123, r2.getLong("upTime"));
+
+		store.remove(key);
+		assertNull(store.get(key));
+		assertEquals(0, store.getSizeOnDisk());
+	}
+
+	@Test
+	void testLruEviction() {
+		Results data = new Results().putLongs("values", new long[100]);
+		long entrySize = data.getFileSize();
+		ResultStore store = new ResultStore(dir, entrySize * 3);
+
+		store.put("a", data);
+		store.put("b", data);
+		store.put("c", data);
+		assertEquals(entrySize * 3, store.getSizeOnDisk());
+
+		//Touch a so b becomes the least recently used
+		assertNotNull(store.get("a"));
+		store.put("d", data);
+		assertTrue(store.contains("a"));
+		assertFalse(store.contains("b"));
+		assertTrue(store.contains("c"));
+		assertTrue(store.contains("d"));
+		assertEquals(entrySize * 3, store.getSizeOnDisk());
+
+		//Entries bigger than the budget are not stored
+		store.put("big", new Results().putLongs("values", new long[1000]));
+		assertFalse(store.contains("big"));
+
+		//A smaller budget evicts down to size when the store is opened
+		store = new ResultStore(dir, entrySize);
+		assertEquals(entrySize, store.getSizeOnDisk());
+	}
+
+	@Test
+	void testCorruptEntry() throws IOException {
+		ResultStore store = new ResultStore(dir, 1_000_000);
+		store.put("a", new Results().putLong("x", 1));
+		Files.write(dir.resolve("a.res"), new byte[] {1,2,3});
+
+		store = new ResultStore(dir, 1_000_000);
+		assertNull(store.get("a"));
+		assertFalse(store.contains("a"));
+	}
+}
@@ -0,0 +1,154 @@
+/**
+ * 
+ */
+package com.perelens.simulation.random.fast;
+
+import com.perelens.simulation.api.RandomGenerator;
+import com.perelens.simulation.api.RandomProvider;
+
+/**
+ * Copyright 2020-2023 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" 
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
+   permissions and limitations under the License
+
+   RandomProvider based on O'Neill's PCG64 (128 bit LCG state with XSL-RR output) generator.
+   Generators are given distinct streams (LCG increments) in creation order, and each one starts from its own state
+   expanded with SplitMix64 from the provider seed and its stream number, since PCG streams that only differ in their
+   increment are strongly correlated.  A generator is fully described by the provider seed and its stream number.
+   
+ * @author Steve Branda
+ *
+ */
+public class Pcg64Provider implements RandomProvider {
+
+	private static final long serialVersionUID = 6931771502283350420L;
+	
+	static final String NAME = "PCG64";
+	
+	private static final long MUL_HI = 0x2360ed051fc65da4L;
+	private static final long MUL_LO = 0x4385df649fccf645L;
+	
+	private long startSeed;
+	private long currentStream;
+	
+	public Pcg64Provider(long startSeed) {
+		this(startSeed, 0);
+	}
+	
+	protected Pcg64Provider(long startSeed, long currentStream) {
+		this.startSeed = startSeed;
+		this.currentStream = currentStream;
+	}
+	
+	@Override
+	public RandomGenerator createGenerator() {
+		return new Pcg64Generator(startSeed, currentStream++);
+	}
+
+	@Override
+	public RandomGenerator createGenerator(String generatorSetup) {
+		String[] pieces = generatorSetup.split("\\;");
+		if (pieces.length != 3 || !NAME.equals(pieces[0])) {
+			throw new IllegalArgumentException("Bad setup string");
+		}
+		return new Pcg64Generator(Long.parseLong(pieces[1]), Long.parseLong(pieces[2]));
+	}
+
+	@Override
+	public String getSetup() {
+		return NAME + ';' + startSeed;
+	}
+
+	@Override
+	public RandomProvider copy() {
+		return new Pcg64Provider(startSeed, currentStream);
+	}
+	
+	static long unsignedMultiplyHigh(long a, long b) {
+		return Math.multiplyHigh(a, b) + ((a >> 63) & b) + ((b >> 63) & a);
+	}
+	
+	protected static class Pcg64Generator implements RandomGenerator{
+
+		private static final long serialVersionUID = -3391052875916430717L;
+		
+		private long seed;
+		private long stream;
+		private long hi, lo;
+		private long incHi, incLo;
+		
+		protected Pcg64Generator(long seed, long stream) {
+			this.seed = seed;
+			this.stream = stream;
+			//The mixer is a bijection, so every stream of a seed starts from a different state
+			long[] init = SplitMix64.expand(seed ^ SplitMix64.mix64(stream + 1), 2);
+			initialize(init[0], init[1], 0, stream);
+		}
+		
+		/**
+		 * Seeds the generator the same way as pcg_setseq_128_srandom_r() in the PCG reference implementation.
+		 * 
+		 * @param stateHi
+		 * @param stateLo
+		 * @param seqHi
+		 * @param seqLo
+		 */
+		Pcg64Generator(long stateHi, long stateLo, long seqHi, long seqLo) {
+			initialize(stateHi, stateLo, seqHi, seqLo);
+		}
+		
+		private Pcg64Generator() {}
+		
+		private void initialize(long stateHi, long stateLo, long seqHi, long seqLo) {
+			incHi = (seqHi << 1) | (seqLo >>> 63);
+			incLo = (seqLo << 1) | 1;
+			hi = 0;
+			lo = 0;
+			step();
+			long sum = lo + stateLo;
+			hi = hi + stateHi + (Long.compareUnsigned(sum, lo) < 0 ? 1 : 0);
+			lo = sum;
+			step();
+		}
+		
+		private void step() {
+			long newHi = unsignedMultiplyHigh(lo, MUL_LO) + lo * MUL_HI + hi * MUL_LO;
+			long newLo = lo * MUL_LO;
+			lo = newLo + incLo;
+			hi = newHi + incHi + (Long.compareUnsigned(lo, newLo) < 0 ? 1 : 0);
+		}
+		
+		long nextLong() {
+			step();
+			return Long.rotateRight(hi ^ lo, (int)(hi >>> 58));
+		}
+		
+		@Override
+		public double nextDouble() {
+			return SplitMix64.toDouble(nextLong());
+		}
+
+		@Override
+		public String getRandomSetup() {
+			return NAME + ';' + seed + ';' + stream;
+		}
+
+		@Override
+		public RandomGenerator copy() {
+			Pcg64Generator toReturn = new Pcg64Generator();
+			toReturn.seed = seed;
+			toReturn.stream = stream;
+			toReturn.hi = hi;
+			toReturn.lo = lo;
+			toReturn.incHi = incHi;
+			toReturn.incLo = incLo;
+			return toReturn;
+		}
+	}
+}
@@ -0,0 +1,214 @@
+/**
+ * 
+ */
+package com.perelens.simulation.random.fast;
+
+import com.perelens.simulation.api.RandomGenerator;
+import com.perelens.simulation.api.RandomProvider;
+
+/**
+ * Copyright 2020-2023 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" 
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
+   permissions and limitations under the License
+
+   RandomProvider based on the Philox4x32-10 counter based generator by Salmon et al. (Random123).
+   The provider seed is the 64 bit Philox key and each generator owns the 2^64 blocks of the counter space whose upper
+   64 bits equal its stream number.  Since the output is a pure function of key and counter, generator state is just
+   the counter and any position in a stream can be reached without generating the values before it.
+   
+   The provider is order independent.  createGenerator(String, int) uses a 64 bit hash of the entry id, stream index and replication
+   as the stream number, so the generators a simulation object receives only depend on its id, the provider seed and the number of
+   Simulations the provider has been used for.
+   createGenerator() hands out the streams 0, 1, 2... in creation order for use outside of a SimulationBuilder.
+   
+ * @author Steve Branda
+ *
+ */
+public class PhiloxProvider implements RandomProvider {
+
+	private static final long serialVersionUID = -4393805040696060581L;
+	
+	static final String NAME = "Philox4x32-10";
+	
+	private static final int M0 = 0xD2511F53;
+	private static final int M1 = 0xCD9E8D57;
+	private static final int W0 = 0x9E3779B9;
+	private static final int W1 = 0xBB67AE85;
+	
+	private long startSeed;
+	private long currentStream;
+	private long replication;
+	
+	public PhiloxProvider(long startSeed) {
+		this(startSeed, 0);
+	}
+	
+	protected PhiloxProvider(long startSeed, long currentStream) {
+		this(startSeed, currentStream, 0);
+	}
+	
+	protected PhiloxProvider(long startSeed, long currentStream, long replication) {
+		this.startSeed = startSeed;
+		this.currentStream = currentStream;
+		this.replication = replication;
+	}
+	
+	@Override
+	public RandomGenerator createGenerator() {
+		return new PhiloxGenerator(startSeed, currentStream++);
+	}
+
+	@Override
+	public RandomGenerator createGenerator(String entryId, int streamIndex) {
+		return new PhiloxGenerator(startSeed, streamKey(entryId, streamIndex, replication));
+	}
+	
+	@Override
+	public boolean isOrderIndependent() {
+		return true;
+	}
+	
+	@Override
+	public void startReplication() {
+		replication++;
+	}
+	
+	@Override
+	public long getReplication() {
+		return replication;
+	}
+	
+	/**
+	 * FNV-1a hash of the id finished with the SplitMix64 mixer, then mixed again with the replication.
+	 * The mixer is a bijection, so different stream indexes of the same id never share a stream within a replication.
+	 * 
+	 * @param entryId
+	 * @param streamIndex
+	 * @param replication
+	 * @return
+	 */
+	static long streamKey(String entryId, int streamIndex, long replication) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < entryId.length(); i++) {
+			h ^= entryId.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		long key = SplitMix64.mix64(h + (streamIndex + 1L) * SplitMix64.GOLDEN_GAMMA);
+		return SplitMix64.mix64(key + replication * SplitMix64.GOLDEN_GAMMA);
+	}
+	
+	@Override
+	public RandomGenerator createGenerator(String generatorSetup) {
+		String[] pieces = generatorSetup.split("\\;");
+		if (pieces.length != 3 || !NAME.equals(pieces[0])) {
+			throw new IllegalArgumentException("Bad setup string");
+		}
+		return new PhiloxGenerator(Long.parseLong(pieces[1]), Long.parseLong(pieces[2]));
+	}
+
+	@Override
+	public String getSetup() {
+		return NAME + ';' + startSeed;
+	}
+
+	@Override
+	public RandomProvider copy() {
+		return new PhiloxProvider(startSeed, currentStream, replication);
+	}
+	
+	/**
+	 * Computes the Philox4x32-10 block for the given counter and key into out.
+	 * 
+	 * @param ctr
+	 * @param k0
+	 * @param k1
+	 * @param out
+	 */
+	static void block(int[] ctr, int k0, int k1, int[] out) {
+		int c0 = ctr[0], c1 = ctr[1], c2 = ctr[2], c3 = ctr[3];
+		for (int round = 0; round < 10; round++) {
+			if (round > 0) {
+				k0 += W0;
+				k1 += W1;
+			}
+			long p0 = (M0 & 0xffffffffL) * (c0 & 0xffffffffL);
+			long p1 = (M1 & 0xffffffffL) * (c2 & 0xffffffffL);
+			c0 = (int)(p1 >>> 32) ^ c1 ^ k0;
+			c1 = (int)p1;
+			c2 = (int)(p0 >>> 32) ^ c3 ^ k1;
+			c3 = (int)p0;
+		}
+		out[0] = c0;
+		out[1] = c1;
+		out[2] = c2;
+		out[3] = c3;
+	}
+	
+	protected static class PhiloxGenerator implements RandomGenerator{
+
+		private static final long serialVersionUID = 4419282542934167105L;
+		
+		private long seed;
+		private long stream;
+		private long counter;
+		private int[] ctr = new int[4];
+		private int[] buffer = new int[4];
+		private int position = 4;
+		
+		protected PhiloxGenerator(long seed, long stream) {
+			this.seed = seed;
+			this.stream = stream;
+		}
+		
+		/**
+		 * Moves the generator to the start of the given block of its stream.
+		 * Each block produces two doubles.
+		 * 
+		 * @param block
+		 */
+		public void seek(long block) {
+			counter = block;
+			position = 4;
+		}
+		
+		private void refill() {
+			ctr[0] = (int)counter;
+			ctr[1] = (int)(counter >>> 32);
+			ctr[2] = (int)stream;
+			ctr[3] = (int)(stream >>> 32);
+			block(ctr, (int)seed, (int)(seed >>> 32), buffer);
+			counter++;
+			position = 0;
+		}
+		
+		@Override
+		public double nextDouble() {
+			if (position == 4) {
+				refill();
+			}
+			long bits = ((long)buffer[position] << 32) | (buffer[position + 1] & 0xffffffffL);
+			position += 2;
+			return SplitMix64.toDouble(bits);
+		}
+
+		@Override
+		public String getRandomSetup() {
+			return NAME + ';' + seed + ';' + stream;
+		}
+
+		@Override
+		public RandomGenerator copy() {
+			PhiloxGenerator toReturn = new PhiloxGenerator(seed, stream);
+			toReturn.counter = counter;
+			toReturn.position = position;
+			toReturn.buffer = buffer.clone();
+			return toReturn;
+		}
+	}
+}
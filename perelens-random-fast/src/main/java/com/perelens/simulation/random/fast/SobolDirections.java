@@ -0,0 +1,166 @@
+/**
+ * 
+ */
+package com.perelens.simulation.random.fast;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copyright 2020-2023 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" 
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
+   permissions and limitations under the License
+
+   Direction numbers for Sobol sequences.
+   Dimension 0 is the van der Corput sequence in base 2.  Dimension d > 0 uses the d'th primitive polynomial over GF(2),
+   ordered by degree and then by value, which are found by testing every candidate for primitivity.  The free initial
+   direction numbers m_i (odd and below 2^i) are drawn from a fixed SplitMix64 stream rather than taken from an optimized
+   table, so every dimension is a valid Sobol sequence but low dimensional projections are not tuned the way the
+   Joe and Kuo numbers are.  Scrambling in SobolProvider makes up most of the difference in practice.
+   
+ * @author Steve Branda
+ *
+ */
+final class SobolDirections {
+
+	static final int BITS = 32;
+	static final int MAX_DIMENSIONS = 21201;
+	
+	private static final long INITIAL_NUMBER_SEED = 0x5DEECE66DL;
+	
+	//Primitive polynomials found so far, each stored with its degree
+	private static final List<int[]> POLYNOMIALS = new ArrayList<>();
+	private static int searchedDegree = 0;
+	
+	private SobolDirections() {}
+	
+	/**
+	 * Returns the direction numbers of the passed dimension.
+	 * Element k is the contribution of bit k of the point index, with the first binary digit of the coordinate in the
+	 * most significant bit.
+	 * 
+	 * @param dimension
+	 * @return
+	 */
+	static int[] directions(int dimension) {
+		if (dimension < 0 || dimension >= MAX_DIMENSIONS) {
+			throw new IllegalArgumentException("Sobol dimension must be in [0," + MAX_DIMENSIONS + "). Passed = " + dimension);
+		}
+		int[] v = new int[BITS];
+		if (dimension == 0) {
+			for (int k = 0; k < BITS; k++) {
+				v[k] = 1 << (BITS - 1 - k);
+			}
+			return v;
+		}
+		
+		int[] poly = polynomial(dimension - 1);
+		int s = poly[0];
+		int p = poly[1];
+		
+		long[] m = new long[BITS];
+		long state = SplitMix64.mix64(INITIAL_NUMBER_SEED + dimension * SplitMix64.GOLDEN_GAMMA);
+		for (int i = 0; i < Math.min(s, BITS); i++) {
+			state += SplitMix64.GOLDEN_GAMMA;
+			long mask = (1L << (i + 1)) - 1;
+			m[i] = (SplitMix64.mix64(state) & mask) | 1L;
+		}
+		
+		//Bratley and Fox recurrence m_i = 2a_1 m_(i-1) ^ 4a_2 m_(i-2) ^ ... ^ 2^s m_(i-s) ^ m_(i-s)
+		for (int i = s; i < BITS; i++) {
+			long next = m[i - s] ^ (m[i - s] << s);
+			for (int j = 1; j < s; j++) {
+				if (((p >>> (s - j)) & 1) != 0) {
+					next ^= m[i - j] << j;
+				}
+			}
+			m[i] = next;
+		}
+		
+		for (int k = 0; k < BITS; k++) {
+			v[k] = (int)(m[k] << (BITS - 1 - k));
+		}
+		return v;
+	}
+	
+	/**
+	 * Returns {degree, polynomial} for the index'th primitive polynomial, where bit i of polynomial is the coefficient of x^i.
+	 * 
+	 * @param index
+	 * @return
+	 */
+	static synchronized int[] polynomial(int index) {
+		while (POLYNOMIALS.size() <= index) {
+			searchedDegree++;
+			int s = searchedDegree;
+			for (int p = (1 << s) | 1; p < (1 << (s + 1)); p += 2) {
+				if (isPrimitive(p, s)) {
+					POLYNOMIALS.add(new int[] {s, p});
+				}
+			}
+		}
+		return POLYNOMIALS.get(index);
+	}
+	
+	/**
+	 * A polynomial of degree s is primitive when x has multiplicative order exactly 2^s - 1 modulo the polynomial.
+	 */
+	static boolean isPrimitive(int p, int s) {
+		long order = (1L << s) - 1;
+		if (powX(order, p, s) != 1) {
+			return false;
+		}
+		long rest = order;
+		for (long q = 2; q * q <= rest; q++) {
+			if (rest % q == 0) {
+				if (powX(order / q, p, s) == 1) {
+					return false;
+				}
+				while (rest % q == 0) {
+					rest /= q;
+				}
+			}
+		}
+		if (rest > 1 && powX(order / rest, p, s) == 1) {
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Returns x^e modulo p over GF(2)
+	 */
+	private static long powX(long e, int p, int s) {
+		long result = 1;
+		long base = s == 1 ? 1 : 2; //x reduced modulo p
+		while (e > 0) {
+			if ((e & 1) != 0) {
+				result = mulMod(result, base, p, s);
+			}
+			base = mulMod(base, base, p, s);
+			e >>>= 1;
+		}
+		return result;
+	}
+	
+	private static long mulMod(long a, long b, int p, int s) {
+		long result = 0;
+		while (b != 0) {
+			if ((b & 1) != 0) {
+				result ^= a;
+			}
+			b >>>= 1;
+			a <<= 1;
+			if ((a >>> s) != 0) {
+				a ^= p;
+			}
+		}
+		return result;
+	}
+}
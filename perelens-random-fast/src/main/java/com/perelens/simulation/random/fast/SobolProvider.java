@@ -0,0 +1,256 @@
+/**
+ * 
+ */
+package com.perelens.simulation.random.fast;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.perelens.simulation.api.RandomGenerator;
+import com.perelens.simulation.api.RandomProvider;
+
+/**
+ * Copyright 2020-2023 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" 
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
+   permissions and limitations under the License
+
+   RandomProvider that supplies randomized quasi Monte Carlo uniforms from a scrambled Sobol sequence.
+   
+   Each replication of a simulation is one point of the sequence.  The first time a simulation object asks for a generator
+   through createGenerator(String, int) it is given the next block of dimensionsPerGenerator Sobol dimensions, so dimensions
+   are assigned in the order generators are created.  Every later request for the same id and stream index is answered
+   with the next point, and the generator returns that point's coordinates in its block as its first dimensionsPerGenerator
+   values.  Values after those come from a Philox stream keyed by block and point (padding), since a simulation object
+   can draw any number of values in a replication.  Blocks beyond SobolDirections.MAX_DIMENSIONS are padded from the start.
+   createGenerator() treats every call as a request from one anonymous object, so successive calls get successive points.
+   
+   Every dimension is randomized with a random linear matrix scramble (Matousek) and a digital shift, both derived from
+   the seed, so estimates from different seeds are independent and unbiased and their spread gives a valid error estimate.
+   Coordinates are returned at the midpoint of their 2^-32 cell so they are never exactly 0 or 1.
+   
+   The provider is not order independent since blocks depend on the order objects first ask for generators.
+   It counts the replications started by SimulationBuilders, which identifies the point the next Simulation starts from
+   even though createGenerator() is never called by the builders.
+   
+ * @author Steve Branda
+ *
+ */
+public class SobolProvider implements RandomProvider {
+
+	private static final long serialVersionUID = 301710823915584869L;
+	
+	static final String NAME = "Sobol";
+	
+	public static final int DEFAULT_DIMENSIONS_PER_GENERATOR = 8;
+	
+	private static final String ANONYMOUS = "";
+	
+	private final long startSeed;
+	private final int dimensionsPerGenerator;
+	private HashMap<String,int[]> streams = new HashMap<>(); //{block, next point}
+	private int nextBlock = 0;
+	private long replication = 0;
+	
+	//Scrambled direction numbers followed by the digital shift, indexed by dimension
+	private transient List<int[]> scrambled;
+	
+	public SobolProvider(long startSeed) {
+		this(startSeed, DEFAULT_DIMENSIONS_PER_GENERATOR);
+	}
+	
+	/**
+	 * @param startSeed
+	 * @param dimensionsPerGenerator - number of values at the start of each generator that come from the Sobol sequence
+	 */
+	public SobolProvider(long startSeed, int dimensionsPerGenerator) {
+		if (dimensionsPerGenerator < 1) {
+			throw new IllegalArgumentException("dimensionsPerGenerator must be strictly positive. Passed = " + dimensionsPerGenerator);
+		}
+		this.startSeed = startSeed;
+		this.dimensionsPerGenerator = dimensionsPerGenerator;
+	}
+	
+	@Override
+	public RandomGenerator createGenerator() {
+		return createGenerator(ANONYMOUS, 0);
+	}
+
+	@Override
+	public synchronized RandomGenerator createGenerator(String entryId, int streamIndex) {
+		String key = entryId + ';' + streamIndex;
+		int[] stream = streams.get(key);
+		if (stream == null) {
+			stream = new int[] {nextBlock++, 0};
+			streams.put(key, stream);
+		}
+		int point = stream[1]++;
+		return new SobolGenerator(startSeed, dimensionsPerGenerator, stream[0], point, coordinates(stream[0], point));
+	}
+	
+	private double[] coordinates(int block, int point) {
+		if (scrambled == null) {
+			scrambled = new ArrayList<>();
+		}
+		double[] toReturn = new double[dimensionsPerGenerator];
+		long first = (long)block * dimensionsPerGenerator;
+		for (int j = 0; j < dimensionsPerGenerator; j++) {
+			long dim = first + j;
+			if (dim >= SobolDirections.MAX_DIMENSIONS) {
+				return null;
+			}
+			while (scrambled.size() <= dim) {
+				scrambled.add(scramble(startSeed, scrambled.size()));
+			}
+			toReturn[j] = coordinate(scrambled.get((int)dim), point);
+		}
+		return toReturn;
+	}
+	
+	/**
+	 * Returns the direction numbers of the dimension multiplied by a random lower triangular matrix with a unit diagonal,
+	 * followed by a random digital shift.  Both are drawn from a SplitMix64 stream determined by seed and dimension.
+	 * 
+	 * @param seed
+	 * @param dimension
+	 * @return
+	 */
+	static int[] scramble(long seed, int dimension) {
+		int[] v = SobolDirections.directions(dimension);
+		long state = SplitMix64.mix64(seed) ^ SplitMix64.mix64(dimension + 1L);
+		
+		//Row i produces the i'th binary digit (bit 31 - i) from digits 0..i of the unscrambled coordinate
+		int[] rows = new int[SobolDirections.BITS];
+		for (int i = 0; i < rows.length; i++) {
+			state += SplitMix64.GOLDEN_GAMMA;
+			int above = (int)(-1L << (SobolDirections.BITS - i));
+			rows[i] = ((int)SplitMix64.mix64(state) & above) | (1 << (SobolDirections.BITS - 1 - i));
+		}
+		
+		int[] toReturn = new int[SobolDirections.BITS + 1];
+		for (int k = 0; k < SobolDirections.BITS; k++) {
+			int scrambledV = 0;
+			for (int i = 0; i < rows.length; i++) {
+				scrambledV |= (Integer.bitCount(rows[i] & v[k]) & 1) << (SobolDirections.BITS - 1 - i);
+			}
+			toReturn[k] = scrambledV;
+		}
+		state += SplitMix64.GOLDEN_GAMMA;
+		toReturn[SobolDirections.BITS] = (int)SplitMix64.mix64(state);
+		return toReturn;
+	}
+	
+	static double coordinate(int[] scrambledDirections, int point) {
+		int x = scrambledDirections[SobolDirections.BITS];
+		for (int k = 0; point != 0; k++, point >>>= 1) {
+			if ((point & 1) != 0) {
+				x ^= scrambledDirections[k];
+			}
+		}
+		return ((x & 0xffffffffL) + 0.5) * 0x1.0p-32;
+	}
+	
+	@Override
+	public synchronized void startReplication() {
+		replication++;
+	}
+	
+	@Override
+	public synchronized long getReplication() {
+		return replication;
+	}
+	
+	@Override
+	public RandomGenerator createGenerator(String generatorSetup) {
+		String[] pieces = generatorSetup.split("\\;");
+		if (pieces.length != 5 || !NAME.equals(pieces[0])) {
+			throw new IllegalArgumentException("Bad setup string");
+		}
+		SobolProvider p = new SobolProvider(Long.parseLong(pieces[1]), Integer.parseInt(pieces[2]));
+		int block = Integer.parseInt(pieces[3]);
+		int point = Integer.parseInt(pieces[4]);
+		if (block < 0 || point < 0) {
+			throw new IllegalArgumentException("Bad setup string");
+		}
+		
+		double[] coords;
+		if (p.startSeed == startSeed && p.dimensionsPerGenerator == dimensionsPerGenerator) {
+			synchronized(this) {
+				coords = coordinates(block, point);
+			}
+		}else {
+			coords = p.coordinates(block, point);
+		}
+		return new SobolGenerator(p.startSeed, p.dimensionsPerGenerator, block, point, coords);
+	}
+
+	@Override
+	public String getSetup() {
+		return NAME + ';' + startSeed + ';' + dimensionsPerGenerator;
+	}
+
+	@Override
+	public synchronized RandomProvider copy() {
+		SobolProvider toReturn = new SobolProvider(startSeed, dimensionsPerGenerator);
+		for (Map.Entry<String, int[]> e : streams.entrySet()) {
+			toReturn.streams.put(e.getKey(), e.getValue().clone());
+		}
+		toReturn.nextBlock = nextBlock;
+		toReturn.replication = replication;
+		return toReturn;
+	}
+	
+	protected static class SobolGenerator implements RandomGenerator{
+
+		private static final long serialVersionUID = -4786604870402185932L;
+		
+		private final long seed;
+		private final int dimensions;
+		private final int block;
+		private final int point;
+		private final double[] coordinates;
+		private int drawn = 0;
+		private PhiloxProvider.PhiloxGenerator padding;
+		
+		protected SobolGenerator(long seed, int dimensions, int block, int point, double[] coordinates) {
+			this.seed = seed;
+			this.dimensions = dimensions;
+			this.block = block;
+			this.point = point;
+			this.coordinates = coordinates;
+		}
+		
+		@Override
+		public double nextDouble() {
+			if (coordinates != null && drawn < coordinates.length) {
+				return coordinates[drawn++];
+			}
+			if (padding == null) {
+				padding = new PhiloxProvider.PhiloxGenerator(seed, SplitMix64.mix64(((long)block << 32) | point));
+			}
+			return padding.nextDouble();
+		}
+
+		@Override
+		public String getRandomSetup() {
+			return NAME + ';' + seed + ';' + dimensions + ';' + block + ';' + point;
+		}
+
+		@Override
+		public RandomGenerator copy() {
+			SobolGenerator toReturn = new SobolGenerator(seed, dimensions, block, point, coordinates);
+			toReturn.drawn = drawn;
+			if (padding != null) {
+				toReturn.padding = (PhiloxProvider.PhiloxGenerator)padding.copy();
+			}
+			return toReturn;
+		}
+	}
+}
@@ -0,0 +1,66 @@
+/**
+ * 
+ */
+package com.perelens.simulation.random.fast;
+
+/**
+ * Copyright 2020-2023 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" 
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
+   permissions and limitations under the License
+
+   SplitMix64 mixing functions used to expand a single long seed into generator state.
+   
+ * @author Steve Branda
+ *
+ */
+final class SplitMix64 {
+
+	static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+	
+	private SplitMix64() {}
+	
+	/**
+	 * Returns the SplitMix64 output for the given internal state.
+	 * The state itself is advanced by adding GOLDEN_GAMMA before each call.
+	 * 
+	 * @param z
+	 * @return
+	 */
+	static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+	
+	/**
+	 * Returns the first count outputs of a SplitMix64 generator started from seed.
+	 * 
+	 * @param seed
+	 * @param count
+	 * @return
+	 */
+	static long[] expand(long seed, int count) {
+		long[] toReturn = new long[count];
+		for (int i = 0; i < count; i++) {
+			seed += GOLDEN_GAMMA;
+			toReturn[i] = mix64(seed);
+		}
+		return toReturn;
+	}
+	
+	/**
+	 * Converts the upper 53 bits of a random long to a double in the range of 0 (inclusive) to 1 (exclusive).
+	 * 
+	 * @param bits
+	 * @return
+	 */
+	static double toDouble(long bits) {
+		return (bits >>> 11) * 0x1.0p-53;
+	}
+}
@@ -0,0 +1,168 @@
+/**
+ * 
+ */
+package com.perelens.simulation.random.fast;
+
+import com.perelens.simulation.api.RandomGenerator;
+import com.perelens.simulation.api.RandomProvider;
+
+/**
+ * Copyright 2020-2023 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" 
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
+   permissions and limitations under the License
+
+   RandomProvider based on the xoshiro256** generator by Blackman and Vigna.
+   The provider state is seeded from a single long with SplitMix64.  Each generator starts from the current provider state
+   after which the provider jumps ahead 2^128 values, so generators never overlap for any practical simulation length.
+   
+ * @author Steve Branda
+ *
+ */
+public class Xoshiro256Provider implements RandomProvider {
+
+	private static final long serialVersionUID = -4513946001325811727L;
+	
+	static final String NAME = "Xoshiro256**";
+	
+	private static final long[] JUMP = {0x180ec6d33cfd0abaL, 0xd5a61266f0c9392cL, 0xa9582618e03fc9aaL, 0x39abdc4529b1661cL};
+	
+	private long startSeed;
+	private long[] state;
+	
+	public Xoshiro256Provider(long startSeed) {
+		this.startSeed = startSeed;
+		this.state = SplitMix64.expand(startSeed, 4);
+	}
+	
+	protected Xoshiro256Provider(long startSeed, long[] state) {
+		this.startSeed = startSeed;
+		this.state = state.clone();
+	}
+	
+	@Override
+	public RandomGenerator createGenerator() {
+		RandomGenerator toReturn = new Xoshiro256Generator(state);
+		jump(state);
+		return toReturn;
+	}
+
+	@Override
+	public RandomGenerator createGenerator(String generatorSetup) {
+		String[] pieces = generatorSetup.split("\\;");
+		if (pieces.length != 5 || !NAME.equals(pieces[0])) {
+			throw new IllegalArgumentException("Bad setup string");
+		}
+		
+		long[] s = new long[4];
+		for (int i = 0; i < 4; i++) {
+			s[i] = Long.parseLong(pieces[i + 1]);
+		}
+		return new Xoshiro256Generator(s);
+	}
+
+	@Override
+	public String getSetup() {
+		return NAME + ';' + startSeed;
+	}
+
+	@Override
+	public RandomProvider copy() {
+		return new Xoshiro256Provider(startSeed, state);
+	}
+	
+	/**
+	 * Advances the state by 2^128 steps.
+	 * 
+	 * @param s
+	 */
+	static void jump(long[] s) {
+		long s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+		for (long j : JUMP) {
+			for (int b = 0; b < 64; b++) {
+				if ((j & (1L << b)) != 0) {
+					s0 ^= s[0];
+					s1 ^= s[1];
+					s2 ^= s[2];
+					s3 ^= s[3];
+				}
+				next(s);
+			}
+		}
+		s[0] = s0;
+		s[1] = s1;
+		s[2] = s2;
+		s[3] = s3;
+	}
+	
+	static long next(long[] s) {
+		long result = Long.rotateLeft(s[1] * 5, 7) * 9;
+		long t = s[1] << 17;
+		s[2] ^= s[0];
+		s[3] ^= s[1];
+		s[1] ^= s[2];
+		s[0] ^= s[3];
+		s[2] ^= t;
+		s[3] = Long.rotateLeft(s[3], 45);
+		return result;
+	}
+	
+	protected static class Xoshiro256Generator implements RandomGenerator{
+
+		private static final long serialVersionUID = 2203815667364213069L;
+		
+		private long[] start;
+		private long s0, s1, s2, s3;
+		
+		protected Xoshiro256Generator(long[] state) {
+			this.start = state.clone();
+			s0 = state[0];
+			s1 = state[1];
+			s2 = state[2];
+			s3 = state[3];
+			if ((s0 | s1 | s2 | s3) == 0) {
+				throw new IllegalArgumentException("Bad setup string");
+			}
+		}
+		
+		private Xoshiro256Generator(Xoshiro256Generator toCopy) {
+			this.start = toCopy.start;
+			s0 = toCopy.s0;
+			s1 = toCopy.s1;
+			s2 = toCopy.s2;
+			s3 = toCopy.s3;
+		}
+		
+		@Override
+		public double nextDouble() {
+			long result = Long.rotateLeft(s1 * 5, 7) * 9;
+			long t = s1 << 17;
+			s2 ^= s0;
+			s3 ^= s1;
+			s1 ^= s2;
+			s0 ^= s3;
+			s2 ^= t;
+			s3 = Long.rotateLeft(s3, 45);
+			return SplitMix64.toDouble(result);
+		}
+
+		@Override
+		public String getRandomSetup() {
+			StringBuilder toReturn = new StringBuilder(NAME);
+			for (long s : start) {
+				toReturn.append(';').append(s);
+			}
+			return toReturn.toString();
+		}
+
+		@Override
+		public RandomGenerator copy() {
+			return new Xoshiro256Generator(this);
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package com.perelens.simulation.random.fast;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+import org.apache.commons.math3.stat.inference.ChiSquareTest;
+import org.junit.jupiter.api.Test;
+
+import com.perelens.simulation.api.RandomGenerator;
+import com.perelens.simulation.api.RandomProvider;
+
+/**
+ * Copyright 2020-2023 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" 
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
+   permissions and limitations under the License
+
+   Contract and statistical quality tests shared by the fast RandomProvider implementations.
+   The quality checks use fixed seeds so they run deterministically offline.
+   
+ * 
+ */
+public abstract class FastProviderTest {
+
+	protected abstract RandomProvider getProvider(long seed);
+	
+	@Test
+	void testCopy() {
+		RandomProvider p1 = getProvider(12345);
+		RandomProvider p2 = p1.copy();
+		
+		RandomGenerator p1Gen = p1.createGenerator();
+		RandomGenerator p2Gen = p2.createGenerator();
+		
+		for (int i = 0; i < 10; i++) {
+			assertEquals(p1Gen.nextDouble(), p2Gen.nextDouble());
+		}
+		
+		RandomGenerator p1GenCopy = p1Gen.copy();
+		double[] next100 = new double[100];
+		for (int i = 0; i < 100; i++) {
+			next100[i] = p1GenCopy.nextDouble();
+			assertEquals(next100[i], p2Gen.nextDouble());
+		}
+		
+		for (int i = 0; i < 100; i++) {
+			assertEquals(next100[i], p1Gen.nextDouble());
+		}
+		
+		//The provider copy continues the generator sequence
+		assertEquals(p1.createGenerator().getRandomSetup(), p2.createGenerator().getRandomSetup());
+	}
+	
+	@Test
+	void testSerialize() {
+		RandomProvider p1 = getProvider(-77);
+		p1.createGenerator();
+		RandomProvider p2 = copy(p1);
+		
+		RandomGenerator p1Gen = p1.createGenerator();
+		RandomGenerator p2Gen = p2.createGenerator();
+		for (int i = 0; i < 11; i++) {
+			assertEquals(p1Gen.nextDouble(), p2Gen.nextDouble());
+		}
+		
+		RandomGenerator p1GenCopy = copy(p1Gen);
+		for (int i = 0; i < 100; i++) {
+			assertEquals(p1Gen.nextDouble(), p1GenCopy.nextDouble());
+		}
+	}
+	
+	@Test
+	void testSetup() {
+		RandomProvider p1 = getProvider(42);
+		assertEquals(p1.getSetup(), getProvider(42).getSetup());
+		assertNotEquals(p1.getSetup(), getProvider(43).getSetup());
+		
+		RandomGenerator g1 = p1.createGenerator();
+		RandomGenerator g2 = p1.createGenerator();
+		assertNotEquals(g1.getRandomSetup(), g2.getRandomSetup());
+		
+		//Recreated generators start at the beginning of the stream, whichever provider recreates them
+		RandomGenerator r1 = getProvider(0).createGenerator(g1.getRandomSetup());
+		RandomGenerator r2 = p1.createGenerator(g2.getRandomSetup());
+		assertEquals(g1.getRandomSetup(), r1.getRandomSetup());
+		for (int i = 0; i < 100; i++) {
+			assertEquals(g1.nextDouble(), r1.nextDouble());
+			assertEquals(g2.nextDouble(), r2.nextDouble());
+		}
+		
+		assertThrows(IllegalArgumentException.class, () -> p1.createGenerator("Ranlux;4;1"));
+	}
+	
+	@Test
+	void testUniformity() {
+		RandomProvider p1 = getProvider(2023);
+		ChiSquareTest chi = new ChiSquareTest();
+		int bins = 256;
+		double[] expected = new double[bins];
+		Arrays.fill(expected, 1.0);
+		
+		for (int g = 0; g < 4; g++) {
+			RandomGenerator gen = p1.createGenerator();
+			long[] observed = new long[bins];
+			for (int i = 0; i < 256_000; i++) {
+				double d = gen.nextDouble();
+				assertTrue(d >= 0 && d < 1, "" + d);
+				observed[(int)(d * bins)]++;
+			}
+			assertTrue(chi.chiSquareTest(expected, observed) > 0.0001);
+		}
+	}
+	
+	@Test
+	void testIndependence() {
+		RandomProvider p1 = getProvider(99);
+		RandomGenerator g1 = p1.createGenerator();
+		RandomGenerator g2 = p1.createGenerator();
+		
+		//Lag 1 serial correlation within a stream and correlation between adjacent streams should both be near 0
+		int n = 200_000;
+		double prev = g1.nextDouble();
+		double serial = 0;
+		double cross = 0;
+		for (int i = 0; i < n; i++) {
+			double next = g1.nextDouble();
+			serial += (prev - 0.5) * (next - 0.5);
+			cross += (next - 0.5) * (g2.nextDouble() - 0.5);
+			prev = next;
+		}
+		
+		//Standard deviation of the estimate is (1/12)/sqrt(n), so the normalized value is roughly a standard normal
+		double scale = 12.0 * Math.sqrt(n) / n;
+		assertTrue(Math.abs(serial * scale) < 5, "" + serial * scale);
+		assertTrue(Math.abs(cross * scale) < 5, "" + cross * scale);
+	}
+	
+	@SuppressWarnings("unchecked")
+	protected <T extends Serializable> T copy(T toCopy) {
+		try {
+			ByteArrayOutputStream bout = new ByteArrayOutputStream();
+			ObjectOutputStream oout = new ObjectOutputStream(bout);
+			oout.writeObject(toCopy);
+			oout.close();
+			
+			ByteArrayInputStream bin = new ByteArrayInputStream(bout.toByteArray());
+			ObjectInputStream oin = new ObjectInputStream(bin);
+			T toReturn = (T) oin.readObject();
+			oin.close();
+			return toReturn;
+		} catch (IOException | ClassNotFoundException e) {
+			throw new IllegalStateException("Should not occur", e);
+		}
+	}
+}
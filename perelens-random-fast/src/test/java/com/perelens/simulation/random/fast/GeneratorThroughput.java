@@ -0,0 +1,43 @@
+package com.perelens.simulation.random.fast;
+
+import com.perelens.simulation.api.RandomGenerator;
+import com.perelens.simulation.api.RandomProvider;
+import com.perelens.simulation.random.RanluxProvider;
+
+/**
+ * Copyright 2020-2023 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" 
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
+   permissions and limitations under the License
+
+   Rough single threaded throughput comparison of the fast generators against RanluxProvider.
+   Not run as part of the test suite, run the main method directly.
+   See GeneratorSimulationThroughput in perelens-simulation-risk for the effect on end to end simulation time.
+   
+ * 
+ */
+public class GeneratorThroughput {
+
+	public static void main(String[] args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 20_000_000;
+		RandomProvider[] providers = {new RanluxProvider(1), new Xoshiro256Provider(1), new Pcg64Provider(1), new PhiloxProvider(1)};
+		
+		for (int round = 0; round < 3; round++) {
+			for (RandomProvider p : providers) {
+				RandomGenerator gen = p.createGenerator();
+				long start = System.nanoTime();
+				double sum = 0;
+				for (int i = 0; i < count; i++) {
+					sum += gen.nextDouble();
+				}
+				long elapsed = System.nanoTime() - start;
+				System.out.println(p.getSetup() + ": " + String.format("%.2f", (double)elapsed / count) + " ns/value (" + sum / count + ")");
+			}
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package com.perelens.simulation.random.fast;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import com.perelens.simulation.api.RandomProvider;
+
+/**
+ * Copyright 2020-2023 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" 
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
+   permissions and limitations under the License
+
+   
+ * 
+ */
+public class Pcg64ProviderTest extends FastProviderTest {
+
+	@Override
+	protected RandomProvider getProvider(long seed) {
+		return new Pcg64Provider(seed);
+	}
+	
+	@Test
+	void testReferenceValues() {
+		//pcg64_srandom_r(&rng, 42u, 54u) from the PCG reference implementation
+		Pcg64Provider.Pcg64Generator gen = new Pcg64Provider.Pcg64Generator(0, 42, 0, 54);
+		assertEquals(0x86b1da1d72062b68L, gen.nextLong());
+		assertEquals(0x1304aa46c9853d39L, gen.nextLong());
+		assertEquals(0xa3670e9e0dd50358L, gen.nextLong());
+	}
+	
+	@Test
+	void testUnsignedMultiplyHigh() {
+		assertEquals(0xfffffffffffffffeL, Pcg64Provider.unsignedMultiplyHigh(-1L, -1L));
+		assertEquals(0, Pcg64Provider.unsignedMultiplyHigh(1L << 32, 1L << 31));
+		assertEquals(1, Pcg64Provider.unsignedMultiplyHigh(1L << 32, 1L << 32));
+	}
+}
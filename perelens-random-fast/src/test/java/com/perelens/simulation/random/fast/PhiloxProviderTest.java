@@ -0,0 +1,90 @@
+package com.perelens.simulation.random.fast;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import com.perelens.simulation.api.RandomGenerator;
+import com.perelens.simulation.api.RandomProvider;
+
+/**
+ * Copyright 2020-2023 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" 
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
+   permissions and limitations under the License
+
+   
+ * 
+ */
+public class PhiloxProviderTest extends FastProviderTest {
+
+	@Override
+	protected RandomProvider getProvider(long seed) {
+		return new PhiloxProvider(seed);
+	}
+	
+	@Test
+	void testReferenceValues() {
+		//Known answer tests from Random123
+		int[] out = new int[4];
+		PhiloxProvider.block(new int[] {0, 0, 0, 0}, 0, 0, out);
+		assertArrayEquals(new int[] {0x6627e8d5, 0xe169c58d, 0xbc57ac4c, 0x9b00dbd8}, out);
+		
+		PhiloxProvider.block(new int[] {-1, -1, -1, -1}, -1, -1, out);
+		assertArrayEquals(new int[] {0x408f276d, 0x41c83b0e, 0xa20bc7c6, 0x6d5451fd}, out);
+		
+		PhiloxProvider.block(new int[] {0x243f6a88, 0x85a308d3, 0x13198a2e, 0x03707344}, 0xa4093822, 0x299f31d0, out);
+		assertArrayEquals(new int[] {0xd16cfe09, 0x94fdcceb, 0x5001e420, 0x24126ea1}, out);
+	}
+	
+	@Test
+	void testKeyedStreams() {
+		PhiloxProvider p1 = new PhiloxProvider(3);
+		assertTrue(p1.isOrderIndependent());
+		
+		//Keyed generators do not depend on what was created before them
+		RandomGenerator g1 = p1.createGenerator("f1", 0);
+		p1.createGenerator();
+		p1.createGenerator("f0", 0);
+		RandomGenerator g2 = p1.createGenerator("f1", 0);
+		assertEquals(g1.getRandomSetup(), g2.getRandomSetup());
+		assertEquals(g1.nextDouble(), g2.nextDouble());
+		
+		assertNotEquals(g1.getRandomSetup(), p1.createGenerator("f1", 1).getRandomSetup());
+		assertNotEquals(g1.getRandomSetup(), p1.createGenerator("f2", 0).getRandomSetup());
+		assertNotEquals(g1.getRandomSetup(), new PhiloxProvider(4).createGenerator("f1", 0).getRandomSetup());
+		
+		//Keyed generators can be recreated from their setup
+		RandomGenerator g3 = p1.createGenerator(g2.getRandomSetup());
+		g2 = p1.createGenerator("f1", 0);
+		for (int i = 0; i < 10; i++) {
+			assertEquals(g2.nextDouble(), g3.nextDouble());
+		}
+		
+		//Each replication gets new streams and copies continue from the same replication
+		p1.startReplication();
+		assertEquals(1, p1.getReplication());
+		RandomGenerator g4 = p1.createGenerator("f1", 0);
+		assertNotEquals(g1.getRandomSetup(), g4.getRandomSetup());
+		assertEquals(g4.getRandomSetup(), p1.copy().createGenerator("f1", 0).getRandomSetup());
+	}
+	
+	@Test
+	void testSeek() {
+		PhiloxProvider.PhiloxGenerator gen = (PhiloxProvider.PhiloxGenerator)new PhiloxProvider(8).createGenerator();
+		double[] values = new double[20];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = gen.nextDouble();
+		}
+		
+		gen.seek(5);
+		for (int i = 10; i < values.length; i++) {
+			assertEquals(values[i], gen.nextDouble());
+		}
+	}
+}
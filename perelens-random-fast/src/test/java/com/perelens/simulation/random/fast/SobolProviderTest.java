@@ -0,0 +1,153 @@
+package com.perelens.simulation.random.fast;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import com.perelens.simulation.api.RandomGenerator;
+import com.perelens.simulation.api.RandomProvider;
+
+/**
+ * Copyright 2020-2023 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" 
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
+   permissions and limitations under the License
+
+   
+ * 
+ */
+public class SobolProviderTest extends FastProviderTest {
+
+	@Override
+	protected RandomProvider getProvider(long seed) {
+		return new SobolProvider(seed);
+	}
+	
+	@Test
+	void testPrimitivePolynomials() {
+		//Number of primitive polynomials of each degree is phi(2^s - 1)/s
+		int[] expected = {1, 1, 2, 2, 6, 6, 18, 16, 48, 60};
+		int index = 0;
+		for (int s = 1; s <= expected.length; s++) {
+			for (int i = 0; i < expected[s - 1]; i++) {
+				assertEquals(s, SobolDirections.polynomial(index++)[0]);
+			}
+		}
+		assertEquals(expected.length + 1, SobolDirections.polynomial(index)[0]);
+		
+		assertArrayEquals(new int[] {1, 0b11}, SobolDirections.polynomial(0));
+		assertArrayEquals(new int[] {2, 0b111}, SobolDirections.polynomial(1));
+		assertArrayEquals(new int[] {3, 0b1011}, SobolDirections.polynomial(2));
+		assertArrayEquals(new int[] {3, 0b1101}, SobolDirections.polynomial(3));
+		assertFalse(SobolDirections.isPrimitive(0b11111, 4)); //x^4+x^3+x^2+x+1 is irreducible but has order 5
+		
+		//Unscrambled dimension 1 is the classic second Sobol dimension 1/2, 3/4, 1/4, 3/8...
+		int[] v = SobolDirections.directions(1);
+		assertEquals(0x80000000, v[0]);
+		assertEquals(0xC0000000, v[1]);
+		assertEquals(0xA0000000, v[2]);
+	}
+	
+	@Test
+	void testStratification() {
+		int m = 10;
+		int n = 1 << m;
+		SobolProvider p1 = new SobolProvider(5, 4);
+		double[][] points = new double[n][];
+		double[][] otherBlock = new double[n][];
+		for (int i = 0; i < n; i++) {
+			RandomGenerator g = p1.createGenerator("f", 0);
+			RandomGenerator h = p1.createGenerator("h", 2);
+			points[i] = new double[] {g.nextDouble(), g.nextDouble(), g.nextDouble(), g.nextDouble()};
+			otherBlock[i] = new double[] {h.nextDouble(), h.nextDouble()};
+		}
+		
+		//Scrambling keeps every dimension a (0,m,1)-net, so each of the n equal intervals holds exactly one point
+		for (double[][] pts : new double[][][] {points, otherBlock}) {
+			for (int d = 0; d < pts[0].length; d++) {
+				boolean[] seen = new boolean[n];
+				for (double[] pt : pts) {
+					assertTrue(pt[d] > 0 && pt[d] < 1);
+					int cell = (int)(pt[d] * n);
+					assertFalse(seen[cell]);
+					seen[cell] = true;
+				}
+			}
+		}
+		
+		//The first two dimensions form a (0,m,2)-net, so every elementary box of volume 1/n holds exactly one point
+		for (int a = 0; a <= m; a++) {
+			int rows = 1 << a;
+			int cols = 1 << (m - a);
+			boolean[] seen = new boolean[n];
+			for (double[] pt : points) {
+				int box = (int)(pt[0] * rows) * cols + (int)(pt[1] * cols);
+				assertFalse(seen[box]);
+				seen[box] = true;
+			}
+		}
+	}
+	
+	@Test
+	void testBlocksInCreationOrder() {
+		SobolProvider p1 = new SobolProvider(7, 3);
+		assertFalse(p1.isOrderIndependent());
+		assertEquals("Sobol;7;3", p1.getSetup());
+		
+		assertEquals("Sobol;7;3;0;0", p1.createGenerator("b", 0).getRandomSetup());
+		assertEquals("Sobol;7;3;1;0", p1.createGenerator("a", 0).getRandomSetup());
+		assertEquals("Sobol;7;3;2;0", p1.createGenerator("a", 1).getRandomSetup());
+		assertEquals("Sobol;7;3;0;1", p1.createGenerator("b", 0).getRandomSetup());
+		assertEquals("Sobol;7;3;1;1", p1.createGenerator("a", 0).getRandomSetup());
+		
+		//Values past the Sobol dimensions come from padding that differs between points
+		RandomGenerator g1 = p1.createGenerator("c", 0);
+		RandomGenerator g2 = p1.createGenerator("c", 0);
+		for (int i = 0; i < 3; i++) {
+			g1.nextDouble();
+			g2.nextDouble();
+		}
+		assertNotEquals(g1.nextDouble(), g2.nextDouble());
+		
+		//Blocks past the last direction table fall back to padding for every value
+		RandomGenerator far = p1.createGenerator("Sobol;7;3;" + (SobolDirections.MAX_DIMENSIONS / 3 + 1) + ";0");
+		double d = far.nextDouble();
+		assertTrue(d >= 0 && d < 1);
+		
+		assertThrows(IllegalArgumentException.class, () -> new SobolProvider(1, 0));
+	}
+	
+	@Test
+	void testVarianceReduction() {
+		//Mean of a smooth function of four uniforms estimated from 1024 points by independently scrambled replicates
+		int n = 1024;
+		int replicates = 20;
+		double sobolSpread = 0;
+		double philoxSpread = 0;
+		for (int r = 0; r < replicates; r++) {
+			double sobol = estimate(new SobolProvider(r + 1, 4), n) - 1.0;
+			double philox = estimate(new PhiloxProvider(r + 1), n) - 1.0;
+			sobolSpread += sobol * sobol;
+			philoxSpread += philox * philox;
+		}
+		assertTrue(sobolSpread * 100 < philoxSpread, sobolSpread + " " + philoxSpread);
+	}
+	
+	private static double estimate(RandomProvider p, int n) {
+		double total = 0;
+		for (int i = 0; i < n; i++) {
+			RandomGenerator g = p.createGenerator();
+			double prod = 1;
+			for (int d = 0; d < 4; d++) {
+				prod *= 1.5 * Math.sqrt(g.nextDouble());
+			}
+			total += prod;
+		}
+		return total / n;
+	}
+}
@@ -0,0 +1,51 @@
+package com.perelens.simulation.random.fast;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import com.perelens.simulation.api.RandomProvider;
+
+/**
+ * Copyright 2020-2023 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" 
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
+   permissions and limitations under the License
+
+   
+ * 
+ */
+public class Xoshiro256ProviderTest extends FastProviderTest {
+
+	@Override
+	protected RandomProvider getProvider(long seed) {
+		return new Xoshiro256Provider(seed);
+	}
+	
+	@Test
+	void testReferenceValues() {
+		long[] seeds = SplitMix64.expand(0, 2);
+		assertEquals(0xe220a8397b1dcdafL, seeds[0]);
+		assertEquals(0x6e789e6aa1b965f4L, seeds[1]);
+		
+		long[] s = {1, 2, 3, 4};
+		assertEquals(11520, Xoshiro256Provider.next(s));
+		assertEquals(0, Xoshiro256Provider.next(s));
+	}
+	
+	@Test
+	void testJump() {
+		Xoshiro256Provider p = new Xoshiro256Provider(5);
+		String first = p.createGenerator().getRandomSetup();
+		
+		long[] s = SplitMix64.expand(5, 4);
+		assertEquals("Xoshiro256**;" + s[0] + ';' + s[1] + ';' + s[2] + ';' + s[3], first);
+		Xoshiro256Provider.jump(s);
+		assertEquals("Xoshiro256**;" + s[0] + ';' + s[1] + ';' + s[2] + ';' + s[3], p.createGenerator().getRandomSetup());
+	}
+}
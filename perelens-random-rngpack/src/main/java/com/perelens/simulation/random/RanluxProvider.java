@@ -28,77 +28,133 @@ public class RanluxProvider implements RandomProvider {
 	
 	private long startSeed;
 	private long currentSeed;
+	private int luxury;
 	
 	public RanluxProvider (long startSeed) {
-		this.startSeed = startSeed;
-		this.currentSeed = startSeed;
+		this(startSeed, startSeed, Ranlux.maxlev);
+	}
+	
+	/**
+	 * Creates a provider whose generators use the given Ranlux luxury level (0 to 4).
+	 * Lower levels discard fewer values per block of 24 and are correspondingly faster,
+	 * see {@link Ranlux} for the quality trade off.  The level is part of the setup strings.
+	 * 
+	 * @param startSeed
+	 * @param luxury
+	 */
+	public RanluxProvider (long startSeed, int luxury) {
+		this(startSeed, startSeed, luxury);
 	}
 	
 	protected RanluxProvider(long startSeed,long currentSeed) {
+		this(startSeed, currentSeed, Ranlux.maxlev);
+	}
+	
+	protected RanluxProvider(long startSeed,long currentSeed, int luxury) {
 		this.startSeed = startSeed;
 		this.currentSeed = currentSeed;
+		this.luxury = checkLuxury(luxury);
+	}
+	
+	private static int checkLuxury(int luxury) {
+		if (luxury < 0 || luxury > Ranlux.maxlev) {
+			throw new IllegalArgumentException("Bad luxury level " + luxury);
+		}
+		return luxury;
 	}
 	
 	@Override
 	public RandomGenerator createGenerator() {
-		var toReturn = new RanluxGenerator(currentSeed++);
+		long seed = currentSeed++;
 		//Need to generate some numbers in order to guarantee randomness
-		//of the first generated number
-		toReturn.nextDouble();
+		//of the first generated number.  The generator discards them when it is first used.
 		long count = currentSeed % 7;
-		for (int i = 0; i < count; i++) {
-			toReturn.nextDouble();
-		}
-		return toReturn;
+		return new RanluxGenerator(seed, count > 0 ? 1 + (int)count : 1, luxury);
 	}
 
 	@Override
 	public RandomGenerator createGenerator(String generatorSetup) {
 		String[] pieces = generatorSetup.split("\\;");
-		if (Integer.parseInt(pieces[1]) != 4 ||
+		if (pieces.length != 3 ||
 			!"Ranlux".equals(pieces[0])) {
 			throw new IllegalArgumentException("Bad setup string");
 		}
 		
+		int lux = checkLuxury(Integer.parseInt(pieces[1]));
 		long seed = Long.parseLong(pieces[2]);
-		return new RanluxGenerator(seed);
+		return new RanluxGenerator(seed, 0, lux);
 	}
 
 	@Override
 	public String getSetup() {
 		StringBuilder toReturn = new StringBuilder("Ranlux;");
-		toReturn.append(Ranlux.maxlev).append(';').append(startSeed);
+		toReturn.append(luxury).append(';').append(startSeed);
 		return toReturn.toString();
 	}
 	
 	@Override
 	public RandomProvider copy() {
-		return new RanluxProvider(startSeed,currentSeed);
+		return new RanluxProvider(startSeed,currentSeed,luxury);
 	}
 	
+	/**
+	 * Generators start out as a seed and the number of values to discard.
+	 * The Ranlux state is only built when the first number is requested, which moves the cost of seeding
+	 * off the thread building the Simulation and onto the engine threads that use the generator.
+	 */
 	protected static class RanluxGenerator implements RandomGenerator{
 
 		private static final long serialVersionUID = 5562338309410812780L;
 		
 		private Ranlux rng;
 		private long seed;
+		private int discard;
+		private int luxury;
 		
 		protected RanluxGenerator(long seed) {
+			this(seed,0);
+		}
+		
+		protected RanluxGenerator(long seed, int discard) {
+			this(seed,discard,Ranlux.maxlev);
+		}
+		
+		protected RanluxGenerator(long seed, int discard, int luxury) {
 			this.seed = seed;
-			rng = new Ranlux(Ranlux.maxlev, seed);
+			this.discard = discard;
+			this.luxury = luxury;
 		}
 		
 		protected RanluxGenerator() {};
 		
+		private void materialize() {
+			rng = new Ranlux(luxury, seed);
+			for (int i = 0; i < discard; i++) {
+				rng.raw();
+			}
+			discard = 0;
+		}
+		
 		@Override
 		public double nextDouble() {
+			if (rng == null) {
+				materialize();
+			}
 			return rng.raw();
 		}
+		
+		@Override
+		public void nextDoubles(double[] out, int n) {
+			if (rng == null) {
+				materialize();
+			}
+			rng.raw(out, n);
+		}
 
 		@Override
 		public String getRandomSetup() {
 			StringBuilder toReturn = new StringBuilder("Ranlux;");
-			toReturn.append(Ranlux.maxlev).append(';').append(seed);
+			toReturn.append(luxury).append(';').append(seed);
 			return toReturn.toString();
 		}
 
@@ -106,7 +162,11 @@ public class RanluxProvider implements RandomProvider {
 		public RandomGenerator copy() {
 			RanluxGenerator toReturn = new RanluxGenerator();
 			toReturn.seed = seed;
-			toReturn.rng = new Ranlux(rng);
+			toReturn.discard = discard;
+			toReturn.luxury = luxury;
+			if (rng != null) {
+				toReturn.rng = new Ranlux(rng);
+			}
 			return toReturn;
 		}
 	}
@@ -318,6 +318,66 @@ public final double raw() {
     return out;
 };
 
+/**
+* Fill part or all of an array with doubles.  Produces exactly the values
+* of <CODE>n</CODE> successive calls to <CODE>raw()</CODE>, but keeps the
+* generator state in local variables and does the luxury skipping once per
+* block of 24 values instead of testing for it on every call.
+*
+* @param d array to be filled with doubles
+* @param n number of doubles to generate
+*/
+public final void raw(double d[],int n) {
+    final float[] s = seeds;
+    final int[] nx = next;
+    final float t24 = twom24, t12 = twom12;
+    int i24l = i24, j24l = j24, in24l = in24, ks = kount;
+    float c = carry;
+    float uni,out;
+    int i = 0;
+    while (i < n) {
+        int block = Math.min(24 - in24l, n - i);
+        for (int end = i + block; i < end; i++) {
+            uni=s[j24l]-s[i24l]-c;
+            if (uni < (float) 0.0) {
+                uni=uni+ (float) 1.0;
+                c = t24;
+            } else c = (float) 0.0;
+            s[i24l]=uni;
+            i24l=nx[i24l];
+            j24l=nx[j24l];
+            out=uni;
+            if (uni<t12)
+                out += t24*s[j24l];
+            d[i]=out;
+        }
+        in24l += block;
+        ks += block;
+        if (in24l == 24) {
+            in24l = 0;
+            ks += nskip;
+            for(int k=1;k<=nskip;k++) {
+                uni=s[j24l]-s[i24l]-c;
+                if (uni < (float) 0.0) {
+                    uni=uni+ (float) 1.0;
+                    c = t24;
+                } else c = (float) 0.0;
+                s[i24l]=uni;
+                i24l=nx[i24l];
+                j24l=nx[j24l];
+            }
+        }
+        while (ks>=igiga) {
+            mkount++;
+            ks -= igiga;
+        };
+    }
+    i24 = i24l;
+    j24 = j24l;
+    in24 = in24l;
+    kount = ks;
+    carry = c;
+};
 private void init_arrays() {
 
 /*
@@ -0,0 +1,107 @@
+package com.perelens.simulation.random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import com.perelens.simulation.api.RandomGenerator;
+import com.perelens.simulation.api.RandomProvider;
+
+import edu.cornell.lassp.houle.RngPack.Ranlux;
+
+/**
+ * Copyright 2020-2023 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS"
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing
+   permissions and limitations under the License
+
+
+ *
+ */
+public class RanluxProviderTest {
+
+	@Test
+	void testSeedSequence() {
+		long startSeed = -3;
+		RandomProvider p1 = new RanluxProvider(startSeed);
+
+		for (long seed = startSeed; seed < startSeed + 20; seed++) {
+			RandomGenerator gen = p1.createGenerator();
+			assertEquals("Ranlux;4;" + seed, gen.getRandomSetup());
+
+			//Generators discard 1 + (seed + 1) % 7 numbers before the first one returned
+			Ranlux expected = new Ranlux(Ranlux.maxlev, seed);
+			long discard = 1 + Math.max(0, (seed + 1) % 7);
+			for (int i = 0; i < discard; i++) {
+				expected.raw();
+			}
+
+			for (int i = 0; i < 50; i++) {
+				assertEquals(expected.raw(), gen.nextDouble());
+			}
+		}
+	}
+
+	@Test
+	void testCopyBeforeFirstUse() {
+		RandomProvider p1 = new RanluxProvider(42);
+		RandomGenerator gen = p1.createGenerator();
+		RandomGenerator genCopy = gen.copy();
+		RandomGenerator genCopy2 = genCopy.copy();
+
+		for (int i = 0; i < 100; i++) {
+			double expected = gen.nextDouble();
+			assertEquals(expected, genCopy.nextDouble());
+			assertEquals(expected, genCopy2.nextDouble());
+		}
+	}
+	
+	@Test
+	void testLuxuryLevels() {
+		for (int lux = 0; lux <= Ranlux.maxlev; lux++) {
+			RandomProvider p1 = new RanluxProvider(11, lux);
+			assertEquals("Ranlux;" + lux + ";11", p1.getSetup());
+			assertEquals(p1.getSetup(), p1.copy().getSetup());
+			
+			RandomGenerator gen = p1.createGenerator();
+			assertEquals("Ranlux;" + lux + ";11", gen.getRandomSetup());
+			RandomGenerator recreated = p1.createGenerator(gen.getRandomSetup());
+			Ranlux expected = new Ranlux(lux, 11L);
+			for (int i = 0; i < 100; i++) {
+				double e = expected.raw();
+				assertEquals(e, recreated.nextDouble());
+			}
+		}
+		
+		assertEquals("Ranlux;4;3", new RanluxProvider(3).getSetup());
+		assertThrows(IllegalArgumentException.class, () -> new RanluxProvider(3, 5));
+		assertThrows(IllegalArgumentException.class, () -> new RanluxProvider(3).createGenerator("Ranlux;-1;3"));
+	}
+	
+	@Test
+	void testBulkMatchesSingle() {
+		int[] chunks = {1, 7, 24, 23, 50, 0, 97, 3};
+		for (int lux = 0; lux <= Ranlux.maxlev; lux++) {
+			RandomProvider p1 = new RanluxProvider(5, lux);
+			RandomGenerator single = p1.createGenerator();
+			RandomGenerator bulk = single.copy();
+			
+			double[] out = new double[100];
+			for (int c : chunks) {
+				bulk.nextDoubles(out, c);
+				for (int i = 0; i < c; i++) {
+					assertEquals(single.nextDouble(), out[i]);
+				}
+			}
+			
+			//Copies taken after bulk generation continue the same sequence
+			RandomGenerator copy = bulk.copy();
+			assertEquals(single.nextDouble(), copy.nextDouble());
+		}
+	}
+}
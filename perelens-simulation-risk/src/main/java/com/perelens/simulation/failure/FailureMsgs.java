@@ -23,6 +23,10 @@ import com.perelens.engine.api.EventType;
  */
 class FailureMsgs extends Msgs {
 
+	static String unknownResourcePool(String poolId) {
+		return "Resource units set for a pool the function does not use: " + poolId;
+	}
+
 	static String usageKofN() {
 		return "K and N arguments must satisfy 0 < K < N";
 	}
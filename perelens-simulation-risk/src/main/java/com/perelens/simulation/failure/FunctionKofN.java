@@ -4,17 +4,21 @@
 package com.perelens.simulation.failure;
 
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
 
 import com.perelens.engine.api.ConfigKey;
 import com.perelens.engine.api.Event;
 import com.perelens.engine.api.EventGenerator;
 import com.perelens.engine.utils.Utils;
 import com.perelens.simulation.api.Distribution;
+import com.perelens.simulation.api.Function;
 import com.perelens.simulation.api.FunctionInfo;
 import com.perelens.simulation.api.RandomGenerator;
+import com.perelens.simulation.core.InlinableFunction;
+import com.perelens.simulation.core.CoreDistributionProvider;
 import com.perelens.simulation.failure.events.FailureSimulationEvent;
 
 /**
@@ -31,10 +35,23 @@ import com.perelens.simulation.failure.events.FailureSimulationEvent;
    
  * Compound function that is functional if minimum number (K) of its total dependencies (N) of are available.
  * 
+ * Each dependency is given a handle when the function is initiated and its current FS_FAILED event is kept at that handle, with the
+ * failed dependencies linked in the order they failed.  A failure or repair of a dependency is then a constant time update no matter
+ * how large N is, and only the events received since the function failed are kept in a list for its FS_RETURN_TO_SERVICE event.
+ * 
+ * When all N dependencies are RandomFailureFunctions with the same exponential failure and repair distributions, no restore time
+ * and nothing else depending on them, the function can be inlined (see CoreSimulationBuilder.setInlineGroups).  The inlined
+ * function keeps the time of the next failure or repair of every dependency in a heap and, when the earliest is due, feeds the
+ * FS_FAILED or FS_RETURN_TO_SERVICE event it makes for that dependency through the same logic as the events of real dependencies.
+ * Intervals are rounded to whole time units exactly as RandomFailureFunction rounds them, failures down to at least one unit and
+ * repairs up, so the inlined group raises events with the same distribution as the dependencies it replaces would.
+ * Every dependency still has its own clock and every failure and repair is still sampled, this is not an aggregate model of the
+ * number of failed dependencies.  What is saved is the Simulation Engine entry and event dispatch of each dependency.
+ * 
  * @author Steve Branda
  *
  */
-public class FunctionKofN extends AbstractFailureFunction{
+public class FunctionKofN extends AbstractFailureFunction implements InlinableFunction{
 
 	public static enum CONFIG_KEYS implements ConfigKey{
 		KNFF_MIN_REQUIRED_DEPENDENCIES,
@@ -44,9 +61,34 @@ public class FunctionKofN extends AbstractFailureFunction{
 	private int k;
 	private int n;
 	
-	private Event[] events = com.perelens.engine.utils.Utils.EMPTY_QUEUE;
+	private static final int[] NO_HANDLES = new int[0];
+	
+	//Handle of each dependency, shared by every copy of the function
+	private Map<String,Integer> handles = Collections.emptyMap();
+	
+	//Current FS_FAILED event of each dependency indexed by its handle, null while the dependency is available
+	private Event[] failures = Utils.EMPTY_QUEUE;
+	//Failed dependencies linked in the order they failed
+	private int[] nextFailed = NO_HANDLES;
+	private int[] prevFailed = NO_HANDLES;
+	private int firstFailed = -1;
+	private int lastFailed = -1;
+	
+	//Events received since the function failed, empty while it is AVAILABLE
+	private Event[] events = Utils.EMPTY_QUEUE;
 	private int eIndex = 0;
-	private boolean eCompress = false;
+	
+	//Ids of the dependencies this function simulates itself when it is inlined, null otherwise
+	private String[] inlinedIds = null;
+	private double mtbf = 0;
+	private double mttr = 0;
+	private RandomGenerator rngInlined = null;
+	//Time of the next change of each inlined dependency indexed by its handle, and whether it is failed
+	private long[] changeTimes = Utils.EMPTY_LONG_ARRAY;
+	private boolean[] inlinedFailed = null;
+	//Min heap of the handles of the inlined dependencies ordered by changeTimes
+	private int[] changeHeap = NO_HANDLES;
+	private boolean inlinedStarted = false;
 	
 	private Event failureEvent = null;
 	private int totalFailures = 0;
@@ -91,7 +133,7 @@ public class FunctionKofN extends AbstractFailureFunction{
 	
 	@Override
 	public void initiate(FunctionInfo info) {
-		Set<String> deps = info.getDependencies();
+		Collection<String> deps = inlinedIds == null ? info.getDependencies() : Arrays.asList(inlinedIds);
 		
 		if (deps.size() < n) {
 			throw new IllegalStateException(FailureMsgs.missingDependencies(deps.size(), n));
@@ -99,6 +141,15 @@ public class FunctionKofN extends AbstractFailureFunction{
 			throw new IllegalStateException(FailureMsgs.extraDependencies(deps.size(),n));
 		}
 		
+		HashMap<String,Integer> h = new HashMap<>();
+		for (String dep : deps) {
+			h.put(dep, h.size());
+		}
+		handles = h;
+		failures = new Event[n];
+		nextFailed = new int[n];
+		prevFailed = new int[n];
+		
 		if (failOverFaultPercentage > 0) {
 			rngFailOverFault = info.getRandomGenerator();
 		}
@@ -106,6 +157,53 @@ public class FunctionKofN extends AbstractFailureFunction{
 		if (mtfoDistribution != null) {
 			rngMTFO = info.getRandomGenerator();
 		}
+		
+		if (inlinedIds != null) {
+			//Handles follow the order of inlinedIds
+			rngInlined = info.getRandomGenerator();
+			changeTimes = new long[n];
+			inlinedFailed = new boolean[n];
+			changeHeap = new int[n];
+		}
+	}
+	
+	/**
+	 * Inlines the function when it is exactly a FunctionKofN and the dependencies are all RandomFailureFunctions with the same
+	 * exponential failure and repair distributions and no restore time.
+	 */
+	@Override
+	public Function inline(Function[] dependencies) {
+		if (getClass() != FunctionKofN.class || dependencies.length != n) {
+			return null;
+		}
+		
+		double mtbf = Double.NaN;
+		double mttr = Double.NaN;
+		String[] ids = new String[dependencies.length];
+		for (int i = 0; i < dependencies.length; i++) {
+			if (dependencies[i].getClass() != RandomFailureFunction.class) {
+				return null;
+			}
+			RandomFailureFunction dep = (RandomFailureFunction)dependencies[i];
+			double f = CoreDistributionProvider.getExponentialMean(dep.getFailureDistribution());
+			double r = CoreDistributionProvider.getExponentialMean(dep.getRepairDistribution());
+			if (Double.isNaN(f) || Double.isNaN(r) || dep.getRestoreTime() != 0) {
+				return null;
+			}
+			if (i == 0) {
+				mtbf = f;
+				mttr = r;
+			}else if (f != mtbf || r != mttr) {
+				return null;
+			}
+			ids[i] = dep.getId();
+		}
+		
+		FunctionKofN toReturn = (FunctionKofN)copy();
+		toReturn.inlinedIds = ids;
+		toReturn.mtbf = mtbf;
+		toReturn.mttr = mttr;
+		return toReturn;
 	}
 
 	
@@ -121,8 +219,32 @@ public class FunctionKofN extends AbstractFailureFunction{
 		return totalFailures;
 	}
 	
+	@Override
+	protected void preProcess() {
+		if (inlinedIds != null && !inlinedStarted) {
+			//First invocation of a inlined function, every dependency starts out available like a RandomFailureFunction
+			inlinedStarted = true;
+			for (int i = 0; i < n; i++) {
+				changeTimes[i] = getTimeProcessed() + sampleFailureInterval();
+				changeHeap[i] = i;
+			}
+			for (int i = n / 2 - 1; i >= 0; i--) {
+				siftDown(i);
+			}
+			registerCallbackTime(changeTimes[changeHeap[0]]);
+		}
+	}
+	
 	@Override
 	protected void process(Event curEvent) {
+		if (curEvent == null && inlinedIds != null && changeTimes[changeHeap[0]] == getTimeProcessed()) {
+			//Feed every change of the inlined dependencies that is due through the same logic as the events of real dependencies
+			do {
+				process(nextChange());
+			}while (changeTimes[changeHeap[0]] == getTimeProcessed());
+			registerCallbackTime(changeTimes[changeHeap[0]]);
+		}
+		
 		//Common processing for all states
 		if (curEvent != null) {
 			//Only interested in FAILED or RETURN_TO_SERVICE events from dependencies
@@ -162,12 +284,6 @@ public class FunctionKofN extends AbstractFailureFunction{
 		
 		//When in the AVAILABLE state, the internal state will only change in response to events
 		if (getState() == State.AVAILABLE && curEvent != null) {
-			if (curEvent.getType() == FailureSimulationEvent.FS_RETURN_TO_SERVICE) {
-				//In the AVAILABLE state, the function only needs to store FS_FAILED events from its dependencies.
-				//When a dependency becomes available again due to an FS_RETURN_TO_SERVICE event, that event and the original FS_FAILED event can be purged.
-				clearFailure(curEvent);
-			}
-			
 			//When n-k + 1 total failures accumulates, the function moves from AVAILABLE to FAILED and raises an FS_FAILED event that contains the
 			//FS_FAILURE events for all the currently failed dependencies.
 			if (totalFailures > n-k) {
@@ -222,6 +338,51 @@ public class FunctionKofN extends AbstractFailureFunction{
 		}
 	}
 	
+	//Same rounding as RandomFailureFunction.sampleFailureInterval()
+	private long sampleFailureInterval() {
+		return Math.max((long)(-mtbf * Math.log(rngInlined.nextDouble())), 1);
+	}
+	
+	//Same rounding as RandomFailureFunction.setStateFailed() without a restore time
+	private long sampleRepairInterval() {
+		return (long)Math.ceil(-mttr * Math.log(rngInlined.nextDouble()));
+	}
+	
+	/**
+	 * Changes the state of the inlined dependency at the top of the heap, schedules its next change and returns its event
+	 */
+	private Event nextChange() {
+		int handle = changeHeap[0];
+		FailureSimulationEvent type;
+		if (inlinedFailed[handle]) {
+			inlinedFailed[handle] = false;
+			changeTimes[handle] += sampleFailureInterval();
+			type = FailureSimulationEvent.FS_RETURN_TO_SERVICE;
+		}else {
+			inlinedFailed[handle] = true;
+			changeTimes[handle] += sampleRepairInterval();
+			type = FailureSimulationEvent.FS_FAILED;
+		}
+		siftDown(0);
+		return new FailSimEvent(type, inlinedIds[handle], getTimeProcessed(), getNextOrdinal());
+	}
+	
+	private void siftDown(int i) {
+		int handle = changeHeap[i];
+		long time = changeTimes[handle];
+		for (int child = i + i + 1; child < n; child = i + i + 1) {
+			if (child + 1 < n && changeTimes[changeHeap[child + 1]] < changeTimes[changeHeap[child]]) {
+				child++;
+			}
+			if (time <= changeTimes[changeHeap[child]]) {
+				break;
+			}
+			changeHeap[i] = changeHeap[child];
+			i = child;
+		}
+		changeHeap[i] = handle;
+	}
+	
 	protected boolean shouldProcessMTFO(Event ev) {
 		return mtfo > 0 || mtfoDistribution != null;
 	}
@@ -235,9 +396,22 @@ public class FunctionKofN extends AbstractFailureFunction{
 	
 	protected void syncInternalState(FunctionKofN toSync) {
 		super.syncInternalState(toSync);
+		toSync.handles = this.handles;
+		toSync.failures = Arrays.copyOf(this.failures, this.failures.length);
+		toSync.nextFailed = Arrays.copyOf(this.nextFailed, this.nextFailed.length);
+		toSync.prevFailed = Arrays.copyOf(this.prevFailed, this.prevFailed.length);
+		toSync.firstFailed = this.firstFailed;
+		toSync.lastFailed = this.lastFailed;
 		toSync.events = Arrays.copyOf(this.events, this.events.length);
 		toSync.eIndex = this.eIndex;
-		toSync.eCompress = this.eCompress;
+		toSync.inlinedIds = this.inlinedIds;
+		toSync.mtbf = this.mtbf;
+		toSync.mttr = this.mttr;
+		toSync.rngInlined = this.rngInlined == null?null:this.rngInlined.copy();
+		toSync.changeTimes = Arrays.copyOf(this.changeTimes, this.changeTimes.length);
+		toSync.inlinedFailed = this.inlinedFailed == null?null:Arrays.copyOf(this.inlinedFailed, this.inlinedFailed.length);
+		toSync.changeHeap = Arrays.copyOf(this.changeHeap, this.changeHeap.length);
+		toSync.inlinedStarted = this.inlinedStarted;
 		toSync.failureEvent = this.failureEvent;
 		toSync.rngFailOverFault = this.rngFailOverFault == null?null:this.rngFailOverFault.copy();
 		toSync.failOverFaultPercentage = this.failOverFaultPercentage;
@@ -254,35 +428,25 @@ public class FunctionKofN extends AbstractFailureFunction{
 	
 	protected Event[] getEventsSinceFailure(long timeLimit) {
 		if (failureEvent == null) throw new IllegalStateException(FailureMsgs.badState());
-		compressEvents();
-		int start = -1;
 		int end = eIndex;
 		for (int i = 0; i < eIndex; i++) {
-			if (events[i] == failureEvent) {
-				start = i+1;
-			}
-			if (start >= 0 && events[i].getTime() > timeLimit) {
+			if (events[i].getTime() > timeLimit) {
 				end = i;
 				break;
 			}
 		}
-		
-		if (start == -1) {
-			throw new IllegalStateException(FailureMsgs.badState());
-		}else {
-			return Arrays.copyOfRange(events, start, end);
-		}	
+		return Arrays.copyOf(events, end);
 	}
 
 	protected Event[] getFailureEvents() {
 		Event[] toReturn = new Event[totalFailures];
 		int idx = 0;
-		for (int i = 0; i < eIndex; i++) {
-			Event cur = events[i];
-			if (cur != null && cur.getType() == FailureSimulationEvent.FS_FAILED) {
-				toReturn[idx] = cur;
-				idx++;
+		for (int h = firstFailed; h != -1; h = nextFailed[h]) {
+			if (idx == totalFailures) {
+				throw new IllegalStateException(FailureMsgs.badTotalFailureState(totalFailures, idx + 1));
 			}
+			toReturn[idx] = failures[h];
+			idx++;
 		}
 		
 		if (idx != totalFailures) {
@@ -292,22 +456,25 @@ public class FunctionKofN extends AbstractFailureFunction{
 	}
 	
 	protected void clearFailure(Event repairEvent) {
-		String repairedDep = repairEvent.getProducerId();
-		for (int i = 0; i < eIndex; i++) {
-			Event cur = events[i];
-			if (cur != null && cur.getType() == FailureSimulationEvent.FS_FAILED && cur.getProducerId().equals(repairedDep)) {
-				events[i] = null; //Clear the original failure
-				if (events[eIndex - 1] == repairEvent) {
-					events[--eIndex] = null; //Clear the repair
-				}else {
-					throw new IllegalStateException(FailureMsgs.badState());
-				}
-				eCompress = true;
-				return;
-			}
+		int h = getHandle(repairEvent);
+		if (failures[h] == null) {
+			throw new IllegalStateException(FailureMsgs.unableToClearFailureEvent(repairEvent));
 		}
+		failures[h] = null;
 		
-		throw new IllegalStateException(FailureMsgs.unableToClearFailureEvent(repairEvent));
+		//Unlink the dependency from the failed list
+		int prev = prevFailed[h];
+		int next = nextFailed[h];
+		if (prev == -1) {
+			firstFailed = next;
+		}else {
+			nextFailed[prev] = next;
+		}
+		if (next == -1) {
+			lastFailed = prev;
+		}else {
+			prevFailed[next] = prev;
+		}
 	}
 	
 	protected void setStateAvailable(Event repairEvent) {
@@ -315,31 +482,9 @@ public class FunctionKofN extends AbstractFailureFunction{
 		clearReturnToServiceTime();
 		failureEvent = null;
 		
-		//purge all events except for active FAILED dependencies and the repairEvent and its associated failure
-		//The repairEvent and its associated FAILED event will be purged by AVAILABLE state processing
-		for (int i = eIndex - 1; i >=0; i--) {
-			Event curEvent = events[i];
-			if (curEvent != null && curEvent.getType() == FailureSimulationEvent.FS_RETURN_TO_SERVICE && curEvent != repairEvent) {
-				boolean cleared = false;
-				String repairedDep = curEvent.getProducerId();
-				for (int j = i - 1; j >= 0; j--) {
-					Event cur = events[j];
-					if (cur != null && cur.getType() == FailureSimulationEvent.FS_FAILED && cur.getProducerId().equals(repairedDep)) {
-						events[j] = null; //Clear the original failure
-						events[i] = null; //Clear the repair event
-						cleared = true;
-						break;
-					}
-				}
-				
-				if (!cleared) {
-					throw new IllegalStateException(FailureMsgs.badState());
-				}
-			}
-		}
-		
-		eCompress = true;
-		compressEvents();
+		//Repaired dependencies were cleared as their FS_RETURN_TO_SERVICE events arrived so only the events since the failure need purging
+		Arrays.fill(events, 0, eIndex, null);
+		eIndex = 0;
 	}
 	
 	protected void setStateFailed(Event eventThatCausedFailure) {
@@ -380,16 +525,47 @@ public class FunctionKofN extends AbstractFailureFunction{
 	}
 	
 	protected void storeEvent(Event e) {
-		compressEvents();
-		events = com.perelens.engine.utils.Utils.append(events, e, eIndex);
-		eIndex++;
+		if (e.getType() == FailureSimulationEvent.FS_FAILED) {
+			int h = getHandle(e);
+			if (failures[h] != null) {
+				throw new IllegalStateException(FailureMsgs.badState());
+			}
+			failures[h] = e;
+			
+			//Link the dependency at the end of the failed list
+			prevFailed[h] = lastFailed;
+			nextFailed[h] = -1;
+			if (lastFailed == -1) {
+				firstFailed = h;
+			}else {
+				nextFailed[lastFailed] = h;
+			}
+			lastFailed = h;
+		}else {
+			//The dependency is available again so its FS_FAILED event can be purged
+			clearFailure(e);
+		}
+		
+		//While AVAILABLE the function only needs the FS_FAILED events of its dependencies
+		if (getState() != State.AVAILABLE) {
+			events = Utils.append(events, e, eIndex);
+			eIndex++;
+		}
 	}
 	
-	protected void compressEvents() {
-		if (eCompress) {
-			eIndex = com.perelens.engine.utils.Utils.compress(events, eIndex);
-			eCompress = false;
+	private int getHandle(Event e) {
+		Integer h = handles.get(e.getProducerId());
+		if (h == null) {
+			//Not a dependency the function was initiated with, give it a handle without changing the map shared with other copies
+			HashMap<String,Integer> grown = new HashMap<>(handles);
+			h = grown.size();
+			grown.put(e.getProducerId(), h);
+			handles = grown;
+			failures = Arrays.copyOf(failures, h + 1);
+			nextFailed = Arrays.copyOf(nextFailed, h + 1);
+			prevFailed = Arrays.copyOf(prevFailed, h + 1);
 		}
+		return h;
 	}
 
 	@Override
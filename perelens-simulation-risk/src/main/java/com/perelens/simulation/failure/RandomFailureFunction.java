@@ -3,9 +3,12 @@
  */
 package com.perelens.simulation.failure;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.StringJoiner;
+import java.util.TreeMap;
 
 import com.perelens.engine.api.ConfigKey;
 import com.perelens.engine.api.Event;
@@ -13,7 +16,7 @@ import com.perelens.engine.api.EventGenerator;
 import com.perelens.engine.utils.Utils;
 import com.perelens.simulation.api.Distribution;
 import com.perelens.simulation.api.FunctionInfo;
-import com.perelens.simulation.api.RandomGenerator;
+import com.perelens.simulation.core.BufferedSampler;
 import com.perelens.simulation.core.ResPoolEvent;
 import com.perelens.simulation.events.ResourcePoolEvent;
 import com.perelens.simulation.failure.events.FailureSimulationEvent;
@@ -29,6 +32,16 @@ import com.perelens.simulation.failure.events.FailureSimulationEvent;
    BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
    permissions and limitations under the License
    
+   A function that uses several resource pools acquires them one at a time in pool id order and holds every pool it has been granted
+   until the repair completes.  Acquiring in one global order means two functions can never each hold a pool the other is waiting for.
+   Only the request to the last pool carries the repair time, so a time optimized pool must have the highest id of the pools a function uses,
+   and rejects any earlier request with CoreTimeOptimizedResourcePool's eventNotTimeOptimized error.
+   
+   The time to the next failure is sampled when the function fails rather than when it returns to service so the request can tell the pool
+   how long after the repair the function will request again (see ResPoolEvent.setLookahead).  Samples are drawn in the same order either way.
+   
+   A deferred request is renewed at the start of the next time window unless the pool's RP_DEFER says when it could next grant
+   anything (see CoreResourcePool.setPersistentRequests), in which case the renewal waits for the window that contains that time.
    
  * @author Steve Branda
  * 
@@ -39,21 +52,35 @@ public class RandomFailureFunction extends AbstractFailureFunction {
 	public static enum CONFIG_KEYS implements ConfigKey{
 		RFF_FAILURE_ARRIVAL_DIST,
 		RFF_REPAIR_TIME_DIST,
-		RFF_RESOURCE_POOL;
+		RFF_RESOURCE_POOL,
+		RFF_RESOURCE_UNITS;
 	}
 	
+	private static final String[] NO_POOLS = new String[0];
+	private static final int[] NO_UNITS = new int[0];
+	private static final Event[] NO_GRANTS = new Event[0];
+	
 	private Distribution failureDistribution;
 	private Distribution repairDistribution;
-	private RandomGenerator failureGen;
-	private RandomGenerator repairGen;
+	private BufferedSampler failureSampler;
+	private BufferedSampler repairSampler;
 	
 	private long nextFailureTime = -1;
+	private long nextFailureInterval = -1;
 	
 	//These fields support time optimized resource pools
 	private long nextReturnToServiceInterval = -1;
 	private long toBeginRestore = -1;
 	
-	private String resourcePool = null;
+	//Earliest time the pool that deferred the last request could grant it, or -1 if the pool did not say
+	private long renewAt = -1;
+	
+	private String[] resourcePools = NO_POOLS;
+	private TreeMap<String,Integer> resourceUnits = new TreeMap<>();
+	//Units to request from each pool in resourcePools, resolved from resourceUnits by initiate()
+	private int[] poolUnits = NO_UNITS;
+	private Event[] poolGrants = NO_GRANTS;
+	private int poolsHeld = 0;
 	private Event repairResource = null;
 	
 	public RandomFailureFunction(String id, Distribution failureArrivalTimeDistribution, Distribution repairTimeDistribution) {
@@ -64,18 +91,53 @@ public class RandomFailureFunction extends AbstractFailureFunction {
 		repairDistribution = repairTimeDistribution;
 	}
 	
+	/**
+	 * Sets the number of units to request from the passed resource pool for each repair.  The default is 1.
+	 * 
+	 * @param poolId
+	 * @param units
+	 */
+	public void setResourceUnits(String poolId, int units) {
+		Utils.checkId(poolId);
+		Utils.checkArgStrictlyPositive(units);
+		if (failureSampler != null) {
+			throw new IllegalStateException(FailureMsgs.reconfigurationNotAllowed());
+		}
+		//Copies share the map so replace it instead of changing it
+		resourceUnits = new TreeMap<>(resourceUnits);
+		if (units == 1) {
+			resourceUnits.remove(poolId);
+		}else {
+			resourceUnits.put(poolId, units);
+		}
+	}
+	
+	@Override
+	public int getResourceUnits(String poolId) {
+		return resourceUnits.getOrDefault(poolId, 1);
+	}
+	
 	@Override
 	public void initiate(FunctionInfo info) {
-		failureGen = info.getRandomGenerator();
-		repairGen = info.getRandomGenerator();
+		failureSampler = new BufferedSampler(failureDistribution, info.getRandomGenerator());
+		repairSampler = new BufferedSampler(repairDistribution, info.getRandomGenerator());
 		
 		Set<String> pools = info.getResourcePools();
 		if (pools.size() > 0) {
-			if (pools.size() > 1) {
-				//Only support one resource pool right now
-				throw new IllegalStateException(FailureMsgs.badState());
+			//Sorting gives every function the same acquisition order
+			resourcePools = pools.toArray(new String[pools.size()]);
+			Arrays.sort(resourcePools);
+			poolGrants = new Event[resourcePools.length];
+			poolUnits = new int[resourcePools.length];
+			Arrays.fill(poolUnits, 1);
+		}
+		for (Map.Entry<String,Integer> ent : resourceUnits.entrySet()) {
+			//Units are set by the id the pool was added with, which a sharded pool replaces with the id of a shard
+			int index = Arrays.binarySearch(resourcePools, info.getResourcePoolId(ent.getKey()));
+			if (index < 0) {
+				throw new IllegalStateException(FailureMsgs.unknownResourcePool(ent.getKey()));
 			}
-			resourcePool = pools.iterator().next();
+			poolUnits[index] = ent.getValue();
 		}
 	}
 
@@ -88,10 +150,14 @@ public class RandomFailureFunction extends AbstractFailureFunction {
 		}else if (getState() == State.FAILED) {
 			if (!this.isReturnToServiceTimeSet()) {
 				if (getRepairResource() == null) {
-					//Must have been deferred by the resource pool during the last window so send a RENEW request
-					var renew = new ResPoolEvent(getId(),ResourcePoolEvent.RP_RENEW,getWindowStart() + 1, getNextOrdinal(),ResourcePoolEvent.REQUEST_RESPONSE_TYPES);
-					raiseEvent(renew);
-					this.waitForResponse();
+					if (renewAt > getWindowEnd()) {
+						//The pool cannot grant anything before renewAt, so there is nothing to wait for during this window
+					}else {
+						//Must have been deferred by the resource pool during a previous window so send a RENEW request
+						var renew = poolRequest(ResourcePoolEvent.RP_RENEW,getWindowStart() + 1);
+						raiseEvent(renew);
+						this.waitForResponse();
+					}
 				}else {
 					//Time optimized resource pool and just waiting to start repair so null op.
 				}
@@ -103,19 +169,19 @@ public class RandomFailureFunction extends AbstractFailureFunction {
 
 	@Override
 	protected void postProcess() {
-		if (getRepairResource() != null) {
-		
-			long resTime = getRepairResource().getTime();
-
-			if (resTime > getWindowStart()) {
+		for (int i = 0; i < poolsHeld; i++) {
+			Event grant = poolGrants[i];
+			if (grant.getTime() > getWindowStart()) {
 				//repair resource was received in this time window, but will be kept at least until the next window
 				//Need to raise a DEFERRED event so the Resource Pool can complete this time window
 				//Technically a DEFERRED event is not necessary with a TimeOptimized Resource pool but
 				//raising it improves thread scheduling efficiency greatly.
 				Event defer = new ResPoolEvent(getId(),ResourcePoolEvent.RP_DEFER,getTimeProcessed(), getNextOrdinal());
-				raiseResponse(defer, getRepairResource());
+				raiseResponse(defer, grant);
 			}
-				
+		}
+		
+		if (getRepairResource() != null) {
 			//Sanity check
 			if (getState() != State.RESTORING && getRepairResource().getTimeOptimization() == Event.NOT_TIME_OPTIMIZED) {
 				throw new IllegalStateException(FailureMsgs.badState());
@@ -134,14 +200,11 @@ public class RandomFailureFunction extends AbstractFailureFunction {
 				setStateFailed();
 				
 				//request the repair resource if necessary
-				if (getResourcePool() == null) {
+				if (resourcePools.length == 0) {
 					//No resource pool configured so move to RESTORING immediately
 					setStateRestoring();
 				}else {
-					var resRequest = new ResPoolEvent(
-							getId(),ResourcePoolEvent.RP_REQUEST,getTimeProcessed(),getNextOrdinal(),ResourcePoolEvent.REQUEST_RESPONSE_TYPES);
-					resRequest.setTimeOptimization(getNextReturnToServiceInterval());
-					raiseEvent(resRequest);
+					raiseEvent(poolRequest(ResourcePoolEvent.RP_REQUEST,getTimeProcessed()));
 					super.waitForResponse();
 				}
 			}
@@ -153,8 +216,16 @@ public class RandomFailureFunction extends AbstractFailureFunction {
 				//Must be waiting for resource from the pool
 				if (curEvent != null) {
 					if (curEvent.getType() == ResourcePoolEvent.RP_GRANT) {
+						if (!curEvent.getProducerId().equals(resourcePools[poolsHeld])) {
+							throw new IllegalStateException(FailureMsgs.badState());
+						}
+						poolGrants[poolsHeld++] = curEvent;
 						long tOpt = curEvent.getTimeOptimization();
-						if (tOpt >= curEvent.getTime()) {
+						if (poolsHeld < resourcePools.length) {
+							//Hold this pool and ask for the next one in acquisition order
+							raiseEvent(poolRequest(ResourcePoolEvent.RP_REQUEST,getTimeProcessed()));
+							super.waitForResponse();
+						}else if (tOpt >= curEvent.getTime()) {
 							//Time optimized resource pool
 							toBeginRestore = tOpt;
 							this.registerCallbackTime(getToBeginRestore());
@@ -162,7 +233,11 @@ public class RandomFailureFunction extends AbstractFailureFunction {
 							//Not time optimized resource pool
 							setStateRestoring();
 						}
-						setRepairResource(curEvent);
+						if (poolsHeld == resourcePools.length) {
+							setRepairResource(curEvent);
+						}
+					}else if (curEvent.getType() == ResourcePoolEvent.RP_DEFER) {
+						renewAt = curEvent.getTimeOptimization();
 					}
 				}else if(getTimeProcessed() == getToBeginRestore()){
 					setStateRestoring();
@@ -175,14 +250,18 @@ public class RandomFailureFunction extends AbstractFailureFunction {
 		
 		if (getState() == State.RESTORING) {
 			if (getReturnToServiceTime() == getTimeProcessed()) {
-				if (getResourcePool() != null) {
-					//Return the repair resource
+				for (int i = 0; i < poolsHeld; i++) {
+					//Return the repair resources
 					//Technically a TimeOptimized resource pool does not need this event generated
 					//however doing so greatly improves thread scheduling so we have to keep it.
-					Event retRes = new ResPoolEvent(getId(),ResourcePoolEvent.RP_RETURN,getReturnToServiceTime(), getNextOrdinal());
-					if (getRepairResource().getTime() > getWindowStart()) {
+					Event grant = poolGrants[i];
+					ResPoolEvent retRes = new ResPoolEvent(getId(),ResourcePoolEvent.RP_RETURN,getReturnToServiceTime(), getNextOrdinal());
+					if (resourcePools.length > 1) {
+						retRes.setPool(grant.getProducerId());
+					}
+					if (grant.getTime() > getWindowStart()) {
 						//If the resource is received and the repair completes in the same time window then return through response
-						raiseResponse(retRes, getRepairResource());
+						raiseResponse(retRes, grant);
 					}else {
 						//If the resource was received during previous time window then return as an event
 						raiseEvent(retRes);
@@ -197,17 +276,35 @@ public class RandomFailureFunction extends AbstractFailureFunction {
 		}
 	}
 	
+	/**
+	 * Creates a REQUEST or RENEW for the next pool in acquisition order
+	 */
+	private ResPoolEvent poolRequest(ResourcePoolEvent type, long time) {
+		var request = new ResPoolEvent(getId(),type,time,getNextOrdinal(),ResourcePoolEvent.REQUEST_RESPONSE_TYPES);
+		String pool = resourcePools[poolsHeld];
+		if (resourcePools.length > 1) {
+			request.setPool(pool);
+		}
+		int units = poolUnits[poolsHeld];
+		if (units != 1) {
+			request.setUnits(units);
+		}
+		if (type == ResourcePoolEvent.RP_REQUEST && poolsHeld == resourcePools.length - 1) {
+			request.setTimeOptimization(getNextReturnToServiceInterval());
+			request.setLookahead(nextFailureInterval);
+		}
+		return request;
+	}
+	
 	protected void setStateAvailable() {
 		clearRepairResource();
+		Arrays.fill(poolGrants, 0, poolsHeld, null);
+		poolsHeld = 0;
 		clearReturnToServiceTime();
 		
-		//generate the next failure time
-		double uniformRandom = failureGen.nextDouble();
-		double nextDuration = failureDistribution.sample(uniformRandom);
-		//Cast to long which rounds down to to a complete unit.
-		//This is a more conservative way to process failure arrival than rounding to the nearest complete unit, which would
-		//extend failure arrival in 50% of cases.
-		long nd = Math.max((long)nextDuration,1); //need to advance time at least one unit
+		//use the failure interval sampled at the last failure, or generate one on the first call
+		long nd = nextFailureInterval > 0 ? nextFailureInterval : sampleFailureInterval();
+		nextFailureInterval = -1;
 		setNextFailureTime(getTimeProcessed() + nd);
 		setState(State.AVAILABLE);
 		this.registerCallbackTime(getNextFailureTime());
@@ -217,9 +314,19 @@ public class RandomFailureFunction extends AbstractFailureFunction {
 		setState(State.FAILED);
 		
 		//Figure out the randomized repair time at the time of failure to support time optimized resource pools
-		double uniformRandom = repairGen.nextDouble();
-		double repairTime = repairDistribution.sample(uniformRandom);
+		double repairTime = repairSampler.next();
 		nextReturnToServiceInterval = ((long)Math.ceil(repairTime)) + getRestoreTime();
+		
+		//Sample the interval to the next failure now so resource requests can publish it as their lookahead
+		nextFailureInterval = sampleFailureInterval();
+	}
+	
+	private long sampleFailureInterval() {
+		double nextDuration = failureSampler.next();
+		//Cast to long which rounds down to to a complete unit.
+		//This is a more conservative way to process failure arrival than rounding to the nearest complete unit, which would
+		//extend failure arrival in 50% of cases.
+		return Math.max((long)nextDuration,1); //need to advance time at least one unit
 	}
 
 	protected void setStateRestoring() {
@@ -241,13 +348,27 @@ public class RandomFailureFunction extends AbstractFailureFunction {
 	
 	protected void syncInternalState(RandomFailureFunction toSync) {
 		super.syncInternalState(toSync);
-		toSync.failureGen = this.failureGen == null?null:this.failureGen.copy();
-		toSync.repairGen = this.repairGen == null?null:this.repairGen.copy();
+		toSync.failureSampler = this.failureSampler == null?null:this.failureSampler.copy();
+		toSync.repairSampler = this.repairSampler == null?null:this.repairSampler.copy();
 		toSync.nextFailureTime = this.nextFailureTime;
-		toSync.resourcePool = this.resourcePool;
+		toSync.nextFailureInterval = this.nextFailureInterval;
+		toSync.renewAt = this.renewAt;
+		toSync.resourcePools = this.resourcePools;
+		toSync.resourceUnits = this.resourceUnits;
+		toSync.poolUnits = this.poolUnits;
+		toSync.poolGrants = this.poolGrants.clone();
+		toSync.poolsHeld = this.poolsHeld;
 		toSync.repairResource = this.repairResource;
 	}
 	
+	Distribution getFailureDistribution() {
+		return failureDistribution;
+	}
+	
+	Distribution getRepairDistribution() {
+		return repairDistribution;
+	}
+	
 	protected long getNextReturnToServiceInterval() {
 		return nextReturnToServiceInterval;
 	}
@@ -280,8 +401,13 @@ public class RandomFailureFunction extends AbstractFailureFunction {
 		repairResource = null;
 	}
 	
+	/**
+	 * Returns the first resource pool in acquisition order, or null if the function does not use any.
+	 * 
+	 * @return
+	 */
 	protected String getResourcePool() {
-		return resourcePool;
+		return resourcePools.length == 0 ? null : resourcePools[0];
 	}
 
 	@Override
@@ -289,7 +415,14 @@ public class RandomFailureFunction extends AbstractFailureFunction {
 		Map<ConfigKey, String> toReturn = new HashMap<>(super.getConfiguration());
 		toReturn.put(CONFIG_KEYS.RFF_FAILURE_ARRIVAL_DIST, failureDistribution.getSetup());
 		toReturn.put(CONFIG_KEYS.RFF_REPAIR_TIME_DIST, repairDistribution.getSetup());
-		toReturn.put(CONFIG_KEYS.RFF_RESOURCE_POOL, resourcePool==null?Utils.EMPTY_STRING:resourcePool);
+		toReturn.put(CONFIG_KEYS.RFF_RESOURCE_POOL, String.join(",", resourcePools));
+		if (!resourceUnits.isEmpty()) {
+			StringJoiner units = new StringJoiner(",");
+			for (Map.Entry<String,Integer> ent : resourceUnits.entrySet()) {
+				units.add(ent.getKey() + "=" + ent.getValue());
+			}
+			toReturn.put(CONFIG_KEYS.RFF_RESOURCE_UNITS, units.toString());
+		}
 		return toReturn;
 	}
 
@@ -16,6 +16,7 @@ import com.perelens.simulation.api.Distribution;
 import com.perelens.simulation.api.Function;
 import com.perelens.simulation.api.FunctionInfo;
 import com.perelens.simulation.api.RandomGenerator;
+import com.perelens.simulation.core.BufferedSampler;
 
 /**
  * Copyright 2020-2023 Steven Branda
@@ -46,7 +47,7 @@ public class MitigatingControl extends AbstractEventEvaluator implements Functio
 	private double successRate;
 	private Distribution mitigationFactor;
 	private RandomGenerator succRand = RandomGenerator.NULL_GENERATOR;
-	private RandomGenerator mitiRand = RandomGenerator.NULL_GENERATOR;
+	private BufferedSampler mitiSampler = null;
 	
 	/**
 	 * 
@@ -73,7 +74,7 @@ public class MitigatingControl extends AbstractEventEvaluator implements Functio
 		}
 		
 		if (mitigationFactor != RiskUtils.ZERO_DISTRIBUTION && mitigationFactor != RiskUtils.ONE_DISTRIBUTION) {
-			mitiRand = info.getRandomGenerator();
+			mitiSampler = new BufferedSampler(mitigationFactor, info.getRandomGenerator());
 		}
 	}
 	
@@ -96,8 +97,7 @@ public class MitigatingControl extends AbstractEventEvaluator implements Functio
 		//See if the control is successful
 		double ur = succRand.nextDouble();
 		if (Utils.processIsSuccessful(successRate, ur)) {
-			ur = mitiRand.nextDouble();
-			double mf = mitigationFactor.sample(ur);
+			double mf = mitiSampler == null ? mitigationFactor.sample(RandomGenerator.NULL_GENERATOR.nextDouble()) : mitiSampler.next();
 			double reduction = mag * mf;
 			mag = mag - reduction;
 		}
@@ -120,7 +120,7 @@ public class MitigatingControl extends AbstractEventEvaluator implements Functio
 		super.syncInternalState(toSync);
 		toSync.mitigationFactor = mitigationFactor.copy();
 		toSync.succRand = succRand.copy();
-		toSync.mitiRand = mitiRand.copy();
+		toSync.mitiSampler = mitiSampler == null?null:mitiSampler.copy();
 	}
 
 	@Override
@@ -12,7 +12,7 @@ import com.perelens.engine.api.EventType;
 import com.perelens.simulation.api.Distribution;
 import com.perelens.simulation.api.Function;
 import com.perelens.simulation.api.FunctionInfo;
-import com.perelens.simulation.api.RandomGenerator;
+import com.perelens.simulation.core.BufferedSampler;
 import com.perelens.simulation.mixed.AbstractEventWindow;
 import com.perelens.simulation.risk.events.RiskEvent;
 
@@ -40,7 +40,7 @@ public class RandomRisk extends AbstractEventWindow implements Function{
 	}
 	
 	private Distribution arrivalTime;
-	private RandomGenerator arrivalGen;
+	private BufferedSampler arrivalSampler;
 	
 	public RandomRisk(String id, Distribution eventArrivalTime, RiskEvent toGenerate) {
 		super(id,toGenerate,RiskUtils.getEndEvent(toGenerate));
@@ -52,7 +52,7 @@ public class RandomRisk extends AbstractEventWindow implements Function{
 	@Override
 	public void initiate(FunctionInfo info) {
 		super.initiate(info);
-		arrivalGen = info.getRandomGenerator();
+		arrivalSampler = new BufferedSampler(arrivalTime, info.getRandomGenerator());
 	}
 
 	@Override
@@ -65,12 +65,11 @@ public class RandomRisk extends AbstractEventWindow implements Function{
 	
 	protected void syncInternalState(RandomRisk toSync) {
 		super.syncInternalState(toSync);
-		toSync.arrivalGen = arrivalGen == null?null:arrivalGen.copy();
+		toSync.arrivalSampler = arrivalSampler == null?null:arrivalSampler.copy();
 	}
 	
 	protected void setEventArrival() {
-		double ur = arrivalGen.nextDouble();
-		double ar = arrivalTime.sample(ur);
+		double ar = arrivalSampler.next();
 		
 		long nextArrivalOffset = Math.max((long)ar, 1); //Must advance time at least one unit
 		setNextEventStart(getTimeProcessed() + nextArrivalOffset);
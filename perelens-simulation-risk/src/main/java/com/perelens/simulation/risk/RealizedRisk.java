@@ -15,6 +15,7 @@ import com.perelens.engine.utils.Utils;
 import com.perelens.simulation.api.Distribution;
 import com.perelens.simulation.api.FunctionInfo;
 import com.perelens.simulation.api.RandomGenerator;
+import com.perelens.simulation.core.BufferedSampler;
 import com.perelens.simulation.mixed.EventToWindow;
 import com.perelens.simulation.risk.events.RiskEvent;
 import com.perelens.simulation.risk.events.RiskUnit;
@@ -46,7 +47,7 @@ public class RealizedRisk extends EventToWindow implements EventFilter {
 		RR_RESULT_MAGNITUDE;
 	}
 
-	private RandomGenerator resultGen = RandomGenerator.NULL_GENERATOR;
+	private BufferedSampler resultSampler = null;
 	private Distribution resultMagnitude = RiskUtils.ZERO_DISTRIBUTION;
 	private RiskUnit resultUnit = null;
 	
@@ -73,7 +74,7 @@ public class RealizedRisk extends EventToWindow implements EventFilter {
 	@Override
 	public void initiate(FunctionInfo info) {
 		if (resultUnit != null) {
-			resultGen = info.getRandomGenerator();
+			resultSampler = new BufferedSampler(resultMagnitude, info.getRandomGenerator());
 		}
 	}
 	
@@ -89,7 +90,7 @@ public class RealizedRisk extends EventToWindow implements EventFilter {
 		if (resultUnit != null) {
 			toSync.setResultMagnitude(resultMagnitude.copy(), resultUnit);
 		}
-		toSync.resultGen = resultGen.copy();
+		toSync.resultSampler = resultSampler == null?null:resultSampler.copy();
 	}
 
 	@Override
@@ -106,8 +107,7 @@ public class RealizedRisk extends EventToWindow implements EventFilter {
 	protected RiskSimEvent createEvent(String id, EventType type, long time, long ordinal,Event curEvent) {
 		var tr = new RiskSimEvent(id,type,time,ordinal,curEvent);
 		if (resultUnit != null && type != getWindowEndEvent() && curEvent.getType() == getTrigger()) {
-			double ur = resultGen.nextDouble();
-			double mag = resultMagnitude.sample(ur);
+			double mag = resultSampler == null ? resultMagnitude.sample(RandomGenerator.NULL_GENERATOR.nextDouble()) : resultSampler.next();
 			tr.setMagnitude(mag, resultUnit);
 		}
 		return tr;
@@ -17,6 +17,7 @@ import com.perelens.simulation.api.Distribution;
 import com.perelens.simulation.api.Function;
 import com.perelens.simulation.api.FunctionInfo;
 import com.perelens.simulation.api.RandomGenerator;
+import com.perelens.simulation.core.BufferedSampler;
 import com.perelens.simulation.risk.events.RiskEvent;
 
 /**
@@ -57,7 +58,7 @@ public class WindowImpact extends AbstractEventEvaluator implements Function, Ev
 	
 	private Event curWinStart = null;
 	private Distribution impactDist = RiskUtils.ZERO_DISTRIBUTION;
-	private RandomGenerator impactGen = RandomGenerator.NULL_GENERATOR;
+	private BufferedSampler impactSampler = null;
 	private long nextImpactTime = -1;
 	
 	public WindowImpact(String id, EventType winStart, EventType winEnd, EventType impact, long sliceSize) {
@@ -103,7 +104,7 @@ public class WindowImpact extends AbstractEventEvaluator implements Function, Ev
 		super.syncInternalState(toSync);
 		toSync.curWinStart = getCurWinStart();
 		toSync.nextImpactTime = getNextImpactTime();
-		toSync.impactGen = impactGen.copy();
+		toSync.impactSampler = impactSampler == null?null:impactSampler.copy();
 	}
 
 	@Override
@@ -114,7 +115,7 @@ public class WindowImpact extends AbstractEventEvaluator implements Function, Ev
 	@Override
 	public void initiate(FunctionInfo info) {
 		if (impactDist != RiskUtils.ZERO_DISTRIBUTION) {
-			impactGen = info.getRandomGenerator();
+			impactSampler = new BufferedSampler(impactDist, info.getRandomGenerator());
 		}
 	}
 
@@ -185,8 +186,7 @@ public class WindowImpact extends AbstractEventEvaluator implements Function, Ev
 				adj = duration/sliceSize;
 			}
 			
-			double ur = impactGen.nextDouble();
-			double imp = impactDist.sample(ur);
+			double imp = impactSampler == null ? impactDist.sample(RandomGenerator.NULL_GENERATOR.nextDouble()) : impactSampler.next();
 			imp = imp * adj;
 			toRaise.setMagnitude(imp, impactUnit);
 		}
@@ -16,6 +16,7 @@ import com.perelens.engine.TestResources;
 import com.perelens.engine.api.Event;
 import com.perelens.simulation.api.Distribution;
 import com.perelens.simulation.api.DistributionProvider;
+import com.perelens.simulation.api.Function;
 import com.perelens.simulation.api.FunctionInfo;
 import com.perelens.simulation.api.RandomGenerator;
 import com.perelens.simulation.api.RandomProvider;
@@ -1019,6 +1020,139 @@ class FunctionKofNTest {
 		assertFalse(events.hasNext());		
 	}
 	
+	@Test
+	void testFailureOrderWithManyDependencies() {
+		HashSet<String> deps = new HashSet<>();
+		for (int i = 0; i < 200; i++) {
+			deps.add("dep" + i);
+		}
+		FunctionInfo fi = new TestFunctionInfo() {
+			
+			@Override
+			public Set<String> getDependencies() {
+				return deps;
+			}
+			
+			@Override
+			public RandomGenerator getRandomGenerator() {
+				throw new IllegalStateException("not implemented");
+			}
+
+			@Override
+			public TimeTranslator getTimeTranslator() {
+				return null;
+			}
+			
+		};
+		
+		FunctionKofN tf = newFunctionKofN("testFunction",197,200);
+		tf.initiate(fi);
+		
+		//dep1 is repaired and fails again so its new failure is the last cause of the function failing
+		Event fail0 = new FailSimEvent(FailureSimulationEvent.FS_FAILED,"dep0",10,ordinal++);
+		Event fail1 = new FailSimEvent(FailureSimulationEvent.FS_FAILED,"dep1",20,ordinal++);
+		Event fail2 = new FailSimEvent(FailureSimulationEvent.FS_FAILED,"dep199",30,ordinal++);
+		Event repair1 = new FailSimEvent(FailureSimulationEvent.FS_RETURN_TO_SERVICE,"dep1",40,ordinal++);
+		Event fail3 = new FailSimEvent(FailureSimulationEvent.FS_FAILED,"dep100",50,ordinal++);
+		Event refail1 = new FailSimEvent(FailureSimulationEvent.FS_FAILED,"dep1",60,ordinal++);
+		
+		TestResources tr = new TestResources(Arrays.asList(new Event[] {fail0,fail1,fail2,repair1,fail3,refail1}));
+		tf.consume(100, tr);
+		
+		assertEquals(1, tr.getRaisedEvents().size());
+		Event raisedEvent = tr.getRaisedEvents().iterator().next();
+		assertEquals(FailureSimulationEvent.FS_FAILED, raisedEvent.getType());
+		assertEquals(refail1.getTime(), raisedEvent.getTime());
+		
+		ArrayList<Event> causes = new ArrayList<>();
+		raisedEvent.causedBy().forEachRemaining(causes::add);
+		assertEquals(Arrays.asList(fail0,fail2,fail3,refail1), causes);
+		
+		//A repair of a dependency that has not failed is a bad state
+		Event badRepair = new FailSimEvent(FailureSimulationEvent.FS_RETURN_TO_SERVICE,"dep2",110,ordinal++);
+		assertThrows(IllegalStateException.class, () -> tf.consume(200, new TestResources(Collections.singletonList(badRepair))));
+	}
+	
+	@Test
+	void testInline() {
+		DistributionProvider dp = new CoreDistributionProvider();
+		Distribution failure = dp.exponential(1000);
+		Distribution repair = dp.exponential(10);
+		Function[] deps = new Function[] {
+				new RandomFailureFunction("dep0",failure,repair),
+				new RandomFailureFunction("dep1",failure,repair),
+				new RandomFailureFunction("dep2",failure,repair)};
+		FunctionKofN tf = new FunctionKofN("testFunction",2,3);
+		
+		//Dependencies that are not identical exponential functions without restore time are simulated as they are
+		RandomFailureFunction restoring = new RandomFailureFunction("dep2",failure,repair);
+		restoring.setRestoreTime(5);
+		assertNull(tf.inline(new Function[] {deps[0],deps[1],new RandomFailureFunction("dep2",failure,dp.exponential(20))}));
+		assertNull(tf.inline(new Function[] {deps[0],deps[1],new RandomFailureFunction("dep2",failure,dp.lognormal(10, 2))}));
+		assertNull(tf.inline(new Function[] {deps[0],deps[1],restoring}));
+		assertNull(tf.inline(Arrays.copyOf(deps, 2)));
+		assertNull(new ActivePassiveKofN("testFunction",2,3).inline(deps));
+		
+		FunctionKofN inlined = (FunctionKofN)tf.inline(deps);
+		assertEquals(tf.getId(), inlined.getId());
+		RandomProvider rp = new RanluxProvider(5);
+		inlined.initiate(new TestFunctionInfo() {
+			
+			@Override
+			public RandomGenerator getRandomGenerator() {
+				return rp.createGenerator();
+			}
+
+			@Override
+			public TimeTranslator getTimeTranslator() {
+				return null;
+			}
+			
+		});
+		
+		//Every failure of the function is caused by two different dependencies failing and is followed by a return to service
+		long window = 10_000;
+		FunctionKofN copy = null;
+		ArrayList<Event> raised = new ArrayList<>();
+		ArrayList<Event> raisedByCopy = new ArrayList<>();
+		for (int i = 1; i <= 200; i++) {
+			TestResources tr = new TestResources(Collections.emptyList());
+			inlined.consume(i * window, tr);
+			raised.addAll(tr.getRaisedEvents());
+			if (copy != null) {
+				tr = new TestResources(Collections.emptyList());
+				copy.consume(i * window, tr);
+				raisedByCopy.addAll(tr.getRaisedEvents());
+			}else if (i == 100) {
+				copy = (FunctionKofN)inlined.copy();
+				raisedByCopy.addAll(raised);
+			}
+		}
+		
+		assertTrue(raised.size() > 20);
+		for (int i = 0; i < raised.size(); i++) {
+			Event cur = raised.get(i);
+			assertEquals(i % 2 == 0 ? FailureSimulationEvent.FS_FAILED : FailureSimulationEvent.FS_RETURN_TO_SERVICE, cur.getType());
+			if (cur.getType() == FailureSimulationEvent.FS_FAILED) {
+				Iterator<Event> causes = cur.causedBy();
+				Event cause1 = causes.next();
+				Event cause2 = causes.next();
+				assertFalse(causes.hasNext());
+				assertEquals(FailureSimulationEvent.FS_FAILED, cause1.getType());
+				assertEquals(FailureSimulationEvent.FS_FAILED, cause2.getType());
+				assertNotEquals(cause1.getProducerId(), cause2.getProducerId());
+				assertEquals(cur.getTime(), cause2.getTime());
+			}
+		}
+		
+		//A copy carries on exactly as the original
+		assertEquals(raised.size(), raisedByCopy.size());
+		for (int i = 0; i < raised.size(); i++) {
+			assertEquals(raised.get(i).getType(), raisedByCopy.get(i).getType());
+			assertEquals(raised.get(i).getTime(), raisedByCopy.get(i).getTime());
+		}
+	}
+	
 	@Test
 	void testFailOverFault() {
 		FunctionInfo fi = new TestFunctionInfo() {
@@ -5,6 +5,7 @@ package com.perelens.simulation.failure;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -805,6 +806,89 @@ class RandomFailureFunctionTest {
 		assertFalse(events.hasNext());
 	}
 	
+	@Test
+	void testResourceRenewAfterKnownGrantTime() {
+		//Use non random arrival again
+		DistributionProvider dp = new CoreDistributionProvider();
+		Distribution df = dp.exponential(1000);
+		Distribution dr = dp.exponential(100);
+
+		RandomFailureFunction rff = new RandomFailureFunction("rff1",df,dr);
+
+		FunctionInfo fi = new TestFunctionInfo() {
+			@Override
+			public Set<String> getResourcePools() {
+				return Collections.singleton("pool1");
+			}
+
+			@Override
+			public RandomGenerator getRandomGenerator() {
+				return new RandomGenerator() {
+
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					public double nextDouble() {
+						return 0.5;
+					}
+
+					@Override
+					public String getRandomSetup() {
+						return "constant";
+					}
+
+					@Override
+					public RandomGenerator copy() {
+						throw new IllegalStateException("not implemented");
+					}
+
+				};
+			}
+
+			@Override
+			public TimeTranslator getTimeTranslator() {
+				
+				return null;
+			}
+
+		};
+
+		rff.initiate(fi);
+
+		long nextFailureTime = (long)df.sample(0.5);
+		long nextWindowTime = nextFailureTime + 100;
+
+		TestResources tr = new TestResources(Collections.emptyList());
+		rff.consume(nextWindowTime, tr);
+		assertEquals(2,tr.getRaisedEvents().size()); //Fail event an resource pool request
+		
+		//Inject an RP_DEFER that says the pool cannot grant anything until two windows from now
+		long grantPossible = nextWindowTime + 250;
+		ResPoolEvent deferEvent = new ResPoolEvent("pool1",ResourcePoolEvent.RP_DEFER,nextFailureTime + 3,ordinal++,ResourcePoolEvent.GRANT_RESPONSE_TYPES);
+		deferEvent.setTimeOptimization(grantPossible);
+		tr = new TestResources(Collections.singletonList(deferEvent));
+		rff.consume(nextWindowTime, tr);
+		
+		//No RP_RENEW in a window that ends before the pool could grant
+		nextWindowTime += 200;
+		tr = new TestResources(Collections.emptyList());
+		rff.consume(nextWindowTime, tr);
+		assertEquals(0, tr.getRaisedEvents().size());
+		assertEquals(0, tr.getRaisedResponses().size());
+		
+		//RP_RENEW at the start of the window that contains the time the pool could grant
+		long windowStart = nextWindowTime;
+		nextWindowTime += 200;
+		tr = new TestResources(Collections.emptyList());
+		rff.consume(nextWindowTime, tr);
+		assertEquals(1, tr.getRaisedEvents().size());
+		
+		Event renewEvent = tr.getRaisedEvents().iterator().next();
+		assertEquals(ResourcePoolEvent.RP_RENEW, renewEvent.getType());
+		assertEquals(windowStart + 1, renewEvent.getTime());
+		assertEquals(rff.getId(), renewEvent.getProducerId());
+	}
+	
 	@Test
 	void testResourceRenewOverMultipleWindow() {
 		//Use non random arrival again
@@ -1396,4 +1480,149 @@ class RandomFailureFunctionTest {
 		
 		assertFalse(events.hasNext());
 	}
+	
+	@Test
+	void testOrderedMultiPoolAcquisition() {
+		DistributionProvider dp = new CoreDistributionProvider();
+		Distribution df = dp.exponential(1000);
+		Distribution dr = dp.exponential(100);
+
+		RandomFailureFunction rff = new RandomFailureFunction("rff1",df,dr);
+		rff.setResourceUnits("crew", 2);
+		rff.initiate(multiPoolInfo());
+		assertEquals("crane,crew", rff.getConfiguration().get(RandomFailureFunction.CONFIG_KEYS.RFF_RESOURCE_POOL));
+		assertEquals("crew=2", rff.getConfiguration().get(RandomFailureFunction.CONFIG_KEYS.RFF_RESOURCE_UNITS));
+		
+		long nextFailureTime = (long)df.sample(0.5);
+		long repairInterval = (long)Math.ceil(dr.sample(0.5));
+		long nextWindowTime = nextFailureTime + repairInterval * 2;
+		
+		//Pools are acquired in id order so the crane is requested first
+		TestResources tr = new TestResources(Collections.emptyList());
+		rff.consume(nextWindowTime, tr);
+		assertEquals(2,tr.getRaisedEvents().size()); //Fail event and crane request
+		Iterator<Event> events = tr.getRaisedEvents().iterator();
+		assertEquals(FailureSimulationEvent.FS_FAILED, events.next().getType());
+		ResPoolEvent request = (ResPoolEvent)events.next();
+		assertEquals(ResourcePoolEvent.RP_REQUEST, request.getType());
+		assertEquals("crane", request.getPool());
+		assertEquals(1, request.getUnits());
+		assertEquals(Event.NOT_TIME_OPTIMIZED, request.getTimeOptimization());
+		assertEquals(0, request.getLookahead());
+		
+		//The crane grant is held while the crew is requested with the repair time
+		Event craneGrant = new ResPoolEvent("crane",ResourcePoolEvent.RP_GRANT,nextFailureTime + 3,ordinal++,ResourcePoolEvent.GRANT_RESPONSE_TYPES);
+		tr = new TestResources(Collections.singletonList(craneGrant));
+		rff.consume(nextWindowTime, tr);
+		assertEquals(1, tr.getRaisedEvents().size());
+		assertEquals(0, tr.getRaisedResponses().size());
+		request = (ResPoolEvent)tr.getRaisedEvents().iterator().next();
+		assertEquals(ResourcePoolEvent.RP_REQUEST, request.getType());
+		assertEquals(nextFailureTime + 3, request.getTime());
+		assertEquals("crew", request.getPool());
+		assertEquals(2, request.getUnits());
+		assertTrue(request.getTimeOptimization() >= repairInterval);
+		//The crew is told when the function will fail again after the repair
+		assertEquals((long)df.sample(0.5), request.getLookahead());
+		
+		//Once the crew pool defers, the crane grant is deferred to the next window
+		Event crewDefer = new ResPoolEvent("crew",ResourcePoolEvent.RP_DEFER,nextFailureTime + 4,ordinal++);
+		tr = new TestResources(Collections.singletonList(crewDefer));
+		rff.consume(nextWindowTime, tr);
+		assertEquals(0, tr.getRaisedEvents().size());
+		assertEquals(1, tr.getRaisedResponses().size());
+		ResponseEntry re = tr.getRaisedResponses().iterator().next();
+		assertEquals(ResourcePoolEvent.RP_DEFER, re.getResponse().getType());
+		assertEquals(craneGrant, re.getInResponseTo());
+		
+		//Only the crew request is renewed
+		long windowStart = nextWindowTime;
+		nextWindowTime += repairInterval * 2;
+		tr = new TestResources(Collections.emptyList());
+		rff.consume(nextWindowTime, tr);
+		assertEquals(1, tr.getRaisedEvents().size());
+		ResPoolEvent renew = (ResPoolEvent)tr.getRaisedEvents().iterator().next();
+		assertEquals(ResourcePoolEvent.RP_RENEW, renew.getType());
+		assertEquals(windowStart + 1, renew.getTime());
+		assertEquals("crew", renew.getPool());
+		assertEquals(2, renew.getUnits());
+		
+		//Repair runs once the crew is granted and both pools are returned when it completes
+		long grantTime = windowStart + 5;
+		Event crewGrant = new ResPoolEvent("crew",ResourcePoolEvent.RP_GRANT,grantTime,ordinal++,ResourcePoolEvent.GRANT_RESPONSE_TYPES);
+		tr = new TestResources(Collections.singletonList(crewGrant));
+		rff.consume(nextWindowTime, tr);
+		assertEquals(2, tr.getRaisedEvents().size());
+		assertEquals(1, tr.getRaisedResponses().size());
+		
+		events = tr.getRaisedEvents().iterator();
+		ResPoolEvent craneReturn = (ResPoolEvent)events.next();
+		assertEquals(ResourcePoolEvent.RP_RETURN, craneReturn.getType());
+		assertEquals("crane", craneReturn.getPool());
+		long rtsTime = craneReturn.getTime();
+		assertTrue(rtsTime >= grantTime + repairInterval);
+		assertEquals(FailureSimulationEvent.FS_RETURN_TO_SERVICE, events.next().getType());
+		
+		re = tr.getRaisedResponses().iterator().next();
+		assertEquals(ResourcePoolEvent.RP_RETURN, re.getResponse().getType());
+		assertEquals("crew", ((ResPoolEvent)re.getResponse()).getPool());
+		assertEquals(rtsTime, re.getResponse().getTime());
+		assertEquals(crewGrant, re.getInResponseTo());
+	}
+	
+	@Test
+	void testMultiPoolMisconfiguration() {
+		DistributionProvider dp = new CoreDistributionProvider();
+		Distribution df = dp.exponential(1000);
+		Distribution dr = dp.exponential(100);
+		
+		//Units for a pool the function does not use
+		RandomFailureFunction rff = new RandomFailureFunction("rff1",df,dr);
+		rff.setResourceUnits("forklift", 2);
+		assertThrows(IllegalStateException.class, () -> rff.initiate(multiPoolInfo()));
+		
+		//The units are still reported so pools can check them when they initiate
+		assertEquals(2, rff.getResourceUnits("forklift"));
+		assertEquals(1, rff.getResourceUnits("crew"));
+	}
+	
+	/**
+	 * FunctionInfo for a function that uses the crane and crew pools and a generator that always returns 0.5
+	 */
+	private FunctionInfo multiPoolInfo() {
+		return new TestFunctionInfo() {
+			@Override
+			public Set<String> getResourcePools() {
+				return Set.of("crew","crane");
+			}
+
+			@Override
+			public RandomGenerator getRandomGenerator() {
+				return new RandomGenerator() {
+
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					public double nextDouble() {
+						return 0.5;
+					}
+
+					@Override
+					public String getRandomSetup() {
+						return "constant";
+					}
+
+					@Override
+					public RandomGenerator copy() {
+						throw new IllegalStateException("not implemented");
+					}
+				};
+			}
+
+			@Override
+			public TimeTranslator getTimeTranslator() {
+				return null;
+			}
+		};
+	}
 }
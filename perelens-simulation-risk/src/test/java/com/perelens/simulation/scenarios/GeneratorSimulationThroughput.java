@@ -0,0 +1,113 @@
+/**
+ *
+ */
+package com.perelens.simulation.scenarios;
+
+import java.util.Collections;
+import java.util.function.Supplier;
+
+import com.perelens.simulation.api.Distribution;
+import com.perelens.simulation.api.DistributionProvider;
+import com.perelens.simulation.api.Function;
+import com.perelens.simulation.api.RandomProvider;
+import com.perelens.simulation.api.Simulation;
+import com.perelens.simulation.api.SimulationBuilder;
+import com.perelens.simulation.core.CoreDistributionProvider;
+import com.perelens.simulation.core.CoreSimulationBuilder;
+import com.perelens.simulation.failure.FunctionKofN;
+import com.perelens.simulation.failure.RandomFailureFunction;
+import com.perelens.simulation.failure.consumers.AvailabilityConsumer;
+import com.perelens.simulation.random.RanluxProvider;
+import com.perelens.simulation.random.fast.Pcg64Provider;
+import com.perelens.simulation.random.fast.PhiloxProvider;
+import com.perelens.simulation.random.fast.Xoshiro256Provider;
+import com.perelens.simulation.utils.Relationships;
+
+/**
+ * Copyright 2020-2025 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS"
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing
+   permissions and limitations under the License
+
+   Compares the end to end simulation time of RanluxProvider against the generators in perelens-random-fast.
+   Two models are run with every provider: the single spare 4 node cluster from ValidationTest, and a wide model of 250 such
+   clusters, run for a fiftieth of the time, where far more generators draw values per window.  Each run prints the wall time,
+   the time relative to Ranlux and the mean cluster availability so the providers can be checked against each other.
+   The first round includes JIT warm up.
+   See GeneratorThroughput in perelens-random-fast for the raw generator speed.
+
+ * @author Steve Branda
+ */
+public class GeneratorSimulationThroughput {
+
+	public static void main(String[] args) throws Throwable {
+		long duration = args.length > 0 ? Long.parseLong(args[0]) : 20_000_000_000L;
+
+		for (int round = 0; round < 3; round++) {
+			compare("4 node cluster", () -> new ValidationTest().setupSingleSpare4NodeCluster(), 1, duration);
+			compare("250 clusters", () -> setupClusters(250), 250, duration / 50);
+		}
+	}
+
+	private static void compare(String model, Supplier<SimulationBuilder> builder, int clusters, long duration) throws Throwable {
+		RandomProvider[] providers = {new RanluxProvider(3), new Xoshiro256Provider(3), new Pcg64Provider(3), new PhiloxProvider(3)};
+
+		long baseline = 0;
+		for (RandomProvider p : providers) {
+			SimulationBuilder b = builder.get();
+			b.setRandomProvider(p);
+
+			Simulation s = b.createSimulation(4);
+			AvailabilityConsumer[] avail = new AvailabilityConsumer[clusters];
+			for (int i = 0; i < clusters; i++) {
+				avail[i] = new AvailabilityConsumer("availability " + i);
+				s.subscribeToEvents(avail[i], Collections.singletonList(clusters == 1 ? "cluster" : "cluster." + i));
+			}
+
+			long start = System.nanoTime();
+			s.start(duration);
+			s.join();
+			long elapsed = System.nanoTime() - start;
+			if (baseline == 0) {
+				baseline = elapsed;
+			}
+
+			double total = 0;
+			for (AvailabilityConsumer a : avail) {
+				total += a.getAvailability();
+			}
+			System.out.println(model + ", " + p.getSetup() + ": " + elapsed / 1_000_000 + " ms (" +
+					String.format("%.2f", (double)elapsed / baseline) + " of Ranlux), mean availability " + String.format("%.6f", total / clusters));
+			s.destroy();
+		}
+	}
+
+	private static SimulationBuilder setupClusters(int clusters) {
+		SimulationBuilder toReturn = new CoreSimulationBuilder();
+		DistributionProvider dp = new CoreDistributionProvider();
+
+		double mtr = 2 * 60;
+		double mtbf = Relationships.getMeanTimeBetweenFailure(0.999d, mtr);
+		Distribution failure = dp.exponential(mtbf);
+		Distribution repair = dp.exponential(mtr);
+
+		for (int c = 0; c < clusters; c++) {
+			FunctionKofN cluster = new FunctionKofN("cluster." + c,3,4);
+			cluster.setRestoreTime(2 * 60);
+			cluster.setMeanTimeToFailOver(3);
+			toReturn.addFunction(cluster);
+
+			for (int n = 0; n < 4; n++) {
+				Function node = new RandomFailureFunction("node." + c + "." + n,failure,repair);
+				toReturn.addFunction(node);
+				toReturn.getFunction(cluster.getId()).addDependency(node.getId());
+			}
+		}
+		return toReturn;
+	}
+}
@@ -0,0 +1,91 @@
+/**
+ *
+ */
+package com.perelens.simulation.scenarios;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+import com.perelens.simulation.api.Simulation;
+import com.perelens.simulation.api.SimulationBuilder;
+import com.perelens.simulation.core.CoreSimulationBuilder;
+import com.perelens.simulation.failure.consumers.AvailabilityConsumer;
+import com.perelens.simulation.random.RanluxProvider;
+import com.perelens.simulation.statistics.SampledStatistic;
+import com.perelens.statistics.ConfidenceInterval;
+
+/**
+ * Copyright 2020-2025 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS"
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing
+   permissions and limitations under the License
+
+ * @author Steve Branda
+ */
+class InlinedGroupValidationTest extends ValidationTest {
+
+	private static final int SEEDS = 10;
+	private static final long DURATION = 50_000_000l; //95 years in minutes
+	
+	private boolean inline = true;
+	
+	@Override
+	protected SimulationBuilder newBuilder() {
+		//Groups of plain exponential functions are simulated by a single function, everything else is simulated as before
+		return new CoreSimulationBuilder().setInlineGroups(inline);
+	}
+	
+	@Test
+	void testInlinedMatchesBruteForce() throws Throwable {
+		//The same model simulated brute force and inlined over several seeds
+		SampledStatistic bruteForce = new SampledStatistic();
+		SampledStatistic inlined = new SampledStatistic();
+		for (long seed = 1; seed <= SEEDS; seed++) {
+			bruteForce.add(runSingleSpare4NodeCluster(false, seed));
+			inlined.add(runSingleSpare4NodeCluster(true, seed));
+		}
+		inline = true;
+		
+		ConfidenceInterval b = bruteForce.getConfidenceInterval(0.999);
+		ConfidenceInterval c = inlined.getConfidenceInterval(0.999);
+		System.out.println("Single Spare 4 Node Cluster brute force vs inlined: " + b + ", " + c);
+		
+		//The means may differ by no more than the sampling error of the two estimates
+		double b2 = (b.getUpperBound() - b.getLowerBound()) / 2;
+		double c2 = (c.getUpperBound() - c.getLowerBound()) / 2;
+		assertEquals(bruteForce.getMean(), inlined.getMean(), Math.sqrt(b2 * b2 + c2 * c2));
+		
+		//Both agree with the analytic availability
+		assertTrue(b.getLowerBound() <= 0.999882 && 0.999882 <= b.getUpperBound(), b.toString());
+		assertTrue(c.getLowerBound() <= 0.999882 && 0.999882 <= c.getUpperBound(), c.toString());
+	}
+	
+	private double runSingleSpare4NodeCluster(boolean inline, long seed) throws Throwable {
+		this.inline = inline;
+		SimulationBuilder builder = setupSingleSpare4NodeCluster();
+		builder.setRandomProvider(new RanluxProvider(seed));
+		
+		//The nodes are left out of the inlined model
+		assertEquals(inline ? 1 : 5, ((CoreSimulationBuilder)builder).compile().size());
+		
+		Simulation s = builder.createSimulation(1);
+		AvailabilityConsumer avail = new AvailabilityConsumer("availability");
+		s.subscribeToEvents(avail, Collections.singletonList("cluster"));
+		try {
+			s.start(DURATION);
+			s.join();
+		}finally {
+			s.destroy();
+		}
+		return avail.getAvailability();
+	}
+}
@@ -0,0 +1,42 @@
+/**
+ *
+ */
+package com.perelens.simulation.scenarios;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import org.junit.jupiter.api.Test;
+
+import com.perelens.simulation.api.ResourcePool;
+import com.perelens.simulation.core.CoreResourcePool;
+
+/**
+ * Copyright 2020-2025 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS"
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing
+   permissions and limitations under the License
+
+ * @author Steve Branda
+ */
+class PersistentValidationTest extends ValidationTest {
+
+	@Override
+	protected ResourcePool getResourcePool(String id, int limit) {
+		//Skipping renewals until the pool could grant must not change when anything is granted
+		CoreResourcePool toReturn = new CoreResourcePool(id,limit);
+		toReturn.setPersistentRequests(true);
+		return toReturn;
+	}
+	
+	@Test
+	void testMatchesRenewingEveryWindow() throws Throwable {
+		//Same seed and model with persistent requests off, the repair pool is contended so requests are deferred often
+		long[] expected = new ValidationTest().runMultiUnitRepair(1572640114145L, 300_000_000l);
+		assertArrayEquals(expected, runMultiUnitRepair(1572640114145L, 300_000_000l));
+	}
+}
@@ -0,0 +1,87 @@
+/**
+ * 
+ */
+package com.perelens.simulation.scenarios;
+
+import java.util.Collections;
+import java.util.function.BiFunction;
+
+import com.perelens.simulation.api.Distribution;
+import com.perelens.simulation.api.DistributionProvider;
+import com.perelens.simulation.api.ResourcePool;
+import com.perelens.simulation.api.Simulation;
+import com.perelens.simulation.api.SimulationBuilder;
+import com.perelens.simulation.core.CoreDistributionProvider;
+import com.perelens.simulation.core.CoreLookaheadResourcePool;
+import com.perelens.simulation.core.CoreResourcePool;
+import com.perelens.simulation.core.CoreSimulationBuilder;
+import com.perelens.simulation.core.CoreTimeOptimizedResourcePool;
+import com.perelens.simulation.failure.RandomFailureFunction;
+import com.perelens.simulation.failure.consumers.AvailabilityConsumer;
+import com.perelens.simulation.random.RanluxProvider;
+
+/**
+ * Copyright 2020-2025 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" 
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
+   permissions and limitations under the License
+
+   Compares CoreResourcePool, CoreTimeOptimizedResourcePool and CoreLookaheadResourcePool on a contended repair pool.
+   Each model has 200 servers sharing 2 repair crews.  The servers fail about once a month and take 8 hours on average to repair
+   so the crews are busy more than half the time.  The mean server availability is printed with each run so the pools can be
+   checked against each other.
+   
+ * @author Steve Branda 
+ */
+public class ResourcePoolThroughput {
+
+	public static void main(String[] args) throws Throwable {
+		long duration = args.length > 0 ? Long.parseLong(args[0]) : 500_000_000L;
+		int servers = 200;
+		
+		for (int round = 0; round < 3; round++) {
+			run("CoreResourcePool", (id,limit) -> new CoreResourcePool(id,limit), servers, duration);
+			run("CoreTimeOptimizedResourcePool", (id,limit) -> new CoreTimeOptimizedResourcePool(id,limit), servers, duration);
+			run("CoreLookaheadResourcePool", (id,limit) -> new CoreLookaheadResourcePool(id,limit), servers, duration);
+		}
+	}
+	
+	private static void run(String name, BiFunction<String,Integer,ResourcePool> poolFactory, int servers, long duration) throws Throwable {
+		SimulationBuilder builder = new CoreSimulationBuilder();
+		DistributionProvider dp = new CoreDistributionProvider();
+		Distribution failure = dp.exponential(30 * 24 * 60);
+		Distribution repair = dp.exponential(8 * 60);
+		
+		ResourcePool pool = poolFactory.apply("crews", 2);
+		builder.addResourcePool(pool);
+		for (int i = 0; i < servers; i++) {
+			builder.addFunction(new RandomFailureFunction("server." + i,failure,repair));
+			builder.getFunction("server." + i).addResourcePool(pool.getId());
+		}
+		builder.setRandomProvider(new RanluxProvider(11));
+		
+		Simulation s = builder.createSimulation(4);
+		AvailabilityConsumer[] avail = new AvailabilityConsumer[servers];
+		for (int i = 0; i < servers; i++) {
+			avail[i] = new AvailabilityConsumer("availability " + i);
+			s.subscribeToEvents(avail[i], Collections.singletonList("server." + i));
+		}
+		
+		long start = System.nanoTime();
+		s.start(duration);
+		s.join();
+		long elapsed = System.nanoTime() - start;
+		
+		double total = 0;
+		for (AvailabilityConsumer a : avail) {
+			total += a.getAvailability();
+		}
+		System.out.println(name + ": " + elapsed / 1_000_000 + " ms, mean availability " + String.format("%.6f", total / servers));
+		s.destroy();
+	}
+}
@@ -0,0 +1,40 @@
+/**
+ *
+ */
+package com.perelens.simulation.scenarios;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import org.junit.jupiter.api.Test;
+
+import com.perelens.simulation.api.ResourcePool;
+import com.perelens.simulation.core.CoreShardedResourcePool;
+
+/**
+ * Copyright 2020-2025 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS"
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing
+   permissions and limitations under the License
+
+ * @author Steve Branda
+ */
+class ShardedValidationTest extends ValidationTest {
+
+	@Override
+	protected ResourcePool getResourcePool(String id, int limit) {
+		//A single shard must behave exactly like a CoreResourcePool once the builder has routed the functions to it
+		return new CoreShardedResourcePool(id,new int[] {limit});
+	}
+	
+	@Test
+	void testSingleShardMatchesCoreResourcePool() throws Throwable {
+		//The units of system a are set with the pool id, which the functions must translate to the id of their shard
+		long[] expected = new ValidationTest().runMultiUnitRepair(1572640114145L, 300_000_000l);
+		assertArrayEquals(expected, runMultiUnitRepair(1572640114145L, 300_000_000l));
+	}
+}
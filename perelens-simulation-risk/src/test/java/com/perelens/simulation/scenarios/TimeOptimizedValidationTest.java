@@ -3,8 +3,29 @@
  */
 package com.perelens.simulation.scenarios;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Collections;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.perelens.engine.api.EngineExecutionException;
+import com.perelens.simulation.api.Distribution;
+import com.perelens.simulation.api.DistributionProvider;
 import com.perelens.simulation.api.ResourcePool;
+import com.perelens.simulation.api.Simulation;
+import com.perelens.simulation.api.SimulationBuilder;
+import com.perelens.simulation.core.CoreDistributionProvider;
+import com.perelens.simulation.core.CoreResourcePool;
 import com.perelens.simulation.core.CoreTimeOptimizedResourcePool;
+import com.perelens.simulation.failure.FunctionKofN;
+import com.perelens.simulation.failure.RandomFailureFunction;
+import com.perelens.simulation.failure.consumers.AvailabilityConsumer;
+import com.perelens.simulation.failure.consumers.OutageConsumer;
+import com.perelens.simulation.random.RanluxProvider;
+import com.perelens.simulation.utils.Relationships;
 
 /**
  * Copyright 2020-2025 Steven Branda
@@ -25,4 +46,83 @@ class TimeOptimizedValidationTest extends ValidationTest {
 	protected ResourcePool getResourcePool(String id, int limit) {
 		return new CoreTimeOptimizedResourcePool(id,limit);
 	}
+	
+	/**
+	 * Two clusters of three nodes share a pool of 3 crews and a pool of 4 spares.  Every repair takes a crew and then spares,
+	 * the nodes of cluster a need 2 crews and the nodes of cluster b need 2 spares.
+	 * 
+	 * @param sparesId - pools are acquired in id order, so only an id after "crews" lets the spares pool be time optimized
+	 * @param timeOptimized - use a CoreTimeOptimizedResourcePool for the spares in place of a CoreResourcePool
+	 */
+	private SimulationBuilder setupSharedPools(String sparesId, boolean timeOptimized) {
+		SimulationBuilder toReturn = newBuilder();
+		DistributionProvider dp = new CoreDistributionProvider();
+		
+		double availability = 0.99d;
+		double mtr = 2 * 60; //mtr in minutes
+		double mtbf = Relationships.getMeanTimeBetweenFailure(availability, mtr);
+		
+		Distribution failure = dp.exponential(mtbf);
+		Distribution repair = dp.exponential(mtr);
+		
+		toReturn.addResourcePool(new CoreResourcePool("crews",3));
+		toReturn.addResourcePool(timeOptimized ? new CoreTimeOptimizedResourcePool(sparesId,4) : new CoreResourcePool(sparesId,4));
+		
+		for (String cluster : new String[] {"a.cluster","b.cluster"}) {
+			toReturn.addFunction(new FunctionKofN(cluster,2,3));
+			for (int i = 1; i <= 3; i++) {
+				RandomFailureFunction node = new RandomFailureFunction(cluster + ".node." + i,failure,repair);
+				node.setResourceUnits(cluster.startsWith("a") ? "crews" : sparesId, 2);
+				toReturn.addFunction(node);
+				toReturn.getFunction(cluster).addDependency(toReturn.getFunction(node.getId()));
+				toReturn.getFunction(node.getId()).addResourcePool("crews").addResourcePool(sparesId);
+			}
+		}
+		
+		return toReturn;
+	}
+	
+	/**
+	 * @return the up time, down time and outage durations of a.cluster followed by the same for b.cluster
+	 */
+	private long[] runSharedPools(String sparesId, boolean timeOptimized, long duration) throws Throwable {
+		SimulationBuilder builder = setupSharedPools(sparesId, timeOptimized);
+		builder.setRandomProvider(new RanluxProvider(1572624226970L));
+		
+		Simulation s = builder.createSimulation(1);
+		
+		String[] clusters = {"a.cluster","b.cluster"};
+		AvailabilityConsumer[] avail = new AvailabilityConsumer[clusters.length];
+		OutageConsumer[] outages = new OutageConsumer[clusters.length];
+		for (int i = 0; i < clusters.length; i++) {
+			avail[i] = new AvailabilityConsumer("availability " + clusters[i]);
+			outages[i] = new OutageConsumer("outages " + clusters[i],1);
+			s.subscribeToEvents(avail[i], Collections.singletonList(clusters[i]));
+			s.subscribeToEvents(outages[i], Collections.singletonList(clusters[i]));
+		}
+		
+		try {
+			s.start(duration);
+			s.join();
+		}finally {
+			s.destroy();
+		}
+		
+		LongStream toReturn = LongStream.empty();
+		for (int i = 0; i < clusters.length; i++) {
+			toReturn = LongStream.concat(toReturn, LongStream.of(avail[i].getUpTime(), avail[i].getDownTime()));
+			toReturn = LongStream.concat(toReturn, LongStream.of(outages[i].getDowntimeDurations()));
+		}
+		return toReturn.toArray();
+	}
+	
+	@Test
+	void testSharedPoolsWithMultiUnitRequests() throws Throwable {
+		//The time optimized spares pool must grant exactly what a CoreResourcePool would, including the 2 unit requests
+		long[] expected = runSharedPools("spares", false, 300_000_000l);
+		assertArrayEquals(expected, runSharedPools("spares", true, 300_000_000l));
+		
+		//Acquired before the crews, the time optimized pool gets requests without the repair time and stops the simulation
+		assertThrows(EngineExecutionException.class, () -> runSharedPools("base spares", true, 300_000_000l));
+	}
 }
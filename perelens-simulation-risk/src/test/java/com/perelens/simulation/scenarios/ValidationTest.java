@@ -1,6 +1,7 @@
 package com.perelens.simulation.scenarios;
 
 import java.util.Collections;
+import java.util.stream.LongStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Test;
@@ -51,9 +52,13 @@ class ValidationTest {
 	protected ResourcePool getResourcePool(String id, int limit) {
 		return new CoreResourcePool(id, limit);
 	}
+	
+	protected SimulationBuilder newBuilder() {
+		return new CoreSimulationBuilder();
+	}
 
 	protected SimulationBuilder setupSingleSpare4NodeCluster() {
-		SimulationBuilder toReturn = new CoreSimulationBuilder();
+		SimulationBuilder toReturn = newBuilder();
 		DistributionProvider dp = new CoreDistributionProvider();
 		
 		double availability = 0.999d;
@@ -90,7 +95,7 @@ class ValidationTest {
 	}
 	
 	protected SimulationBuilder setupDualSubsystemModelPR() {
-		SimulationBuilder toReturn = new CoreSimulationBuilder();
+		SimulationBuilder toReturn = newBuilder();
 		DistributionProvider dp = new CoreDistributionProvider();
 		
 		double availability = 0.999d;
@@ -117,7 +122,7 @@ class ValidationTest {
 	}
 	
 	protected SimulationBuilder setupDualSubsystemModelSR() {
-		SimulationBuilder toReturn = new CoreSimulationBuilder();
+		SimulationBuilder toReturn = newBuilder();
 		DistributionProvider dp = new CoreDistributionProvider();
 		
 		double availability = 0.999d;
@@ -149,7 +154,7 @@ class ValidationTest {
 	}
 	
 	protected SimulationBuilder setupActiveBackupVol2p121() {
-		SimulationBuilder toReturn = new CoreSimulationBuilder();
+		SimulationBuilder toReturn = newBuilder();
 		DistributionProvider dp = new CoreDistributionProvider();
 		
 		double availability = 0.9999d;
@@ -181,7 +186,7 @@ class ValidationTest {
 	}
 	
 	protected SimulationBuilder setupActiveActiveVol2p122() {
-		SimulationBuilder toReturn = new CoreSimulationBuilder();
+		SimulationBuilder toReturn = newBuilder();
 		DistributionProvider dp = new CoreDistributionProvider();
 		
 		double availability = 0.9999d;
@@ -212,7 +217,7 @@ class ValidationTest {
 	}
 	
 	protected SimulationBuilder setupSingleSpare16NodeCluster() {
-		SimulationBuilder toReturn = new CoreSimulationBuilder();
+		SimulationBuilder toReturn = newBuilder();
 		DistributionProvider dp = new CoreDistributionProvider();
 		
 		double availability = 0.999d;
@@ -237,7 +242,7 @@ class ValidationTest {
 	}
 	
 	protected SimulationBuilder setupAzureKubernetesService() {
-		SimulationBuilder toReturn = new CoreSimulationBuilder();
+		SimulationBuilder toReturn = newBuilder();
 		DistributionProvider dp = new CoreDistributionProvider();
 		
 		double avail = 0.999d;
@@ -290,7 +295,7 @@ class ValidationTest {
 	}
 	
 	protected SimulationBuilder setupDualSubsystemsWithUnconstrainedRepair() {
-		SimulationBuilder toReturn = new CoreSimulationBuilder();
+		SimulationBuilder toReturn = newBuilder();
 		DistributionProvider dp = new CoreDistributionProvider();
 		
 		double availability = 0.999d;
@@ -338,7 +343,7 @@ class ValidationTest {
 	}
 	
 	protected SimulationBuilder setupDualSubsystemsWithConstrainedRepair() {
-		SimulationBuilder toReturn = new CoreSimulationBuilder();
+		SimulationBuilder toReturn = newBuilder();
 		DistributionProvider dp = new CoreDistributionProvider();
 		
 		double availability = 0.999d;
@@ -391,7 +396,7 @@ class ValidationTest {
 		
 		int numClusters = 1000;
 		
-		SimulationBuilder toReturn = new CoreSimulationBuilder();
+		SimulationBuilder toReturn = newBuilder();
 		DistributionProvider dp = new CoreDistributionProvider();
 		
 		double availability = 0.999d;
@@ -421,6 +426,73 @@ class ValidationTest {
 		
 	}
 	
+	/**
+	 * Two dual subsystems share a repair pool of 3 units and every repair of system a needs 2 of them
+	 */
+	protected SimulationBuilder setupMultiUnitRepair() {
+		SimulationBuilder toReturn = newBuilder();
+		DistributionProvider dp = new CoreDistributionProvider();
+		
+		double availability = 0.99d;
+		double mtr = 2 * 60; //mtr in minutes
+		double mtbf = Relationships.getMeanTimeBetweenFailure(availability, mtr);
+		
+		Distribution failure = dp.exponential(mtbf);
+		Distribution repair = dp.exponential(mtr);
+		
+		ResourcePool pool = getResourcePool("repair pool",3);
+		toReturn.addResourcePool(pool);
+		
+		for (String sys : new String[] {"a.system","b.system"}) {
+			toReturn.addFunction(new FunctionKofN(sys,1,2));
+			for (int i = 1; i <= 2; i++) {
+				RandomFailureFunction node = new RandomFailureFunction(sys + ".subsystem." + i,failure,repair);
+				if (sys.equals("a.system")) {
+					node.setResourceUnits(pool.getId(), 2);
+				}
+				toReturn.addFunction(node);
+				toReturn.getFunction(sys).addDependency(toReturn.getFunction(node.getId()));
+				toReturn.getFunction(node.getId()).addResourcePool(pool.getId());
+			}
+		}
+		
+		return toReturn;
+	}
+	
+	/**
+	 * Runs a model built by setupMultiUnitRepair() and returns its results exactly, so pools that must grant the same
+	 * resources at the same times as CoreResourcePool can be compared with it.
+	 * 
+	 * @return the up time, down time and outage durations of a.system followed by the same for b.system
+	 */
+	protected long[] runMultiUnitRepair(long seed, long duration) throws Throwable {
+		SimulationBuilder builder = setupMultiUnitRepair();
+		builder.setRandomProvider(new RanluxProvider(seed));
+		
+		Simulation s = builder.createSimulation(1);
+		
+		String[] systems = {"a.system","b.system"};
+		AvailabilityConsumer[] avail = new AvailabilityConsumer[systems.length];
+		OutageConsumer[] outages = new OutageConsumer[systems.length];
+		for (int i = 0; i < systems.length; i++) {
+			avail[i] = new AvailabilityConsumer("availability " + systems[i]);
+			outages[i] = new OutageConsumer("outages " + systems[i],1);
+			s.subscribeToEvents(avail[i], Collections.singletonList(systems[i]));
+			s.subscribeToEvents(outages[i], Collections.singletonList(systems[i]));
+		}
+		
+		s.start(duration);
+		s.join();
+		s.destroy();
+		
+		LongStream toReturn = LongStream.empty();
+		for (int i = 0; i < systems.length; i++) {
+			toReturn = LongStream.concat(toReturn, LongStream.of(avail[i].getUpTime(), avail[i].getDownTime()));
+			toReturn = LongStream.concat(toReturn, LongStream.of(outages[i].getDowntimeDurations()));
+		}
+		return toReturn.toArray();
+	}
+	
 	@Test
 	void testSingleSpare4NodeCluster() throws Throwable {
 		
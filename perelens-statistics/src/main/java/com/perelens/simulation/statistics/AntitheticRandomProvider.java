@@ -0,0 +1,127 @@
+/**
+ * 
+ */
+package com.perelens.simulation.statistics;
+
+import com.perelens.engine.utils.Utils;
+import com.perelens.simulation.api.RandomGenerator;
+import com.perelens.simulation.api.RandomProvider;
+
+/**
+ * Copyright 2020-2023 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" 
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
+   permissions and limitations under the License
+
+   
+   RandomProvider that wraps another provider and returns the antithetic value 1-u for every uniform u the wrapped generators produce.
+   Running one replication with a provider and its partner with new AntitheticRandomProvider(provider.copy()) (copied before
+   the first replication uses it) gives negatively correlated results for outputs that are monotone in the random inputs.
+   Record the pair with {@link PairedStatistic} to get the variance reduction achieved.
+   
+   The value is kept in [0,1) by mapping the (practically impossible) u = 0 to the largest double below 1.
+   
+ * @author Steve Branda
+ *
+ */
+public class AntitheticRandomProvider implements RandomProvider {
+
+	private static final long serialVersionUID = 2416315760387245806L;
+
+	static final String SETUP_PREFIX = "Antithetic;";
+	
+	private RandomProvider base;
+	
+	public AntitheticRandomProvider(RandomProvider base) {
+		Utils.checkNull(base);
+		this.base = base;
+	}
+	
+	@Override
+	public RandomGenerator createGenerator() {
+		return new AntitheticGenerator(base.createGenerator());
+	}
+	
+	@Override
+	public RandomGenerator createGenerator(String entryId, int streamIndex) {
+		return new AntitheticGenerator(base.createGenerator(entryId, streamIndex));
+	}
+	
+	@Override
+	public boolean isOrderIndependent() {
+		return base.isOrderIndependent();
+	}
+	
+	@Override
+	public void startReplication() {
+		base.startReplication();
+	}
+	
+	@Override
+	public long getReplication() {
+		return base.getReplication();
+	}
+
+	@Override
+	public RandomGenerator createGenerator(String setup) {
+		Utils.checkNull(setup);
+		if (!setup.startsWith(SETUP_PREFIX)) {
+			throw new IllegalArgumentException("Bad setup string");
+		}
+		return new AntitheticGenerator(base.createGenerator(setup.substring(SETUP_PREFIX.length())));
+	}
+
+	@Override
+	public String getSetup() {
+		return SETUP_PREFIX + base.getSetup();
+	}
+
+	@Override
+	public RandomProvider copy() {
+		return new AntitheticRandomProvider(base.copy());
+	}
+	
+	static double antithetic(double u) {
+		double v = 1.0 - u;
+		return v < 1.0 ? v : Math.nextDown(1.0);
+	}
+	
+	private static class AntitheticGenerator implements RandomGenerator{
+
+		private static final long serialVersionUID = -5002712925096389423L;
+		
+		private RandomGenerator base;
+		
+		AntitheticGenerator(RandomGenerator base) {
+			this.base = base;
+		}
+		
+		@Override
+		public double nextDouble() {
+			return antithetic(base.nextDouble());
+		}
+		
+		@Override
+		public void nextDoubles(double[] out, int n) {
+			base.nextDoubles(out, n);
+			for (int i = 0; i < n; i++) {
+				out[i] = antithetic(out[i]);
+			}
+		}
+
+		@Override
+		public String getRandomSetup() {
+			return SETUP_PREFIX + base.getRandomSetup();
+		}
+
+		@Override
+		public RandomGenerator copy() {
+			return new AntitheticGenerator(base.copy());
+		}
+	}
+}
@@ -0,0 +1,97 @@
+/**
+ * 
+ */
+package com.perelens.simulation.statistics;
+
+/**
+ * Copyright 2020-2023 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" 
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
+   permissions and limitations under the License
+
+   
+   Collects paired observations from two replications that were run with correlated random numbers, either
+   antithetic replications of the same model (see {@link AntitheticRandomProvider}) or two model variants run with
+   common random numbers (the same order independent RandomProvider setup, see RandomProvider.isOrderIndependent()).
+   
+   getAverage() estimates the mean of an antithetic pair and getDifference() the difference between two variants.
+   Both are regular SampledStatistics over the pairs, so their confidence intervals account for the correlation.
+   The variance reduction methods return how many times more independent replications would have been needed
+   for the same confidence interval width.  Values below 1 mean the pairing made things worse.
+   
+ * @author Steve Branda
+ *
+ */
+public class PairedStatistic {
+
+	private SampledStatistic first = new SampledStatistic();
+	private SampledStatistic second = new SampledStatistic();
+	private SampledStatistic average = new SampledStatistic();
+	private SampledStatistic difference = new SampledStatistic();
+	
+	public void add(double firstObservation, double secondObservation) {
+		first.add(firstObservation);
+		second.add(secondObservation);
+		average.add((firstObservation + secondObservation)/2.0d);
+		difference.add(firstObservation - secondObservation);
+	}
+	
+	public SampledStatistic getFirst() {
+		return first;
+	}
+	
+	public SampledStatistic getSecond() {
+		return second;
+	}
+	
+	/**
+	 * Statistic of the pair means.  Its mean estimates the mean of the observations.
+	 * 
+	 * @return
+	 */
+	public SampledStatistic getAverage() {
+		return average;
+	}
+	
+	/**
+	 * Statistic of first minus second for each pair.  Its mean estimates the difference between the two variants.
+	 * 
+	 * @return
+	 */
+	public SampledStatistic getDifference() {
+		return difference;
+	}
+	
+	public long getN() {
+		return average.getN();
+	}
+	
+	/**
+	 * Variance of the mean of 2n independent observations divided by the variance of the mean of the n pair means.
+	 * 
+	 * @return
+	 */
+	public double getAverageVarianceReduction() {
+		double pooled = (variance(first) + variance(second))/4.0d;
+		return pooled / variance(average);
+	}
+	
+	/**
+	 * Variance of the difference of two independent observations divided by the variance of the paired differences.
+	 * 
+	 * @return
+	 */
+	public double getDifferenceVarianceReduction() {
+		return (variance(first) + variance(second)) / variance(difference);
+	}
+	
+	private static double variance(SampledStatistic s) {
+		double sd = s.getStandardDeviation();
+		return sd * sd;
+	}
+}
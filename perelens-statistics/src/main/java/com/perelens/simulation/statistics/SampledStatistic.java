@@ -63,8 +63,17 @@ public class SampledStatistic {
 		return mean.getN();
 	}
 	
+	/**
+	 * Returns the Student's t confidence interval for the mean at the passed level.
+	 * The standard deviation cannot be estimated from fewer than two observations, so both bounds are NaN until then.
+	 * 
+	 * @param confidenceLevel
+	 * @return
+	 */
 	public ConfidenceInterval getConfidenceInterval(double confidenceLevel) {
-		
+		if (getN() < 2) {
+			return new ConfidenceInterval(Double.NaN, Double.NaN, confidenceLevel);
+		}
 		TDistribution td = new TDistribution(getN() - 1);
 		double cl = 1.0 - (1.0d - confidenceLevel)/2.0d;
 		double t = td.inverseCumulativeProbability(cl);
@@ -74,6 +83,37 @@ public class SampledStatistic {
 		return new ConfidenceInterval(getMean() - interval,getMean() + interval,confidenceLevel);
 	}
 	
+	/**
+	 * Estimates the total number of observations needed for the confidence interval at the passed level to
+	 * have the passed half width, based on the standard deviation observed so far.
+	 * At least two observations are needed to estimate the standard deviation, so callers stopping sequentially
+	 * should take two observations before asking.
+	 * 
+	 * @param confidenceLevel
+	 * @param halfWidth
+	 * @return
+	 * @throws IllegalStateException if fewer than two observations have been added
+	 */
+	public long getRequiredN(double confidenceLevel, double halfWidth) {
+		Utils.checkArgStrictlyPositive(halfWidth);
+		checkEnoughObservations();
+		TDistribution td = new TDistribution(getN() - 1);
+		double cl = 1.0 - (1.0d - confidenceLevel)/2.0d;
+		double t = td.inverseCumulativeProbability(cl);
+		double n = Math.pow(t * getStandardDeviation()/halfWidth, 2);
+		return Math.max(2, (long)Math.ceil(n));
+	}
+	
+	private void checkEnoughObservations() {
+		if (getN() < 2) {
+			throw new IllegalStateException(tooFewObservations(getN()));
+		}
+	}
+	
+	private static String tooFewObservations(long n) {
+		return "At least 2 observations are needed to estimate the variance.  Observations = " + n;
+	}
+	
 	public Double getHigh() {
 		if (mean.getN() == 0) {
 			return null;
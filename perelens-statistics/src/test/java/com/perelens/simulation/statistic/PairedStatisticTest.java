@@ -0,0 +1,98 @@
+/**
+ * 
+ */
+package com.perelens.simulation.statistic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import com.perelens.simulation.api.RandomGenerator;
+import com.perelens.simulation.api.RandomProvider;
+import com.perelens.simulation.random.RanluxProvider;
+import com.perelens.simulation.statistics.AntitheticRandomProvider;
+import com.perelens.simulation.statistics.PairedStatistic;
+import com.perelens.statistics.ConfidenceInterval;
+
+/**
+ * Copyright 2020-2023 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" 
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
+   permissions and limitations under the License
+
+   
+ * @author Steve Branda
+ *
+ */
+class PairedStatisticTest {
+
+	@Test
+	void testAntitheticProvider() {
+		RandomProvider base = new RanluxProvider(5);
+		RandomProvider anti = new AntitheticRandomProvider(base.copy());
+		assertEquals("Antithetic;" + base.getSetup(), anti.getSetup());
+		
+		RandomGenerator g = base.createGenerator();
+		RandomGenerator a = anti.createGenerator();
+		RandomGenerator recreated = anti.createGenerator(a.getRandomSetup());
+		RandomGenerator recreatedBase = base.createGenerator(g.getRandomSetup());
+		
+		double[] bulk = new double[10];
+		a.copy().nextDoubles(bulk, bulk.length);
+		for (int i = 0; i < 10; i++) {
+			double u = g.nextDouble();
+			assertEquals(1.0 - u, a.nextDouble());
+			assertEquals(1.0 - u, bulk[i]);
+			assertEquals(1.0 - recreatedBase.nextDouble(), recreated.nextDouble());
+		}
+		
+		assertThrows(IllegalArgumentException.class, () -> anti.createGenerator(g.getRandomSetup()));
+	}
+	
+	@Test
+	void testAntitheticVarianceReduction() {
+		//Mean of an exponential(10) sampled by inversion, which is monotone in u
+		RandomGenerator g = new RanluxProvider(11).createGenerator();
+		RandomGenerator a = new AntitheticRandomProvider(new RanluxProvider(11)).createGenerator();
+		
+		PairedStatistic ps = new PairedStatistic();
+		for (int i = 0; i < 2000; i++) {
+			ps.add(-10 * Math.log(1.0 - g.nextDouble()), -10 * Math.log(1.0 - a.nextDouble()));
+		}
+		
+		assertEquals(2000, ps.getN());
+		assertEquals(10, ps.getAverage().getMean(), 0.5);
+		assertTrue(ps.getAverageVarianceReduction() > 2, "" + ps.getAverageVarianceReduction());
+		
+		ConfidenceInterval paired = ps.getAverage().getConfidenceInterval(0.95);
+		ConfidenceInterval single = ps.getFirst().getConfidenceInterval(0.95);
+		assertTrue(paired.getUpperBound() - paired.getLowerBound() < single.getUpperBound() - single.getLowerBound());
+		assertTrue(ps.getAverage().getRequiredN(0.95, 0.1) < ps.getFirst().getRequiredN(0.95, 0.1));
+	}
+	
+	@Test
+	void testCommonRandomNumbers() {
+		//Two variants of a model that only differ by a scale factor
+		RandomGenerator common = new RanluxProvider(7).createGenerator();
+		RandomProvider independent = new RanluxProvider(100);
+		RandomGenerator i1 = independent.createGenerator();
+		RandomGenerator i2 = independent.createGenerator();
+		
+		PairedStatistic crn = new PairedStatistic();
+		PairedStatistic ind = new PairedStatistic();
+		for (int i = 0; i < 1000; i++) {
+			double u = common.nextDouble();
+			crn.add(-11 * Math.log(1.0 - u), -10 * Math.log(1.0 - u));
+			ind.add(-11 * Math.log(1.0 - i1.nextDouble()), -10 * Math.log(1.0 - i2.nextDouble()));
+		}
+		
+		assertEquals(1.0, crn.getDifference().getMean(), 0.1);
+		assertTrue(crn.getDifferenceVarianceReduction() > 50, "" + crn.getDifferenceVarianceReduction());
+		assertEquals(1.0, ind.getDifferenceVarianceReduction(), 0.2);
+	}
+}
@@ -103,4 +103,22 @@ class SampledStatisticTest {
 		assertEquals(18.56, ci.getUpperBound(), 0.01);
 	}
 	
+	@Test
+	void testTooFewObservations() {
+		SampledStatistic m = new SampledStatistic();
+		assertThrows(IllegalStateException.class, () -> m.getRequiredN(0.95, 0.1));
+		assertTrue(Double.isNaN(m.getConfidenceInterval(0.95).getLowerBound()));
+		assertTrue(Double.isNaN(m.getConfidenceInterval(0.95).getUpperBound()));
+		
+		m.add(1.0);
+		assertThrows(IllegalStateException.class, () -> m.getRequiredN(0.95, 0.1));
+		assertTrue(Double.isNaN(m.getConfidenceInterval(0.95).getLowerBound()));
+		assertTrue(Double.isNaN(m.getConfidenceInterval(0.95).getUpperBound()));
+		
+		m.add(3.0);
+		assertTrue(m.getRequiredN(0.95, 0.1) > 2);
+		ConfidenceInterval ci = m.getConfidenceInterval(0.95);
+		assertEquals(2.0, (ci.getLowerBound() + ci.getUpperBound()) / 2, 1e-9);
+	}
+	
 }
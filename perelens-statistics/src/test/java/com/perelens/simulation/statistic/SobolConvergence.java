@@ -0,0 +1,97 @@
+/**
+ * 
+ */
+package com.perelens.simulation.statistic;
+
+import org.apache.commons.math3.distribution.NormalDistribution;
+
+import com.perelens.simulation.api.RandomGenerator;
+import com.perelens.simulation.api.RandomProvider;
+import com.perelens.simulation.random.RanluxProvider;
+import com.perelens.simulation.random.fast.SobolProvider;
+import com.perelens.simulation.statistics.SampledStatistic;
+import com.perelens.statistics.ConfidenceInterval;
+
+/**
+ * Copyright 2020-2023 Steven Branda
+   Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" 
+   BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing 
+   permissions and limitations under the License
+
+   Compares the 95% confidence interval width of annual loss estimates from RanluxProvider and SobolProvider at the same
+   number of replications.  The model is a portfolio of independent risks in the style of the HowToMeasureAnything
+   scenarios: each risk occurs with a fixed annual probability and then causes a lognormal loss given by a 90% interval.
+   Each risk draws its occurrence and loss from its own keyed generator, just as a simulation object would.
+   
+   Randomized QMC estimates are not independent within a run, so for both providers the interval is computed
+   across independent runs with different seeds, each run contributing one estimate to a SampledStatistic.
+   
+ * @author Steve Branda
+ *
+ */
+public class SobolConvergence {
+
+	private static final NormalDistribution NORMAL = new NormalDistribution(0, 1);
+	
+	public static void main(String[] args) {
+		int risks = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		int runs = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+		
+		double[] probability = new double[risks];
+		double[] mu = new double[risks];
+		double[] sigma = new double[risks];
+		for (int i = 0; i < risks; i++) {
+			probability[i] = 0.02 + 0.01 * (i % 10);
+			double lb = 10_000 * (1 + i % 5);
+			double ub = lb * (20 + 10 * (i % 3));
+			mu[i] = (Math.log(ub) + Math.log(lb)) / 2.0;
+			sigma[i] = (Math.log(ub) - Math.log(lb)) / 3.28971;
+		}
+		double threshold = 500_000;
+		
+		for (int replications = 256; replications <= 16_384; replications *= 4) {
+			SampledStatistic[] meanLoss = {new SampledStatistic(), new SampledStatistic()};
+			SampledStatistic[] exceedance = {new SampledStatistic(), new SampledStatistic()};
+			for (int r = 0; r < runs; r++) {
+				RandomProvider[] providers = {new RanluxProvider(1 + r * 1_000_003L), new SobolProvider(r + 1, 2)};
+				for (int p = 0; p < providers.length; p++) {
+					double total = 0;
+					long exceeded = 0;
+					for (int rep = 0; rep < replications; rep++) {
+						double loss = 0;
+						for (int i = 0; i < risks; i++) {
+							RandomGenerator gen = providers[p].createGenerator("risk" + i, 0);
+							boolean occurs = gen.nextDouble() < probability[i];
+							double u = gen.nextDouble();
+							if (occurs) {
+								loss += Math.exp(mu[i] + sigma[i] * NORMAL.inverseCumulativeProbability(u));
+							}
+						}
+						total += loss;
+						if (loss > threshold) {
+							exceeded++;
+						}
+					}
+					meanLoss[p].add(total / replications);
+					exceedance[p].add((double)exceeded / replications);
+				}
+			}
+			
+			System.out.println("replications = " + replications);
+			print("  Ranlux mean loss", meanLoss[0]);
+			print("  Sobol  mean loss", meanLoss[1]);
+			print("  Ranlux P(loss > " + threshold + ")", exceedance[0]);
+			print("  Sobol  P(loss > " + threshold + ")", exceedance[1]);
+		}
+	}
+	
+	private static void print(String label, SampledStatistic s) {
+		ConfidenceInterval ci = s.getConfidenceInterval(0.95);
+		System.out.println(label + ": " + String.format("%.6g", s.getMean()) + " CI width " + String.format("%.4g", ci.getUpperBound() - ci.getLowerBound()));
+	}
+}